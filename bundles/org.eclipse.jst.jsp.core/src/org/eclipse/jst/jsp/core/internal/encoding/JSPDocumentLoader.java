@@ -267,7 +267,7 @@ public class JSPDocumentLoader extends AbstractDocumentLoader {
 	 * before the contents are set on the IStructuredDocument.
 	 */
 	protected IEncodedDocument newEncodedDocument() {
-		IStructuredDocument structuredDocument = StructuredDocumentFactory.getNewStructuredDocumentInstance(getParser());
+		IStructuredDocument structuredDocument = StructuredDocumentFactory.getNewStructuredDocumentInstance(getParser(), ContentTypeIdForJSP.ContentTypeID_JSP);
 		((BasicStructuredDocument) structuredDocument).setReParser(new JSPReParser());
 		// structuredDocument.setDocumentPartitioner(new
 		// JSPJavaDocumentPartioner());
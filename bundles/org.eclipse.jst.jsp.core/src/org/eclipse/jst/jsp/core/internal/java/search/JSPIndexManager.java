@@ -43,6 +43,12 @@ import org.eclipse.wst.sse.core.indexing.AbstractIndexManager;
 public class JSPIndexManager extends AbstractIndexManager {
 	/** the singleton instance of the {@link JSPIndexManager} */
 	private static JSPIndexManager INSTANCE;
+
+	/**
+	 * the number of threads to process resource events on, by default one
+	 * per processor up to four
+	 */
+	private static final int PROCESSING_THREADS = Math.max(1, Integer.getInteger("org.eclipse.jst.jsp.core.indexingThreads", Math.min(4, Runtime.getRuntime().availableProcessors())).intValue()); //$NON-NLS-1$
 		
 	/** the location to store state */
 	private IPath fWorkingLocation;
@@ -112,6 +118,16 @@ public class JSPIndexManager extends AbstractIndexManager {
 		return true;
 	}
 
+	/**
+	 * Translating JSPs and persisting their translations is thread safe, as
+	 * is scheduling them with the JDT index.
+	 * 
+	 * @see org.eclipse.wst.sse.core.indexing.AbstractIndexManager#getProcessingThreadCount()
+	 */
+	protected int getProcessingThreadCount() {
+		return PROCESSING_THREADS;
+	}
+
 	/**
 	 * @see indexer.internal.indexing.AbstractIndexManager#getWorkingLocation()
 	 */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2010 IBM Corporation and others.
+ * Copyright (c) 2004, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -503,7 +503,7 @@ public class JSPSearchSupport {
         return f;
     }
 
-    JSPSearchParticipant getSearchParticipant() {
+    synchronized JSPSearchParticipant getSearchParticipant() {
 
         if (this.fParticipant == null)
             this.fParticipant = new JSPSearchParticipant();
@@ -524,9 +524,13 @@ public class JSPSearchSupport {
         //} else {
             // create index entry
             String pathString = containerPath.toOSString();
-            this.fChecksumCalculator.reset();
-            this.fChecksumCalculator.update(pathString.getBytes());
-            String fileName = Long.toString(this.fChecksumCalculator.getValue()) + ".index"; //$NON-NLS-1$
+            String fileName;
+            // the JSP index manager may index on several threads
+            synchronized (this.fChecksumCalculator) {
+                this.fChecksumCalculator.reset();
+                this.fChecksumCalculator.update(pathString.getBytes());
+                fileName = Long.toString(this.fChecksumCalculator.getValue()) + ".index"; //$NON-NLS-1$
+            }
             // this is the only difference from
             // IndexManager#computeIndexLocation(...)
             indexLocation = getModelJspPluginWorkingLocation().append(fileName);
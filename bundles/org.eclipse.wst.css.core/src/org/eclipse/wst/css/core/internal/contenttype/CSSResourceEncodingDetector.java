@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2008 IBM Corporation and others.
+ * Copyright (c) 2004, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -27,6 +27,7 @@ import org.eclipse.wst.sse.core.internal.encoding.EncodingMemento;
 import org.eclipse.wst.sse.core.internal.encoding.IResourceCharsetDetector;
 import org.eclipse.wst.sse.core.internal.encoding.NonContentBasedEncodingRules;
 import org.eclipse.wst.xml.core.internal.contenttype.EncodingParserConstants;
+import org.eclipse.wst.xml.core.internal.contenttype.HeadSniffer;
 
 
 
@@ -103,6 +104,18 @@ public class CSSResourceEncodingDetector implements IResourceCharsetDetector {
 	}
 
 	private void checkInContents() throws IOException {
+		// most heads can be read without the tokenizer
+		HeadSniffer sniffer = HeadSniffer.getInstance();
+		if (sniffer.sniffCSS(fReader)) {
+			if (sniffer.getUnicodeBOM() != null) {
+				canHandleAsUnicodeStream(sniffer.getUnicodeBOMTokenType());
+			}
+			else {
+				createEncodingMemento(sniffer.getDeclaredEncoding(), EncodingMemento.FOUND_ENCODING_IN_CONTENT);
+			}
+			return;
+		}
+
 		CSSHeadTokenizer tokenizer = getTokenizer();
 		tokenizer.reset(fReader);
 		HeadParserToken token = null;
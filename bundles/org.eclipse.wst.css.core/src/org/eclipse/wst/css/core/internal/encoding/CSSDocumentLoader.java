@@ -54,7 +54,7 @@ public class CSSDocumentLoader extends AbstractDocumentLoader {
 	protected IEncodedDocument newEncodedDocument() {
 		// DMW: I copied this from CSSModelImple ...
 		// but am not sure its right
-		IStructuredDocument structuredDocument = StructuredDocumentFactory.getNewStructuredDocumentInstance(getParser());
+		IStructuredDocument structuredDocument = StructuredDocumentFactory.getNewStructuredDocumentInstance(getParser(), CSS_ID);
 		CSSStructuredDocumentReParser reParser = new CSSStructuredDocumentReParser();
 		reParser.setStructuredDocument(structuredDocument);
 		((BasicStructuredDocument) structuredDocument).setReParser(reParser);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2005 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,8 +11,10 @@
 package org.eclipse.wst.dtd.core.internal.contentmodel;
 
 import org.eclipse.wst.dtd.core.internal.Logger;
+import org.eclipse.wst.dtd.core.internal.emf.util.DTDUtil;
 import org.eclipse.wst.xml.core.internal.contentmodel.CMDocument;
 import org.eclipse.wst.xml.core.internal.contentmodel.factory.CMDocumentFactory;
+import org.eclipse.wst.xml.core.internal.contentmodel.modelqueryimpl.PersistentCMDocumentCache;
 
 /**
  * This builder handles building .dtd grammar files
@@ -32,9 +34,20 @@ public class CMDocumentFactoryDTD implements CMDocumentFactory {
 //			uri = uri.substring(fileProtocol.length());
 //		}
 
-		CMDocument result = null;
+		// a content model kept from an earlier session
+		CMDocument result = PersistentCMDocumentCache.getInstance().getCMDocument(uri);
+		if (result != null) {
+			return result;
+		}
 		try {
-			result = DTDImpl.buildCMDocument(uri);
+			DTDUtil dtdUtil = DTDImpl.parseDTD(uri);
+			result = DTDImpl.buildCMDocument(dtdUtil.getDTDFile());
+			// only keep what was built from the whole grammar
+			String[] locations = dtdUtil.getDTDLocations();
+			long[] checksums = dtdUtil.getDTDChecksums();
+			if (result != null && locations != null && locations.length > 0 && checksums != null && dtdUtil.getErrors().isEmpty()) {
+				PersistentCMDocumentCache.getInstance().putCMDocument(uri, result, locations, checksums);
+			}
 		}
 		catch (Exception e) {
 			Logger.logException("could not create content model for URI: " + uri, e); //$NON-NLS-1$
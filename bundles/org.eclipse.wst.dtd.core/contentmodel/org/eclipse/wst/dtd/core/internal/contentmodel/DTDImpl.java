@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2010 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -83,10 +83,17 @@ public class DTDImpl {
 	}
 
 	public static DTDFile buildDTDModel(String uri) {
+		return parseDTD(uri).getDTDFile();
+	}
+
+	/**
+	 * Parses the DTD at the given URI, expanding entity references.
+	 */
+	public static DTDUtil parseDTD(String uri) {
 		DTDUtil dtdUtil = new DTDUtil();
 		dtdUtil.setexpandEntityReferences(true);
 		dtdUtil.parse(new ResourceSetImpl(), uri);
-		return dtdUtil.getDTDFile();
+		return dtdUtil;
 	}
 
 	public static CMDocument buildCMDocument(DTDFile dtdFile) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2005 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -340,6 +340,33 @@ public class DTDUtil {
 		return errorMsgs;
 	}
 
+	/**
+	 * Returns the physical locations of the files read to parse the DTD and
+	 * every DTD it included, or null if one of them couldn't be parsed.
+	 */
+	public String[] getDTDLocations() {
+		if (parser == null)
+			return null;
+		Vector dtdList = parser.getDTDList();
+		for (int i = 0; i < dtdList.size(); i++) {
+			if (((DTD) dtdList.elementAt(i)).getIsExceptionDuringParse())
+				return null;
+		}
+		return parser.getReadLocations();
+	}
+
+	/**
+	 * Returns the CRC32 checksums of the bytes the parser read from each of
+	 * the DTD locations, or null if they aren't all known.
+	 * 
+	 * @see #getDTDLocations()
+	 */
+	public long[] getDTDChecksums() {
+		if (parser == null)
+			return null;
+		return parser.getReadChecksums();
+	}
+
 	// This gets the name without any pseudo namespace prefix
 	public static String getBaseName(DTDObject obj) {
 		return getName(obj, null);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2011 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,9 @@
  *******************************************************************************/
 package org.eclipse.wst.dtd.core.internal.saxparser;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
@@ -18,6 +21,7 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Stack;
 import java.util.Vector;
+import java.util.zip.CRC32;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -39,6 +43,55 @@ import org.xml.sax.ext.LexicalHandler;
 import org.xml.sax.helpers.DefaultHandler;
 
 public class DTDParser extends DefaultHandler implements ContentHandler, DTDHandler, ErrorHandler, DeclHandler, LexicalHandler {
+	/**
+	 * Keeps a checksum of the bytes read through it
+	 */
+	private static class ChecksumInputStream extends FilterInputStream {
+		final String location;
+		final CRC32 crc = new CRC32();
+		boolean atEnd = false;
+
+		ChecksumInputStream(InputStream input, String location) {
+			super(input);
+			this.location = location;
+		}
+
+		public int read() throws IOException {
+			int b = super.read();
+			if (b == -1)
+				atEnd = true;
+			else
+				crc.update(b);
+			return b;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read == -1)
+				atEnd = true;
+			else
+				crc.update(b, off, read);
+			return read;
+		}
+
+		public long skip(long n) throws IOException {
+			// the skipped bytes are read, so that they're in the checksum
+			byte[] buffer = new byte[(int) Math.min(n, 2048)];
+			long skipped = 0;
+			while (skipped < n) {
+				int read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+				if (read == -1)
+					break;
+				skipped += read;
+			}
+			return skipped;
+		}
+
+		public boolean markSupported() {
+			return false;
+		}
+	}
+
 	private String contentString = ""; //$NON-NLS-1$
 	//private String declString = ""; //$NON-NLS-1$
 
@@ -64,6 +117,8 @@ public class DTDParser extends DefaultHandler implements ContentHandler, DTDHand
 	private Vector dtdList = new Vector();
 
 	private Stack dtdStack = new Stack();
+	/* the streams every external entity was read from */
+	private List readStreams = new ArrayList();
 	private Stack peRefStack = new Stack();
 	private Stack parsingPERefStack = new Stack();
 
@@ -122,6 +177,7 @@ public class DTDParser extends DefaultHandler implements ContentHandler, DTDHand
 			}			
 			String document = "<!DOCTYPE root SYSTEM \"" + logicalURI + "\"><root/>"; //$NON-NLS-1$ //$NON-NLS-2$
 			entityDepth = 0;
+			readStreams.clear();
 			currentDTD = new DTD(logicalURI);
 			InputSource inputSource = new InputSource(new StringReader(document));
 			inputSource.setSystemId(logicalURI + ".xml"); //$NON-NLS-1$
@@ -156,6 +212,35 @@ public class DTDParser extends DefaultHandler implements ContentHandler, DTDHand
 		return dtdList;
 	}
 
+	/**
+	 * Returns the physical locations of the files read by the last parse.
+	 */
+	public String[] getReadLocations() {
+		String[] locations = new String[readStreams.size()];
+		for (int i = 0; i < locations.length; i++) {
+			locations[i] = ((ChecksumInputStream) readStreams.get(i)).location;
+		}
+		return locations;
+	}
+
+	/**
+	 * Returns the CRC32 checksums of the bytes of the files read by the last
+	 * parse, in the order of their locations, or null if a file wasn't read
+	 * to its end.
+	 * 
+	 * @see #getReadLocations()
+	 */
+	public long[] getReadChecksums() {
+		long[] checksums = new long[readStreams.size()];
+		for (int i = 0; i < checksums.length; i++) {
+			ChecksumInputStream stream = (ChecksumInputStream) readStreams.get(i);
+			if (!stream.atEnd)
+				return null;
+			checksums[i] = stream.crc.getValue();
+		}
+		return checksums;
+	}
+
 	public Hashtable getElementPool() {
 		return elementPool;
 	}
@@ -666,7 +751,9 @@ public class DTDParser extends DefaultHandler implements ContentHandler, DTDHand
 		{
 		  physicalURI = "file:///" + physicalURI; //$NON-NLS-1$
 		}
-		result.setByteStream(new LazyURLInputStream(physicalURI));
+		ChecksumInputStream stream = new ChecksumInputStream(new LazyURLInputStream(physicalURI), physicalURI);
+		readStreams.add(stream);
+		result.setByteStream(stream);
 		return result;
 	}
 
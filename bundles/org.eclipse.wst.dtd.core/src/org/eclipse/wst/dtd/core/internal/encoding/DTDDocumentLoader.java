@@ -62,7 +62,7 @@ public final class DTDDocumentLoader extends AbstractDocumentLoader {
 	}
 
 	protected IEncodedDocument newEncodedDocument() {
-		IStructuredDocument document = StructuredDocumentFactory.getNewStructuredDocumentInstance(getParser());
+		IStructuredDocument document = StructuredDocumentFactory.getNewStructuredDocumentInstance(getParser(), ContentTypeIdForDTD.ContentTypeID_DTD);
 		DTDStructuredDocumentReParser reParser = new DTDStructuredDocumentReParser();
 		reParser.setStructuredDocument(document);
 		if (document instanceof BasicStructuredDocument) {
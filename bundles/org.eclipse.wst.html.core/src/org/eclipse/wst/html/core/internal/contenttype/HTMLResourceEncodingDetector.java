@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2012 IBM Corporation and others.
+ * Copyright (c) 2004, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,7 @@ import org.eclipse.wst.sse.core.internal.encoding.CodedIO;
 import org.eclipse.wst.sse.core.internal.encoding.EncodingMemento;
 import org.eclipse.wst.sse.core.internal.encoding.IResourceCharsetDetector;
 import org.eclipse.wst.xml.core.internal.contenttype.EncodingParserConstants;
+import org.eclipse.wst.xml.core.internal.contenttype.HeadSniffer;
 import org.eclipse.wst.xml.core.internal.contenttype.XMLHeadTokenizerConstants;
 
 public class HTMLResourceEncodingDetector extends AbstractResourceEncodingDetector implements IResourceCharsetDetector {
@@ -121,6 +122,29 @@ public class HTMLResourceEncodingDetector extends AbstractResourceEncodingDetect
 	}
 
 	private void checkInContent() throws IOException {
+		// most heads can be read without the tokenizer
+		HeadSniffer sniffer = HeadSniffer.getInstance();
+		if (sniffer.sniffHTML(fReader)) {
+			if (sniffer.getUnicodeBOM() != null) {
+				canHandleAsUnicodeStream(sniffer.getUnicodeBOMTokenType());
+				return;
+			}
+			String contentTypeValue = sniffer.getDeclaredEncoding();
+			if (sniffer.isCharsetAttribute()) {
+				contentTypeValue = contentTypeValue.trim();
+				if (contentTypeValue.length() > 0) {
+					createEncodingMemento(contentTypeValue, EncodingMemento.FOUND_ENCODING_IN_CONTENT);
+				}
+			}
+			else {
+				parseContentTypeValue(contentTypeValue);
+			}
+			// without a charset, whether it is XHTML decides
+			if (fEncodingMemento != null) {
+				return;
+			}
+		}
+
 		HTMLHeadTokenizer tokenizer = getTokenizer();
 		tokenizer.reset(fReader);
 		HeadParserToken token = null;
@@ -82,7 +82,7 @@ public class HTMLDocumentLoader extends AbstractDocumentLoader {
 	 * @see AbstractLoader#createNewStructuredDocument()
 	 */
 	protected IEncodedDocument newEncodedDocument() {
-		IStructuredDocument structuredDocument = StructuredDocumentFactory.getNewStructuredDocumentInstance(getParser());
+		IStructuredDocument structuredDocument = StructuredDocumentFactory.getNewStructuredDocumentInstance(getParser(), ContentTypeIdForHTML.ContentTypeID_HTML);
 		((BasicStructuredDocument) structuredDocument).setReParser(new XMLStructuredDocumentReParser());
 
 		return structuredDocument;
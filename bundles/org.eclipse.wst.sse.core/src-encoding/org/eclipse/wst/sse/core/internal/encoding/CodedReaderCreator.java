@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2008 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -21,8 +21,11 @@ import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -50,6 +53,30 @@ import org.eclipse.wst.sse.core.internal.exceptions.UnsupportedCharsetExceptionW
  */
 public class CodedReaderCreator extends CodedIO {
 
+	/**
+	 * The encoding found in the contents of a file, as of its modification
+	 * and local time stamps
+	 */
+	private static class DetectedEncoding {
+		long fModificationStamp;
+		long fLocalTimeStamp;
+		EncodingMemento fEncodingMemento;
+	}
+
+	private static final int MAX_DETECTED_ENCODINGS = 256;
+
+	/**
+	 * IFile to DetectedEncoding, for the most recently read files. Only
+	 * encodings found in the contents themselves are kept, since those can
+	 * only change when the contents do.
+	 */
+	private static final Map fDetectedEncodings = new LinkedHashMap(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry eldest) {
+			return size() > MAX_DETECTED_ENCODINGS;
+		}
+	};
 
 	private boolean fClientSuppliedStream;
 
@@ -157,7 +184,10 @@ public class CodedReaderCreator extends CodedIO {
 	 * @throws IOException
 	 */
 	private EncodingMemento findMementoFromFileCase() throws CoreException, IOException {
-		EncodingMemento result = null;
+		EncodingMemento result = getDetectedEncoding();
+		if (result != null) {
+			return result;
+		}
 		IContentDescription contentDescription = null;
 		try {
 			// This method provides possible improved performance at the
@@ -201,11 +231,41 @@ public class CodedReaderCreator extends CodedIO {
 		}
 		if (contentDescription != null) {
 			result = createMemento(contentDescription);
+			if (contentDescription.getProperty(IContentDescriptionExtended.DETECTED_CHARSET) != null || contentDescription.getProperty(IContentDescription.BYTE_ORDER_MARK) != null) {
+				setDetectedEncoding(result);
+			}
 		}
 
 		return result;
 	}
 
+	/**
+	 * @return a copy of the encoding found in the file's contents when last
+	 *         read, if they have not changed since, or null
+	 */
+	private EncodingMemento getDetectedEncoding() {
+		synchronized (fDetectedEncodings) {
+			DetectedEncoding detected = (DetectedEncoding) fDetectedEncodings.get(fIFile);
+			if (detected != null && detected.fModificationStamp == fIFile.getModificationStamp() && detected.fLocalTimeStamp == fIFile.getLocalTimeStamp()) {
+				return (EncodingMemento) detected.fEncodingMemento.clone();
+			}
+		}
+		return null;
+	}
+
+	private void setDetectedEncoding(EncodingMemento encodingMemento) {
+		DetectedEncoding detected = new DetectedEncoding();
+		detected.fModificationStamp = fIFile.getModificationStamp();
+		detected.fLocalTimeStamp = fIFile.getLocalTimeStamp();
+		if (detected.fModificationStamp == IResource.NULL_STAMP) {
+			return;
+		}
+		detected.fEncodingMemento = (EncodingMemento) encodingMemento.clone();
+		synchronized (fDetectedEncodings) {
+			fDetectedEncodings.put(fIFile, detected);
+		}
+	}
+
 	/**
 	 * The primary method which contains the highest level rules for how to
 	 * decide appropriate decoding rules: 1. first check for unicode stream 2.
@@ -262,16 +322,14 @@ public class CodedReaderCreator extends CodedIO {
 		return result;
 	}
 
-	public Reader getCodedReader() throws CoreException, IOException {
-
-		Reader result = null;
-		// we make a local copy of encoding memento so
-		// stream won't
-		// be accessed simultaneously.
+	/**
+	 * @return the number of bytes at the start of the contents taken up by a
+	 *         byte order mark, which a decoder from
+	 *         {@link #getCharsetDecoder()} should not be given
+	 */
+	public int getByteOrderMarkLength() throws CoreException, IOException {
 		EncodingMemento encodingMemento = getEncodingMemento();
 		Assert.isNotNull(encodingMemento, "Appears reader requested before file or stream set"); //$NON-NLS-1$
-		InputStream streamToReturn = getResettableStream();
-		streamToReturn.reset();
 		// if UTF 3 byte BOM is used (or UTF-16LE), the
 		// built in converters
 		// don't
@@ -280,11 +338,22 @@ public class CodedReaderCreator extends CodedIO {
 		// stream transparently ready for client.
 		// see ... TODO look up bug number
 		if (encodingMemento.isUnicodeStream()) {
-			streamToReturn.skip(2);
+			return 2;
 		}
 		else if (encodingMemento.isUTF83ByteBOMUsed()) {
-			streamToReturn.skip(3);
+			return 3;
 		}
+		return 0;
+	}
+
+	/**
+	 * @return a new decoder for the contents, as used by
+	 *         {@link #getCodedReader()}, reporting or replacing malformed
+	 *         input as the encoding rule requires
+	 */
+	public CharsetDecoder getCharsetDecoder() throws CoreException, IOException {
+		EncodingMemento encodingMemento = getEncodingMemento();
+		Assert.isNotNull(encodingMemento, "Appears reader requested before file or stream set"); //$NON-NLS-1$
 		String charsetName = encodingMemento.getJavaCharsetName();
 		if (charsetName == null) {
 			charsetName = encodingMemento.getDetectedCharsetName();
@@ -311,6 +380,21 @@ public class CodedReaderCreator extends CodedIO {
 			charsetDecoder.onMalformedInput(CodingErrorAction.REPORT);
 			charsetDecoder.onUnmappableCharacter(CodingErrorAction.REPORT);
 		}
+		return charsetDecoder;
+	}
+
+	public Reader getCodedReader() throws CoreException, IOException {
+
+		Reader result = null;
+		// we make a local copy of encoding memento so
+		// stream won't
+		// be accessed simultaneously.
+		EncodingMemento encodingMemento = getEncodingMemento();
+		Assert.isNotNull(encodingMemento, "Appears reader requested before file or stream set"); //$NON-NLS-1$
+		InputStream streamToReturn = getResettableStream();
+		streamToReturn.reset();
+		streamToReturn.skip(getByteOrderMarkLength());
+		CharsetDecoder charsetDecoder = getCharsetDecoder();
 		// more efficient to be buffered, and I know of no
 		// reason not to return
 		// that directly.
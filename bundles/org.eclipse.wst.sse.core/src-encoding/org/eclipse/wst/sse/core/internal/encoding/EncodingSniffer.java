@@ -0,0 +1,401 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.core.internal.encoding;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.eclipse.core.runtime.content.IContentDescription;
+
+/**
+ * Finds the byte order mark or the encoding declared at the head of a stream
+ * in a single pass over a fixed window of its first bytes, as a fast path
+ * for the head tokenizers of the resource encoding detectors.
+ *
+ * The sniff methods only answer when the head tokenizer would certainly find
+ * the same thing, and otherwise return false, in which case the tokenizer
+ * should be run as before. Unusual heads, such as those with undelimited
+ * values or non-ASCII characters before the declaration, are left to the
+ * tokenizer.
+ *
+ * The reader given is expected to be marked at its start, as the detectors'
+ * readers are, and is reset before returning. A sniffer can be reused, but
+ * is not thread safe.
+ */
+public class EncodingSniffer {
+	/**
+	 * The number of characters, one per byte when read through a
+	 * ByteReader, looked at
+	 */
+	public static final int WINDOW_SIZE = 2048;
+
+	private static final char[] XML_DECLARATION_START = "<?xml".toCharArray(); //$NON-NLS-1$
+	private static final char[] XML_DECLARATION_END = "?>".toCharArray(); //$NON-NLS-1$
+	private static final char[] ENCODING = "encoding".toCharArray(); //$NON-NLS-1$
+	private static final char[] META = "<meta".toCharArray(); //$NON-NLS-1$
+	private static final char[] CHARSET = "charset".toCharArray(); //$NON-NLS-1$
+	private static final char[] HTTP_EQUIV = "http-equiv".toCharArray(); //$NON-NLS-1$
+	private static final char[] CONTENT_TYPE = "content-type".toCharArray(); //$NON-NLS-1$
+	private static final char[] CONTENT = "content".toCharArray(); //$NON-NLS-1$
+	private static final char[] CSS_CHARSET = "@charset".toCharArray(); //$NON-NLS-1$
+
+	/* whether a meta tag declares a value, doesn't, or can't be told */
+	private static final int META_VALUE = 1;
+	private static final int META_NO_VALUE = 2;
+	private static final int META_UNSURE = 3;
+
+	private final char[] fWindow = new char[WINDOW_SIZE];
+	private int fLength;
+	private boolean fEndOfInput;
+
+	private byte[] fUnicodeBOM;
+	private String fDeclaredEncoding;
+	private boolean fXMLDeclarationFound;
+	private boolean fInitialWhiteSpace;
+	private boolean fCharsetAttribute;
+
+	/* the end of the last value read */
+	private int fValueEnd;
+
+	public EncodingSniffer() {
+		super();
+	}
+
+	private static boolean isWhiteSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+	}
+
+	private static boolean isNameChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '_' || c == ':';
+	}
+
+	/**
+	 * @return the byte order mark found, one of
+	 *         {@link IContentDescription#BOM_UTF_8},
+	 *         {@link IContentDescription#BOM_UTF_16BE} or
+	 *         {@link IContentDescription#BOM_UTF_16LE}, or null
+	 */
+	public byte[] getUnicodeBOM() {
+		return fUnicodeBOM;
+	}
+
+	/**
+	 * @return the value declared, not necessarily a valid charset name, or
+	 *         null if none was found. For HTML, this is the content type
+	 *         unless {@link #isCharsetAttribute()}.
+	 */
+	public String getDeclaredEncoding() {
+		return fDeclaredEncoding;
+	}
+
+	/**
+	 * @return whether the value found in an HTML meta tag is that of its
+	 *         charset attribute rather than a content type
+	 */
+	public boolean isCharsetAttribute() {
+		return fCharsetAttribute;
+	}
+
+	/**
+	 * @return whether an XML declaration was found, preceded only by white
+	 *         space
+	 */
+	public boolean isXMLDeclarationFound() {
+		return fXMLDeclarationFound;
+	}
+
+	/**
+	 * @return whether the XML declaration found was preceded by white space
+	 */
+	public boolean hasInitialWhiteSpace() {
+		return fInitialWhiteSpace;
+	}
+
+	/**
+	 * @return whether the window holds only ASCII from start to end, so no
+	 *         byte order mark or double byte characters could be mistaken
+	 *         for markup
+	 */
+	private boolean isASCII(int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (fWindow[i] == 0 || fWindow[i] > 0x7F)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return whether the characters at the position match the given
+	 *         lower case ones, ignoring case
+	 */
+	private boolean matches(int position, char[] chars) {
+		if (position + chars.length > fLength)
+			return false;
+		for (int i = 0; i < chars.length; i++) {
+			if (Character.toLowerCase(fWindow[position + i]) != chars[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the position of the next match of the lower case characters,
+	 *         ignoring case, or -1
+	 */
+	private int indexOf(char[] chars, int from, int to) {
+		for (int i = from; i <= to - chars.length; i++) {
+			if (matches(i, chars))
+				return i;
+		}
+		return -1;
+	}
+
+	private int skipWhiteSpace(int position) {
+		while (position < fLength && isWhiteSpace(fWindow[position])) {
+			position++;
+		}
+		return position;
+	}
+
+	/**
+	 * Reads an attribute value following the name which ends at the given
+	 * position, as {@link #fDeclaredEncoding}.
+	 *
+	 * @return whether a value was read
+	 */
+	private boolean readValue(int position, int end) {
+		position = skipWhiteSpace(position);
+		if (position >= end || fWindow[position] != '=')
+			return false;
+		return readQuotedValue(skipWhiteSpace(position + 1), end, false);
+	}
+
+	/**
+	 * Reads a quoted value starting at the given position as
+	 * {@link #fDeclaredEncoding}. Only values closed on the same line, and
+	 * without characters the tokenizers would end them at, are read.
+	 *
+	 * @param endAtSemicolon
+	 *            whether a semicolon ends values, as in CSS
+	 * @return whether a value was read
+	 */
+	private boolean readQuotedValue(int position, int end, boolean endAtSemicolon) {
+		if (position >= end)
+			return false;
+		char quote = fWindow[position];
+		if (quote != '"' && quote != '\'')
+			return false;
+		int start = position + 1;
+		for (int i = start; i < end; i++) {
+			char c = fWindow[i];
+			if (c == quote) {
+				fDeclaredEncoding = new String(fWindow, start, i - start);
+				fValueEnd = i + 1;
+				return true;
+			}
+			if (c == '\r' || c == '\n' || c == '<' || c == '>' || (c == ';' && endAtSemicolon))
+				return false;
+		}
+		return false;
+	}
+
+	private void read(Reader reader) throws IOException {
+		fUnicodeBOM = null;
+		fDeclaredEncoding = null;
+		fXMLDeclarationFound = false;
+		fInitialWhiteSpace = false;
+		fCharsetAttribute = false;
+		fEndOfInput = false;
+		fLength = 0;
+		try {
+			while (fLength < fWindow.length) {
+				int read = reader.read(fWindow, fLength, fWindow.length - fLength);
+				if (read == -1) {
+					fEndOfInput = true;
+					break;
+				}
+				fLength += read;
+			}
+		}
+		finally {
+			reader.reset();
+		}
+	}
+
+	/**
+	 * @return whether a byte order mark starts the window, in which case the
+	 *         head tokenizers look no further
+	 */
+	private boolean readUnicodeBOM() {
+		if (fLength >= 2 && fWindow[0] == 0xFE && fWindow[1] == 0xFF) {
+			fUnicodeBOM = IContentDescription.BOM_UTF_16BE;
+		}
+		else if (fLength >= 2 && fWindow[0] == 0xFF && fWindow[1] == 0xFE) {
+			fUnicodeBOM = IContentDescription.BOM_UTF_16LE;
+		}
+		else if (fLength >= 3 && fWindow[0] == 0xEF && fWindow[1] == 0xBB && fWindow[2] == 0xBF) {
+			fUnicodeBOM = IContentDescription.BOM_UTF_8;
+		}
+		return fUnicodeBOM != null;
+	}
+
+	/**
+	 * Looks for the byte order mark or XML declaration, and the encoding it
+	 * declares, that the XML head tokenizer would find.
+	 *
+	 * @return whether the result is certain
+	 */
+	public boolean sniffXML(Reader reader) throws IOException {
+		read(reader);
+		if (readUnicodeBOM())
+			return true;
+
+		int position = skipWhiteSpace(0);
+		int start = position + XML_DECLARATION_START.length;
+		if (start >= fLength && !fEndOfInput)
+			return false;
+		/*
+		 * the tokenizer also finds declarations with zero bytes between
+		 * their characters, as in UTF-16 without a byte order mark
+		 */
+		if (!isASCII(0, Math.min(start + 1, fLength)))
+			return false;
+		// the declaration can only start the stream
+		if (!matches(position, XML_DECLARATION_START) || start >= fLength || !isWhiteSpace(fWindow[start]))
+			return true;
+
+		int end = indexOf(XML_DECLARATION_END, start, fLength);
+		if (end == -1 || !isASCII(start, end))
+			return false;
+		int encoding = indexOf(ENCODING, start, end);
+		if (encoding != -1) {
+			if (!readValue(encoding + ENCODING.length, end))
+				return false;
+			// a later one would replace it
+			if (indexOf(ENCODING, fValueEnd, end) != -1)
+				return false;
+		}
+		fXMLDeclarationFound = true;
+		fInitialWhiteSpace = position > 0;
+		return true;
+	}
+
+	/**
+	 * Looks for the byte order mark, or the charset or content type of the
+	 * first meta tag declaring one, that the HTML head tokenizer would find.
+	 * Heads with an XML declaration are left to the tokenizer, since whether
+	 * it applies depends on the document being XHTML.
+	 *
+	 * @return whether the result is certain
+	 */
+	public boolean sniffHTML(Reader reader) throws IOException {
+		read(reader);
+		if (readUnicodeBOM())
+			return true;
+
+		int position = skipWhiteSpace(0);
+		if (matches(position, XML_DECLARATION_START))
+			return false;
+
+		int checked = 0;
+		int meta = indexOf(META, 0, fLength);
+		while (meta != -1) {
+			int start = meta + META.length;
+			if (start >= fLength || isNameChar(fWindow[start]))
+				return false;
+			int end = start;
+			while (end < fLength && fWindow[end] != '>') {
+				end++;
+			}
+			if (end == fLength || !isASCII(checked, end))
+				return false;
+			checked = end;
+
+			switch (readMetaValue(start, end)) {
+				case META_VALUE :
+					// a later one in the same tag would replace it
+					return indexOf(CHARSET, fValueEnd, end) == -1 && indexOf(HTTP_EQUIV, fValueEnd, end) == -1;
+				case META_UNSURE :
+					return false;
+			}
+			meta = indexOf(META, end, fLength);
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the value of the first charset attribute, or of the content
+	 * attribute following an http-equiv content type, within a meta tag.
+	 * Like the tokenizer, the names are looked for anywhere in the tag.
+	 *
+	 * @return {@link #META_VALUE}, {@link #META_NO_VALUE} or
+	 *         {@link #META_UNSURE}
+	 */
+	private int readMetaValue(int start, int end) {
+		int charset = indexOf(CHARSET, start, end);
+		int httpEquiv = indexOf(HTTP_EQUIV, start, end);
+		if (httpEquiv != -1 && (charset == -1 || httpEquiv < charset)) {
+			int position = skipWhiteSpace(httpEquiv + HTTP_EQUIV.length);
+			if (position >= end || fWindow[position] != '=')
+				return META_UNSURE;
+			position = skipWhiteSpace(position + 1);
+			boolean quoted = position < end && fWindow[position] == '"';
+			if (quoted)
+				position++;
+			if (!matches(position, CONTENT_TYPE)) {
+				// not a content type, so only a charset could be declared
+				return charset != -1 ? readCharsetValue(charset, end) : META_NO_VALUE;
+			}
+			position += CONTENT_TYPE.length;
+			if (quoted) {
+				if (position >= end || fWindow[position] != '"')
+					return META_UNSURE;
+				position++;
+			}
+			int content = skipWhiteSpace(position);
+			if (content == position || !matches(content, CONTENT) || !readValue(content + CONTENT.length, end))
+				return META_UNSURE;
+			fCharsetAttribute = false;
+			return META_VALUE;
+		}
+		return charset != -1 ? readCharsetValue(charset, end) : META_NO_VALUE;
+	}
+
+	private int readCharsetValue(int charset, int end) {
+		if (!readValue(charset + CHARSET.length, end))
+			return META_UNSURE;
+		fCharsetAttribute = true;
+		return META_VALUE;
+	}
+
+	/**
+	 * Looks for the byte order mark or the charset rule that the CSS head
+	 * tokenizer would find.
+	 *
+	 * @return whether the result is certain
+	 */
+	public boolean sniffCSS(Reader reader) throws IOException {
+		read(reader);
+		if (readUnicodeBOM())
+			return true;
+
+		int position = skipWhiteSpace(0);
+		if (!matches(position, CSS_CHARSET))
+			return false;
+		// the charset rule has no '=' before its value
+		position = skipWhiteSpace(position + CSS_CHARSET.length);
+		if (!readQuotedValue(position, fLength, true))
+			return false;
+		// the tokenizer stops at the end of the rule
+		return fValueEnd < fLength && fWindow[fValueEnd] == ';' && isASCII(0, fValueEnd);
+	}
+}
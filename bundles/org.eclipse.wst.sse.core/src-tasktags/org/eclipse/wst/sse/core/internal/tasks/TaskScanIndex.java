@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.core.internal.tasks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.wst.sse.core.internal.Logger;
+import org.eclipse.wst.sse.core.internal.SSECorePlugin;
+
+/**
+ * Remembers, across sessions, the content and the task tag settings each
+ * file was last scanned with, and how many tasks were found, so that files
+ * which haven't changed since aren't scanned again. A file is up to date if
+ * its modification stamp is unchanged, or failing that its content hash, and
+ * its task markers are all still there.
+ */
+class TaskScanIndex {
+	private static final IPath INDEX_LOCATION = SSECorePlugin.getDefault().getStateLocation().append("task-tags.index"); //$NON-NLS-1$
+	private static final int VERSION = 1;
+	private static final int BUFFER_SIZE = 8192;
+
+	private static TaskScanIndex _instance = null;
+
+	private static class Entry {
+		long modificationStamp;
+		long contentHash;
+		int settingsHash;
+		int taskCount;
+	}
+
+	static synchronized TaskScanIndex getInstance() {
+		if (_instance == null) {
+			_instance = new TaskScanIndex();
+			_instance.load();
+		}
+		return _instance;
+	}
+
+	/* full path String to Entry */
+	private Map fEntries = new HashMap();
+	private boolean fDirty = false;
+
+	/* the most recently hashed file, usually hashed again if it is scanned */
+	private IFile fHashedFile = null;
+	private long fHashedStamp = IResource.NULL_STAMP;
+	private long fHash = 0;
+
+	private TaskScanIndex() {
+		super();
+	}
+
+	private long computeContentHash(IFile file) throws CoreException, IOException {
+		long stamp = file.getModificationStamp();
+		if (file.equals(fHashedFile) && stamp == fHashedStamp)
+			return fHash;
+		CRC32 crc = new CRC32();
+		InputStream contents = file.getContents(true);
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read = contents.read(buffer);
+			while (read != -1) {
+				crc.update(buffer, 0, read);
+				read = contents.read(buffer);
+			}
+		}
+		finally {
+			contents.close();
+		}
+		fHashedFile = file;
+		fHashedStamp = stamp;
+		fHash = crc.getValue();
+		return fHash;
+	}
+
+	private int countTaskMarkers(IFile file) throws CoreException {
+		int count = 0;
+		IMarker[] markers = file.findMarkers(IMarker.TASK, true, IResource.DEPTH_ZERO);
+		for (int i = 0; i < markers.length; i++) {
+			if (markers[i].getAttribute(WorkspaceTaskScanner.MODIFICATION_STAMP) != null)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return whether the file has been scanned with the given settings and
+	 *         has not changed since
+	 */
+	synchronized boolean isUpToDate(IFile file, int settingsHash) {
+		Entry entry = (Entry) fEntries.get(file.getFullPath().toString());
+		if (entry == null || entry.settingsHash != settingsHash)
+			return false;
+		try {
+			if (entry.modificationStamp != file.getModificationStamp()) {
+				if (entry.contentHash != computeContentHash(file))
+					return false;
+				entry.modificationStamp = file.getModificationStamp();
+				fDirty = true;
+			}
+			// the markers may have been deleted by someone else
+			return countTaskMarkers(file) == entry.taskCount;
+		}
+		catch (CoreException e) {
+			return false;
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+	private void load() {
+		File file = INDEX_LOCATION.toFile();
+		if (!file.canRead())
+			return;
+		try {
+			DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+			try {
+				if (input.readInt() != VERSION)
+					return;
+				int count = input.readInt();
+				for (int i = 0; i < count; i++) {
+					String path = input.readUTF();
+					Entry entry = new Entry();
+					entry.modificationStamp = input.readLong();
+					entry.contentHash = input.readLong();
+					entry.settingsHash = input.readInt();
+					entry.taskCount = input.readInt();
+					fEntries.put(path, entry);
+				}
+			}
+			finally {
+				input.close();
+			}
+		}
+		catch (IOException e) {
+			// start over
+			fEntries.clear();
+			Logger.logException("Could not read task tag index " + INDEX_LOCATION.toOSString(), e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Forgets the file, or every file within the container
+	 */
+	synchronized void remove(IResource resource) {
+		String path = resource.getFullPath().toString();
+		if (fEntries.remove(path) != null)
+			fDirty = true;
+		if (resource.getType() != IResource.FILE) {
+			String prefix = path + IPath.SEPARATOR;
+			Iterator paths = fEntries.keySet().iterator();
+			while (paths.hasNext()) {
+				if (((String) paths.next()).startsWith(prefix)) {
+					paths.remove();
+					fDirty = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the index out if it has changed since it was last saved.
+	 */
+	synchronized void save() {
+		if (!fDirty)
+			return;
+		File file = INDEX_LOCATION.toFile();
+		try {
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+			try {
+				output.writeInt(VERSION);
+				output.writeInt(fEntries.size());
+				Iterator entries = fEntries.entrySet().iterator();
+				while (entries.hasNext()) {
+					Map.Entry mapEntry = (Map.Entry) entries.next();
+					Entry entry = (Entry) mapEntry.getValue();
+					output.writeUTF((String) mapEntry.getKey());
+					output.writeLong(entry.modificationStamp);
+					output.writeLong(entry.contentHash);
+					output.writeInt(entry.settingsHash);
+					output.writeInt(entry.taskCount);
+				}
+			}
+			finally {
+				output.close();
+			}
+			fDirty = false;
+		}
+		catch (IOException e) {
+			Logger.logException("Could not write task tag index " + INDEX_LOCATION.toOSString(), e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Records that the file has just been scanned with the given settings,
+	 * unless it has changed since the scan began.
+	 */
+	synchronized void update(IFile file, long scannedStamp, int settingsHash, int taskCount) {
+		if (file.getModificationStamp() != scannedStamp) {
+			remove(file);
+			return;
+		}
+		Entry entry = new Entry();
+		try {
+			entry.contentHash = computeContentHash(file);
+		}
+		catch (CoreException e) {
+			remove(file);
+			return;
+		}
+		catch (IOException e) {
+			remove(file);
+			return;
+		}
+		entry.modificationStamp = fHashedStamp;
+		entry.settingsHash = settingsHash;
+		entry.taskCount = taskCount;
+		fEntries.put(file.getFullPath().toString(), entry);
+		fDirty = true;
+	}
+}
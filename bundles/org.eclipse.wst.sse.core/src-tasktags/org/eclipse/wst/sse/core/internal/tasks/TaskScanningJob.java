@@ -78,6 +78,7 @@ class TaskScanningJob extends Job {
 				HashSet updatedProjects = new HashSet(Arrays.asList(projectsPreviouslyScanned));
 				updatedProjects.remove(projectResource.getName());
 				setScannedProjects((String[]) updatedProjects.toArray(new String[updatedProjects.size()]));
+				TaskScanIndex.getInstance().remove(projectResource);
 			}
 			if (isEnabledOnProject((IProject) projectResource)) {
 				if (delta.getFlags() == IResourceDelta.OPEN) {
@@ -197,8 +198,10 @@ class TaskScanningJob extends Job {
 		IProgressMonitor scanMonitor = null;
 		while (!currentQueue.isEmpty()) {
 			Object o = currentQueue.remove(0);
-			if (frameworkIsShuttingDown() || monitor.isCanceled())
+			if (frameworkIsShuttingDown() || monitor.isCanceled()) {
+				TaskScanIndex.getInstance().save();
 				return Status.CANCEL_STATUS;
+			}
 			try {
 				scanMonitor = new SubProgressMonitor(monitor, 1, SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK);
 				if (o instanceof IResourceDelta) {
@@ -228,6 +231,7 @@ class TaskScanningJob extends Job {
 			}
 		}
 		monitor.done();
+		TaskScanIndex.getInstance().save();
 
 		if (errors == null || errors.isEmpty()) {
 			status = Status.OK_STATUS;
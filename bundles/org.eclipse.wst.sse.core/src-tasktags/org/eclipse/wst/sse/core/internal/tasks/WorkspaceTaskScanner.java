@@ -65,6 +65,8 @@ class WorkspaceTaskScanner {
 	private List fActiveScanners = null;
 	private IContentType[] fCurrentIgnoreContentTypes = null;
 	private TaskTag[] fCurrentTaskTags = null;
+	/* identifies the current tags, priorities and ignored content types */
+	private int fCurrentSettingsHash = 0;
 
 	private FileTaskScannerRegistryReader registry = null;
 
@@ -149,6 +151,7 @@ class WorkspaceTaskScanner {
 			String[] tags = StringUtils.unpack(preferencesService.getString(TaskTagPreferenceKeys.TASK_TAG_NODE, TaskTagPreferenceKeys.TASK_TAG_TAGS, null, lookupOrder));
 			String[] priorities = StringUtils.unpack(preferencesService.getString(TaskTagPreferenceKeys.TASK_TAG_NODE, TaskTagPreferenceKeys.TASK_TAG_PRIORITIES, null, lookupOrder));
 			String[] currentIgnoreContentTypeIDs = StringUtils.unpack(preferencesService.getString(TaskTagPreferenceKeys.TASK_TAG_NODE, TaskTagPreferenceKeys.TASK_TAG_CONTENTTYPES_IGNORED, null, lookupOrder));
+			fCurrentSettingsHash = (StringUtils.pack(tags) + '\n' + StringUtils.pack(priorities) + '\n' + StringUtils.pack(currentIgnoreContentTypeIDs)).hashCode();
 			if (Logger.DEBUG_TASKSPREFS) {
 				System.out.print(getClass().getName() + " tags: "); //$NON-NLS-1$
 				for (int i = 0; i < tags.length; i++) {
@@ -242,6 +245,9 @@ class WorkspaceTaskScanner {
 						IFile file = (IFile) resource;
 						scanFile(file.getProject(), fCurrentTaskTags, file, monitor);
 					}
+					else if ((delta.getKind() & IResourceDelta.REMOVED) > 0) {
+						TaskScanIndex.getInstance().remove(resource);
+					}
 				}
 			}
 		}
@@ -362,6 +368,16 @@ class WorkspaceTaskScanner {
 		if (monitor.isCanceled())
 			return;
 
+		long modificationStamp = file.getModificationStamp();
+		TaskScanIndex index = TaskScanIndex.getInstance();
+		if (index.isUpToDate(file, fCurrentSettingsHash)) {
+			if (Logger.DEBUG_TASKS) {
+				System.out.println(getClass().getName() + " skipping unchanged " + file.getFullPath()); //$NON-NLS-1$
+			}
+			monitor.done();
+			return;
+		}
+
 		// 3 "stages"
 		monitor.beginTask("", 8);//$NON-NLS-1$
 		monitor.subTask(file.getFullPath().toString().substring(1));
@@ -375,6 +391,7 @@ class WorkspaceTaskScanner {
 
 		IFileTaskScanner[] fileScanners = null;
 		IFileTaskScanner[] ignoredFileScanners = null;
+		boolean scanFailed = false;
 		if (types != null) {
 			if (fCurrentIgnoreContentTypes.length == 0) {
 				fileScanners = registry.getFileTaskScanners(types);
@@ -428,6 +445,7 @@ class WorkspaceTaskScanner {
 						}
 					}
 					catch (Exception e) {
+						scanFailed = true;
 						Logger.logException(file.getFullPath().toString(), e);
 					}
 				}
@@ -447,6 +465,9 @@ class WorkspaceTaskScanner {
 			if (markerAttributes != null) {
 				replaceTaskMarkers(file, (String[]) markerTypes.toArray(new String[markerTypes.size()]), (Map[]) markerAttributes.toArray(new Map[markerAttributes.size()]), markerUpdateMonitor);
 			}
+			if (!scanFailed && !monitor.isCanceled()) {
+				index.update(file, modificationStamp, fCurrentSettingsHash, markerAttributes.size());
+			}
 		}
 		else {
 			monitor.worked(3);
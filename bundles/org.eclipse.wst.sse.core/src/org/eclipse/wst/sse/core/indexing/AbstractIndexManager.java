@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2011 IBM Corporation and others.
+ * Copyright (c) 2010, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,16 +13,22 @@ package org.eclipse.wst.sse.core.indexing;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
@@ -70,9 +76,6 @@ import org.eclipse.wst.sse.core.internal.SSECoreMessages;
  */
 public abstract class AbstractIndexManager {
 
-	/** Used to encode path bytes in case they contain double byte characters */
-	private static final String ENCODING_UTF16 = "utf16"; //$NON-NLS-1$
-
 	/** Default time to wait for other tasks to finish */
 	private static final int WAIT_TIME = 300;
 
@@ -91,6 +94,20 @@ public abstract class AbstractIndexManager {
 	 */
 	private static final int BATCH_UP_AMOUNT = 100;
 
+	/**
+	 * The amount of events each thread takes at once when events are
+	 * processed on more than one thread
+	 * 
+	 * @see #getProcessingThreadCount()
+	 */
+	private static final int PROCESSING_BATCH_AMOUNT = 10;
+
+	/**
+	 * The amount of events waiting to be processed past which a workspace
+	 * scan waits for the processing job to catch up
+	 */
+	private static final int MAX_QUEUED_WORKSPACE_SCAN_EVENTS = 10000;
+
 	/** If this file exists then a full workspace re-processing is needed */
 	private static final String RE_PROCESS_FILE_NAME = ".re-process"; //$NON-NLS-1$
 
@@ -292,6 +309,8 @@ public abstract class AbstractIndexManager {
 					// if need to process the entire workspace do so in
 					// another job
 					if (forcedFullReIndexNeeded) {
+						// if exiting before the scan is done, scan again
+						this.forceFullReIndexNextStart();
 						this.fWorkspaceVisitorJob = new WorkspaceVisitorJob();
 						this.fWorkspaceVisitorJob.schedule();
 					}
@@ -372,6 +391,41 @@ public abstract class AbstractIndexManager {
 		return this.fName;
 	}
 
+	/**
+	 * <p>
+	 * Gets the number of threads resource events may be processed on at the
+	 * same time. Events for the same resource are always processed one after
+	 * the other, in the order they were received, but events for different
+	 * resources may be processed at the same time, so an implementation
+	 * returning more than one must make
+	 * {@link #performAction(byte, byte, IResource, IPath)} thread safe.
+	 * </p>
+	 * 
+	 * @return the number of threads to process resource events on, by
+	 *         default one
+	 */
+	protected int getProcessingThreadCount() {
+		return 1;
+	}
+
+	/**
+	 * @return the number of resource events processed since this manager
+	 *         was created
+	 */
+	protected final long getNumResourceEventsProcessed() {
+		return this.fResourceEventProcessingJob.getNumResourceEventsProcessed();
+	}
+
+	/**
+	 * @return the time, in milliseconds, spent processing resource events
+	 *         since this manager was created; with
+	 *         {@link #getNumResourceEventsProcessed()} this gives the
+	 *         manager's throughput
+	 */
+	protected final long getResourceEventProcessingTime() {
+		return this.fResourceEventProcessingJob.getProcessingTime();
+	}
+
 	/**
 	 * <p>
 	 * Should be called by a client of the index this manager manages before
@@ -594,6 +648,16 @@ public abstract class AbstractIndexManager {
 		}
 	}
 
+	/**
+	 * <p>
+	 * Next time the manager starts up do not force a full workspace index
+	 * </p>
+	 */
+	private void clearForcedFullReIndex() {
+		IPath reIndexPath = AbstractIndexManager.this.getWorkingLocation().append(RE_PROCESS_FILE_NAME);
+		new File(reIndexPath.toOSString()).delete();
+	}
+
 	/**
 	 * @return <code>true</code> if a full workspace index is needed as
 	 *         dictated by a previous call to
@@ -623,6 +687,12 @@ public abstract class AbstractIndexManager {
 	 * but if it fails or a SavedState can not be retrieved on a subsequent
 	 * workspace load then this will have to be done again.
 	 * </p>
+	 * 
+	 * <p>
+	 * The files found are not journaled, so until they have all been
+	 * processed a full workspace index is forced for the next start in case
+	 * the manager exits without being stopped.
+	 * </p>
 	 */
 	private class WorkspaceVisitorJob extends Job {
 		/**
@@ -652,6 +722,11 @@ public abstract class AbstractIndexManager {
 
 				// process any remaining batched up resources to index
 				visitor.processBatchedResourceEvents();
+
+				// the scan is done once the files it found are processed
+				if (this.waitForResourceEvents(monitor)) {
+					AbstractIndexManager.this.clearForcedFullReIndex();
+				}
 			}
 			catch (CoreException e) {
 				Logger.logException(AbstractIndexManager.this.fName + ": Failed visiting entire workspace for initial index. " + AbstractIndexManager.LOG_ERROR_INDEX_INVALID, e); //$NON-NLS-1$
@@ -669,6 +744,35 @@ public abstract class AbstractIndexManager {
 			return status;
 		}
 
+		/**
+		 * <p>
+		 * Blocks until there are no {@link ResourceEvent}s left to process
+		 * </p>
+		 * 
+		 * @param monitor
+		 *            stop waiting if this is canceled
+		 * 
+		 * @return <code>true</code> if there are no {@link ResourceEvent}s
+		 *         left to process, <code>false</code> if the monitor was
+		 *         canceled or waiting was interrupted first
+		 */
+		private boolean waitForResourceEvents(IProgressMonitor monitor) {
+			ResourceEventProcessingJob processingJob = AbstractIndexManager.this.fResourceEventProcessingJob;
+			while (processingJob.getNumResourceEventsToProcess() != 0) {
+				if (monitor.isCanceled()) {
+					return false;
+				}
+				try {
+					processingJob.waitForConsistant(WAIT_TIME);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			return !monitor.isCanceled();
+		}
+
 		/**
 		 * <p>
 		 * An {@link IResourceProxyVisitor} used to visit all of the files in
@@ -778,6 +882,9 @@ public abstract class AbstractIndexManager {
 			 * </p>
 			 */
 			protected void processBatchedResourceEvents() {
+				// don't let the queue grow without bound on large workspaces
+				AbstractIndexManager.this.fResourceEventProcessingJob.waitForRoom(this.fProgress);
+
 				AbstractIndexManager.this.fResourceEventProcessingJob.addResourceEvents(this.fBatchedResourceEvents);
 				this.fBatchedResourceEvents.clear();
 			}
@@ -1224,26 +1331,23 @@ public abstract class AbstractIndexManager {
 
 		/**
 		 * <p>
-		 * Name of the file where resource events still to index will be
-		 * preserved for the next start up.
+		 * Name of the file where earlier versions preserved the resource
+		 * events still to index for the next start up. Replaced by
+		 * {@link #RESOURCE_EVENT_JOURNAL_FILE_NAME}.
 		 * </p>
 		 */
 		private static final String PRESERVED_RESOURCE_EVENTS_TO_PROCESS_FILE_NAME = ".preservedResourceEvents"; //$NON-NLS-1$
 
 		/**
 		 * <p>
-		 * This needs to be updated if
-		 * {@link #preserveReceivedResourceEvents()} ever changes how it
-		 * persists resource events so that
-		 * {@link #loadPreservedReceivedResourceEvents(SubMonitor)} knows when
-		 * opening a file that the format is of the current version and if not
-		 * knows it does not know how to read the older version.
+		 * Name of the file journaling the resource events still to index, so
+		 * that they can be processed at the next start up even if the
+		 * manager was never stopped.
 		 * </p>
 		 * 
-		 * @see #preserveReceivedResourceEvents()
-		 * @see #loadPreservedReceivedResourceEvents(SubMonitor)
+		 * @see ResourceEventJournal
 		 */
-		private static final long serialVersionUID = 2L;
+		private static final String RESOURCE_EVENT_JOURNAL_FILE_NAME = ".resourceEvents.journal"; //$NON-NLS-1$
 
 		/** Whether this job has been paused or not */
 		private volatile boolean fIsPaused;
@@ -1256,9 +1360,48 @@ public abstract class AbstractIndexManager {
 		 */
 		private Map fResourceEvents;
 
-		/** Lock used when accessing {@link #fBatchedResourceEvents} */
+		/**
+		 * {@link Set}&lt{@link IResource}&gt
+		 * <p>
+		 * The resources whose events have been taken from
+		 * {@link #fResourceEvents} and are being processed. No other event
+		 * for these resources is taken until they are done.
+		 * </p>
+		 */
+		private Set fResourcesInProgress;
+
+		/**
+		 * <p>
+		 * Journal of the events in {@link #fResourceEvents} and
+		 * {@link #fResourcesInProgress}. Use the {@link #fResourceEventsLock}
+		 * when using.
+		 * </p>
+		 */
+		private ResourceEventJournal fJournal;
+
+		/** Lock used when accessing {@link #fResourceEvents}, {@link #fResourcesInProgress} and {@link #fJournal} */
 		private final Object fResourceEventsLock = new Object();
 
+		/**
+		 * The monitor of the current run, which helper jobs also check for
+		 * cancellation
+		 */
+		private volatile IProgressMonitor fRunMonitor;
+
+		/**
+		 * The number of helper jobs processing events alongside this one.
+		 * Use the {@link #fResourceEventsLock} when reading or writing.
+		 */
+		private int fActiveHelpers;
+
+		/**
+		 * The number of events processed and the time spent processing
+		 * them. Use the {@link #fResourceEventsLock} when reading or
+		 * writing.
+		 */
+		private long fNumResourceEventsProcessed;
+		private long fProcessingTime;
+
 		/**
 		 * Locked used for allowing other jobs to wait on this job. This job
 		 * will notify those waiting on this lock whenever it is done
@@ -1283,12 +1426,16 @@ public abstract class AbstractIndexManager {
 
 			this.fIsPaused = false;
 			this.fResourceEvents = new LinkedHashMap();
+			this.fResourcesInProgress = new HashSet();
+			this.fJournal = new ResourceEventJournal(RESOURCE_EVENT_JOURNAL_FILE_NAME);
 		}
 
 		/**
 		 * <p>
 		 * Loads any preserved {@link ResourceEvent}s from the last time
-		 * {@link #stop(boolean)} was invoked and schedules the job to be run
+		 * {@link #stop(boolean)} was invoked, or that were journaled before
+		 * the manager last exited without being stopped, starts journaling
+		 * again and schedules the job to be run
 		 * </p>
 		 * 
 		 * <p>
@@ -1315,13 +1462,35 @@ public abstract class AbstractIndexManager {
 
 			boolean successLoadingPreserved = true;
 
+			/*
+			 * resource events preserved by an earlier version can not be
+			 * read, so any there may have been must be found by a full
+			 * re-index
+			 */
+			File legacyPreservedResourceEventsFile = AbstractIndexManager.this.getWorkingLocation().append(PRESERVED_RESOURCE_EVENTS_TO_PROCESS_FILE_NAME).toFile();
+			if (legacyPreservedResourceEventsFile.exists()) {
+				legacyPreservedResourceEventsFile.delete();
+				successLoadingPreserved = false;
+			}
+
 			// attempt to load preserved resource events if requested
-			if (!loadPreservedResourceEvents) {
-				File preservedResourceEventsFile = this.getPreservedResourceEventsFile();
-				preservedResourceEventsFile.delete();
+			Map preservedResourceEvents = null;
+			if (loadPreservedResourceEvents && successLoadingPreserved) {
+				progress.subTask(SSECoreMessages.IndexManager_processing_deferred_resource_changes);
+				preservedResourceEvents = this.fJournal.load(progress);
+				successLoadingPreserved = preservedResourceEvents != null;
 			}
-			else {
-				successLoadingPreserved = this.loadPreservedReceivedResourceEvents(progress);
+			progress.done();
+
+			synchronized (this.fResourceEventsLock) {
+				// preserved events come before any received since starting
+				if (preservedResourceEvents != null) {
+					preservedResourceEvents.putAll(this.fResourceEvents);
+					this.fResourceEvents = preservedResourceEvents;
+				}
+
+				// start journaling over with just the current events
+				this.fJournal.reset(this.fResourceEvents);
 			}
 
 			// start up the job
@@ -1361,14 +1530,27 @@ public abstract class AbstractIndexManager {
 			this.cancel();
 			this.join();
 
-			// preserve if requested, else be sure no preserve file is left
-			// over for next start
+			/*
+			 * preserve if requested by compacting the journal down to the
+			 * events still to process, else be sure no journal is left over
+			 * for next start
+			 */
 			boolean success = true;
-			if (preserveResourceEvents && this.hasResourceEventsToProcess()) {
-				success = this.preserveReceivedResourceEvents();
-			}
-			else {
-				this.getPreservedResourceEventsFile().delete();
+			synchronized (this.fResourceEventsLock) {
+				if (preserveResourceEvents && this.hasResourceEventsToProcess()) {
+					success = this.fJournal.reset(this.fResourceEvents);
+					this.fJournal.close();
+					this.fResourceEvents.clear();
+				}
+				else {
+					this.fJournal.delete();
+				}
+
+				// if failed, for consistency must do a full re-process next
+				// workspace load
+				if (!success) {
+					this.fJournal.delete();
+				}
 			}
 
 			return success;
@@ -1449,6 +1631,9 @@ public abstract class AbstractIndexManager {
 				ResourceEvent resourceEvent = (ResourceEvent) resourceEvents.get(resource);
 				addResourceEvent(resource, resourceEvent);
 			}
+			synchronized (this.fResourceEventsLock) {
+				this.fJournal.flush();
+			}
 
 			// un-pause the processor if it is not already running
 			if (!isProcessing()) {
@@ -1467,7 +1652,51 @@ public abstract class AbstractIndexManager {
 		 * @return the number of {@link ResourceEvent}s left to process
 		 */
 		protected int getNumResourceEventsToProcess() {
-			return this.fResourceEvents.size();
+			synchronized (this.fResourceEventsLock) {
+				return this.fResourceEvents.size() + this.fResourcesInProgress.size();
+			}
+		}
+
+		/**
+		 * @return the number of {@link ResourceEvent}s processed so far
+		 */
+		protected long getNumResourceEventsProcessed() {
+			synchronized (this.fResourceEventsLock) {
+				return this.fNumResourceEventsProcessed;
+			}
+		}
+
+		/**
+		 * @return the time in milliseconds this job has spent running
+		 */
+		protected long getProcessingTime() {
+			synchronized (this.fResourceEventsLock) {
+				return this.fProcessingTime;
+			}
+		}
+
+		/**
+		 * <p>
+		 * Blocks while there are a great many {@link ResourceEvent}s waiting
+		 * to be processed and this job is running to process them, so that
+		 * a workspace scan does not get too far ahead
+		 * </p>
+		 * 
+		 * @param monitor
+		 *            stop waiting if this is canceled
+		 */
+		protected void waitForRoom(IProgressMonitor monitor) {
+			synchronized (this.fResourceEventsLock) {
+				while (this.fResourceEvents.size() >= MAX_QUEUED_WORKSPACE_SCAN_EVENTS && !this.fIsPaused && this.getState() == Job.RUNNING && !monitor.isCanceled()) {
+					try {
+						this.fResourceEventsLock.wait(WAIT_TIME);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+			}
 		}
 
 		/**
@@ -1498,53 +1727,29 @@ public abstract class AbstractIndexManager {
 		 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
 		 */
 		protected IStatus run(IProgressMonitor monitor) {
+			long startTime = System.currentTimeMillis();
+			this.fRunMonitor = monitor;
 			try {
 				// report status
 				SubMonitor progress = SubMonitor.convert(monitor);
 
-				while (!this.fIsPaused && !monitor.isCanceled() && this.hasResourceEventsToProcess()) {
-					// report status
-					progress.setTaskName(NLS.bind(SSECoreMessages.IndexManager_0_Indexing_1_Files, new Object[]{AbstractIndexManager.this.fName, "" + getNumResourceEventsToProcess()})); //$NON-NLS-1$
-					progress.setWorkRemaining(getNumResourceEventsToProcess());
-
-					// get the next event to process
-					ResourceEvent resourceEvent = null;
-					IResource resource = null;
-					synchronized (this.fResourceEventsLock) {
-						resource = (IResource) this.fResourceEvents.keySet().iterator().next();
-						resourceEvent = (ResourceEvent) this.fResourceEvents.remove(resource);
-					}
-
-					// report status
-					monitor.subTask(resource.getName());
-
-					// perform action safely
-					final byte source = resourceEvent.fSource;
-					final byte action = resourceEvent.fAction;
-					final IResource finResource = resource;
-					final IPath movePath = resourceEvent.fMovePath;
-					SafeRunner.run(new ISafeRunnable() {
-						public void run() throws Exception {
-							AbstractIndexManager.this.performAction(source, action, finResource, movePath);
-						}
-
-						public void handleException(Throwable e) {
-							Logger.logException("Error while performing an update to the index. " + //$NON-NLS-1$
-										AbstractIndexManager.LOG_ERROR_INDEX_INVALID, e);
-						}
-					});
-
-					// report progress
-					progress.worked(1);
-
-					// avoid dead locks
-					Job.getJobManager().currentJob().yieldRule(monitor);
+				int batchAmount = AbstractIndexManager.this.getProcessingThreadCount() > 1 ? PROCESSING_BATCH_AMOUNT : 1;
+				try {
+					this.processResourceEvents(monitor, progress, batchAmount);
+				}
+				finally {
+					// helpers check the same monitor, so they stop too
+					this.waitForHelpers();
 				}
 
 				// done work
 				monitor.done();
 			}
 			finally {
+				synchronized (this.fResourceEventsLock) {
+					this.fProcessingTime += System.currentTimeMillis() - startTime;
+				}
+
 				// want to be sure we notify no matter how we exit
 				this.notifyIfConsistant();
 			}
@@ -1564,6 +1769,216 @@ public abstract class AbstractIndexManager {
 			return exitStatus;
 		}
 
+		/**
+		 * <p>
+		 * Takes and processes {@link ResourceEvent}s until there are none
+		 * left, or until this job is paused or canceled
+		 * </p>
+		 * 
+		 * @param monitor
+		 *            the monitor of the job running this
+		 * @param progress
+		 *            used to report status, <code>null</code> for helper jobs
+		 * @param batchAmount
+		 *            the amount of events to take at once
+		 */
+		private void processResourceEvents(IProgressMonitor monitor, SubMonitor progress, int batchAmount) {
+			IResource[] resources = new IResource[batchAmount];
+			ResourceEvent[] resourceEvents = new ResourceEvent[batchAmount];
+			while (!this.isStopping(monitor)) {
+				if (progress != null) {
+					// report status
+					int numResourceEvents = getNumResourceEventsToProcess();
+					progress.setTaskName(NLS.bind(SSECoreMessages.IndexManager_0_Indexing_1_Files, new Object[]{AbstractIndexManager.this.fName, "" + numResourceEvents})); //$NON-NLS-1$
+					progress.setWorkRemaining(numResourceEvents);
+
+					this.startHelpers(numResourceEvents);
+				}
+
+				// get the next events to process
+				int count = this.takeResourceEvents(resources, resourceEvents);
+				if (count == 0) {
+					break;
+				}
+
+				int processed = 0;
+				try {
+					while (processed < count && !this.isStopping(monitor)) {
+						if (progress != null) {
+							// report status
+							monitor.subTask(resources[processed].getName());
+						}
+
+						this.performAction(resources[processed], resourceEvents[processed]);
+						++processed;
+
+						if (progress != null) {
+							// report progress
+							progress.worked(1);
+						}
+					}
+				}
+				finally {
+					this.finishResourceEvents(resources, resourceEvents, processed, count);
+				}
+
+				// avoid dead locks
+				Job.getJobManager().currentJob().yieldRule(monitor);
+			}
+		}
+
+		/**
+		 * <p>
+		 * Performs the action for a resource event safely
+		 * </p>
+		 */
+		private void performAction(final IResource resource, ResourceEvent resourceEvent) {
+			final byte source = resourceEvent.fSource;
+			final byte action = resourceEvent.fAction;
+			final IPath movePath = resourceEvent.fMovePath;
+			SafeRunner.run(new ISafeRunnable() {
+				public void run() throws Exception {
+					AbstractIndexManager.this.performAction(source, action, resource, movePath);
+				}
+
+				public void handleException(Throwable e) {
+					Logger.logException("Error while performing an update to the index. " + //$NON-NLS-1$
+								AbstractIndexManager.LOG_ERROR_INDEX_INVALID, e);
+				}
+			});
+		}
+
+		/**
+		 * @return <code>true</code> if processing should stop, because
+		 *         this job was paused or canceled
+		 */
+		private boolean isStopping(IProgressMonitor monitor) {
+			return this.fIsPaused || monitor.isCanceled() || this.fRunMonitor.isCanceled();
+		}
+
+		/**
+		 * <p>
+		 * Takes up to as many {@link ResourceEvent}s as fit in the given
+		 * arrays, in the order they were received, skipping any for
+		 * resources which are already being processed
+		 * </p>
+		 * 
+		 * @return the number of events taken
+		 * 
+		 * @see #finishResourceEvents(IResource[], ResourceEvent[], int, int)
+		 */
+		private int takeResourceEvents(IResource[] resources, ResourceEvent[] resourceEvents) {
+			int count = 0;
+			synchronized (this.fResourceEventsLock) {
+				Iterator iter = this.fResourceEvents.entrySet().iterator();
+				while (count < resources.length && iter.hasNext()) {
+					Map.Entry entry = (Map.Entry) iter.next();
+					if (!this.fResourcesInProgress.contains(entry.getKey())) {
+						resources[count] = (IResource) entry.getKey();
+						resourceEvents[count] = (ResourceEvent) entry.getValue();
+						this.fResourcesInProgress.add(resources[count]);
+						iter.remove();
+						++count;
+					}
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * <p>
+		 * Marks events taken by
+		 * {@link #takeResourceEvents(IResource[], ResourceEvent[])} as done,
+		 * and puts back those which were not processed, unless newer events
+		 * have since been received for their resources
+		 * </p>
+		 */
+		private void finishResourceEvents(IResource[] resources, ResourceEvent[] resourceEvents, int processed, int count) {
+			synchronized (this.fResourceEventsLock) {
+				for (int i = 0; i < count; ++i) {
+					this.fResourcesInProgress.remove(resources[i]);
+					if (i < processed) {
+						this.fJournal.eventProcessed(resources[i], resourceEvents[i]);
+					}
+					else if (!this.fResourceEvents.containsKey(resources[i])) {
+						this.fResourceEvents.put(resources[i], resourceEvents[i]);
+					}
+					resources[i] = null;
+					resourceEvents[i] = null;
+				}
+				this.fNumResourceEventsProcessed += processed;
+
+				// the journal is only needed while there are events left
+				if (this.fResourceEvents.isEmpty() && this.fResourcesInProgress.isEmpty()) {
+					this.fJournal.reset(this.fResourceEvents);
+				}
+				else {
+					this.fJournal.flush();
+				}
+
+				// wake up a workspace scan waiting for room
+				this.fResourceEventsLock.notifyAll();
+			}
+		}
+
+		/**
+		 * <p>
+		 * Starts helper jobs to process events alongside this one, up to
+		 * {@link AbstractIndexManager#getProcessingThreadCount()} jobs in all
+		 * and no more than there are events to process
+		 * </p>
+		 */
+		private void startHelpers(int numResourceEvents) {
+			int helpersToStart;
+			synchronized (this.fResourceEventsLock) {
+				int maxHelpers = Math.min(AbstractIndexManager.this.getProcessingThreadCount() - 1, numResourceEvents - 1);
+				helpersToStart = Math.max(0, maxHelpers - this.fActiveHelpers);
+				this.fActiveHelpers += helpersToStart;
+			}
+			for (int i = 0; i < helpersToStart; ++i) {
+				Job helper = new Job(this.getName()) {
+					protected IStatus run(IProgressMonitor monitor) {
+						try {
+							ResourceEventProcessingJob.this.processResourceEvents(monitor, null, PROCESSING_BATCH_AMOUNT);
+						}
+						finally {
+							synchronized (ResourceEventProcessingJob.this.fResourceEventsLock) {
+								--ResourceEventProcessingJob.this.fActiveHelpers;
+								ResourceEventProcessingJob.this.fResourceEventsLock.notifyAll();
+							}
+						}
+						return Status.OK_STATUS;
+					}
+				};
+				helper.setUser(false);
+				helper.setSystem(true);
+				helper.setPriority(Job.LONG);
+				helper.schedule();
+			}
+		}
+
+		/**
+		 * <p>
+		 * Blocks until all helper jobs have finished
+		 * </p>
+		 */
+		private void waitForHelpers() {
+			boolean interrupted = false;
+			synchronized (this.fResourceEventsLock) {
+				while (this.fActiveHelpers > 0) {
+					try {
+						this.fResourceEventsLock.wait(WAIT_TIME);
+					}
+					catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
 		/**
 		 * <p>
 		 * If resource not already scheduled to be processed, schedule it else
@@ -1592,9 +2007,12 @@ public abstract class AbstractIndexManager {
 				 */
 				if (!this.fResourceEvents.containsKey(resource)) {
 					this.fResourceEvents.put(resource, resourceEvent);
+					this.fJournal.eventReceived(resource, resourceEvent, resourceEvent.fSource);
 				}
 				else if (resourceEvent.fSource == AbstractIndexManager.SOURCE_RESOURCE_CHANGE) {
-					((ResourceEvent) this.fResourceEvents.get(resource)).fAction = resourceEvent.fAction;
+					ResourceEvent existingResourceEvent = (ResourceEvent) this.fResourceEvents.get(resource);
+					existingResourceEvent.fAction = resourceEvent.fAction;
+					this.fJournal.eventReceived(resource, existingResourceEvent, resourceEvent.fSource);
 				}
 				else {
 					// Purposely ignoring all other resource events
@@ -1607,126 +2025,253 @@ public abstract class AbstractIndexManager {
 		 *         <code>false</code> otherwise
 		 */
 		private boolean hasResourceEventsToProcess() {
-			return !this.fResourceEvents.isEmpty();
+			synchronized (this.fResourceEventsLock) {
+				return !this.fResourceEvents.isEmpty() || !this.fResourcesInProgress.isEmpty();
+			}
+		}
+
+		/**
+		 * <p>
+		 * If all resource events have been processed
+		 */
+		private void notifyIfConsistant() {
+			if (!this.hasResourceEventsToProcess()) {
+				synchronized (this.fToNotifyLock) {
+					this.fToNotifyLock.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * An append only journal of the {@link ResourceEvent}s received but not
+	 * yet processed, written as events are received and processed rather
+	 * than only when the manager is stopped, so that if the manager exits
+	 * without being stopped the events can still be processed when it next
+	 * starts instead of re-processing the entire workspace.
+	 * </p>
+	 * 
+	 * <p>
+	 * The journal starts with {@link #MAGIC} and {@link #VERSION}, followed by
+	 * records each made up of the length of the record, its bytes and a
+	 * CRC32 of them. A record either defines a number for a path so that
+	 * later records can refer to it, records an event being received for a
+	 * resource, or records an event having been processed. Events are
+	 * numbered in the order they are recorded, and an event recorded for a
+	 * resource replaces any recorded for it before.
+	 * </p>
+	 * 
+	 * <p>
+	 * Events from a workspace scan are not journaled. Instead a full
+	 * re-index is forced for the next start from the time the scan begins
+	 * until all of the events it found have been processed.
+	 * </p>
+	 * 
+	 * <p>
+	 * <b>NOTE:</b> Not thread safe, callers must synchronize. If the format
+	 * ever changes then {@link #VERSION} must be incremented so that an older
+	 * journal is not read.
+	 * </p>
+	 */
+	private class ResourceEventJournal {
+		/** Identifies a journal file */
+		private static final int MAGIC = 0x5353454A;
+
+		/** Version of the journal format */
+		private static final int VERSION = 1;
+
+		/** Defines the number for a path: int number, UTF path */
+		private static final byte RECORD_PATH = 1;
+
+		/**
+		 * An event was received: byte action, byte resource type, int path
+		 * number, int move path number or -1
+		 */
+		private static final byte RECORD_EVENT_RECEIVED = 2;
+
+		/** An event was processed: int path number, int event number */
+		private static final byte RECORD_EVENT_PROCESSED = 3;
+
+		/** Larger records than this can only come from a corrupt journal */
+		private static final int MAX_RECORD_LENGTH = 0x100000;
+
+		/** Name of the journal file in the working location */
+		private final String fFileName;
+
+		/**
+		 * The journal being appended to, <code>null</code> if closed or
+		 * writing to it failed
+		 */
+		private DataOutputStream fOutput;
+
+		/** {@link Map}&lt{@link String}, {@link Integer}&gt path numbers */
+		private final Map fPathNumbers = new HashMap();
+
+		/** Number of the next event recorded */
+		private int fNextSequence;
+
+		/** Bytes of the record being written */
+		private final ByteArrayOutputStream fRecordBytes = new ByteArrayOutputStream();
+		private final DataOutputStream fRecord = new DataOutputStream(this.fRecordBytes);
+		private final CRC32 fChecksum = new CRC32();
+
+		/** Where the last record read ends in the journal file */
+		private long fRecordEnd;
+
+		protected ResourceEventJournal(String fileName) {
+			this.fFileName = fileName;
 		}
 
 		/**
 		 * <p>
-		 * Preserves all of the resource events that have been received by
-		 * this manager but not yet processed
+		 * Records that an event was received, or that an event was updated
+		 * by a newer one
 		 * </p>
 		 * 
+		 * @param resource
+		 *            the resource the event is for
+		 * @param resourceEvent
+		 *            the event now waiting to be processed for the resource
+		 * @param source
+		 *            the source of the event received
+		 */
+		protected void eventReceived(IResource resource, ResourceEvent resourceEvent, byte source) {
+			if (this.fOutput == null || source == AbstractIndexManager.SOURCE_WORKSPACE_SCAN) {
+				return;
+			}
+
+			try {
+				int path = this.getPathNumber(resource.getFullPath().toString());
+				int movePath = resourceEvent.fMovePath != null ? this.getPathNumber(resourceEvent.fMovePath.toPortableString()) : -1;
+				this.fRecord.writeByte(RECORD_EVENT_RECEIVED);
+				this.fRecord.writeByte(resourceEvent.fAction);
+				this.fRecord.writeByte(resource.getType());
+				this.fRecord.writeInt(path);
+				this.fRecord.writeInt(movePath);
+				this.writeRecord();
+				resourceEvent.fJournalSequence = this.fNextSequence++;
+			}
+			catch (IOException e) {
+				this.failed(e);
+			}
+		}
+
+		/**
 		 * <p>
-		 * If this operation was successful then the next time the manager
-		 * starts it can load these events and process them. If it was not
-		 * successful then a full re-processing of the entire workspace will
-		 * need to take place to be sure the index is consistent.
+		 * Records that an event was processed
 		 * </p>
 		 * 
+		 * @param resource
+		 *            the resource the event was for
+		 * @param resourceEvent
+		 *            the event processed
+		 */
+		protected void eventProcessed(IResource resource, ResourceEvent resourceEvent) {
+			if (this.fOutput == null || resourceEvent.fJournalSequence < 0 || resourceEvent.fJournalSequence >= this.fNextSequence) {
+				return;
+			}
+
+			Integer path = (Integer) this.fPathNumbers.get(resource.getFullPath().toString());
+			if (path != null) {
+				try {
+					this.fRecord.writeByte(RECORD_EVENT_PROCESSED);
+					this.fRecord.writeInt(path.intValue());
+					this.fRecord.writeInt(resourceEvent.fJournalSequence);
+					this.writeRecord();
+				}
+				catch (IOException e) {
+					this.failed(e);
+				}
+			}
+		}
+
+		/**
+		 * <p>
+		 * Flushes the records written so far to the journal file
+		 * </p>
+		 */
+		protected void flush() {
+			if (this.fOutput != null) {
+				try {
+					this.fOutput.flush();
+				}
+				catch (IOException e) {
+					this.failed(e);
+				}
+			}
+		}
+
+		/**
 		 * <p>
-		 * <b>NOTE:</b> If this method changes how it preserves these events
-		 * then {@link #serialVersionUID} will need to be incremented so that
-		 * the manager does not attempt to load an old version of the file
-		 * that may exist in a users workspace. Also
-		 * {@link #loadPreservedReceivedResourceEvents(SubMonitor)} will have
-		 * to be updated to load the new file structure.
+		 * Starts the journal over with just the given events
 		 * </p>
 		 * 
-		 * @return <code>true</code> if successfully preserved the resource
-		 *         events that have been received by not yet processed,
-		 *         <code>false</code> otherwise
+		 * @param resourceEvents
+		 *            {@link Map}&lt{@link IResource}, {@link ResourceEvent}
+		 *            &gt the events still to be processed
 		 * 
-		 * @see #serialVersionUID
-		 * @see #loadPreservedReceivedResourceEvents(SubMonitor)
+		 * @return <code>true</code> if the events were journaled,
+		 *         <code>false</code> otherwise
 		 */
-		private boolean preserveReceivedResourceEvents() {
-			File preservedResourceEventsFile = this.getPreservedResourceEventsFile();
-			boolean success = true;
+		protected boolean reset(Map resourceEvents) {
+			this.close();
+			this.fPathNumbers.clear();
+			this.fNextSequence = 0;
 
-			synchronized (this.fResourceEventsLock) {
-				DataOutputStream dos = null;
-				try {
-					// if file already exists delete it
-					if (preservedResourceEventsFile.exists()) {
-						preservedResourceEventsFile.delete();
-						preservedResourceEventsFile.createNewFile();
-					}
+			try {
+				this.fOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.getFile())));
+				this.fOutput.writeInt(MAGIC);
+				this.fOutput.writeInt(VERSION);
+			}
+			catch (IOException e) {
+				this.failed(e);
+				return false;
+			}
 
-					// create output objects
-					FileOutputStream fos = new FileOutputStream(preservedResourceEventsFile);
-					BufferedOutputStream bos = new BufferedOutputStream(fos);
-					dos = new DataOutputStream(bos);
-
-					// write serial version
-					dos.writeLong(serialVersionUID);
-
-					// write size
-					dos.writeInt(this.getNumResourceEventsToProcess());
-
-					// write out all the information needed to restore the
-					// resource events to process
-					Iterator iter = this.fResourceEvents.keySet().iterator();
-					while (iter.hasNext()) {
-						IResource resource = (IResource) iter.next();
-						ResourceEvent resourceEvent = (ResourceEvent) this.fResourceEvents.get(resource);
-
-						if (resourceEvent.fSource != AbstractIndexManager.SOURCE_WORKSPACE_SCAN) {
-							// write out information
-							dos.writeByte(resourceEvent.fAction);
-							dos.writeByte(resource.getType());
-							byte[] pathBytes = resource.getFullPath().toString().getBytes(ENCODING_UTF16);
-							dos.writeInt(pathBytes.length);
-							dos.write(pathBytes);
-							pathBytes = resourceEvent.fMovePath != null ? resourceEvent.fMovePath.toPortableString().getBytes(ENCODING_UTF16) : new byte[0];
-							dos.writeInt(pathBytes.length);
-							if (pathBytes.length > 0) {
-								dos.write(pathBytes);
-							}
-						}
-					}
+			Iterator iter = resourceEvents.entrySet().iterator();
+			while (iter.hasNext()) {
+				Map.Entry entry = (Map.Entry) iter.next();
+				ResourceEvent resourceEvent = (ResourceEvent) entry.getValue();
+				resourceEvent.fJournalSequence = -1;
+				this.eventReceived((IResource) entry.getKey(), resourceEvent, resourceEvent.fSource);
+			}
+			this.flush();
 
-					this.fResourceEvents.clear();
+			return this.fOutput != null;
+		}
 
-					dos.flush();
-				}
-				catch (FileNotFoundException e) {
-					Logger.logException(AbstractIndexManager.this.fName + ": Exception while opening file to preserve resources to index.", //$NON-NLS-1$
-								e);
-					success = false;
+		/**
+		 * <p>
+		 * Closes the journal file, leaving it to be loaded on the next start
+		 * </p>
+		 */
+		protected void close() {
+			if (this.fOutput != null) {
+				try {
+					this.fOutput.close();
 				}
 				catch (IOException e) {
-					Logger.logException(AbstractIndexManager.this.fName + ": Exception while writing to file to preserve resources to index.", //$NON-NLS-1$
-								e);
-					success = false;
-				}
-				finally {
-					// be sure to close output
-					if (dos != null) {
-						try {
-							dos.close();
-						}
-						catch (IOException e) {
-							Logger.logException(AbstractIndexManager.this.fName + ": Exception while closing file with preserved resources to index.", //$NON-NLS-1$
-										e);
-							success = false;
-						}
-					}
-				}
-
-				// if failed, for consistency must do a full re-process next
-				// workspace load
-				if (!success) {
-					preservedResourceEventsFile.delete();
+					this.failed(e);
 				}
+				this.fOutput = null;
 			}
+		}
 
-			return success;
+		/**
+		 * <p>
+		 * Closes and deletes the journal file
+		 * </p>
+		 */
+		protected void delete() {
+			this.close();
+			this.getFile().delete();
 		}
 
 		/**
 		 * <p>
-		 * Loads the received resource events that were preserved during the
-		 * manager's last shut down so they can be processed now
+		 * Reads the events that were still to be processed when the journal
+		 * was last written to
 		 * </p>
 		 * 
 		 * <p>
@@ -1735,176 +2280,294 @@ public abstract class AbstractIndexManager {
 		 * </p>
 		 * 
 		 * @param progress
-		 *            used to report status of loading the preserved received
-		 *            resource events
-		 * @return <code>true</code> if the loading of the preserved received
-		 *         resource events was successful, <code>false</code>
-		 *         otherwise.
+		 *            used to report status of loading the journal
 		 * 
-		 * @see #serialVersionUID
-		 * @see #preserveReceivedResourceEvents()
+		 * @return {@link Map}&lt{@link IResource}, {@link ResourceEvent}&gt
+		 *         the events in the order they were received, or
+		 *         <code>null</code> if the journal could not be read
 		 */
-		private boolean loadPreservedReceivedResourceEvents(SubMonitor progress) {
-			progress.subTask(SSECoreMessages.IndexManager_processing_deferred_resource_changes);
-
-			boolean success = true;
-			File preservedResourceEventsFile = this.getPreservedResourceEventsFile();
-
-			if (preservedResourceEventsFile.exists()) {
-				Map preservedResourceEvents = null;
-
-				DataInputStream dis = null;
-				try {
-					FileInputStream fis = new FileInputStream(preservedResourceEventsFile);
-					BufferedInputStream bis = new BufferedInputStream(fis);
-					dis = new DataInputStream(bis);
-
-					// check serial version first
-					long preservedSerialVersionUID = dis.readLong();
-					if (preservedSerialVersionUID == serialVersionUID) {
-
-						// read each record
-						int numberOfRecords = dis.readInt();
-						preservedResourceEvents = new LinkedHashMap(numberOfRecords);
-						progress.setWorkRemaining(numberOfRecords);
-						for (int i = 0; i < numberOfRecords; ++i) {
-							// action is first byte
-							byte action = dis.readByte();
-
-							// file type is the next byte
-							byte fileType = dis.readByte();
-
-							// resource location are the next bytes
-							final String resourceLocation = readStringFromStream(dis);
-							// get the resource
-							IResource resource = null;
-							IPath resourcePath = new Path(resourceLocation);
-							if (!resourcePath.isRoot() && resourcePath.segmentCount() > 1) {
-								if (fileType == IResource.FILE) {
-									resource = ResourcesPlugin.getWorkspace().getRoot().getFile(resourcePath);
-								}
-								else {
-									resource = ResourcesPlugin.getWorkspace().getRoot().getFolder(resourcePath);
-								}
-							}
-							else {
-								Logger.log(Logger.WARNING, "The AbstractIndexManager " + AbstractIndexManager.this.fName + " attempted to load an invlaid preserved resource event:\n" + "(" + resourcePath + ")");
-							}
+		protected Map load(SubMonitor progress) {
+			File file = this.getFile();
+			if (!file.exists()) {
+				return new LinkedHashMap();
+			}
 
-							// move path are the next bytes
-							final String moveLocation = readStringFromStream(dis);
-							// get the move path
-							IPath movePath = null;
-							if (moveLocation.length() > 0) {
-								movePath = new Path(moveLocation);
-							}
+			// path numbers to paths
+			Map paths = new HashMap();
+			// paths to resources and to events, in the order received
+			Map resources = new HashMap();
+			Map resourceEvents = new LinkedHashMap();
 
-							// add the object to the list of of preserved
-							// resources
-							preservedResourceEvents.put(resource, new ResourceEvent(AbstractIndexManager.SOURCE_PRESERVED_RESOURCES_TO_INDEX, action, movePath));
+			DataInputStream dis = null;
+			try {
+				dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+				if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+					throw new IOException("Unknown journal version"); //$NON-NLS-1$
+				}
 
-							progress.worked(1);
+				progress.setWorkRemaining((int) Math.min(Integer.MAX_VALUE, file.length()));
+				int sequence = 0;
+				this.fRecordEnd = 8;
+				byte[] record = this.readNextRecord(dis, file.length());
+				while (record != null) {
+					DataInputStream recordInput = new DataInputStream(new ByteArrayInputStream(record));
+					byte recordType = recordInput.readByte();
+					if (recordType == RECORD_PATH) {
+						int number = recordInput.readInt();
+						paths.put(new Integer(number), recordInput.readUTF());
+					}
+					else if (recordType == RECORD_EVENT_RECEIVED) {
+						byte action = recordInput.readByte();
+						byte resourceType = recordInput.readByte();
+						String path = readPath(paths, recordInput.readInt());
+						int movePathNumber = recordInput.readInt();
+						IPath movePath = movePathNumber >= 0 ? Path.fromPortableString(readPath(paths, movePathNumber)) : null;
+
+						IResource resource = (IResource) resources.get(path);
+						if (resource == null) {
+							resource = this.createResource(path, resourceType);
+						}
+						if (resource != null) {
+							ResourceEvent resourceEvent = new ResourceEvent(AbstractIndexManager.SOURCE_PRESERVED_RESOURCES_TO_INDEX, action, movePath);
+							resourceEvent.fJournalSequence = sequence;
+							resources.put(path, resource);
+							resourceEvents.put(path, resourceEvent);
+						}
+						++sequence;
+					}
+					else if (recordType == RECORD_EVENT_PROCESSED) {
+						String path = readPath(paths, recordInput.readInt());
+						int processedSequence = recordInput.readInt();
+
+						// only if no newer event has been received since
+						ResourceEvent resourceEvent = (ResourceEvent) resourceEvents.get(path);
+						if (resourceEvent != null && resourceEvent.fJournalSequence == processedSequence) {
+							resourceEvents.remove(path);
 						}
 					}
 					else {
-						success = false;
+						throw new IOException("Unknown journal record " + recordType); //$NON-NLS-1$
 					}
+
+					progress.worked(record.length + 8);
+					record = this.readNextRecord(dis, file.length());
 				}
-				catch (FileNotFoundException e) {
-					Logger.logException(AbstractIndexManager.this.fName + ": Exception while opening file to read preserved resources to index. Index manager will recover by re-indexing workspace.", //$NON-NLS-1$
-								e);
-					success = false;
+			}
+			catch (IOException e) {
+				Logger.logException(AbstractIndexManager.this.fName + ": Exception while reading the journal of resources to index. Index manager will recover by re-indexing workspace.", //$NON-NLS-1$
+							e);
+				resourceEvents = null;
+			}
+			catch (Exception e) {
+				// Purposely catching all exceptions here so that index
+				// manager can recover gracefully
+				Logger.logException(AbstractIndexManager.this.fName + ": Unexpected exception while reading the journal of resources to index. Index manager will recover by re-indexing workspace.", //$NON-NLS-1$
+							e);
+				resourceEvents = null;
+			}
+			finally {
+				if (dis != null) {
+					try {
+						dis.close();
+					}
+					catch (IOException e) {
+						Logger.logException(AbstractIndexManager.this.fName + ": Exception while closing the journal of resources" + //$NON-NLS-1$
+									" to index that was just read.  This should have no" + //$NON-NLS-1$
+									" effect on the consistency of the index.", //$NON-NLS-1$
+									e);
+					}
 				}
-				catch (IOException e) {
-					Logger.logException(AbstractIndexManager.this.fName + ": Exception while reading from file of preserved resources to index. Index manager will recover by re-indexing workspace.", //$NON-NLS-1$
-								e);
-					success = false;
+			}
+
+			Map preservedResourceEvents = null;
+			if (resourceEvents != null) {
+				preservedResourceEvents = new LinkedHashMap(resourceEvents.size());
+				Iterator iter = resourceEvents.entrySet().iterator();
+				while (iter.hasNext()) {
+					Map.Entry entry = (Map.Entry) iter.next();
+					preservedResourceEvents.put(resources.get(entry.getKey()), entry.getValue());
 				}
-				catch (Exception e) {
-					// Purposely catching all exceptions here so that index
-					// manager can recover gracefully
-					Logger.logException(AbstractIndexManager.this.fName + ": Unexpected exception while reading from file of preserved resources to index. Index manager will recover by re-indexing workspace.", //$NON-NLS-1$
-								e);
-					success = false;
+			}
+			return preservedResourceEvents;
+		}
+
+		/**
+		 * @return the {@link IResource} at the given path, or
+		 *         <code>null</code> if it is not a valid path
+		 */
+		private IResource createResource(String location, byte resourceType) {
+			IResource resource = null;
+			IPath resourcePath = new Path(location);
+			if (!resourcePath.isRoot() && resourcePath.segmentCount() > 1) {
+				if (resourceType == IResource.FILE) {
+					resource = ResourcesPlugin.getWorkspace().getRoot().getFile(resourcePath);
 				}
-				finally {
-					if (dis != null) {
-						try {
-							dis.close();
-						}
-						catch (IOException e) {
-							Logger.logException(AbstractIndexManager.this.fName + ": Exception while closing file of preserved resources" + //$NON-NLS-1$
-										" to index that was just read.  This should have no" + //$NON-NLS-1$
-										" effect on the consistency of the index.", //$NON-NLS-1$
-										e);
-						}
-					}
+				else {
+					resource = ResourcesPlugin.getWorkspace().getRoot().getFolder(resourcePath);
 				}
+			}
+			else {
+				Logger.log(Logger.WARNING, "The AbstractIndexManager " + AbstractIndexManager.this.fName + " attempted to load an invlaid preserved resource event:\n" + "(" + resourcePath + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			}
+			return resource;
+		}
 
-				// if success loading preserved then add to master list
-				if (success && preservedResourceEvents != null) {
-					synchronized (this.fResourceEventsLock) {
-						Iterator iter = preservedResourceEvents.keySet().iterator();
-						while (iter.hasNext()) {
-							IResource resource = (IResource) iter.next();
-							ResourceEvent event = (ResourceEvent) preservedResourceEvents.get(resource);
-							this.fResourceEvents.put(resource, event);
-						}
+		/**
+		 * @return the path defined for the given number
+		 * 
+		 * @throws IOException
+		 *             if the path has not been defined
+		 */
+		private String readPath(Map paths, int number) throws IOException {
+			String path = (String) paths.get(new Integer(number));
+			if (path == null) {
+				throw new IOException("Undefined journal path " + number); //$NON-NLS-1$
+			}
+			return path;
+		}
+
+		/**
+		 * <p>
+		 * Reads the next record, treating a damaged last record as the end of
+		 * the journal. The manager may exit while a record is being appended,
+		 * leaving it cut short or padded with zeros, but the records before
+		 * it are still good. The saved state delta covers what is lost with
+		 * it.
+		 * </p>
+		 * 
+		 * @param length
+		 *            the length of the journal file
+		 * 
+		 * @return the bytes of the next record, or <code>null</code> at the
+		 *         end of the journal
+		 * 
+		 * @throws IOException
+		 *             if a damaged record is followed by more of the journal
+		 */
+		private byte[] readNextRecord(DataInputStream dis, long length) throws IOException {
+			long recordStart = this.fRecordEnd;
+			try {
+				return this.readRecord(dis);
+			}
+			catch (EOFException e) {
+				// cut short
+			}
+			catch (IOException e) {
+				if (this.fRecordEnd > recordStart) {
+					// the length was read, so it says where the record ends
+					if (this.fRecordEnd < length) {
+						throw e;
 					}
 				}
 				else {
-					// failed reading file, so delete it
-					preservedResourceEventsFile.delete();
+					// the length could not be read, only zeros may follow
+					int b = dis.read();
+					while (b == 0) {
+						b = dis.read();
+					}
+					if (b != -1) {
+						throw e;
+					}
 				}
 			}
-
-			progress.done();
-			return success;
+			Logger.log(Logger.WARNING, AbstractIndexManager.this.fName + ": Ignoring the incomplete last record of the journal of resources to index."); //$NON-NLS-1$
+			return null;
 		}
 
 		/**
-		 * Reads a string from the input stream. An integer length is read first
-		 * followed by the bytes of the string
-		 * @param dis the input stream to read from
-		 * @return a String represented by the bytes
+		 * @return the bytes of the next record, or <code>null</code> at the
+		 *         end of the journal
+		 * 
 		 * @throws IOException
+		 *             if the record is incomplete or does not match its
+		 *             checksum
 		 */
-		private String readStringFromStream(DataInputStream dis) throws IOException {
-			// Read the int for the string's length
-			final int length = dis.readInt();
-			// Read in length bytes for the string
-			final byte[] resourceLocation = new byte[length];
-			int read = 0;
-			int offset = 0;
-			while (offset < resourceLocation.length && (read = dis.read(resourceLocation, offset, resourceLocation.length - offset)) > 0) {
-				offset += read;
+		private byte[] readRecord(DataInputStream dis) throws IOException {
+			int first = dis.read();
+			if (first < 0) {
+				return null;
+			}
+			int length = (first << 24) | (dis.readUnsignedByte() << 16) | (dis.readUnsignedShort());
+			if (length <= 0 || length > MAX_RECORD_LENGTH) {
+				throw new IOException("Invalid journal record length " + length); //$NON-NLS-1$
 			}
-			return new String(resourceLocation, ENCODING_UTF16);
+			this.fRecordEnd += 8 + length;
+			byte[] record = new byte[length];
+			dis.readFully(record);
+			int checksum = dis.readInt();
+
+			this.fChecksum.reset();
+			this.fChecksum.update(record, 0, record.length);
+			if ((int) this.fChecksum.getValue() != checksum) {
+				throw new IOException("Journal record does not match its checksum"); //$NON-NLS-1$
+			}
+			return record;
 		}
 
 		/**
-		 * @return {@link File} that contains any resource events received but
-		 *         not processed by this manager the last time it shutdown.
-		 *         This file may or may not actually exist.
-		 * 
-		 * @see #preserveReceivedResourceEvents()
-		 * @see #loadPreservedReceivedResourceEvents(SubMonitor)
+		 * <p>
+		 * Appends the record in {@link #fRecordBytes} to the journal
+		 * </p>
+		 */
+		private void writeRecord() throws IOException {
+			this.fRecord.flush();
+			byte[] record = this.fRecordBytes.toByteArray();
+			this.fRecordBytes.reset();
+
+			this.fChecksum.reset();
+			this.fChecksum.update(record, 0, record.length);
+			this.fOutput.writeInt(record.length);
+			this.fOutput.write(record);
+			this.fOutput.writeInt((int) this.fChecksum.getValue());
+		}
+
+		/**
+		 * @return the number for the given path, defining one in the journal
+		 *         if there is not one yet
 		 */
-		private File getPreservedResourceEventsFile() {
-			IPath preservedResourcesToIndexPath = AbstractIndexManager.this.getWorkingLocation().append(PRESERVED_RESOURCE_EVENTS_TO_PROCESS_FILE_NAME);
-			return new File(preservedResourcesToIndexPath.toOSString());
+		private int getPathNumber(String path) throws IOException {
+			Integer number = (Integer) this.fPathNumbers.get(path);
+			if (number == null) {
+				number = new Integer(this.fPathNumbers.size());
+				this.fRecord.writeByte(RECORD_PATH);
+				this.fRecord.writeInt(number.intValue());
+				this.fRecord.writeUTF(path);
+				this.writeRecord();
+				this.fPathNumbers.put(path, number);
+			}
+			return number.intValue();
 		}
 
 		/**
 		 * <p>
-		 * If all resource events have been processed
+		 * Stops journaling after failing to write to the journal. Since
+		 * events may now be missing from it a full re-index is forced next
+		 * start.
+		 * </p>
 		 */
-		private void notifyIfConsistant() {
-			if (!this.hasResourceEventsToProcess()) {
-				synchronized (this.fToNotifyLock) {
-					this.fToNotifyLock.notifyAll();
+		private void failed(IOException e) {
+			Logger.logException(AbstractIndexManager.this.fName + ": Exception while writing the journal of resources to index.", e); //$NON-NLS-1$
+			this.fRecordBytes.reset();
+			if (this.fOutput != null) {
+				try {
+					this.fOutput.close();
 				}
+				catch (IOException closeException) {
+					// already failed
+				}
+				this.fOutput = null;
 			}
+			this.getFile().delete();
+			AbstractIndexManager.this.forceFullReIndexNextStart();
+		}
+
+		/**
+		 * @return {@link File} journaling the resource events received but
+		 *         not yet processed by this manager. This file may or may not
+		 *         actually exist.
+		 */
+		private File getFile() {
+			return AbstractIndexManager.this.getWorkingLocation().append(this.fFileName).toFile();
 		}
 	}
 
@@ -1960,6 +2623,14 @@ public abstract class AbstractIndexManager {
 		 */
 		protected IPath fMovePath;
 
+		/**
+		 * <p>
+		 * The number the {@link ResourceEventJournal} last recorded this
+		 * event under, or -1 if it has not been journaled
+		 * </p>
+		 */
+		protected int fJournalSequence;
+
 		/**
 		 * <p>
 		 * Creates a resource event that the index needs to react to in some
@@ -1993,6 +2664,7 @@ public abstract class AbstractIndexManager {
 			this.fSource = source;
 			this.fAction = action;
 			this.fMovePath = movePath;
+			this.fJournalSequence = -1;
 		}
 	}
 }
\ No newline at end of file
@@ -1,5 +1,5 @@
 /**********************************************************************
- * Copyright (c) 2005, 2010 IBM Corporation and others. All rights reserved.   This
+ * Copyright (c) 2005, 2013 IBM Corporation and others. All rights reserved.   This
  * program and the accompanying materials are made available under the terms of
  * the Eclipse Public License v1.0 which accompanies this distribution, and is
  * available at http://www.eclipse.org/legal/epl-v10.html
@@ -36,6 +36,7 @@ public class SSECoreMessages extends NLS {
 	public static String TaskScanningJob_0;
 	public static String TaskScanningJob_1;
 	public static String Migrate_Charset;
+	public static String ModelsForReadJob_0;
 	
 	public static String IndexManager_0_starting;
 	public static String IndexManager_0_starting_1;
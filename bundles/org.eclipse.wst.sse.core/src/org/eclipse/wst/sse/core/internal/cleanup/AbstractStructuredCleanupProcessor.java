@@ -274,9 +274,9 @@ public abstract class AbstractStructuredCleanupProcessor implements IStructuredC
 					DocumentRewriteSession rewriteSession = null;
 
 					try {
-						// whenever formatting model, fire
-						// abouttochange/modelchanged
-						structuredModel.aboutToChangeModel();
+						// whenever formatting model, fire abouttochange/modelchanged,
+						// and send adapters one notification per changed node
+						structuredModel.beginNotificationBatch();
 						rewriteSession = (docExt4 == null || docExt4.getActiveRewriteSession() != null) ? null : docExt4.startRewriteSession(DocumentRewriteSessionType.UNRESTRICTED);
 
 						while (!done) {
@@ -327,7 +327,7 @@ public abstract class AbstractStructuredCleanupProcessor implements IStructuredC
 						}
 						finally {
 							// always make sure to fire changedmodel when done
-							structuredModel.changedModel();
+							structuredModel.endNotificationBatch();
 						}
 					}
 				}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2006 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,16 +13,20 @@
 package org.eclipse.wst.sse.core.internal.document;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
 import java.nio.charset.MalformedInputException;
 import java.nio.charset.UnmappableCharacterException;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.ProjectScope;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.preferences.IScopeContext;
 import org.eclipse.core.runtime.preferences.InstanceScope;
@@ -30,6 +34,7 @@ import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentExtension3;
 import org.eclipse.jface.text.IDocumentPartitioner;
+import org.eclipse.wst.sse.core.internal.SSECorePlugin;
 import org.eclipse.wst.sse.core.internal.encoding.CodedIO;
 import org.eclipse.wst.sse.core.internal.encoding.CodedReaderCreator;
 import org.eclipse.wst.sse.core.internal.encoding.ContentTypeEncodingPreferences;
@@ -38,6 +43,8 @@ import org.eclipse.wst.sse.core.internal.encoding.EncodingRule;
 import org.eclipse.wst.sse.core.internal.exceptions.MalformedInputExceptionWithDetail;
 import org.eclipse.wst.sse.core.internal.provisional.document.IEncodedDocument;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredPartitioning;
+import org.eclipse.wst.sse.core.internal.text.BasicStructuredDocument;
+import org.eclipse.wst.sse.core.internal.text.MappedFileText;
 
 
 
@@ -46,6 +53,16 @@ import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredPartitionin
  */
 public abstract class AbstractDocumentLoader implements IDocumentLoader {
 
+	private static final long DEFAULT_MAPPED_FILE_THRESHOLD = 32 * 1024 * 1024;
+	/**
+	 * Files of at least this many bytes, given with
+	 * -Dorg.eclipse.wst.sse.core.mappedFileThreshold=&lt;bytes&gt;, have their
+	 * text read through a memory mapped copy rather than onto the heap, when
+	 * their encoding and document allow; the default is 32MB. A negative
+	 * value turns this off.
+	 */
+	private static final long MAPPED_FILE_THRESHOLD = getMappedFileThreshold();
+
 	private CodedReaderCreator fCodedReaderCreator;
 	protected IDocumentCharsetDetector fDocumentEncodingDetector;
 	// private boolean fPropertiesObtained;
@@ -137,9 +154,11 @@ public abstract class AbstractDocumentLoader implements IDocumentLoader {
 			creator.set(iFile);
 			fEncodingMemento = creator.getEncodingMemento();
 			structuredDocument.setEncodingMemento(fEncodingMemento);
-			fFullPreparedReader = getCodedReaderCreator().getCodedReader();
+			if (!setDocumentContentsFromMappedFile(structuredDocument, iFile, creator)) {
+				fFullPreparedReader = getCodedReaderCreator().getCodedReader();
 
-			setDocumentContentsFromReader(structuredDocument, fFullPreparedReader);
+				setDocumentContentsFromReader(structuredDocument, fFullPreparedReader);
+			}
 		}
 		finally {
 			if (fFullPreparedReader != null) {
@@ -149,6 +168,53 @@ public abstract class AbstractDocumentLoader implements IDocumentLoader {
 		return structuredDocument;
 	}
 
+	private static long getMappedFileThreshold() {
+		String threshold = System.getProperty("org.eclipse.wst.sse.core.mappedFileThreshold"); //$NON-NLS-1$
+		if (threshold != null) {
+			try {
+				return Long.parseLong(threshold.trim());
+			}
+			catch (NumberFormatException e) {
+				// use the default
+			}
+		}
+		return DEFAULT_MAPPED_FILE_THRESHOLD;
+	}
+
+	/**
+	 * Sets the contents of a very large file as a MappedFileText, so that
+	 * they are not read onto the heap.
+	 * 
+	 * @return whether the contents were set; if not, they should be read
+	 *         as usual, which also reports any decoding problem in detail
+	 */
+	private boolean setDocumentContentsFromMappedFile(IEncodedDocument structuredDocument, IFile iFile, CodedReaderCreator creator) throws CoreException, IOException {
+		if (MAPPED_FILE_THRESHOLD < 0 || !(structuredDocument instanceof BasicStructuredDocument))
+			return false;
+		IPath location = iFile.getLocation();
+		if (location == null)
+			return false;
+		File file = location.toFile();
+		if (file.length() < MAPPED_FILE_THRESHOLD)
+			return false;
+		CharsetDecoder decoder = creator.getCharsetDecoder();
+		if (!MappedFileText.isSupported(decoder.charset().name()))
+			return false;
+		MappedFileText text = null;
+		try {
+			text = new MappedFileText(file, creator.getByteOrderMarkLength(), decoder, SSECorePlugin.getDefault().getStateLocation().append("mapped").toFile()); //$NON-NLS-1$
+		}
+		catch (CharacterCodingException e) {
+			return false;
+		}
+		catch (IOException e) {
+			// could not be copied or mapped
+			return false;
+		}
+		((BasicStructuredDocument) structuredDocument).setInitialText(text);
+		return true;
+	}
+
 	public IEncodedDocument createNewStructuredDocument(String filename, InputStream inputStream) throws UnsupportedEncodingException, IOException {
 		return createNewStructuredDocument(filename, inputStream, EncodingRule.CONTENT_BASED);
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2005 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,10 +12,16 @@
  *******************************************************************************/
 package org.eclipse.wst.sse.core.internal.document;
 
+import java.util.StringTokenizer;
+
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.content.IContentType;
+import org.eclipse.jface.text.ITextStore;
 import org.eclipse.wst.sse.core.internal.ltk.parser.RegionParser;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
 import org.eclipse.wst.sse.core.internal.text.BasicStructuredDocument;
 import org.eclipse.wst.sse.core.internal.text.JobSafeStructuredDocument;
+import org.eclipse.wst.sse.core.internal.text.PieceTableTextStore;
 
 
 /**
@@ -28,14 +34,30 @@ public class StructuredDocumentFactory {
 	private static final int DEFAULT = WRITE_SYNCHRONIZED;
 	private static final int UNSYNCHRONIZED = 1;
 
-	private static IStructuredDocument getNewStructuredDocumentInstance(int type, RegionParser parser) {
+	/**
+	 * If the workbench is started with
+	 * -Dorg.eclipse.wst.sse.core.pieceTableContentTypes=&lt;ids&gt;, a comma
+	 * separated list of content type ids (or "all"), documents of those
+	 * content types, and their sub-types, keep their text in a
+	 * PieceTableTextStore. That store avoids copying text on each edit and
+	 * is intended for very large documents.
+	 */
+	private static final String PIECE_TABLE_CONTENT_TYPES = System.getProperty("org.eclipse.wst.sse.core.pieceTableContentTypes"); //$NON-NLS-1$
+
+	private static IStructuredDocument getNewStructuredDocumentInstance(int type, RegionParser parser, ITextStore textStore) {
 		IStructuredDocument result = null;
 		switch (type) {
 			case UNSYNCHRONIZED :
-				result = new BasicStructuredDocument(parser);
+				if (textStore != null)
+					result = new BasicStructuredDocument(parser, textStore);
+				else
+					result = new BasicStructuredDocument(parser);
 				break;
 			case WRITE_SYNCHRONIZED :
-				result = new JobSafeStructuredDocument(parser);
+				if (textStore != null)
+					result = new JobSafeStructuredDocument(parser, textStore);
+				else
+					result = new JobSafeStructuredDocument(parser);
 				break;
 
 			default :
@@ -53,7 +75,39 @@ public class StructuredDocumentFactory {
 	 * @return
 	 */
 	public static IStructuredDocument getNewStructuredDocumentInstance(RegionParser parser) {
-		return getNewStructuredDocumentInstance(DEFAULT, parser);
+		return getNewStructuredDocumentInstance(DEFAULT, parser, null);
+	}
+
+	/**
+	 * Provides the (system default) structured document initialized with the
+	 * parser, using the text store configured for the given content type.
+	 * 
+	 * @param parser
+	 * @param contentTypeId
+	 * @return
+	 */
+	public static IStructuredDocument getNewStructuredDocumentInstance(RegionParser parser, String contentTypeId) {
+		ITextStore textStore = null;
+		if (usePieceTable(contentTypeId)) {
+			textStore = new PieceTableTextStore();
+		}
+		return getNewStructuredDocumentInstance(DEFAULT, parser, textStore);
+	}
+
+	private static boolean usePieceTable(String contentTypeId) {
+		if (PIECE_TABLE_CONTENT_TYPES == null || contentTypeId == null)
+			return false;
+		IContentType contentType = Platform.getContentTypeManager().getContentType(contentTypeId);
+		StringTokenizer tokenizer = new StringTokenizer(PIECE_TABLE_CONTENT_TYPES, ","); //$NON-NLS-1$
+		while (tokenizer.hasMoreTokens()) {
+			String id = tokenizer.nextToken().trim();
+			if ("all".equals(id) || contentTypeId.equals(id)) //$NON-NLS-1$
+				return true;
+			IContentType configuredType = Platform.getContentTypeManager().getContentType(id);
+			if (contentType != null && configuredType != null && contentType.isKindOf(configuredType))
+				return true;
+		}
+		return false;
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2010 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -319,8 +319,9 @@ public abstract class AbstractStructuredFormatProcessor implements IStructuredFo
 			DocumentRewriteSession rewriteSession = null;
 
 			try {
-				// whenever formatting model, fire abouttochange/modelchanged
-				structuredModel.aboutToChangeModel();
+				// whenever formatting model, fire abouttochange/modelchanged,
+				// and send adapters one notification per changed node
+				structuredModel.beginNotificationBatch();
 				DocumentRewriteSessionType rewriteType = (length > MAX_SMALL_FORMAT_SIZE) ? DocumentRewriteSessionType.UNRESTRICTED : DocumentRewriteSessionType.UNRESTRICTED_SMALL;
 				rewriteSession = (docExt4 == null || docExt4.getActiveRewriteSession() != null) ? null : docExt4.startRewriteSession(rewriteType);
 
@@ -377,7 +378,7 @@ public abstract class AbstractStructuredFormatProcessor implements IStructuredFo
 				}
 				finally {
 					// always make sure to fire changedmodel when done
-					structuredModel.changedModel();
+					structuredModel.endNotificationBatch();
 				}
 			}
 
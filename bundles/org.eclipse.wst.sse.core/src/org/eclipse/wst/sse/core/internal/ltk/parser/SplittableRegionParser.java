@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.core.internal.ltk.parser;
+
+/**
+ * A RegionParser whose input can be cut into independent pieces, each of
+ * which may be parsed by its own {@link RegionParser#newInstance()} with the
+ * resulting document regions simply concatenated.
+ */
+public interface SplittableRegionParser extends RegionParser {
+	/**
+	 * Finds offsets at which the text may be split. At each returned offset,
+	 * a new instance of this parser, started fresh, must produce exactly the
+	 * document regions this parser would have produced from that offset
+	 * onward, and the document region before it must end exactly there.
+	 *
+	 * @param text
+	 *            the full text
+	 * @param start
+	 *            where parsing would begin
+	 * @param end
+	 *            where parsing would end
+	 * @param count
+	 *            the desired number of pieces
+	 * @return increasing offsets strictly between start and end, no more
+	 *         than count - 1 of them, and possibly none
+	 */
+	int[] getSplitOffsets(CharSequence text, int start, int end, int count);
+
+	/**
+	 * Finds the first offset, at or after from, at which the text may be
+	 * split in the same sense as for
+	 * {@link #getSplitOffsets(CharSequence, int, int, int)}.
+	 * 
+	 * @param text
+	 *            the full text
+	 * @param start
+	 *            where parsing would begin
+	 * @param from
+	 *            the earliest acceptable offset
+	 * @param end
+	 *            where parsing would end
+	 * @return the offset, strictly between start and end, or -1 if none was
+	 *         found
+	 */
+	int getSplitOffset(CharSequence text, int start, int from, int end);
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2011 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -312,6 +312,16 @@ public abstract class AbstractStructuredModel implements IStructuredModel {
 	protected final void beginLock() {
 	}
 
+	/**
+	 * By default a notification batch is just a change sequence; models
+	 * which defer adapter notification coalesce them as well.
+	 * 
+	 * @see IStructuredModel#beginNotificationBatch()
+	 */
+	public void beginNotificationBatch() {
+		aboutToChangeModel();
+	}
+
 	public void beginRecording(Object requester) {
 
 		beginRecording(requester, null, null);
@@ -458,6 +468,13 @@ public abstract class AbstractStructuredModel implements IStructuredModel {
 	protected final void endLock() {
 	}
 
+	/**
+	 * @see IStructuredModel#endNotificationBatch()
+	 */
+	public void endNotificationBatch() {
+		changedModel();
+	}
+
 	public void endRecording(Object requester) {
 
 		if (getUndoManager() != null)
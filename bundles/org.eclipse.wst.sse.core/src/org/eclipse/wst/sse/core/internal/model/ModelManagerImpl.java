@@ -26,6 +26,7 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -73,17 +74,20 @@ import org.eclipse.wst.sse.core.internal.ltk.modelhandler.IModelHandler;
 import org.eclipse.wst.sse.core.internal.modelhandler.ModelHandlerRegistry;
 import org.eclipse.wst.sse.core.internal.provisional.IModelLoader;
 import org.eclipse.wst.sse.core.internal.provisional.IModelManager;
+import org.eclipse.wst.sse.core.internal.provisional.IModelRequestor;
 import org.eclipse.wst.sse.core.internal.provisional.INodeAdapterFactory;
 import org.eclipse.wst.sse.core.internal.provisional.IStructuredModel;
 import org.eclipse.wst.sse.core.internal.provisional.document.IEncodedDocument;
 import org.eclipse.wst.sse.core.internal.provisional.exceptions.ResourceAlreadyExists;
 import org.eclipse.wst.sse.core.internal.provisional.exceptions.ResourceInUse;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
+import org.eclipse.wst.sse.core.internal.util.AbstractMemoryListener;
 import org.eclipse.wst.sse.core.internal.util.Assert;
 import org.eclipse.wst.sse.core.internal.util.ProjectResolver;
 import org.eclipse.wst.sse.core.internal.util.URIResolver;
 import org.eclipse.wst.sse.core.internal.util.URIResolverExtension;
 import org.eclipse.wst.sse.core.internal.util.Utilities;
+import org.osgi.service.event.Event;
 
 /**
  * <p>Not intended to be subclassed, referenced or instantiated by clients.
@@ -109,8 +113,9 @@ public class ModelManagerImpl implements IModelManager {
 	}
 
 	class SharedObject {
-		int referenceCountForEdit;
-		int referenceCountForRead;
+		// changed holding this object's lock, read without
+		volatile int referenceCountForEdit;
+		volatile int referenceCountForRead;
 		volatile IStructuredModel theSharedModel;
 		final ILock LOAD_LOCK = Job.getJobManager().newLock();
 		volatile boolean initializing = true;
@@ -186,6 +191,110 @@ public class ModelManagerImpl implements IModelManager {
 		}
 	}
 
+	/**
+	 * The managed shared objects by id. Lookups take no lock, so threads
+	 * getting and releasing different models do not wait on each other;
+	 * changes must be made holding SYNC. The ids are spread over stripes,
+	 * each a map which is replaced by a changed copy, so that a change only
+	 * copies a small part of the table.
+	 */
+	static class ManagedObjects {
+		private static final int STRIPES = 16;
+		private volatile Map[] fStripes = new Map[STRIPES];
+
+		ManagedObjects() {
+			for (int i = 0; i < STRIPES; i++) {
+				fStripes[i] = new HashMap();
+			}
+		}
+
+		private int stripe(Object id) {
+			return id == null ? 0 : (id.hashCode() & Integer.MAX_VALUE) % STRIPES;
+		}
+
+		boolean containsKey(Object id) {
+			return fStripes[stripe(id)].containsKey(id);
+		}
+
+		Object get(Object id) {
+			return fStripes[stripe(id)].get(id);
+		}
+
+		/**
+		 * @return a copy of the ids
+		 */
+		Set keySet() {
+			Map[] stripes = fStripes;
+			Set ids = new HashSet();
+			for (int i = 0; i < stripes.length; i++) {
+				ids.addAll(stripes[i].keySet());
+			}
+			return ids;
+		}
+
+		void put(Object id, Object sharedObject) {
+			int stripe = stripe(id);
+			Map[] stripes = (Map[]) fStripes.clone();
+			stripes[stripe] = new HashMap(stripes[stripe]);
+			stripes[stripe].put(id, sharedObject);
+			fStripes = stripes;
+		}
+
+		void remove(Object id) {
+			int stripe = stripe(id);
+			if (!fStripes[stripe].containsKey(id))
+				return;
+			Map[] stripes = (Map[]) fStripes.clone();
+			stripes[stripe] = new HashMap(stripes[stripe]);
+			stripes[stripe].remove(id);
+			fStripes = stripes;
+		}
+	}
+
+	/**
+	 * A model kept after its last release, for reuse if its file is asked
+	 * for again before it changes.
+	 */
+	static class ReleasedModel {
+		final SharedObject sharedObject;
+		final long modificationStamp;
+
+		ReleasedModel(SharedObject sharedObject, long modificationStamp) {
+			this.sharedObject = sharedObject;
+			this.modificationStamp = modificationStamp;
+		}
+	}
+
+	/**
+	 * <p>Trims the released model cache when memory runs low: by half on
+	 * {@link AbstractMemoryListener#SEV_NORMAL}, completely on the more
+	 * severe events.</p>
+	 */
+	private class MemoryListener extends AbstractMemoryListener {
+		MemoryListener() {
+			super(SEV_ALL);
+		}
+
+		protected void handleMemoryEvent(Event event) {
+			SYNC.acquire();
+			try {
+				trimReleasedModels(SEV_NORMAL.equals(event.getTopic()) ? fReleasedModels.size() / 2 : 0);
+			}
+			finally {
+				SYNC.release();
+			}
+		}
+	}
+
+	/**
+	 * If the workbench is started with
+	 * -Dorg.eclipse.wst.sse.core.releasedModelCacheSize=&lt;count&gt;, up to
+	 * that many models are kept after their last release from read, so that
+	 * a validator or indexer coming back to an unchanged file gets the
+	 * already built model. Off by default.
+	 */
+	private static final int RELEASED_MODEL_CACHE_SIZE = Integer.getInteger("org.eclipse.wst.sse.core.releasedModelCacheSize", 0).intValue(); //$NON-NLS-1$
+
 	private Exception debugException = null;
 
 	/**
@@ -210,35 +319,50 @@ public class ModelManagerImpl implements IModelManager {
 	/**
 	 * Our cache of managed objects
 	 */
-	private Map fManagedObjects;
+	private ManagedObjects fManagedObjects;
 
 	private ModelHandlerRegistry fModelHandlerRegistry;
 	private final ReadEditType READ = new ReadEditType("read"); //$NON-NLS-1$
 	private final ReadEditType EDIT = new ReadEditType("edit"); //$NON-NLS-1$
 	
 	private final ILock SYNC = Job.getJobManager().newLock();
+
+	/**
+	 * Released models by id, least recently used first; guarded by SYNC
+	 */
+	private final Map fReleasedModels = new LinkedHashMap(16, 0.75f, true);
+	private int fReleasedModelCacheSize = 0;
+	private long fReleasedModelHits = 0;
+	private long fReleasedModelMisses = 0;
+	private MemoryListener fMemoryListener;
+
 	/**
 	 * Intentionally default access only.
 	 * 
 	 */
 	ModelManagerImpl() {
 		super();
-		fManagedObjects = new HashMap();
+		fManagedObjects = new ManagedObjects();
+		setReleasedModelCacheSize(RELEASED_MODEL_CACHE_SIZE);
 		// To prevent deadlocks:  always acquire multiple locks in this order: SYNC, sharedObject. 
 		// DO NOT acquire a SYNC within a sharedObject lock, unless you already own the SYNC lock
 		// Tip: Try to hold the smallest number of locks you can
+		// Looking up a shared object takes no lock. A shared object is only removed from 
+		// fManagedObjects holding its own lock, so holding that lock is enough to add or drop 
+		// a reference to a model which is still managed; SYNC is only needed to add or remove one.
 	}
 
 	private IStructuredModel _commonCreateModel(IFile file, String id, IModelHandler handler, URIResolver resolver, ReadEditType rwType, EncodingRule encodingRule) throws IOException,CoreException {
 		SharedObject sharedObject = null;
 		
-		SYNC.acquire();
 		sharedObject = (SharedObject) fManagedObjects.get(id);
-		SYNC.release();
 		
 		while(true) {
 			if (sharedObject!=null) {
 				sharedObject.waitForLoadAttempt();
+				if (_incrCountIfManaged(id, sharedObject, rwType)) {
+					break;
+				}
 			}
 			SYNC.acquire();
 			// we know this object's model has passed the load, however, we don't know 
@@ -249,6 +373,13 @@ public class ModelManagerImpl implements IModelManager {
 			// exactly the same. 
 			SharedObject testObject = (SharedObject) fManagedObjects.get(id);
 			if (testObject==null) {
+				sharedObject = reuseReleasedModel(id, file, null);
+				if (sharedObject != null) {
+					_initCount(sharedObject, rwType);
+					fManagedObjects.put(id, sharedObject);
+					SYNC.release();
+					break;
+				}
 				// null means it's been disposed, we need to do the work to reload it.
 				sharedObject = new SharedObject(id);
 				fManagedObjects.put(id, sharedObject);
@@ -334,9 +465,7 @@ public class ModelManagerImpl implements IModelManager {
 		}
 		finally{
 		if (doRemove) {
-			SYNC.acquire();	
-			fManagedObjects.remove(id);	
-			SYNC.release();
+			removeFailedLoad(id, sharedObject);
 		}
 		sharedObject.setLoaded();
 		}
@@ -349,17 +478,19 @@ public class ModelManagerImpl implements IModelManager {
 		}
 		SharedObject sharedObject = null;
 	
-		SYNC.acquire();
 		sharedObject = (SharedObject) fManagedObjects.get(id);
-		SYNC.release();
 		
 		while(true) {
 			if (sharedObject!=null) {
 				sharedObject.waitForLoadAttempt();
+				if (_incrCountIfManaged(id, sharedObject, rwType)) {
+					break;
+				}
 			}
 			SYNC.acquire();
 			SharedObject testObject = (SharedObject) fManagedObjects.get(id);
 			if (testObject==null) {
+				discardReleasedModel(id);
 				// it was removed ,so lets create it
 				sharedObject = new SharedObject(id);
 				fManagedObjects.put(id, sharedObject);
@@ -434,10 +565,8 @@ public class ModelManagerImpl implements IModelManager {
 		}
 		finally {
 		if (doRemove) {
-			SYNC.acquire();
 			// remove it if we didn't get one back
-			fManagedObjects.remove(id);
-			SYNC.release();
+			removeFailedLoad(id, sharedObject);
 		}
 		sharedObject.setLoaded();
 		}
@@ -490,17 +619,25 @@ public class ModelManagerImpl implements IModelManager {
 
 		SharedObject sharedObject = null;
 		if (file != null && file.exists()) {
-			SYNC.acquire();
 			sharedObject = (SharedObject) fManagedObjects.get(id);
-			SYNC.release();
 			
 			while(true) {
 				if (sharedObject!=null) {
 					sharedObject.waitForLoadAttempt();
+					if (_incrCountIfManaged(id, sharedObject, rwType)) {
+						break;
+					}
 				}
 				SYNC.acquire();
 				SharedObject testObject = (SharedObject) fManagedObjects.get(id);
 				if (testObject==null) {
+					sharedObject = reuseReleasedModel(id, file, null);
+					if (sharedObject != null) {
+						_initCount(sharedObject, rwType);
+						fManagedObjects.put(id, sharedObject);
+						SYNC.release();
+						break;
+					}
 					// it was removed ,so lets create it
 					sharedObject = new SharedObject(id);
 					fManagedObjects.put(id, sharedObject);
@@ -556,9 +693,7 @@ public class ModelManagerImpl implements IModelManager {
 		}
 		finally {
 			if (doRemove) {
-				SYNC.acquire();
-				fManagedObjects.remove(id);
-				SYNC.release();
+				removeFailedLoad(id, sharedObject);
 			}
 			sharedObject.setLoaded();
 		}
@@ -587,6 +722,7 @@ public class ModelManagerImpl implements IModelManager {
 				throw new ResourceInUse();
 			}
 			
+			discardReleasedModel(id);
 			sharedObject = new SharedObject(id);
 			fManagedObjects.put(id, sharedObject);
 			
@@ -621,17 +757,25 @@ public class ModelManagerImpl implements IModelManager {
 		}
 		
 		SharedObject sharedObject = null;
-		SYNC.acquire();
 		sharedObject = (SharedObject) fManagedObjects.get(id);
-		SYNC.release();
 		
 		while(true) {
 			if (sharedObject!=null) {
 				sharedObject.waitForLoadAttempt();
+				if (_incrCountIfManaged(id, sharedObject, accessType)) {
+					break;
+				}
 			}
 			SYNC.acquire();
 			SharedObject testObject = (SharedObject) fManagedObjects.get(id);
 			if (testObject==null) {
+				sharedObject = reuseReleasedModel(id, null, document);
+				if (sharedObject != null) {
+					_initCount(sharedObject, accessType);
+					fManagedObjects.put(id, sharedObject);
+					SYNC.release();
+					break;
+				}
 				sharedObject = new SharedObject(id);
 				fManagedObjects.put(id, sharedObject);
 				SYNC.release();
@@ -674,6 +818,42 @@ public class ModelManagerImpl implements IModelManager {
 		}
 	}
 
+	/**
+	 * Adds a reference to the shared object's model, if there is one and the
+	 * object is still the one managed for the id. Only the shared object is
+	 * locked, which keeps it from being discarded meanwhile.
+	 * 
+	 * @return whether the object was still managed for the id
+	 */
+	private boolean _incrCountIfManaged(Object id, SharedObject sharedObject, ReadEditType type) {
+		synchronized(sharedObject) {
+			if (fManagedObjects.get(id) != sharedObject) {
+				return false;
+			}
+			if (sharedObject.theSharedModel!=null) {
+				_incrCount(sharedObject, type);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Drops a reference to the shared object's model unless it is the last
+	 * one, which must be released holding SYNC. Only the shared object is
+	 * locked.
+	 * 
+	 * @return whether the reference was dropped
+	 */
+	private boolean _decrCountIfShared(SharedObject sharedObject, ReadEditType type) {
+		synchronized(sharedObject) {
+			if (sharedObject.referenceCountForRead + sharedObject.referenceCountForEdit <= 1) {
+				return false;
+			}
+			_decrCount(sharedObject, type);
+			return true;
+		}
+	}
+
 	private void _initCount(SharedObject sharedObject, ReadEditType type) {
 		synchronized(sharedObject) {
 			if (type == READ) {
@@ -850,6 +1030,7 @@ public class ModelManagerImpl implements IModelManager {
 			if (sharedObject != null) {
 				throw new ResourceInUse();
 			}
+			discardReleasedModel(newId);
 			sharedObject = new SharedObject(newId);
 			fManagedObjects.put(newId,sharedObject);
 		} finally {
@@ -874,9 +1055,7 @@ public class ModelManagerImpl implements IModelManager {
 				trace("copied model", newId, sharedObject.referenceCountForEdit); //$NON-NLS-1$
 			}
 		} else {
-			SYNC.acquire();
-			fManagedObjects.remove(newId);
-			SYNC.release();
+			removeFailedLoad(newId, sharedObject);
 		}
 		sharedObject.setLoaded();
 		return newModel;
@@ -1124,21 +1303,12 @@ public class ModelManagerImpl implements IModelManager {
 	private IStructuredModel getExistingModel(Object id) {
 		IStructuredModel result = null;
 		
-		SYNC.acquire();
-		/**
-		 * While a good check in theory, it's possible for an event fired to
-		 * cause a listener to access a method that calls this one.
-		 */
-		//Assert.isTrue(SYNC.getDepth()==1, "depth not equal to 1");
 		// let's see if we already have it in our cache
 		SharedObject sharedObject = (SharedObject) fManagedObjects.get(id);
 		// if not, then we'll simply return null
 		if (sharedObject != null) {
-			SYNC.release();
 			sharedObject.waitForLoadAttempt();
 			result = sharedObject.theSharedModel;
-		} else {
-			SYNC.release();
 		}
 		
 		return result;
@@ -1151,23 +1321,17 @@ public class ModelManagerImpl implements IModelManager {
 	public IStructuredModel getExistingModelForEdit(IDocument document) {
 		IStructuredModel result = null;
 		
-		SYNC.acquire();		
 		// create a snapshot
-		Set ids = new HashSet(fManagedObjects.keySet());
-		SYNC.release();
+		Set ids = fManagedObjects.keySet();
 		for (Iterator iterator = ids.iterator(); iterator.hasNext();) {
 			Object potentialId = iterator.next();
-			SYNC.acquire();	
 			if (fManagedObjects.containsKey(potentialId)) {
 				// check to see if still valid
-				SYNC.release();
 				IStructuredModel tempResult = getExistingModel(potentialId);
 				if (tempResult!=null && document == tempResult.getStructuredDocument()) {
 					result = getExistingModelForEdit(potentialId);
 					break;
 				}
-			} else {
-				SYNC.release();
 			}
 		}
 		
@@ -1202,14 +1366,9 @@ public class ModelManagerImpl implements IModelManager {
 		IStructuredModel result = null;
 		// let's see if we already have it in our cache
 		SharedObject sharedObject = null;
-		SYNC.acquire();
-		try {
-			 sharedObject = (SharedObject) fManagedObjects.get(id);
-		} finally {
-			SYNC.release();
-		}
+		sharedObject = (SharedObject) fManagedObjects.get(id);
 		// if not, then we'll simply return null
-		if (sharedObject != null) {
+		while (sharedObject != null) {
 			// if shared object is in our cache, then simply increment its ref
 			// count, and return the object.
 			
@@ -1219,19 +1378,15 @@ public class ModelManagerImpl implements IModelManager {
 				}
 			}
 
-			SYNC.acquire();
-			try {
-				synchronized(sharedObject) {
-					if (sharedObject.theSharedModel!=null) {
-						_incrCount(sharedObject, EDIT);
-					}
-				}
-			} finally {
-				SYNC.release();
+			if (!_incrCountIfManaged(id, sharedObject, EDIT)) {
+				// discarded meanwhile, see if it's been loaded again
+				sharedObject = (SharedObject) fManagedObjects.get(id);
+				continue;
 			}
 			result = sharedObject.theSharedModel;
 			trace("got existing model for Edit: ", id); //$NON-NLS-1$
 			trace("   incremented referenceCountForEdit ", id, sharedObject.referenceCountForEdit); //$NON-NLS-1$
+			break;
 		}
 		
 		return result;
@@ -1244,23 +1399,17 @@ public class ModelManagerImpl implements IModelManager {
 	public IStructuredModel getExistingModelForRead(IDocument document) {
 		IStructuredModel result = null;
 		
-		SYNC.acquire();		
 		// create a snapshot
-		Set ids = new HashSet(fManagedObjects.keySet());
-		SYNC.release();
+		Set ids = fManagedObjects.keySet();
 		for (Iterator iterator = ids.iterator(); iterator.hasNext();) {
 			Object potentialId = iterator.next();
-			SYNC.acquire();	
 			if (fManagedObjects.containsKey(potentialId)) {
 				// check to see if still valid
-				SYNC.release();
 				IStructuredModel tempResult = getExistingModel(potentialId);
 				if (tempResult!=null && document == tempResult.getStructuredDocument()) {
 					result = getExistingModelForRead(potentialId);
 					break;
 				}
-			} else {
-				SYNC.release();
 			}
 		}
 		
@@ -1288,14 +1437,9 @@ public class ModelManagerImpl implements IModelManager {
 		IStructuredModel result = null;
 		SharedObject sharedObject = null;
 		// let's see if we already have it in our cache
-		SYNC.acquire();
-		try {
-			sharedObject = (SharedObject) fManagedObjects.get(id);
-		} finally {
-			SYNC.release();
-		}
+		sharedObject = (SharedObject) fManagedObjects.get(id);
 		// if not, then we'll simply return null
-		if (sharedObject != null) {
+		while (sharedObject != null) {
 			// if shared object is in our cache, then simply increment its ref
 			// count, and return the object.
 
@@ -1305,17 +1449,13 @@ public class ModelManagerImpl implements IModelManager {
 				}
 			}
 			
-			SYNC.acquire();
-			try {
-				synchronized(sharedObject) {
-					if (sharedObject.theSharedModel!=null) {
-						_incrCount(sharedObject, READ);
-					}
-				}
-			} finally {
-				SYNC.release();
+			if (!_incrCountIfManaged(id, sharedObject, READ)) {
+				// discarded meanwhile, see if it's been loaded again
+				sharedObject = (SharedObject) fManagedObjects.get(id);
+				continue;
 			}
 			result = sharedObject.theSharedModel;
+			break;
 		}
 		return result;
 	}
@@ -1328,14 +1468,9 @@ public class ModelManagerImpl implements IModelManager {
 	 *             data could be changed in another thread.
 	 */
 	public  Enumeration getExistingModelIds() {
-		try {
-			SYNC.acquire();
-			// create a copy
-			Vector keys = new Vector( fManagedObjects.keySet() );
-			return keys.elements();
-		} finally {
-			SYNC.release();
-		}
+		// create a copy
+		Vector keys = new Vector( fManagedObjects.keySet() );
+		return keys.elements();
 	}
 
 	// TODO: replace (or supplement) this is a "model info" association to the
@@ -1419,6 +1554,17 @@ public class ModelManagerImpl implements IModelManager {
 		return result;
 	}
 
+	/**
+	 * @see IModelManager#getModelsForRead(IFile[], IModelRequestor)
+	 */
+	public Job getModelsForRead(IFile[] files, IModelRequestor requestor) {
+		Assert.isNotNull(files, "files parameter can not be null"); //$NON-NLS-1$
+		Assert.isNotNull(requestor, "requestor parameter can not be null"); //$NON-NLS-1$
+		Job job = new ModelsForReadJob(this, files, requestor);
+		job.schedule();
+		return job;
+	}
+
 	/**
 	 * One of the primary forms to get a managed model
 	 */
@@ -1522,16 +1668,10 @@ public class ModelManagerImpl implements IModelManager {
 		Assert.isNotNull(id, "id parameter can not be null"); //$NON-NLS-1$
 		int count = 0;
 	
-		SYNC.acquire();
 		SharedObject sharedObject = (SharedObject) fManagedObjects.get(id);
 		if (sharedObject != null) {
-			SYNC.release();
 			sharedObject.waitForLoadAttempt();
-			synchronized (sharedObject) {
-				count = sharedObject.referenceCountForRead + sharedObject.referenceCountForEdit;
-			}
-		} else {
-			SYNC.release();
+			count = sharedObject.referenceCountForRead + sharedObject.referenceCountForEdit;
 		}
 		return count;
 	}
@@ -1546,16 +1686,10 @@ public class ModelManagerImpl implements IModelManager {
 	public int getReferenceCountForEdit(Object id) {
 		Assert.isNotNull(id, "id parameter can not be null"); //$NON-NLS-1$
 		int count = 0;
-		SYNC.acquire();
 		SharedObject sharedObject = (SharedObject) fManagedObjects.get(id);
 		if (sharedObject != null) {
-			SYNC.release();
 			sharedObject.waitForLoadAttempt();
-			synchronized(sharedObject) {
-				count = sharedObject.referenceCountForEdit;
-			}
-		} else {
-			SYNC.release();
+			count = sharedObject.referenceCountForEdit;
 		}
 		return count;
 	}
@@ -1570,16 +1704,10 @@ public class ModelManagerImpl implements IModelManager {
 	public int getReferenceCountForRead(Object id) {
 		Assert.isNotNull(id, "id parameter can not be null"); //$NON-NLS-1$
 		int count = 0;
-		SYNC.acquire();
 		SharedObject sharedObject = (SharedObject) fManagedObjects.get(id);
 		if (sharedObject != null) {
-			SYNC.release();
 			sharedObject.waitForLoadAttempt();
-			synchronized(sharedObject) {
-				count = sharedObject.referenceCountForRead;
-			}
-		} else {
-			SYNC.release();
+			count = sharedObject.referenceCountForRead;
 		}
 		return count;
 	}
@@ -1603,16 +1731,10 @@ public class ModelManagerImpl implements IModelManager {
 		Assert.isNotNull(id, "id parameter can not be null"); //$NON-NLS-1$
 		int count = 0;
 		boolean result = false;
-		SYNC.acquire();
 		SharedObject sharedObject = (SharedObject) fManagedObjects.get(id);
 		if (sharedObject != null) {
-			SYNC.release();
 			sharedObject.waitForLoadAttempt();
-			synchronized(sharedObject) {
-				count = sharedObject.referenceCountForRead + sharedObject.referenceCountForEdit;
-			}
-		} else {
-			SYNC.release();
+			count = sharedObject.referenceCountForRead + sharedObject.referenceCountForEdit;
 		}
 		result = count > 1;
 		return result;
@@ -1629,16 +1751,10 @@ public class ModelManagerImpl implements IModelManager {
 		Assert.isNotNull(id, "id parameter can not be null"); //$NON-NLS-1$
 		int count = 0;
 		boolean result = false;
-		SYNC.acquire();
 		SharedObject sharedObject = (SharedObject) fManagedObjects.get(id);
 		if (sharedObject != null) {
-			SYNC.release();
 			sharedObject.waitForLoadAttempt();
-			synchronized(sharedObject) {
-				count = sharedObject.referenceCountForEdit;
-			}
-		} else {
-			SYNC.release();
+			count = sharedObject.referenceCountForEdit;
 		}
 		result = count > 1;
 		return result;
@@ -1655,16 +1771,10 @@ public class ModelManagerImpl implements IModelManager {
 		Assert.isNotNull(id, "id parameter can not be null"); //$NON-NLS-1$
 		int count = 0;
 		boolean result = false;
-		SYNC.acquire();
 		SharedObject sharedObject = (SharedObject) fManagedObjects.get(id);
 		if (sharedObject != null) {
-			SYNC.release();
 			sharedObject.waitForLoadAttempt();
-			synchronized(sharedObject) {
-				count = sharedObject.referenceCountForRead;
-			}
-		} else {
-			SYNC.release();
+			count = sharedObject.referenceCountForRead;
 		}
 		result = count > 1;
 		return result;
@@ -1694,8 +1804,10 @@ public class ModelManagerImpl implements IModelManager {
 		// if not found in cache, ignore request.
 		// this would normally be a program error
 		if (sharedObject != null) {
-			fManagedObjects.remove(oldId);
-			fManagedObjects.put(newId, sharedObject);
+			synchronized(sharedObject) {
+				fManagedObjects.remove(oldId);
+				fManagedObjects.put(newId, sharedObject);
+			}
 		}
 		SYNC.release();
 	}
@@ -1801,20 +1913,20 @@ public class ModelManagerImpl implements IModelManager {
 			throw new IllegalArgumentException("Ids of UNMANAGED_MODEL or DUPLICATED_MODEL are illegal here");
 		}
 		else {
-			SYNC.acquire();
 			sharedObject = (SharedObject) fManagedObjects.get(id);
-			SYNC.release();
 			
 			Assert.isNotNull(sharedObject, "release was requested on a model that was not being managed"); //$NON-NLS-1$
 			sharedObject.waitForLoadAttempt();
-			SYNC.acquire();
-			synchronized(sharedObject) {
-				_decrCount(sharedObject, EDIT);
-				if ((sharedObject.referenceCountForRead == 0) && (sharedObject.referenceCountForEdit == 0)) {
-					discardModel(id, sharedObject);
+			if (!_decrCountIfShared(sharedObject, EDIT)) {
+				SYNC.acquire();
+				synchronized(sharedObject) {
+					_decrCount(sharedObject, EDIT);
+					if ((sharedObject.referenceCountForRead == 0) && (sharedObject.referenceCountForEdit == 0)) {
+						discardModel(id, sharedObject);
+					}
 				}
+				SYNC.release();
 			}
-			SYNC.release();
 			// if edit goes to zero, but still open for read,
 			// then we should reload here, so we are in synch with
 			// contents on disk.
@@ -1865,6 +1977,25 @@ public class ModelManagerImpl implements IModelManager {
 		((AbstractStructuredModel) structuredModel).signalLifecycleEvent(event);
 	}
 
+	/**
+	 * Stops managing a shared object whose model could not be loaded. Like
+	 * every removal from fManagedObjects, this holds SYNC and the shared
+	 * object's lock.
+	 */
+	private void removeFailedLoad(Object id, SharedObject sharedObject) {
+		SYNC.acquire();
+		try {
+			synchronized(sharedObject) {
+				if (fManagedObjects.get(id) == sharedObject) {
+					fManagedObjects.remove(id);
+				}
+			}
+		}
+		finally {
+			SYNC.release();
+		}
+	}
+
 	private void discardModel(Object id, SharedObject sharedObject) {
 		SYNC.acquire();
 		fManagedObjects.remove(id);
@@ -1878,6 +2009,145 @@ public class ModelManagerImpl implements IModelManager {
 		cleanupDiscardedModel(sharedObject.theSharedModel);
 	}
 
+	/**
+	 * Keeps a model whose last reference has just been released, instead of
+	 * discarding it, if the released model cache is on and the model is an
+	 * unchanged copy of a workspace file. Must be called holding SYNC and
+	 * the shared object's lock.
+	 * 
+	 * @return whether the model was kept
+	 */
+	private boolean retainReleasedModel(Object id, SharedObject sharedObject) {
+		if (fReleasedModelCacheSize <= 0 || sharedObject.theSharedModel.isDirty() || sharedObject.theSharedModel.getStructuredDocument() == null)
+			return false;
+		IPath path = new Path(id.toString());
+		if (path.segmentCount() < 2)
+			return false;
+		IFile file = ResourcesPlugin.getWorkspace().getRoot().getFile(path);
+		if (!file.isAccessible())
+			return false;
+		fManagedObjects.remove(id);
+		fReleasedModels.put(id, new ReleasedModel(sharedObject, file.getModificationStamp()));
+		trimReleasedModels(fReleasedModelCacheSize);
+		return true;
+	}
+
+	/**
+	 * Takes the released model for the id back under management, if it is
+	 * still current. Must be called holding SYNC when no model is managed
+	 * for the id, before a new one is loaded.
+	 * 
+	 * @param file
+	 *            the file the model is wanted for, or null
+	 * @param document
+	 *            the document the model is wanted for, or null
+	 * @return the shared object of the released model, with its reference
+	 *         counts still to be set before it is put back in
+	 *         fManagedObjects, or null if a new model must be loaded
+	 */
+	private SharedObject reuseReleasedModel(String id, IFile file, IDocument document) {
+		ReleasedModel releasedModel = (ReleasedModel) fReleasedModels.remove(id);
+		if (releasedModel != null) {
+			IStructuredModel model = releasedModel.sharedObject.theSharedModel;
+			boolean current = !model.isDirty();
+			if (file != null)
+				current = current && file.getModificationStamp() == releasedModel.modificationStamp;
+			if (document != null)
+				current = current && model.getStructuredDocument() == document;
+			if (current) {
+				fReleasedModelHits++;
+				return releasedModel.sharedObject;
+			}
+			discardReleasedModel(releasedModel);
+		}
+		if (fReleasedModelCacheSize > 0)
+			fReleasedModelMisses++;
+		return null;
+	}
+
+	/**
+	 * Discards any released model for the id, which is about to be replaced.
+	 * Must be called holding SYNC.
+	 */
+	private void discardReleasedModel(Object id) {
+		ReleasedModel releasedModel = (ReleasedModel) fReleasedModels.remove(id);
+		if (releasedModel != null) {
+			discardReleasedModel(releasedModel);
+		}
+	}
+
+	private void discardReleasedModel(ReleasedModel releasedModel) {
+		synchronized (releasedModel.sharedObject) {
+			cleanupDiscardedModel(releasedModel.sharedObject.theSharedModel);
+		}
+	}
+
+	/**
+	 * Discards the least recently released models until no more than
+	 * <code>size</code> are left. Must be called holding SYNC.
+	 */
+	private void trimReleasedModels(int size) {
+		Iterator releasedModels = fReleasedModels.values().iterator();
+		while (fReleasedModels.size() > size && releasedModels.hasNext()) {
+			ReleasedModel releasedModel = (ReleasedModel) releasedModels.next();
+			releasedModels.remove();
+			discardReleasedModel(releasedModel);
+		}
+	}
+
+	/**
+	 * Discards all models kept after their release.
+	 */
+	public void clearReleasedModelCache() {
+		SYNC.acquire();
+		try {
+			trimReleasedModels(0);
+		}
+		finally {
+			SYNC.release();
+		}
+	}
+
+	/**
+	 * @return how many times a model was asked for and an already built,
+	 *         released one was reused
+	 */
+	public long getReleasedModelCacheHits() {
+		return fReleasedModelHits;
+	}
+
+	/**
+	 * @return how many times, while the released model cache was on, a model
+	 *         had to be loaded because none had been kept for it, or the one
+	 *         kept was out of date
+	 */
+	public long getReleasedModelCacheMisses() {
+		return fReleasedModelMisses;
+	}
+
+	/**
+	 * Sets how many released models may be kept for reuse, discarding the
+	 * least recently released beyond that number; 0 turns the cache off.
+	 */
+	public void setReleasedModelCacheSize(int size) {
+		SYNC.acquire();
+		try {
+			fReleasedModelCacheSize = Math.max(size, 0);
+			trimReleasedModels(fReleasedModelCacheSize);
+			if (fReleasedModelCacheSize > 0 && fMemoryListener == null) {
+				fMemoryListener = new MemoryListener();
+				fMemoryListener.connect();
+			}
+			else if (fReleasedModelCacheSize == 0 && fMemoryListener != null) {
+				fMemoryListener.disconnect();
+				fMemoryListener = null;
+			}
+		}
+		finally {
+			SYNC.release();
+		}
+	}
+
 	private void cleanupDiscardedModel(IStructuredModel structuredModel) {
 		IStructuredDocument structuredDocument = structuredModel.getStructuredDocument();
 		/*
@@ -1917,17 +2187,20 @@ public class ModelManagerImpl implements IModelManager {
 			throw new IllegalArgumentException("Ids of UNMANAGED_MODEL or DUPLICATED_MODEL are illegal here");
 		}
 		else {
-			SYNC.acquire();
 			sharedObject = (SharedObject) fManagedObjects.get(id);
-			SYNC.release();
 			Assert.isNotNull(sharedObject, "release was requested on a model that was not being managed"); //$NON-NLS-1$
 			sharedObject.waitForLoadAttempt();
+			if (_decrCountIfShared(sharedObject, READ)) {
+				return;
+			}
 		}
 		SYNC.acquire();
 		synchronized(sharedObject) {
 			_decrCount(sharedObject, READ);
 			if ((sharedObject.referenceCountForRead == 0) && (sharedObject.referenceCountForEdit == 0)) {
-				discardModel(id, sharedObject);
+				if (!retainReleasedModel(id, sharedObject)) {
+					discardModel(id, sharedObject);
+				}
 			}
 		}
 		SYNC.release();
@@ -1971,14 +2244,11 @@ public class ModelManagerImpl implements IModelManager {
 
 		// let's see if we already have it in our cache
 	
-		SYNC.acquire();
 		SharedObject sharedObject = (SharedObject) fManagedObjects.get(id);
 		if (sharedObject == null || sharedObject.theSharedModel == null) {
-			SYNC.release();
 			throw new IllegalStateException(SSECoreMessages.Program_Error__ModelManage_EXC_); //$NON-NLS-1$ = "Program Error: ModelManagerImpl::saveModel. Model should be in the cache"
 		} 
 		else {
-			SYNC.release();
 			sharedObject.waitForLoadAttempt();
 			
 			/**
@@ -2027,14 +2297,11 @@ public class ModelManagerImpl implements IModelManager {
 
 		// let's see if we already have it in our cache
 
-		SYNC.acquire();
 		SharedObject sharedObject = (SharedObject) fManagedObjects.get(id);
 		if (sharedObject == null) {
-			SYNC.release();
 			throw new IllegalStateException(SSECoreMessages.Program_Error__ModelManage_EXC_); //$NON-NLS-1$ = "Program Error: ModelManagerImpl::saveModel. Model should be in the cache"
 		}
 		else {
-			SYNC.release();
 			sharedObject.waitForLoadAttempt();
 			/**
 			 * https://bugs.eclipse.org/bugs/show_bug.cgi?id=221610
@@ -2073,15 +2340,12 @@ public class ModelManagerImpl implements IModelManager {
 	public void saveModel(String id, OutputStream outputStream, EncodingRule encodingRule) throws UnsupportedEncodingException, CoreException, IOException {
 		Assert.isNotNull(id, "id parameter can not be null"); //$NON-NLS-1$
 
-		SYNC.acquire();
 		// let's see if we already have it in our cache
 		SharedObject sharedObject = (SharedObject) fManagedObjects.get(id);
 		if (sharedObject == null) {
-			SYNC.release();
 			throw new IllegalStateException(SSECoreMessages.Program_Error__ModelManage_EXC_); //$NON-NLS-1$ = "Program Error: ModelManagerImpl::saveModel. Model should be in the cache"
 		}
 		else {
-			SYNC.release();
 			sharedObject.waitForLoadAttempt();
 			synchronized(sharedObject) {
 				CodedStreamCreator codedStreamCreator = new CodedStreamCreator();
@@ -2158,12 +2422,10 @@ public class ModelManagerImpl implements IModelManager {
 
 	 boolean isIdInUse(String newId) {
 			boolean inUse = false;
-			SYNC.acquire();
 			SharedObject object =(SharedObject) fManagedObjects.get(newId);
 			if (object!=null) {
 				inUse = object.theSharedModel!=null;
 			}
-			SYNC.release();
 			return inUse;
 		}
 }
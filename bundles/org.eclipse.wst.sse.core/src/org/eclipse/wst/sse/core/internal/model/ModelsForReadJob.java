@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.core.internal.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.wst.sse.core.internal.Logger;
+import org.eclipse.wst.sse.core.internal.SSECoreMessages;
+import org.eclipse.wst.sse.core.internal.provisional.IModelManager;
+import org.eclipse.wst.sse.core.internal.provisional.IModelRequestor;
+import org.eclipse.wst.sse.core.internal.provisional.IStructuredModel;
+
+/**
+ * Loads the models for a list of files on a set of loader jobs shared by all
+ * of the lists being loaded, which take the files of each list in turn, and
+ * waits for them to finish.
+ *
+ * @see IModelManager#getModelsForRead(IFile[], IModelRequestor)
+ */
+class ModelsForReadJob extends Job {
+	/**
+	 * The most loader jobs running at once, by default one per processor
+	 */
+	private static final int LOADERS = Math.max(1, Integer.getInteger("org.eclipse.wst.sse.core.modelLoadThreads", Runtime.getRuntime().availableProcessors()).intValue()); //$NON-NLS-1$
+	private static final long PROGRESS_INTERVAL = 250;
+
+	/* the lists with files not yet taken, guarded by this class */
+	private static final List fgPending = new ArrayList();
+	private static int fgNextPending = 0;
+	private static int fgLoaders = 0;
+
+	private static class Loader extends Job {
+		Loader() {
+			super(SSECoreMessages.ModelsForReadJob_0);
+			setPriority(Job.LONG);
+			setSystem(true);
+		}
+
+		protected IStatus run(IProgressMonitor monitor) {
+			ModelsForReadJob job = null;
+			IFile file = null;
+			while (true) {
+				synchronized (ModelsForReadJob.class) {
+					file = null;
+					while (file == null && !fgPending.isEmpty()) {
+						// take from each list in turn, so that one long list
+						// doesn't hold up the others
+						int index = fgNextPending % fgPending.size();
+						job = (ModelsForReadJob) fgPending.get(index);
+						file = job.nextFile();
+						if (file == null) {
+							fgPending.remove(index);
+							fgNextPending = index;
+						}
+						else {
+							fgNextPending = index + 1;
+						}
+					}
+					if (file == null) {
+						fgLoaders--;
+						return Status.OK_STATUS;
+					}
+				}
+				boolean loaded = false;
+				try {
+					job.load(file);
+					loaded = true;
+				}
+				finally {
+					if (!loaded) {
+						// this loader is going away, let another start
+						synchronized (ModelsForReadJob.class) {
+							fgLoaders--;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private final IModelManager fModelManager;
+	private final IFile[] fFiles;
+	private final IModelRequestor fRequestor;
+
+	/* guarded by this job */
+	private int fNextFile = 0;
+	private int fFilesDone = 0;
+	private boolean fCanceled = false;
+
+	ModelsForReadJob(IModelManager modelManager, IFile[] files, IModelRequestor requestor) {
+		super(SSECoreMessages.ModelsForReadJob_0);
+		fModelManager = modelManager;
+		fFiles = (IFile[]) files.clone();
+		fRequestor = requestor;
+	}
+
+	private void load(IFile file) {
+		try {
+			IStructuredModel model = null;
+			try {
+				model = fModelManager.getModelForRead(file);
+			}
+			catch (IOException e) {
+				loadFailed(file, e);
+				return;
+			}
+			catch (CoreException e) {
+				loadFailed(file, e);
+				return;
+			}
+			catch (RuntimeException e) {
+				loadFailed(file, e);
+				return;
+			}
+			try {
+				fRequestor.acceptModel(file, model);
+			}
+			catch (RuntimeException e) {
+				// the model loaded, so this isn't a load failure; go on with
+				// the other files
+				Logger.logException("Error accepting model for " + file.getFullPath(), e); //$NON-NLS-1$
+			}
+			finally {
+				if (model != null) {
+					model.releaseFromRead();
+				}
+			}
+		}
+		finally {
+			synchronized (this) {
+				fFilesDone++;
+				notifyAll();
+			}
+		}
+	}
+
+	private void loadFailed(IFile file, Exception exception) {
+		try {
+			fRequestor.loadFailed(file, exception);
+		}
+		catch (RuntimeException e) {
+			// go on with the other files
+			Logger.logException("Error reporting failure to load model for " + file.getFullPath(), e); //$NON-NLS-1$
+		}
+	}
+
+	private synchronized IFile nextFile() {
+		if (fCanceled || fNextFile >= fFiles.length)
+			return null;
+		return fFiles[fNextFile++];
+	}
+
+	protected IStatus run(IProgressMonitor monitor) {
+		monitor.beginTask(getName(), fFiles.length);
+		int loaders = 0;
+		if (fFiles.length > 0) {
+			synchronized (ModelsForReadJob.class) {
+				fgPending.add(this);
+				loaders = Math.max(0, Math.min(LOADERS - fgLoaders, fFiles.length));
+				fgLoaders += loaders;
+			}
+		}
+		for (int i = 0; i < loaders; i++) {
+			new Loader().schedule();
+		}
+
+		boolean interrupted = false;
+		boolean finished = false;
+		int reported = 0;
+		while (!finished) {
+			boolean canceled = monitor.isCanceled();
+			int filesDone = 0;
+			synchronized (this) {
+				// loaders finish the files they have taken
+				fCanceled |= canceled;
+				finished = (fCanceled || fNextFile >= fFiles.length) && fFilesDone == fNextFile;
+				if (!finished) {
+					try {
+						wait(PROGRESS_INTERVAL);
+					}
+					catch (InterruptedException e) {
+						interrupted = true;
+						fCanceled = true;
+					}
+				}
+				filesDone = fFilesDone;
+			}
+			monitor.worked(filesDone - reported);
+			reported = filesDone;
+		}
+		monitor.done();
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		return fCanceled ? Status.CANCEL_STATUS : Status.OK_STATUS;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2010 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -30,10 +30,31 @@ import org.eclipse.wst.sse.core.internal.model.FactoryRegistry;
  * Implementers of this INodeNotifier must subclass this class.
  */
 public abstract class AbstractNotifier implements INodeNotifier {
-	private final static int growthConstant = 3;
-	private int adapterCount = 0;
+	private static final INodeAdapter[] NO_ADAPTERS = new INodeAdapter[0];
 
-	private INodeAdapter[] fAdapters;
+	/**
+	 * The adapters, and for each the type it was last found for, replaced
+	 * as a whole whenever an adapter is added or removed, so that
+	 * notification and lookup can read them without locking or copying.
+	 */
+	private static final class Adapters {
+		final INodeAdapter[] adapters;
+		/*
+		 * Filled in as lookups find adapters; each entry is only ever a type
+		 * for which the adapter at that index was the first to answer, which
+		 * stays true as adapters are only ever appended or removed.
+		 */
+		final Object[] types;
+
+		Adapters(INodeAdapter[] adapters) {
+			this.adapters = adapters;
+			this.types = new Object[adapters.length];
+		}
+	}
+
+	private static final Adapters EMPTY = new Adapters(NO_ADAPTERS);
+
+	private volatile Adapters fAdapters = EMPTY;
 
 	/**
 	 * AbstractNotifier constructor comment.
@@ -49,23 +70,14 @@ public abstract class AbstractNotifier implements INodeNotifier {
 
 		if (adapter == null)
 			return;
-		ensureCapacity(adapterCount + 1);
-		fAdapters[adapterCount++] = adapter;
-	}
-
-	private synchronized void ensureCapacity(int needed) {
-		if (fAdapters == null) {
-			// first time
-			fAdapters = new INodeAdapter[needed + growthConstant];
-			return;
-		}
-		int oldLength = fAdapters.length;
-		if (oldLength < needed) {
-			INodeAdapter[] oldAdapters = fAdapters;
-			INodeAdapter[] newAdapters = new INodeAdapter[needed + growthConstant];
-			System.arraycopy(oldAdapters, 0, newAdapters, 0, adapterCount);
-			fAdapters = newAdapters;
-		}
+		Adapters oldAdapters = fAdapters;
+		int count = oldAdapters.adapters.length;
+		INodeAdapter[] newAdapters = new INodeAdapter[count + 1];
+		System.arraycopy(oldAdapters.adapters, 0, newAdapters, 0, count);
+		newAdapters[count] = adapter;
+		Adapters adapters = new Adapters(newAdapters);
+		System.arraycopy(oldAdapters.types, 0, adapters.types, 0, count);
+		fAdapters = adapters;
 	}
 
 	/**
@@ -74,63 +86,53 @@ public abstract class AbstractNotifier implements INodeNotifier {
 	 * @return int
 	 */
 	public int getAdapterCount() {
-		return adapterCount;
+		return fAdapters.adapters.length;
 	}
 
 	/**
 	 * Default behavior for getting an adapter.
 	 */
-	public synchronized INodeAdapter getAdapterFor(Object type) {
+	public INodeAdapter getAdapterFor(Object type) {
 		// first, we'll see if we already have one
 		INodeAdapter result = getExistingAdapter(type);
-		// if we didn't find one in our list already,
-		// let's create it
-		if (result == null) {
-			FactoryRegistry reg = getFactoryRegistry();
-			if (reg != null) {
-				INodeAdapterFactory factory = reg.getFactoryFor(type);
-				if (factory != null) {
-					result = factory.adapt(this);
+		if (result != null)
+			return result;
+		synchronized (this) {
+			// check again, another thread may have just created it
+			result = getExistingAdapter(type);
+			// if we didn't find one in our list already,
+			// let's create it
+			if (result == null) {
+				FactoryRegistry reg = getFactoryRegistry();
+				if (reg != null) {
+					INodeAdapterFactory factory = reg.getFactoryFor(type);
+					if (factory != null) {
+						result = factory.adapt(this);
+					}
+				}
+				// We won't prevent null from being returned, but it would be
+				// unusual.
+				// It might be because Factory is not working correctly, or
+				// not installed, so we'll allow warning message.
+				if ((result == null) && (org.eclipse.wst.sse.core.internal.util.Debug.displayWarnings)) {
+					System.out.println("Warning: no adapter was found or created for " + type); //$NON-NLS-1$
 				}
-			}
-			// We won't prevent null from being returned, but it would be
-			// unusual.
-			// It might be because Factory is not working correctly, or
-			// not installed, so we'll allow warning message.
-			if ((result == null) && (org.eclipse.wst.sse.core.internal.util.Debug.displayWarnings)) {
-				System.out.println("Warning: no adapter was found or created for " + type); //$NON-NLS-1$
 			}
 		}
 		return result;
 	}
 
 	/**
-	 * Returns a shallow clone of list, since clients should not manipulate
-	 * our list directly. Instead, they should use add/removeAdapter.
+	 * Returns an unmodifiable list of the adapters, since clients should not
+	 * manipulate our list directly. Instead, they should use
+	 * add/removeAdapter.
 	 */
-	public synchronized Collection getAdapters() {
-		if (fAdapters != null) {
-			if (adapterCount == 0) {
-				fAdapters = null;
-				return Collections.EMPTY_LIST;
-			}
-			else {
-				// we need to make a new array, to be sure
-				// it doesn't contain nulls at end, which may be
-				// present there for "growth".
-				INodeAdapter[] tempAdapters = new INodeAdapter[adapterCount];
-				System.arraycopy(fAdapters, 0, tempAdapters, 0, adapterCount);
-				// EMF uses the unmodifiableCollection. Its a bit of a
-				// performance
-				// drain, but may want to leave in since
-				// it would "fail fast" if someone was trying to modify the
-				// list.
-				return Collections.unmodifiableCollection(Arrays.asList(tempAdapters));
-				// return Arrays.asList(newAdapters);
-			}
-		}
-		else
+	public Collection getAdapters() {
+		INodeAdapter[] adapters = fAdapters.adapters;
+		if (adapters.length == 0)
 			return Collections.EMPTY_LIST;
+		// the array is never changed once published, so needn't be copied
+		return Collections.unmodifiableList(Arrays.asList(adapters));
 	}
 
 	private long getAdapterTimeCriteria() {
@@ -153,35 +155,37 @@ public abstract class AbstractNotifier implements INodeNotifier {
 		return criteria;
 	}
 
-	public synchronized INodeAdapter getExistingAdapter(Object type) {
-		INodeAdapter result = null;
-		for (int i = 0; i < adapterCount; i++) {
-			INodeAdapter a = fAdapters[i];
-			if (a != null && a.isAdapterForType(type)) {
-				result = a;
-				break;
+	public INodeAdapter getExistingAdapter(Object type) {
+		Adapters adapters = fAdapters;
+		INodeAdapter[] list = adapters.adapters;
+		Object[] types = adapters.types;
+		// first try the types the adapters were last found for
+		if (type != null) {
+			for (int i = 0; i < list.length; i++) {
+				if (types[i] == type)
+					return list[i];
+			}
+		}
+		for (int i = 0; i < list.length; i++) {
+			INodeAdapter a = list[i];
+			if (a.isAdapterForType(type)) {
+				types[i] = type;
+				return a;
 			}
 		}
 		// if we didn't find one in our list,
 		// return the null result
-		return result;
+		return null;
 	}
 
 	abstract public FactoryRegistry getFactoryRegistry();
 
 	public void notify(int eventType, Object changedFeature, Object oldValue, Object newValue, int pos) {
 
-		int localAdapterCount = 0;
-		INodeAdapter[] localAdapters = null;
-
-		// lock object while making local assignments
-		synchronized (this) {
-			if (fAdapters != null) {
-				localAdapterCount = adapterCount;
-				localAdapters = new INodeAdapter[localAdapterCount];
-				System.arraycopy(fAdapters, 0, localAdapters, 0, localAdapterCount);
-			}
-		}
+		// adapters added or removed by the adapters notified will not
+		// change this array
+		INodeAdapter[] localAdapters = fAdapters.adapters;
+		int localAdapterCount = localAdapters.length;
 
 		for (int i = 0; i < localAdapterCount; i++) {
 			INodeAdapter a = localAdapters[i];
@@ -218,23 +222,32 @@ public abstract class AbstractNotifier implements INodeNotifier {
 	}
 
 	public synchronized void removeAdapter(INodeAdapter a) {
-		if (fAdapters == null || a == null)
+		if (a == null)
 			return;
+		Adapters oldAdapters = fAdapters;
+		int oldAdapterCount = oldAdapters.adapters.length;
+		int found = 0;
+		for (int oldIndex = 0; oldIndex < oldAdapterCount; oldIndex++) {
+			if (a == oldAdapters.adapters[oldIndex])
+				found++;
+		}
+		if (found == 0)
+			return;
+		if (found == oldAdapterCount) {
+			fAdapters = EMPTY;
+			return;
+		}
+		Adapters newAdapters = new Adapters(new INodeAdapter[oldAdapterCount - found]);
 		int newIndex = 0;
-		INodeAdapter[] newAdapters = new INodeAdapter[fAdapters.length];
-		int oldAdapterCount = adapterCount;
-		boolean found = false;
 		for (int oldIndex = 0; oldIndex < oldAdapterCount; oldIndex++) {
-			INodeAdapter candidate = fAdapters[oldIndex];
-			if (a == candidate) {
-				adapterCount--;
-				found = true;
+			INodeAdapter candidate = oldAdapters.adapters[oldIndex];
+			if (a != candidate) {
+				newAdapters.adapters[newIndex] = candidate;
+				newAdapters.types[newIndex] = oldAdapters.types[oldIndex];
+				newIndex++;
 			}
-			else
-				newAdapters[newIndex++] = fAdapters[oldIndex];
 		}
-		if (found)
-			fAdapters = newAdapters;
+		fAdapters = newAdapters;
 	}
 
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2010 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,6 +19,7 @@ import java.util.Enumeration;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.wst.sse.core.StructuredModelManager;
 import org.eclipse.wst.sse.core.internal.encoding.EncodingRule;
@@ -367,6 +368,25 @@ public interface IModelManager {
 	 */
 	public IStructuredModel getModelForRead(IFile iFile) throws IOException, CoreException;
 
+	/**
+	 * Loads the models for many files, several at a time, for batch clients
+	 * such as validators and indexers. Each file's model is gotten for read,
+	 * exactly as by {@link #getModelForRead(IFile)}, so models already
+	 * loaded are shared, and is passed to the requestor, then released. No
+	 * more models are held at once than there are loading threads, as many
+	 * as there are processors unless the workbench is started with
+	 * -Dorg.eclipse.wst.sse.core.modelLoadThreads=&lt;count&gt;.
+	 * 
+	 * @param files
+	 *            the files
+	 * @param requestor
+	 *            receives the models, on background threads
+	 * @return the already scheduled job doing the loading, which finishes
+	 *         when every file has been passed to the requestor, and which
+	 *         may be canceled to stop loading further files
+	 */
+	public Job getModelsForRead(IFile[] files, IModelRequestor requestor);
+
 	/**
 	 * @deprecated - encoding is handled automatically based on the file's
 	 *             contents or user preferences
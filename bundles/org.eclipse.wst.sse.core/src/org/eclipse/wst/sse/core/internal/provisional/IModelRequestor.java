@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.core.internal.provisional;
+
+import org.eclipse.core.resources.IFile;
+
+/**
+ * Receives the models loaded by
+ * {@link IModelManager#getModelsForRead(IFile[], IModelRequestor)}.
+ *
+ * Methods are called from several background threads at once, one call per
+ * file, so implementors must be thread safe.
+ */
+public interface IModelRequestor {
+
+	/**
+	 * Accepts the model for a file. The model is released once this method
+	 * returns; a requestor which wants to keep it must get its own reference
+	 * from the model manager before then. A RuntimeException thrown by this
+	 * method is logged rather than reported as a load failure.
+	 *
+	 * @param file
+	 *            the file
+	 * @param model
+	 *            the model for read, or null if none could be created for
+	 *            the file's content type
+	 */
+	void acceptModel(IFile file, IStructuredModel model);
+
+	/**
+	 * Reports that the model for a file could not be loaded.
+	 *
+	 * @param file
+	 *            the file
+	 * @param exception
+	 *            the IOException, CoreException or RuntimeException thrown
+	 *            while loading
+	 */
+	void loadFailed(IFile file, Exception exception);
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2011 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -71,6 +71,21 @@ public interface IStructuredModel extends IAdaptable {
 
 	void addModelStateListener(IModelStateListener listener);
 
+	/**
+	 * Begins a notification batch, for a client about to make many small
+	 * changes to the model, such as a cleanup or format of the whole
+	 * document. A batch is a change sequence, as begun by
+	 * aboutToChangeModel, in which the notifications to node adapters are
+	 * also held back, and are coalesced when the batch ends: repeated changes
+	 * to the same attribute or node are delivered to each adapter as a
+	 * single change. Batches may be nested; the notifications are sent when
+	 * the outermost one ends.
+	 * 
+	 * This method is a matched pair to endNotificationBatch, which must be
+	 * called later from the same Thread, typically in a finally clause.
+	 */
+	void beginNotificationBatch();
+
 	/**
 	 * Begin recording undo transactions.
 	 */
@@ -141,6 +156,13 @@ public interface IStructuredModel extends IAdaptable {
 	 */
 	void enableUndoManagement();
 
+	/**
+	 * Ends a notification batch begun with beginNotificationBatch. When the
+	 * outermost batch ends, the held back adapter notifications are sent,
+	 * then the model changed event, as for changedModel.
+	 */
+	void endNotificationBatch();
+
 	/**
 	 * End recording undo transactions.
 	 */
@@ -140,6 +140,16 @@ public interface IStructuredDocument extends IEncodedDocument, IDocumentExtensio
 	 */
 	IStructuredTextReParser getReParser();
 
+	/**
+	 * Returns an immutable view of the document's current text and
+	 * structured document regions, which may be read from any thread without
+	 * locking while the document continues to change. Repeated calls return
+	 * the same instance until the document is next changed.
+	 * 
+	 * @return a snapshot of the current state of the document
+	 */
+	IStructuredDocumentSnapshot getSnapshot();
+
 	String getText();
 
 	IStructuredTextUndoManager getUndoManager();
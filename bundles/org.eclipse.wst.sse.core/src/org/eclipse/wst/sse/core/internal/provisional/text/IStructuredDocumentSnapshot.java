@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.core.internal.provisional.text;
+
+/**
+ * An immutable, read-only view of an IStructuredDocument's text and
+ * structured document regions as they were at one point in time. Unlike the
+ * document itself, a snapshot may be queried from any number of threads
+ * without locking, while the document continues to be edited.
+ *
+ * Document regions and their (top level) text regions are identified by
+ * index rather than handed out as IStructuredDocumentRegion and ITextRegion
+ * instances, since those are live objects updated in place by the
+ * document's re-parser. All offsets are absolute document offsets. Regions
+ * nested within ITextRegionContainers are not included.
+ *
+ * Clients should not implement.
+ */
+public interface IStructuredDocumentSnapshot {
+
+	/**
+	 * @return the document's modification stamp when the snapshot was taken
+	 */
+	long getModificationStamp();
+
+	/**
+	 * @return the length of the text
+	 */
+	int getLength();
+
+	/**
+	 * @return the full text; the sequence does not change after the snapshot
+	 *         is taken
+	 */
+	CharSequence getText();
+
+	String get(int offset, int length);
+
+	int getNumberOfDocumentRegions();
+
+	/**
+	 * @param offset
+	 * @return the index of the document region containing the offset, or -1
+	 *         if no document region contains it
+	 */
+	int getDocumentRegionIndex(int offset);
+
+	int getDocumentRegionStart(int index);
+
+	int getDocumentRegionEnd(int index);
+
+	/**
+	 * @return the type of the document region, as from
+	 *         IStructuredDocumentRegion.getType()
+	 */
+	String getDocumentRegionType(int index);
+
+	boolean isDocumentRegionEnded(int index);
+
+	/**
+	 * @return the number of text regions directly within the document
+	 *         region
+	 */
+	int getNumberOfRegions(int documentRegionIndex);
+
+	String getRegionType(int documentRegionIndex, int regionIndex);
+
+	int getRegionStart(int documentRegionIndex, int regionIndex);
+
+	int getRegionTextEnd(int documentRegionIndex, int regionIndex);
+
+	int getRegionEnd(int documentRegionIndex, int regionIndex);
+}
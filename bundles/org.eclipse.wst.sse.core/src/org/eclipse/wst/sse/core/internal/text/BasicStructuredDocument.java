@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2011 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -75,6 +75,7 @@ import org.eclipse.wst.sse.core.internal.provisional.events.StructuredDocumentRe
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentRegion;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentRegionList;
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentSnapshot;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredPartitioning;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredTextReParser;
 import org.eclipse.wst.sse.core.internal.text.rules.StructuredTextPartitioner;
@@ -208,6 +209,178 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 		}
 	}
 
+	/**
+	 * An offset-ordered index over the document's chain of
+	 * IStructuredDocumentRegions, so that random access by character offset
+	 * is a binary search rather than a walk of the linked list. The
+	 * re-parser keeps it current by telling the document which regions were
+	 * spliced in or out; when it can't (or when the index is found to
+	 * disagree with the region chain) it is simply discarded and rebuilt
+	 * lazily on the next lookup.
+	 * 
+	 * Regions' start offsets are adjusted in place by the re-parser, so the
+	 * index only needs updating when the membership of the chain changes,
+	 * not on every edit.
+	 */
+	private class DocumentRegionIndex {
+		private static final int INITIAL_CAPACITY = 64;
+		private IStructuredDocumentRegion[] fIndexedRegions = null;
+		private int fIndexedCount = 0;
+
+		synchronized void invalidate() {
+			fIndexedRegions = null;
+			fIndexedCount = 0;
+		}
+
+		/**
+		 * @return the region whose range contains <code>offset</code>, the
+		 *         first or last region if offset is before or after all of
+		 *         them, or null if the document has no regions or the index
+		 *         was found to be stale
+		 */
+		synchronized IStructuredDocumentRegion find(int offset) {
+			if (fIndexedRegions == null) {
+				rebuild();
+			}
+			if (fIndexedCount == 0) {
+				return null;
+			}
+			int low = 0;
+			int high = fIndexedCount - 1;
+			// find the last region whose start is not after the offset
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (fIndexedRegions[mid].getStart() <= offset) {
+					low = mid + 1;
+				}
+				else {
+					high = mid - 1;
+				}
+			}
+			IStructuredDocumentRegion result = null;
+			if (high < 0) {
+				result = fIndexedRegions[0];
+				if (result.getPrevious() != null) {
+					result = null;
+				}
+			}
+			else {
+				result = fIndexedRegions[high];
+				if (!result.containsOffset(offset) && (high < fIndexedCount - 1 || result.getNext() != null)) {
+					// regions are contiguous, so anything other than being
+					// past the end of the last one means we're out of date
+					result = null;
+				}
+			}
+			if (result != null && result.isDeleted()) {
+				result = null;
+			}
+			if (result == null) {
+				invalidate();
+			}
+			return result;
+		}
+
+		/**
+		 * Replaces the contiguous run of <code>oldRegions</code> with
+		 * <code>newRegions</code>. Must be called before any down stream
+		 * regions have had their starts adjusted.
+		 */
+		synchronized void replace(IStructuredDocumentRegionList oldRegions, IStructuredDocumentRegionList newRegions) {
+			if (fIndexedRegions == null)
+				return;
+			int oldLength = oldRegions.getLength();
+			if (oldLength == 0) {
+				invalidate();
+				return;
+			}
+			int position = indexOf(oldRegions.item(0));
+			if (position < 0 || position + oldLength > fIndexedCount || fIndexedRegions[position + oldLength - 1] != oldRegions.item(oldLength - 1)) {
+				invalidate();
+				return;
+			}
+			splice(position, oldLength, newRegions);
+		}
+
+		/**
+		 * Inserts <code>newRegions</code> immediately after
+		 * <code>previous</code>, or at the beginning if previous is null.
+		 */
+		synchronized void insert(IStructuredDocumentRegion previous, IStructuredDocumentRegionList newRegions) {
+			if (fIndexedRegions == null)
+				return;
+			int position = 0;
+			if (previous != null) {
+				position = indexOf(previous);
+				if (position < 0) {
+					invalidate();
+					return;
+				}
+				position++;
+			}
+			splice(position, 0, newRegions);
+		}
+
+		private int indexOf(IStructuredDocumentRegion region) {
+			int start = region.getStart();
+			int low = 0;
+			int high = fIndexedCount - 1;
+			// find the first region starting at the same offset, then scan
+			// forward past any zero-length neighbors for the exact instance
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (fIndexedRegions[mid].getStart() < start) {
+					low = mid + 1;
+				}
+				else {
+					high = mid - 1;
+				}
+			}
+			for (int i = low; i < fIndexedCount && fIndexedRegions[i].getStart() == start; i++) {
+				if (fIndexedRegions[i] == region)
+					return i;
+			}
+			return -1;
+		}
+
+		private void rebuild() {
+			IStructuredDocumentRegion[] regions = new IStructuredDocumentRegion[INITIAL_CAPACITY];
+			int count = 0;
+			IStructuredDocumentRegion aRegion = firstDocumentRegion;
+			while (aRegion != null) {
+				if (count == regions.length) {
+					IStructuredDocumentRegion[] larger = new IStructuredDocumentRegion[count * 2];
+					System.arraycopy(regions, 0, larger, 0, count);
+					regions = larger;
+				}
+				regions[count++] = aRegion;
+				aRegion = aRegion.getNext();
+			}
+			fIndexedRegions = regions;
+			fIndexedCount = count;
+		}
+
+		private void splice(int position, int removeCount, IStructuredDocumentRegionList newRegions) {
+			int addCount = newRegions.getLength();
+			int newCount = fIndexedCount - removeCount + addCount;
+			IStructuredDocumentRegion[] target = fIndexedRegions;
+			if (newCount > fIndexedRegions.length) {
+				target = new IStructuredDocumentRegion[Math.max(newCount, fIndexedRegions.length * 2)];
+				System.arraycopy(fIndexedRegions, 0, target, 0, position);
+			}
+			// move the tail, then fill in the new regions
+			System.arraycopy(fIndexedRegions, position + removeCount, target, position + addCount, fIndexedCount - position - removeCount);
+			for (int i = 0; i < addCount; i++) {
+				target[position + i] = newRegions.item(i);
+			}
+			for (int i = newCount; i < fIndexedCount; i++) {
+				target[i] = null;
+			}
+			fIndexedRegions = target;
+			fIndexedCount = newCount;
+		}
+	}
+
 	/**
 	 * This NullDocumentEvent is used to complete the "aboutToChange" and
 	 * "changed" cycle, when in fact the original change is no longer valid.
@@ -270,6 +443,7 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 	private CurrentDocumentRegionCache fCurrentDocumentRegionCache;
 	private DocumentEvent fDocumentEvent;
 	private IDocumentListener[] fDocumentListeners;
+	private DocumentRegionIndex fDocumentRegionIndex;
 
 	/**
 	 * The registered document partitioners.
@@ -306,6 +480,11 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 	 */
 	private String fInitialLineDelimiter;
 	private static final String READ_ONLY_REGIONS_CATEGORY = "_READ_ONLY_REGIONS_CATEGORY_"; //$NON-NLS-1$
+	/**
+	 * How much text to give the line tracker at a time when setting the
+	 * initial text, so that the whole text need never be one String.
+	 */
+	private static final int LINE_TRACKER_CHUNK_LENGTH = 64 * 1024;
 	/**
 	 * Current rewrite session, or none if not presently rewriting.
 	 */
@@ -318,6 +497,21 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 	 * Keeps track of next modification stamp.
 	 */
 	private long fNextModificationStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	/**
+	 * The most recent snapshot, reused until the text or regions change. It
+	 * is read without the lock, so must be volatile.
+	 */
+	private volatile IStructuredDocumentSnapshot fSnapshot;
+	/**
+	 * The text of the most recent snapshot taken from a store other than a
+	 * PieceTableTextStore, and the range of text changed since, so that the
+	 * next snapshot can share its unchanged segments. A start of -1 means
+	 * there have been no changes.
+	 */
+	private SnapshotText fSnapshotText;
+	private int fSnapshotChangeStart = -1;
+	private int fSnapshotChangeEnd;
+	private int fSnapshotChangeDelta;
 	/**
 	 * debug variable only
 	 * 
@@ -334,6 +528,7 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 	public BasicStructuredDocument() {
 		super();
 		fCurrentDocumentRegionCache = new CurrentDocumentRegionCache();
+		fDocumentRegionIndex = new DocumentRegionIndex();
 		setTextStore(new StructuredDocumentTextStore(50, 300));
 		setLineTracker(new DefaultLineTracker());
 		NULL_DOCUMENT_EVENT = new NullDocumentEvent();
@@ -356,6 +551,21 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 		internal_setParser(parser);
 	}
 
+	/**
+	 * Creates a document which keeps its text in the given store rather
+	 * than the default one.
+	 * 
+	 * @param parser
+	 * @param textStore
+	 *            an empty text store; it must also be a CharSequence for the
+	 *            parser to read from it directly
+	 */
+	public BasicStructuredDocument(RegionParser parser, ITextStore textStore) {
+		this(parser);
+		Assert.isTrue(textStore.getLength() == 0, "Program Error: IStructuredDocument can only be created with an empty text store"); //$NON-NLS-1$
+		setTextStore(textStore);
+	}
+
 	private void _clearDocumentEvent() {
 		// no hard and fast requirement to null out ... just seems like
 		// a good idea, since we are done with it.
@@ -1608,6 +1818,73 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 		return fPositionManager;
 	}
 
+	public IStructuredDocumentSnapshot getSnapshot() {
+		IStructuredDocumentSnapshot snapshot = fSnapshot;
+		if (snapshot == null) {
+			try {
+				// keep out writers while the regions are copied; for the
+				// unsynchronized document this is best effort, as with any
+				// other access from a second thread
+				acquireLock();
+				snapshot = fSnapshot;
+				if (snapshot == null) {
+					CharSequence text = null;
+					ITextStore store = getStore();
+					if (store instanceof PieceTableTextStore) {
+						// shares the text rather than copying it
+						text = ((PieceTableTextStore) store).getSnapshot();
+					}
+					else {
+						text = getSnapshotText(store);
+					}
+					snapshot = new StructuredDocumentSnapshot(getModificationStamp(), text, firstDocumentRegion);
+					fSnapshot = snapshot;
+				}
+			}
+			finally {
+				releaseLock();
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return the store's text, sharing what hasn't changed with the text
+	 *         of the last snapshot
+	 */
+	private SnapshotText getSnapshotText(ITextStore store) {
+		if (fSnapshotText == null) {
+			fSnapshotText = new SnapshotText(store);
+		}
+		else if (fSnapshotChangeStart != -1) {
+			fSnapshotText = new SnapshotText(fSnapshotText, fSnapshotChangeStart, fSnapshotChangeEnd, fSnapshotChangeDelta, store);
+		}
+		fSnapshotChangeStart = -1;
+		return fSnapshotText;
+	}
+
+	/**
+	 * Widens the range of text changed since the last snapshot's to cover a
+	 * replacement.
+	 */
+	private void snapshotTextChanged(int start, int lengthToReplace, int newLength) {
+		if (fSnapshotText == null)
+			return;
+		int delta = newLength - lengthToReplace;
+		if (fSnapshotChangeStart == -1) {
+			fSnapshotChangeStart = start;
+			fSnapshotChangeEnd = start + newLength;
+			fSnapshotChangeDelta = delta;
+		}
+		else {
+			// positions after the replaced text move along with it
+			int changeEnd = fSnapshotChangeEnd >= start + lengthToReplace ? fSnapshotChangeEnd + delta : fSnapshotChangeEnd;
+			fSnapshotChangeStart = Math.min(fSnapshotChangeStart, start);
+			fSnapshotChangeEnd = Math.max(changeEnd, start + newLength);
+			fSnapshotChangeDelta += delta;
+		}
+	}
+
 	/**
 	 * Returns all Positions of the given position category.
 	 * 
@@ -1633,62 +1910,24 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 	public IStructuredDocumentRegion getRegionAtCharacterOffset(int offset) {
 		IStructuredDocumentRegion result = null;
 
-		// FIXME: need to synch on 'cachedRegion' (but since that's a
-		// constantly changing object, we
-		// can't, so need to add a "region_lock" object, and use it here, and
-		// in re-parser.
-		// Oh, and need to make sure, after synch, that the region is not
-		// deleted, and if so, I guess go back
-		// to the beginning!
-
 		// cached node can be null when document is empty
 		IStructuredDocumentRegion potentialCachedRegion = getCachedDocumentRegion();
 		if (potentialCachedRegion != null) {
-
-			// 
-
-			// if we already have the right node, return that.
+			// if we already have the right node, return that; repeated
+			// queries around the same spot are the common case
 			if (potentialCachedRegion.containsOffset(offset)) {
 				result = potentialCachedRegion;
 			}
 			else {
-				// first, find out what direction to go, relative to
-				// cachedNode.
-				// negative means "towards the front" of the file,
-				// postitive
-				// means
-				// towards the end.
-				int direction = offset - potentialCachedRegion.getStart();
-				if (direction < 0) {
-					// search towards beginning
-					while (!potentialCachedRegion.containsOffset(offset)) {
-						IStructuredDocumentRegion tempNode = potentialCachedRegion.getPrevious();
-						if (tempNode == null) {
-							break;
-						}
-						else {
-							potentialCachedRegion = tempNode;
-						}
-					}
-				}
-				else {
-					// search towards end
-					// There is a legitamat condition where the
-					// offset will not be contained in any node,
-					// which is if the offset is just past the last
-					// character of text.
-					// And, we must gaurd against setting cachedNode to
-					// null!
-					while (!potentialCachedRegion.containsOffset(offset)) {
-						IStructuredDocumentRegion tempNode = potentialCachedRegion.getNext();
-						if (tempNode == null)
-							break;
-						else
-							potentialCachedRegion = tempNode;
-					}
+				// otherwise, use the offset index rather than walking the
+				// chain from wherever this thread last looked. The index
+				// guards its own consistency, so a stale answer comes back
+				// as null and we fall back to the walk.
+				result = fDocumentRegionIndex.find(offset);
+				if (result == null) {
+					result = walkToRegionAtCharacterOffset(potentialCachedRegion, offset);
 				}
 			}
-			result = potentialCachedRegion;
 		}
 		// just to be doubly sure we never assign null to an already valid
 		// cachedRegion.
@@ -1707,6 +1946,50 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 		return result;
 	}
 
+	/**
+	 * Linear search along the region chain, starting from a known region.
+	 * Only used when the offset index can not answer.
+	 */
+	private IStructuredDocumentRegion walkToRegionAtCharacterOffset(IStructuredDocumentRegion startRegion, int offset) {
+		IStructuredDocumentRegion potentialCachedRegion = startRegion;
+		// first, find out what direction to go, relative to
+		// cachedNode.
+		// negative means "towards the front" of the file,
+		// postitive
+		// means
+		// towards the end.
+		int direction = offset - potentialCachedRegion.getStart();
+		if (direction < 0) {
+			// search towards beginning
+			while (!potentialCachedRegion.containsOffset(offset)) {
+				IStructuredDocumentRegion tempNode = potentialCachedRegion.getPrevious();
+				if (tempNode == null) {
+					break;
+				}
+				else {
+					potentialCachedRegion = tempNode;
+				}
+			}
+		}
+		else {
+			// search towards end
+			// There is a legitamat condition where the
+			// offset will not be contained in any node,
+			// which is if the offset is just past the last
+			// character of text.
+			// And, we must gaurd against setting cachedNode to
+			// null!
+			while (!potentialCachedRegion.containsOffset(offset)) {
+				IStructuredDocumentRegion tempNode = potentialCachedRegion.getNext();
+				if (tempNode == null)
+					break;
+				else
+					potentialCachedRegion = tempNode;
+			}
+		}
+		return potentialCachedRegion;
+	}
+
 	public IStructuredDocumentRegionList getRegionList() {
 		CoreNodeList result = null;
 		if (getCachedDocumentRegion() == null)
@@ -1842,6 +2125,7 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 		// node,
 		// since the implementation of node.getLastNode may simply call
 		// structuredDocument.getLastStructuredDocumentRegion!
+		fDocumentRegionIndex.invalidate();
 		IStructuredDocumentRegion aNode = firstDocumentRegion;
 		if (aNode == null) {
 			// defect 254607: to handle empty documents right, if
@@ -1857,6 +2141,24 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 		}
 	}
 
+	/**
+	 * Called by re-parser, before down stream regions are adjusted, when the
+	 * given new regions have been linked into the chain immediately after
+	 * <code>previous</code> (or at the beginning, if null).
+	 */
+	void documentRegionsInserted(IStructuredDocumentRegion previous, IStructuredDocumentRegionList newRegions) {
+		fDocumentRegionIndex.insert(previous, newRegions);
+	}
+
+	/**
+	 * Called by re-parser, before down stream regions are adjusted, when the
+	 * contiguous old regions have been replaced in the chain by the new
+	 * regions.
+	 */
+	void documentRegionsReplaced(IStructuredDocumentRegionList oldRegions, IStructuredDocumentRegionList newRegions) {
+		fDocumentRegionIndex.replace(oldRegions, newRegions);
+	}
+
 	/**
 	 * @see IDocument#insertPositionUpdater
 	 */
@@ -2340,10 +2642,8 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 		try {
 			acquireLock();
 
-			CharSequenceReader subSetTextStoreReader = new CharSequenceReader((CharSequence) getStore(), 0, getStore().getLength());
-			resetParser(subSetTextStoreReader, 0);
-			//
-			setCachedDocumentRegion(getParser().getDocumentRegions());
+			fSnapshot = null;
+			setCachedDocumentRegion(parseDocumentRegions(0, getStore().getLength()));
 			// when starting afresh, our cachedNode should be our firstNode,
 			// so be sure to initialize the firstNode and lastNode
 			initializeFirstAndLastDocumentRegion();
@@ -2356,6 +2656,46 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 		resumePostNotificationProcessing();
 	}
 
+	/**
+	 * This method is for INTERNAL USE ONLY and is NOT API.
+	 * 
+	 * Sets the text of a new, empty document without copying it: a
+	 * PieceTableTextStore, put in place of any other kind of store, refers
+	 * to the given characters directly. The regions are then built as by
+	 * reparse(Object). No events are sent, as for the initial text there can
+	 * be no one yet to hear them.
+	 * 
+	 * @param text
+	 *            the text, which must never change afterwards, such as a
+	 *            MappedFileText
+	 */
+	public void setInitialText(CharSequence text) {
+		Assert.isTrue(getLength() == 0, "Program Error: initial text can only be set on an empty document"); //$NON-NLS-1$
+		PieceTableTextStore store = new PieceTableTextStore();
+		store.set(text);
+		setTextStore(store);
+		fSnapshot = null;
+		int length = text.length();
+		int offset = 0;
+		try {
+			while (offset < length) {
+				int end = Math.min(offset + LINE_TRACKER_CHUNK_LENGTH, length);
+				// keep a \r\n delimiter within one chunk
+				if (end < length && text.charAt(end - 1) == '\r')
+					end++;
+				getTracker().replace(offset, 0, store.get(offset, end - offset));
+				offset = end;
+			}
+		}
+		catch (BadLocationException e) {
+			// should be impossible here, but will log for now
+			Logger.logException(e);
+		}
+		fModificationStamp++;
+		fNextModificationStamp= Math.max(fModificationStamp, fNextModificationStamp);
+		reparse(this);
+	}
+
 	/**
 	 * @see IDocument#replace
 	 * @exception BadLocationException
@@ -2424,6 +2764,23 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 		return event;
 	}
 
+	/**
+	 * Parses the text between the offsets, in pieces on separate threads if
+	 * it is large enough and the parser allows it.
+	 * 
+	 * @return the new document regions, with offsets relative to startOffset
+	 */
+	IStructuredDocumentRegion parseDocumentRegions(int startOffset, int endOffset) {
+		ITextStore textStore = getStore();
+		if (textStore instanceof CharSequence) {
+			IStructuredDocumentRegion headNode = ParallelDocumentRegionParser.parse(getParser(), (CharSequence) textStore, startOffset, endOffset);
+			if (headNode != null)
+				return headNode;
+		}
+		resetParser(startOffset, endOffset);
+		return getParser().getDocumentRegions();
+	}
+
 	void resetParser(int startOffset, int endOffset) {
 
 		RegionParser parser = getParser();
@@ -2621,6 +2978,8 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 	private void setTextStore(ITextStore store) {
 		Assert.isNotNull(store);
 		fStore = store;
+		fSnapshotText = null;
+		fSnapshotChangeStart = -1;
 	}
 
 	public void setUndoManager(IStructuredTextUndoManager undoManager) {
@@ -2686,6 +3045,8 @@ public class BasicStructuredDocument implements IStructuredDocument, IDocumentEx
 	 */
 	public void updateDocumentData(int start, int lengthToReplace, String changes) {
 		stopPostNotificationProcessing();
+		fSnapshot = null;
+		snapshotTextChanged(start, lengthToReplace, changes != null ? changes.length() : 0);
 		getStore().replace(start, lengthToReplace, changes);
 		try {
 			getTracker().replace(start, lengthToReplace, changes);
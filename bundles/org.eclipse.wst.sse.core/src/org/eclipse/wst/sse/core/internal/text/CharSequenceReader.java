@@ -110,11 +110,17 @@ public class CharSequenceReader extends Reader {
 			charsToRead = Math.min(minRequested, lengthRemaining);
 
 
-			CharSequence seq = fOriginalSource.subSequence(fCurrentPosition, fCurrentPosition + charsToRead);
-			// for now, hard assumption that original is a String since source
-			// is assumed to be document, or text store
-			String seqString = (String) seq;
-			seqString.getChars(0, seqString.length(), cbuf, off);
+			if (fOriginalSource instanceof PieceTableTextStore) {
+				// copy straight out of the pieces, no intermediate String
+				((PieceTableTextStore) fOriginalSource).getChars(fCurrentPosition, fCurrentPosition + charsToRead, cbuf, off);
+			}
+			else {
+				CharSequence seq = fOriginalSource.subSequence(fCurrentPosition, fCurrentPosition + charsToRead);
+				// for now, hard assumption that original is a String since
+				// source is assumed to be document, or text store
+				String seqString = seq.toString();
+				seqString.getChars(0, seqString.length(), cbuf, off);
+			}
 
 
 
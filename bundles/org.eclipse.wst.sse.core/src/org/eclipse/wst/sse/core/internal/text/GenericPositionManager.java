@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2008 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,7 +13,10 @@
 
 package org.eclipse.wst.sse.core.internal.text;
 
+import java.lang.reflect.Array;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -34,6 +37,172 @@ import org.eclipse.wst.sse.core.internal.util.Assert;
  */
 
 public class GenericPositionManager {
+	/**
+	 * The positions of one category, in order of their offsets, kept in a
+	 * gap buffer so that positions added or removed near one another, as
+	 * they usually are, move few others. As with any IDocument, a client
+	 * that changes a registered position removes it and adds it again, so
+	 * that the list stays sorted and knows the position's length.
+	 */
+	private static class PositionList extends AbstractList {
+		private Position[] fItems = new Position[16];
+		private int fGapStart = 0;
+		private int fGapEnd = fItems.length;
+		/*
+		 * no position has been longer than this since the list was last
+		 * empty
+		 */
+		private int fMaxLength = 0;
+
+		public void add(int index, Object element) {
+			if (index < 0 || index > size())
+				throw new IndexOutOfBoundsException(String.valueOf(index));
+			Position position = (Position) element;
+			if (fGapStart == fGapEnd)
+				grow();
+			moveGap(index);
+			fItems[fGapStart++] = position;
+			lengthChanged(position.length);
+			modCount++;
+		}
+
+		/**
+		 * @return the index of the first position which an edit at the
+		 *         given offset can change; positions before it end before
+		 *         the offset
+		 */
+		int firstAffectedIndex(int offset) {
+			// see DefaultPositionUpdater.adaptToReplace
+			int left = 0;
+			int right = size();
+			int bound = offset - Math.max(fMaxLength, 1) + 1;
+			while (left < right) {
+				int mid = (left + right) / 2;
+				if (getPosition(mid).offset < bound)
+					left = mid + 1;
+				else
+					right = mid;
+			}
+			return left;
+		}
+
+		public Object get(int index) {
+			return getPosition(index);
+		}
+
+		Position getPosition(int index) {
+			if (index < 0 || index >= size())
+				throw new IndexOutOfBoundsException(String.valueOf(index));
+			return fItems[index < fGapStart ? index : index + fGapEnd - fGapStart];
+		}
+
+		private void grow() {
+			Position[] items = new Position[fItems.length * 2];
+			int tail = fItems.length - fGapEnd;
+			System.arraycopy(fItems, 0, items, 0, fGapStart);
+			System.arraycopy(fItems, fGapEnd, items, items.length - tail, tail);
+			fGapEnd = items.length - tail;
+			fItems = items;
+		}
+
+		void lengthChanged(int length) {
+			if (length > fMaxLength)
+				fMaxLength = length;
+		}
+
+		private void moveGap(int index) {
+			if (index < fGapStart) {
+				int count = fGapStart - index;
+				System.arraycopy(fItems, index, fItems, fGapEnd - count, count);
+				// don't hold on to removed positions
+				Arrays.fill(fItems, index, Math.min(fGapStart, fGapEnd - count), null);
+				fGapStart = index;
+				fGapEnd -= count;
+			}
+			else if (index > fGapStart) {
+				int count = index - fGapStart;
+				System.arraycopy(fItems, fGapEnd, fItems, fGapStart, count);
+				Arrays.fill(fItems, Math.max(fGapEnd, index), fGapEnd + count, null);
+				fGapStart = index;
+				fGapEnd += count;
+			}
+		}
+
+		public Object remove(int index) {
+			Position position = getPosition(index);
+			moveGap(index);
+			fItems[fGapEnd++] = null;
+			if (size() == 0)
+				fMaxLength = 0;
+			modCount++;
+			return position;
+		}
+
+		public Object set(int index, Object element) {
+			Position position = getPosition(index);
+			fItems[index < fGapStart ? index : index + fGapEnd - fGapStart] = (Position) element;
+			lengthChanged(((Position) element).length);
+			return position;
+		}
+
+		public int size() {
+			return fItems.length - (fGapEnd - fGapStart);
+		}
+
+		public Object[] toArray(Object[] array) {
+			int size = size();
+			if (array.length < size)
+				array = (Object[]) Array.newInstance(array.getClass().getComponentType(), size);
+			System.arraycopy(fItems, 0, array, 0, fGapStart);
+			System.arraycopy(fItems, fGapEnd, array, fGapStart, size - fGapStart);
+			if (array.length > size)
+				array[size] = null;
+			return array;
+		}
+	}
+
+	/**
+	 * Updates the positions of a category managed here as
+	 * DefaultPositionUpdater does, but only visits the positions from the
+	 * first one the edit can change, found by a binary search, rather than
+	 * all of them, and removes deleted positions without copying the
+	 * category or searching for them again.
+	 */
+	private class ManagedPositionUpdater extends DefaultPositionUpdater {
+		ManagedPositionUpdater(String category) {
+			super(category);
+		}
+
+		public void update(DocumentEvent event) {
+			fOffset = event.getOffset();
+			fLength = event.getLength();
+			fReplaceLength = (event.getText() == null ? 0 : event.getText().length());
+			fDocument = event.getDocument();
+
+			synchronized (GenericPositionManager.this) {
+				PositionList list = (PositionList) fPositions.get(getCategory());
+				if (list == null)
+					return;
+				int i = list.firstAffectedIndex(fOffset);
+				while (i < list.size()) {
+					fPosition = list.getPosition(i);
+					fOriginalPosition.offset = fPosition.offset;
+					fOriginalPosition.length = fPosition.length;
+					// see DefaultPositionUpdater.notDeleted
+					if (fOffset < fPosition.offset && (fPosition.offset + fPosition.length < fOffset + fLength)) {
+						fPosition.delete();
+						list.remove(i);
+					}
+					else {
+						adaptToReplace();
+						list.lengthChanged(fPosition.length);
+						i++;
+					}
+				}
+			}
+		}
+	}
+
 	private CharSequence fCharSequence;
 
 
@@ -102,7 +271,7 @@ public class GenericPositionManager {
 			return;
 
 		if (!containsPositionCategory(category))
-			fPositions.put(category, new ArrayList());
+			fPositions.put(category, new PositionList());
 	}
 
 	/*
@@ -124,7 +293,7 @@ public class GenericPositionManager {
 		fPositionUpdaters = new ArrayList();
 
 		addPositionCategory(IDocument.DEFAULT_CATEGORY);
-		addPositionUpdater(new DefaultPositionUpdater(IDocument.DEFAULT_CATEGORY));
+		addPositionUpdater(new ManagedPositionUpdater(IDocument.DEFAULT_CATEGORY));
 	}
 
 	/*
@@ -281,7 +450,7 @@ public class GenericPositionManager {
 	}
 
 
-	public Position[] getPositions(String category) throws BadPositionCategoryException {
+	public synchronized Position[] getPositions(String category) throws BadPositionCategoryException {
 
 		if (category == null)
 			throw new BadPositionCategoryException();
@@ -350,8 +519,18 @@ public class GenericPositionManager {
 		if (c == null)
 			throw new BadPositionCategoryException();
 
-		// remove based on identity not equality
+		// remove based on identity not equality, looking first where
+		// the position's offset says it should be
 		int size = c.size();
+		for (int i = computeIndexInPositionList(c, position.offset); i < size; i++) {
+			Position p = (Position) c.get(i);
+			if (position == p) {
+				c.remove(i);
+				return;
+			}
+			if (p.offset != position.offset)
+				break;
+		}
 		for (int i = 0; i < size; i++) {
 			if (position == c.get(i)) {
 				c.remove(i);
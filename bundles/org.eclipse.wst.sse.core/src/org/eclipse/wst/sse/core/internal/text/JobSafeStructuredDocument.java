@@ -20,6 +20,7 @@ import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DocumentRewriteSession;
 import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.ITextStore;
 import org.eclipse.wst.sse.core.internal.IExecutionDelegate;
 import org.eclipse.wst.sse.core.internal.ILockable;
 import org.eclipse.wst.sse.core.internal.ltk.parser.RegionParser;
@@ -58,6 +59,11 @@ public class JobSafeStructuredDocument extends BasicStructuredDocument implement
 	}
 
 
+	public JobSafeStructuredDocument(RegionParser parser, ITextStore textStore) {
+		super(parser, textStore);
+	}
+
+
 	/**
 	 * 
 	 */
@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.core.internal.text;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The decoded text of a file, read from a memory mapped copy of the file
+ * rather than held on the heap. The bytes are decoded a chunk at a time as
+ * characters are asked for, and only the few most recently used chunks are
+ * kept.
+ *
+ * The file is copied first, so that the text can never change, as a
+ * CharSequence used by a PieceTableTextStore must not, even when the file
+ * itself is later saved over; the file itself can't be mapped, since saving
+ * over a mapped file either fails or cuts the mapping short. The copy is
+ * deleted as soon as the platform allows it: right after it's mapped where
+ * a mapped file can be deleted, and otherwise once the text using it has
+ * been garbage collected, which is what releases the mapping.
+ *
+ * Only encodings which can be decoded starting from any character boundary
+ * are supported: UTF-8, UTF-16, and the single byte encodings.
+ *
+ * Characters may be read from any thread.
+ */
+public final class MappedFileText implements CharSequence {
+	private static final int CHUNK_LENGTH = 32 * 1024;
+	private static final int CACHED_CHUNKS = 8;
+	private static final String[] SUPPORTED_CHARSET_PREFIXES = {"UTF-8", "UTF-16", "ISO-8859-", "US-ASCII", "windows-125"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+	/**
+	 * A copy that couldn't be deleted while mapped
+	 */
+	private static final class Copy extends WeakReference {
+		final File file;
+
+		Copy(MappedFileText text, File file) {
+			super(text);
+			this.file = file;
+		}
+	}
+
+	/* the copies still to delete, each once its text is gone */
+	private static final List fgMappedCopies = new ArrayList();
+	private static boolean fgLeftoversDeleted = false;
+
+	private static final class Chunk {
+		final int index;
+		final char[] chars;
+
+		Chunk(int index, char[] chars) {
+			this.index = index;
+			this.chars = chars;
+		}
+	}
+
+	private final MappedByteBuffer fBytes;
+	private final Charset fCharset;
+	private final int fLength;
+	/*
+	 * where each chunk starts in characters and in bytes, with one extra
+	 * entry marking the end of the last; a chunk may be one character
+	 * short when a surrogate pair would have straddled its end
+	 */
+	private final int[] fChunkStarts;
+	private final int[] fChunkByteStarts;
+	private final Chunk[] fCache = new Chunk[CACHED_CHUNKS];
+	private int fNextCacheSlot = 0;
+	private Chunk fLastChunk;
+
+	/**
+	 * @return whether text in the named charset can be read this way
+	 */
+	public static boolean isSupported(String charsetName) {
+		if (charsetName == null)
+			return false;
+		for (int i = 0; i < SUPPORTED_CHARSET_PREFIXES.length; i++) {
+			if (charsetName.regionMatches(true, 0, SUPPORTED_CHARSET_PREFIXES[i], 0, SUPPORTED_CHARSET_PREFIXES[i].length()))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Copies and maps the file, and reads it through once to find its length
+	 * and to check that it can be decoded.
+	 *
+	 * @param file
+	 *            the file
+	 * @param offset
+	 *            where the text begins in the file, after any byte order
+	 *            mark
+	 * @param decoder
+	 *            a decoder for the file's encoding; it is used for checking
+	 *            the text, so malformed input is reported or replaced as it
+	 *            is configured to do
+	 * @param copyDirectory
+	 *            where to put the copy of the file
+	 * @throws java.nio.charset.CharacterCodingException
+	 *             if the decoder reports an error
+	 */
+	public MappedFileText(File file, int offset, CharsetDecoder decoder, File copyDirectory) throws IOException {
+		fCharset = decoder.charset();
+		if (!isSupported(fCharset.name()))
+			throw new IllegalArgumentException("unsupported charset " + fCharset.name()); //$NON-NLS-1$
+		fBytes = map(file, copyDirectory, this);
+		if (offset > fBytes.limit())
+			throw new IllegalArgumentException();
+
+		int chunks = 0;
+		int[] chunkStarts = new int[16];
+		int[] chunkByteStarts = new int[16];
+		ByteBuffer in = fBytes.duplicate();
+		in.position(offset);
+		CharBuffer out = CharBuffer.allocate(CHUNK_LENGTH);
+		decoder.reset();
+		long length = 0;
+		boolean done = false;
+		while (!done) {
+			if (chunks + 1 >= chunkStarts.length) {
+				chunkStarts = grow(chunkStarts);
+				chunkByteStarts = grow(chunkByteStarts);
+			}
+			chunkStarts[chunks] = (int) length;
+			chunkByteStarts[chunks] = in.position();
+			out.clear();
+			CoderResult result = decoder.decode(in, out, true);
+			if (result.isUnderflow()) {
+				result = decoder.flush(out);
+				done = true;
+			}
+			if (result.isError())
+				result.throwException();
+			if (out.position() > 0)
+				chunks++;
+			length += out.position();
+			if (length > Integer.MAX_VALUE)
+				throw new IOException("file is too large: " + file); //$NON-NLS-1$
+		}
+		chunkStarts[chunks] = (int) length;
+		chunkByteStarts[chunks] = in.position();
+		fLength = (int) length;
+		fChunkStarts = new int[chunks + 1];
+		System.arraycopy(chunkStarts, 0, fChunkStarts, 0, chunks + 1);
+		fChunkByteStarts = new int[chunks + 1];
+		System.arraycopy(chunkByteStarts, 0, fChunkByteStarts, 0, chunks + 1);
+	}
+
+	private static int[] grow(int[] array) {
+		int[] grown = new int[array.length * 2];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	private static MappedByteBuffer map(File file, File copyDirectory, MappedFileText text) throws IOException {
+		copyDirectory.mkdirs();
+		deleteUnusedCopies(copyDirectory);
+		File copy = File.createTempFile("text", ".copy", copyDirectory); //$NON-NLS-1$ //$NON-NLS-2$
+		copy.deleteOnExit();
+		boolean mapped = false;
+		try {
+			FileChannel source = new FileInputStream(file).getChannel();
+			try {
+				FileChannel destination = new FileOutputStream(copy).getChannel();
+				try {
+					long size = source.size();
+					if (size > Integer.MAX_VALUE)
+						throw new IOException("file is too large: " + file); //$NON-NLS-1$
+					long position = 0;
+					while (position < size)
+						position += source.transferTo(position, size - position, destination);
+				}
+				finally {
+					destination.close();
+				}
+			}
+			finally {
+				source.close();
+			}
+			RandomAccessFile input = new RandomAccessFile(copy, "r"); //$NON-NLS-1$
+			try {
+				MappedByteBuffer bytes = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+				mapped = true;
+				return bytes;
+			}
+			finally {
+				input.close();
+			}
+		}
+		finally {
+			// the mapping outlives the file where the platform allows it,
+			// otherwise the copy goes once the text is collected
+			if (!copy.delete() && mapped) {
+				synchronized (fgMappedCopies) {
+					fgMappedCopies.add(new Copy(text, copy));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deletes the copies whose texts have been garbage collected, and the
+	 * first time, any left from an earlier session. A copy whose text may
+	 * still be in use is never deleted.
+	 */
+	private static void deleteUnusedCopies(File copyDirectory) {
+		synchronized (fgMappedCopies) {
+			if (!fgLeftoversDeleted) {
+				fgLeftoversDeleted = true;
+				// nothing has been mapped yet in this session
+				File[] copies = copyDirectory.listFiles();
+				for (int i = 0; copies != null && i < copies.length; i++) {
+					copies[i].delete();
+				}
+			}
+			for (int i = fgMappedCopies.size() - 1; i >= 0; i--) {
+				Copy copy = (Copy) fgMappedCopies.get(i);
+				// fails until the mapping itself has been released
+				if (copy.get() == null && copy.file.delete()) {
+					fgMappedCopies.remove(i);
+				}
+			}
+		}
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= fLength)
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		Chunk chunk = getChunk(index);
+		return chunk.chars[index - fChunkStarts[chunk.index]];
+	}
+
+	private int chunkIndex(int offset) {
+		// chunks are all but exactly CHUNK_LENGTH long
+		int index = Math.min(offset / CHUNK_LENGTH, fChunkStarts.length - 2);
+		while (fChunkStarts[index] > offset)
+			index--;
+		while (fChunkStarts[index + 1] <= offset)
+			index++;
+		return index;
+	}
+
+	private Chunk getChunk(int offset) {
+		Chunk chunk = fLastChunk;
+		if (chunk != null && offset >= fChunkStarts[chunk.index] && offset < fChunkStarts[chunk.index + 1])
+			return chunk;
+		int index = chunkIndex(offset);
+		for (int i = 0; i < fCache.length; i++) {
+			chunk = fCache[i];
+			if (chunk != null && chunk.index == index) {
+				fLastChunk = chunk;
+				return chunk;
+			}
+		}
+		chunk = new Chunk(index, decode(index));
+		fCache[fNextCacheSlot] = chunk;
+		fNextCacheSlot = (fNextCacheSlot + 1) % fCache.length;
+		fLastChunk = chunk;
+		return chunk;
+	}
+
+	/**
+	 * Copies characters into the destination array, in the manner of
+	 * {@link String#getChars(int, int, char[], int)}.
+	 */
+	public void getChars(int start, int end, char[] destination, int destinationOffset) {
+		if (start < 0 || end > fLength || start > end)
+			throw new IndexOutOfBoundsException();
+		int offset = start;
+		while (offset < end) {
+			Chunk chunk = getChunk(offset);
+			int chunkStart = fChunkStarts[chunk.index];
+			int count = Math.min(end, fChunkStarts[chunk.index + 1]) - offset;
+			System.arraycopy(chunk.chars, offset - chunkStart, destination, destinationOffset, count);
+			destinationOffset += count;
+			offset += count;
+		}
+	}
+
+	private char[] decode(int index) {
+		ByteBuffer in = fBytes.duplicate();
+		in.limit(fChunkByteStarts[index + 1]);
+		in.position(fChunkByteStarts[index]);
+		char[] chars = new char[fChunkStarts[index + 1] - fChunkStarts[index]];
+		CharsetDecoder decoder = fCharset.newDecoder();
+		// the text was checked when first read
+		decoder.onMalformedInput(CodingErrorAction.REPLACE);
+		decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		CharBuffer out = CharBuffer.wrap(chars);
+		decoder.decode(in, out, true);
+		decoder.flush(out);
+		return chars;
+	}
+
+	public int length() {
+		return fLength;
+	}
+
+	public CharSequence subSequence(int start, int end) {
+		char[] chars = new char[end - start];
+		getChars(start, end, chars, 0);
+		return new String(chars);
+	}
+
+	public String toString() {
+		return subSequence(0, fLength).toString();
+	}
+}
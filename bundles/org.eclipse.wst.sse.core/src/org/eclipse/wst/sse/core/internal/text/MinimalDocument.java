@@ -32,6 +32,7 @@ import org.eclipse.wst.sse.core.internal.provisional.events.StructuredDocumentEv
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentRegion;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentRegionList;
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentSnapshot;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredTextReParser;
 import org.eclipse.wst.sse.core.internal.undo.IStructuredTextUndoManager;
 
@@ -254,6 +255,10 @@ public class MinimalDocument implements IStructuredDocument {
 		throw new NotImplementedException("intentionally not implemented"); //$NON-NLS-1$
 	}
 
+	public IStructuredDocumentSnapshot getSnapshot() {
+		throw new NotImplementedException("intentionally not implemented"); //$NON-NLS-1$
+	}
+
 	public IStructuredTextReParser getReParser() {
 		throw new NotImplementedException("intentionally not implemented"); //$NON-NLS-1$
 	}
@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.core.internal.text;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.wst.sse.core.internal.ltk.parser.RegionParser;
+import org.eclipse.wst.sse.core.internal.ltk.parser.SplittableRegionParser;
+import org.eclipse.wst.sse.core.internal.ltk.parser.StructuredDocumentRegionParserExtension;
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentRegion;
+
+/**
+ * Parses large texts by cutting them at the offsets offered by a
+ * SplittableRegionParser and parsing the pieces on separate threads, each
+ * with its own new instance of the parser. The pieces' document regions are
+ * then linked together into the same chain the parser would have produced
+ * by itself.
+ *
+ * The pieces are parsed by the calling thread and by helper jobs. There are
+ * never more helper jobs, across all parses, than one fewer than the number
+ * of processors; a text is only split when some are free, and only into as
+ * many pieces as there are threads to parse them. The calling thread parses
+ * any piece no helper has started on, so it never waits for a job to be
+ * scheduled.
+ *
+ * Parsers with StructuredDocumentRegionHandlers are never split, since
+ * handlers may change how the rest of the text is parsed (JSP taglib
+ * directives, for example).
+ *
+ * Starting the workbench with
+ * -Dorg.eclipse.wst.sse.core.parallelParse=false turns this off.
+ */
+final class ParallelDocumentRegionParser {
+	private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("org.eclipse.wst.sse.core.parallelParse")); //$NON-NLS-1$ //$NON-NLS-2$
+	private static final int MINIMUM_LENGTH = 1024 * 1024;
+	private static final int MINIMUM_PIECE_LENGTH = 256 * 1024;
+	private static final int MAXIMUM_HELPERS = Runtime.getRuntime().availableProcessors() - 1;
+
+	private static final Object fgHelperLock = new Object();
+	/* guarded by fgHelperLock */
+	private static int fgHelpers = 0;
+
+	private static class Piece implements Runnable {
+		final RegionParser fParser;
+		final CharSequence fText;
+		final int fStart;
+		final int fEnd;
+		final int fAdjustment;
+		IStructuredDocumentRegion fHead;
+		IStructuredDocumentRegion fTail;
+		Throwable fFailure;
+
+		Piece(RegionParser parser, CharSequence text, int start, int end, int adjustment) {
+			fParser = parser;
+			fText = text;
+			fStart = start;
+			fEnd = end;
+			fAdjustment = adjustment;
+		}
+
+		public void run() {
+			try {
+				fParser.reset(new CharSequenceReader(fText, fStart, fEnd - fStart), fStart);
+				fHead = fParser.getDocumentRegions();
+				if (fHead != null) {
+					StructuredDocumentRegionIterator.adjustStart(fHead, fAdjustment);
+					fTail = fHead;
+					while (fTail.getNext() != null)
+						fTail = fTail.getNext();
+				}
+			}
+			catch (Throwable t) {
+				fFailure = t;
+			}
+		}
+	}
+
+	/**
+	 * The pieces of one text, taken in turn by whichever threads are parsing
+	 * it
+	 */
+	private static class PieceQueue {
+		private final Piece[] fPieces;
+		private int fNext = 0;
+		private int fRunning = 0;
+
+		PieceQueue(Piece[] pieces) {
+			fPieces = pieces;
+		}
+
+		/**
+		 * Parses pieces until there are none left to take.
+		 */
+		void parsePieces() {
+			Piece piece = take();
+			while (piece != null) {
+				try {
+					piece.run();
+				}
+				finally {
+					done();
+				}
+				piece = take();
+			}
+		}
+
+		private synchronized Piece take() {
+			if (fNext == fPieces.length)
+				return null;
+			fRunning++;
+			return fPieces[fNext++];
+		}
+
+		private synchronized void done() {
+			fRunning--;
+			if (fRunning == 0)
+				notifyAll();
+		}
+
+		/**
+		 * Waits for the pieces already taken to be parsed.
+		 */
+		synchronized void waitForPieces() {
+			boolean interrupted = false;
+			while (fRunning > 0) {
+				try {
+					wait();
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class HelperJob extends Job {
+		private final PieceQueue fQueue;
+
+		HelperJob(PieceQueue queue) {
+			super("Structured Document Parser"); //$NON-NLS-1$
+			fQueue = queue;
+			setSystem(true);
+			setPriority(Job.INTERACTIVE);
+		}
+
+		protected IStatus run(IProgressMonitor monitor) {
+			try {
+				fQueue.parsePieces();
+			}
+			finally {
+				releaseHelpers(1);
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+	private ParallelDocumentRegionParser() {
+		super();
+	}
+
+	/**
+	 * @return how many of the wanted helpers may be used, which must later
+	 *         be released
+	 */
+	private static int reserveHelpers(int wanted) {
+		synchronized (fgHelperLock) {
+			int reserved = Math.max(0, Math.min(wanted, MAXIMUM_HELPERS - fgHelpers));
+			fgHelpers += reserved;
+			return reserved;
+		}
+	}
+
+	private static void releaseHelpers(int count) {
+		synchronized (fgHelperLock) {
+			fgHelpers -= count;
+		}
+	}
+
+	/**
+	 * Parses the text between start and end, the same as resetting the
+	 * parser to that range and asking it for its document regions.
+	 *
+	 * @return the head of the chain of document regions, with offsets
+	 *         relative to start, or null if the text was not split; the
+	 *         caller should then parse it as usual
+	 */
+	static IStructuredDocumentRegion parse(RegionParser parser, CharSequence text, int start, int end) {
+		if (!ENABLED || end - start < MINIMUM_LENGTH || !(parser instanceof SplittableRegionParser))
+			return null;
+		if (parser instanceof StructuredDocumentRegionParserExtension && !((StructuredDocumentRegionParserExtension) parser).getStructuredDocumentRegionHandlers().isEmpty())
+			return null;
+		int helpers = reserveHelpers((end - start) / MINIMUM_PIECE_LENGTH - 1);
+		if (helpers == 0)
+			return null;
+		Piece[] pieces;
+		try {
+			int[] offsets = ((SplittableRegionParser) parser).getSplitOffsets(text, start, end, helpers + 1);
+			if (offsets.length == 0)
+				return null;
+
+			pieces = new Piece[offsets.length + 1];
+			int pieceStart = start;
+			for (int i = 0; i < pieces.length; i++) {
+				int pieceEnd = i < offsets.length ? offsets[i] : end;
+				if (pieceEnd <= pieceStart || pieceEnd > end)
+					return null;
+				pieces[i] = new Piece(parser.newInstance(), text, pieceStart, pieceEnd, pieceStart - start);
+				pieceStart = pieceEnd;
+			}
+
+			PieceQueue queue = new PieceQueue(pieces);
+			// each job releases its own helper
+			for (int i = 1; i < pieces.length && helpers > 0; i++) {
+				new HelperJob(queue).schedule();
+				helpers--;
+			}
+			queue.parsePieces();
+			queue.waitForPieces();
+		}
+		finally {
+			// any not handed to a job
+			releaseHelpers(helpers);
+		}
+
+		IStructuredDocumentRegion head = null;
+		IStructuredDocumentRegion tail = null;
+		for (int i = 0; i < pieces.length; i++) {
+			Piece piece = pieces[i];
+			if (piece.fFailure != null || piece.fHead == null)
+				return null;
+			if (tail == null) {
+				head = piece.fHead;
+			}
+			else {
+				// the seam must fall exactly between two complete regions
+				if (!tail.isEnded() || tail.getEnd() != piece.fAdjustment || piece.fHead.getStart() != piece.fAdjustment)
+					return null;
+				tail.setNext(piece.fHead);
+				piece.fHead.setPrevious(tail);
+			}
+			tail = piece.fTail;
+		}
+		return head;
+	}
+}
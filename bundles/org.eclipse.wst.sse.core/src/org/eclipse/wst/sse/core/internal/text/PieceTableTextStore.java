@@ -0,0 +1,496 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.core.internal.text;
+
+import org.eclipse.jface.text.ITextStore;
+
+/**
+ * A text store for very large documents. The text is held as a sequence of
+ * "pieces", each a range of an immutable char array: the original text given
+ * to {@link #set(String)}, or the text of a later replace. Pieces are kept
+ * in a balanced (randomized) tree ordered by position and annotated with
+ * subtree lengths, so a replace is O(log n) and never moves existing text,
+ * unlike a gap store which copies across the gap on every edit away from
+ * the last one.
+ *
+ * The tree is persistent: a replace builds new nodes along the affected path
+ * and never modifies an existing one. This is what allows
+ * {@link #subSequence(int, int)} and {@link #getSnapshot()} to return views
+ * which share the store's text instead of copying it, and which remain
+ * unchanged by subsequent edits.
+ *
+ * The original text may also be given as an immutable CharSequence with
+ * {@link #set(CharSequence)}, in which case it is referred to rather than
+ * copied; a {@link MappedFileText} can so be edited without ever being
+ * read onto the heap.
+ *
+ * Not thread safe for concurrent modification (the document serializes
+ * that), but views may be read from any thread.
+ */
+public class PieceTableTextStore implements ITextStore, CharSequence, IRegionComparible {
+
+	private static final class Piece {
+		/* exactly one of buffer and sequence is set */
+		final char[] buffer;
+		final CharSequence sequence;
+		final int start;
+		final int length;
+		final int priority;
+		final Piece left;
+		final Piece right;
+		final int totalLength;
+		final int count;
+
+		Piece(char[] buffer, CharSequence sequence, int start, int length, int priority, Piece left, Piece right) {
+			this.buffer = buffer;
+			this.sequence = sequence;
+			this.start = start;
+			this.length = length;
+			this.priority = priority;
+			this.left = left;
+			this.right = right;
+			this.totalLength = length + totalLength(left) + totalLength(right);
+			this.count = 1 + count(left) + count(right);
+		}
+
+		Piece with(Piece newLeft, Piece newRight) {
+			return new Piece(buffer, sequence, start, length, priority, newLeft, newRight);
+		}
+
+		char charAt(int index) {
+			if (buffer != null)
+				return buffer[start + index];
+			return sequence.charAt(start + index);
+		}
+	}
+
+	/**
+	 * Remembers where the last character lookup ended up, since by far the
+	 * most common access pattern is sequential (parsing, searching).
+	 * Replaced as a whole so that it can be read without locking.
+	 */
+	private static final class Cursor {
+		final Piece piece;
+		final int pieceOffset;
+
+		Cursor(Piece piece, int pieceOffset) {
+			this.piece = piece;
+			this.pieceOffset = pieceOffset;
+		}
+	}
+
+	/**
+	 * A read-only view of a range of a particular version of the text.
+	 */
+	private static final class PieceSequence implements CharSequence {
+		private final Piece fRoot;
+		private final int fOffset;
+		private final int fLength;
+		private Cursor fSequenceCursor;
+
+		PieceSequence(Piece root, int offset, int length) {
+			fRoot = root;
+			fOffset = offset;
+			fLength = length;
+		}
+
+		public char charAt(int index) {
+			if (index < 0 || index >= fLength)
+				throw new IndexOutOfBoundsException(String.valueOf(index));
+			int absolute = fOffset + index;
+			Cursor cursor = fSequenceCursor;
+			if (cursor == null || absolute < cursor.pieceOffset || absolute >= cursor.pieceOffset + cursor.piece.length) {
+				cursor = locate(fRoot, absolute);
+				fSequenceCursor = cursor;
+			}
+			return cursor.piece.charAt(absolute - cursor.pieceOffset);
+		}
+
+		public int length() {
+			return fLength;
+		}
+
+		public CharSequence subSequence(int start, int end) {
+			if (start < 0 || end > fLength || start > end)
+				throw new IndexOutOfBoundsException();
+			return new PieceSequence(fRoot, fOffset + start, end - start);
+		}
+
+		public String toString() {
+			char[] result = new char[fLength];
+			copy(fRoot, fOffset, fLength, result, 0);
+			return new String(result);
+		}
+	}
+
+	/**
+	 * Past this many pieces, and past one piece for every
+	 * COMPACT_CHARS_PER_PIECE characters, the store is collapsed back into a
+	 * single piece so that a long editing session doesn't degrade lookups.
+	 */
+	private static final int COMPACT_MIN_PIECES = 4096;
+	private static final int COMPACT_CHARS_PER_PIECE = 64;
+
+	private static int count(Piece piece) {
+		return piece == null ? 0 : piece.count;
+	}
+
+	private static int totalLength(Piece piece) {
+		return piece == null ? 0 : piece.totalLength;
+	}
+
+	/**
+	 * Copies <code>length</code> characters starting at <code>offset</code>
+	 * (relative to <code>piece</code>'s subtree) into the destination.
+	 */
+	static void copy(Piece piece, int offset, int length, char[] destination, int destinationOffset) {
+		while (piece != null && length > 0) {
+			int leftLength = totalLength(piece.left);
+			if (offset < leftLength) {
+				int fromLeft = Math.min(length, leftLength - offset);
+				copy(piece.left, offset, fromLeft, destination, destinationOffset);
+				destinationOffset += fromLeft;
+				length -= fromLeft;
+				offset = leftLength;
+			}
+			if (length > 0 && offset < leftLength + piece.length) {
+				int inPiece = offset - leftLength;
+				int fromPiece = Math.min(length, piece.length - inPiece);
+				copyPiece(piece, piece.start + inPiece, fromPiece, destination, destinationOffset);
+				destinationOffset += fromPiece;
+				length -= fromPiece;
+				offset = leftLength + piece.length;
+			}
+			// continue with the right subtree, iteratively
+			offset -= leftLength + piece.length;
+			piece = piece.right;
+		}
+	}
+
+	private static void copyPiece(Piece piece, int start, int length, char[] destination, int destinationOffset) {
+		if (piece.buffer != null) {
+			System.arraycopy(piece.buffer, start, destination, destinationOffset, length);
+		}
+		else if (piece.sequence instanceof MappedFileText) {
+			((MappedFileText) piece.sequence).getChars(start, start + length, destination, destinationOffset);
+		}
+		else {
+			for (int i = 0; i < length; i++) {
+				destination[destinationOffset + i] = piece.sequence.charAt(start + i);
+			}
+		}
+	}
+
+	static Cursor locate(Piece piece, int offset) {
+		int pieceOffset = 0;
+		while (piece != null) {
+			int leftLength = totalLength(piece.left);
+			if (offset < leftLength) {
+				piece = piece.left;
+			}
+			else if (offset < leftLength + piece.length) {
+				return new Cursor(piece, pieceOffset + leftLength);
+			}
+			else {
+				offset -= leftLength + piece.length;
+				pieceOffset += leftLength + piece.length;
+				piece = piece.right;
+			}
+		}
+		throw new IndexOutOfBoundsException();
+	}
+
+	private static Piece merge(Piece left, Piece right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+		if (left.priority >= right.priority)
+			return left.with(left.left, merge(left.right, right));
+		return right.with(merge(left, right.left), right.right);
+	}
+
+	/**
+	 * Splits the subtree at <code>offset</code>, putting the two halves into
+	 * <code>result[0]</code> and <code>result[1]</code>. A piece straddling
+	 * the offset is divided in two, both keeping its priority.
+	 */
+	private static void split(Piece piece, int offset, Piece[] result) {
+		if (piece == null) {
+			result[0] = null;
+			result[1] = null;
+			return;
+		}
+		int leftLength = totalLength(piece.left);
+		if (offset <= leftLength) {
+			split(piece.left, offset, result);
+			result[1] = piece.with(result[1], piece.right);
+		}
+		else if (offset >= leftLength + piece.length) {
+			split(piece.right, offset - leftLength - piece.length, result);
+			result[0] = piece.with(piece.left, result[0]);
+		}
+		else {
+			int cut = offset - leftLength;
+			result[0] = new Piece(piece.buffer, piece.sequence, piece.start, cut, piece.priority, piece.left, null);
+			result[1] = new Piece(piece.buffer, piece.sequence, piece.start + cut, piece.length - cut, piece.priority, null, piece.right);
+		}
+	}
+
+	private Cursor fCursor;
+	private int fSeed = 0x2545F491;
+	private Piece fRoot;
+
+	public PieceTableTextStore() {
+		super();
+	}
+
+	public char charAt(int index) {
+		return get(index);
+	}
+
+	private boolean matchesIgnoreCase(char c1, char c2) {
+		// we check both case conversions to handle those few cases,
+		// in languages such as Turkish, which have some characters
+		// which sort of have 3 cases.
+		boolean result = false;
+		if (Character.toUpperCase(c1) == Character.toUpperCase(c2))
+			result = true;
+		else if (Character.toLowerCase(c1) == Character.toLowerCase(c2))
+			result = true;
+		return result;
+	}
+
+	private int nextPriority() {
+		// xorshift, good enough to keep the tree balanced
+		int x = fSeed;
+		x ^= x << 13;
+		x ^= x >>> 17;
+		x ^= x << 5;
+		fSeed = x;
+		return x;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jface.text.ITextStore#get(int)
+	 */
+	public char get(int offset) {
+		Cursor cursor = fCursor;
+		if (cursor == null || offset < cursor.pieceOffset || offset >= cursor.pieceOffset + cursor.piece.length) {
+			if (offset < 0 || offset >= getLength())
+				throw new IndexOutOfBoundsException(String.valueOf(offset));
+			cursor = locate(fRoot, offset);
+			fCursor = cursor;
+		}
+		return cursor.piece.charAt(offset - cursor.pieceOffset);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jface.text.ITextStore#get(int, int)
+	 */
+	public String get(int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > getLength())
+			throw new IndexOutOfBoundsException();
+		char[] result = new char[length];
+		copy(fRoot, offset, length, result, 0);
+		return new String(result);
+	}
+
+	/**
+	 * Copies characters directly into the destination array, in the manner
+	 * of {@link String#getChars(int, int, char[], int)}, without creating an
+	 * intermediate String.
+	 */
+	public void getChars(int start, int end, char[] destination, int destinationOffset) {
+		if (start < 0 || end > getLength() || start > end)
+			throw new IndexOutOfBoundsException();
+		copy(fRoot, start, end - start, destination, destinationOffset);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jface.text.ITextStore#getLength()
+	 */
+	public int getLength() {
+		return totalLength(fRoot);
+	}
+
+	/**
+	 * @return the number of pieces the text is currently divided into
+	 */
+	public int getPieceCount() {
+		return count(fRoot);
+	}
+
+	/**
+	 * Returns a read-only view of the current text. The view shares the
+	 * store's character data and is not affected by later modifications of
+	 * the store.
+	 */
+	public CharSequence getSnapshot() {
+		return new PieceSequence(fRoot, 0, getLength());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.CharSequence#length()
+	 */
+	public int length() {
+		return getLength();
+	}
+
+	public boolean regionMatches(int offset, int length, String stringToCompare) {
+		boolean result = false;
+		int compareLength = stringToCompare.length();
+		if (compareLength == length) {
+			int endOffset = offset + length;
+			if (endOffset <= length()) {
+				result = regionMatches(offset, stringToCompare);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * This method assumes all lengths have been checked and fall withint
+	 * exceptable limits
+	 *
+	 * @param offset
+	 * @param stringToCompare
+	 * @return
+	 */
+	private boolean regionMatches(int offset, String stringToCompare) {
+		boolean result = true;
+		int stringOffset = 0;
+		int end = offset + stringToCompare.length();
+		for (int i = offset; i < end; i++) {
+			if (charAt(i) != stringToCompare.charAt(stringOffset++)) {
+				result = false;
+				break;
+			}
+		}
+		return result;
+	}
+
+	public boolean regionMatchesIgnoreCase(int offset, int length, String stringToCompare) {
+		boolean result = false;
+		int compareLength = stringToCompare.length();
+		if (compareLength == length) {
+			int endOffset = offset + length;
+			if (endOffset <= length()) {
+				result = regionMatchesIgnoreCase(offset, stringToCompare);
+			}
+		}
+
+		return result;
+	}
+
+	private boolean regionMatchesIgnoreCase(int offset, String stringToCompare) {
+		boolean result = true;
+		int stringOffset = 0;
+		int end = offset + stringToCompare.length();
+		for (int i = offset; i < end; i++) {
+			if (!matchesIgnoreCase(charAt(i), stringToCompare.charAt(stringOffset++))) {
+				result = false;
+				break;
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jface.text.ITextStore#replace(int, int,
+	 *      java.lang.String)
+	 */
+	public void replace(int offset, int length, String text) {
+		if (offset < 0 || length < 0 || offset + length > getLength())
+			throw new IndexOutOfBoundsException();
+		Piece[] parts = new Piece[2];
+		split(fRoot, offset, parts);
+		Piece before = parts[0];
+		split(parts[1], length, parts);
+		Piece after = parts[1];
+		Piece inserted = null;
+		if (text != null && text.length() > 0) {
+			inserted = new Piece(text.toCharArray(), null, 0, text.length(), nextPriority(), null, null);
+		}
+		fRoot = merge(merge(before, inserted), after);
+		fCursor = null;
+
+		int pieces = count(fRoot);
+		if (pieces > COMPACT_MIN_PIECES && pieces > totalLength(fRoot) / COMPACT_CHARS_PER_PIECE) {
+			compact();
+		}
+	}
+
+	private void compact() {
+		int length = getLength();
+		char[] all = new char[length];
+		copy(fRoot, 0, length, all, 0);
+		fRoot = new Piece(all, null, 0, length, nextPriority(), null, null);
+		fCursor = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jface.text.ITextStore#set(java.lang.String)
+	 */
+	public void set(String text) {
+		if (text == null || text.length() == 0) {
+			fRoot = null;
+		}
+		else {
+			fRoot = new Piece(text.toCharArray(), null, 0, text.length(), nextPriority(), null, null);
+		}
+		fCursor = null;
+	}
+
+	/**
+	 * Sets the text to the given characters without copying them. The
+	 * sequence must never change, and should be cheap to read from at any
+	 * offset.
+	 */
+	public void set(CharSequence text) {
+		if (text == null || text.length() == 0) {
+			fRoot = null;
+		}
+		else {
+			fRoot = new Piece(null, text, 0, text.length(), nextPriority(), null, null);
+		}
+		fCursor = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.CharSequence#subSequence(int, int)
+	 */
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > getLength() || start > end)
+			throw new IndexOutOfBoundsException();
+		return new PieceSequence(fRoot, start, end - start);
+	}
+
+	public String toString() {
+		return get(0, getLength());
+	}
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.core.internal.text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.text.ITextStore;
+
+/**
+ * The text of a document snapshot, held as a series of immutable segments,
+ * so that the snapshot of a later version can share every segment the edits
+ * in between didn't touch rather than copying the whole text again. Only the
+ * segments around the changed range are copied from the text store.
+ *
+ * All fields are final and fully populated by the constructor, so once
+ * published, instances are safely shared between threads.
+ */
+final class SnapshotText implements CharSequence {
+	private static final int SEGMENT_LENGTH = 16 * 1024;
+	/*
+	 * shorter segments next to a change are copied again along with it, so
+	 * that repeated edits don't leave the text in ever smaller pieces
+	 */
+	private static final int MINIMUM_SEGMENT_LENGTH = SEGMENT_LENGTH / 4;
+
+	private final String[] fSegments;
+	/* where each segment starts, with one extra entry marking the end */
+	private final int[] fStarts;
+
+	/**
+	 * Copies the whole text of the store.
+	 */
+	SnapshotText(ITextStore store) {
+		this(null, 0, 0, 0, store);
+	}
+
+	/**
+	 * Shares the segments of the previous text that lie outside of the
+	 * changed range, and copies the rest from the store. Must be called
+	 * while the store is not being changed.
+	 *
+	 * @param previous
+	 *            the text of an earlier version, or null to copy everything
+	 * @param changeStart
+	 *            where the store's text first differs from previous
+	 * @param changeEnd
+	 *            where, in the store's text, the differences end
+	 * @param delta
+	 *            how much longer the store's text is than previous
+	 * @param store
+	 *            the text store
+	 */
+	SnapshotText(SnapshotText previous, int changeStart, int changeEnd, int delta, ITextStore store) {
+		List segments = new ArrayList();
+		int copyStart = 0;
+		int copyEnd = store.getLength();
+		int head = 0;
+		int tail = 0;
+		if (previous != null) {
+			int count = previous.fSegments.length;
+			head = previous.segmentIndex(changeStart);
+			if (head > 0 && previous.fSegments[head - 1].length() < MINIMUM_SEGMENT_LENGTH)
+				head--;
+			copyStart = previous.fStarts[head];
+			tail = head;
+			int oldChangeEnd = changeEnd - delta;
+			while (tail < count && previous.fStarts[tail] < oldChangeEnd)
+				tail++;
+			if (tail < count && previous.fSegments[tail].length() < MINIMUM_SEGMENT_LENGTH)
+				tail++;
+			copyEnd = previous.fStarts[tail] + delta;
+			for (int i = 0; i < head; i++) {
+				segments.add(previous.fSegments[i]);
+			}
+		}
+		for (int start = copyStart; start < copyEnd; start += SEGMENT_LENGTH) {
+			segments.add(store.get(start, Math.min(SEGMENT_LENGTH, copyEnd - start)));
+		}
+		if (previous != null) {
+			for (int i = tail; i < previous.fSegments.length; i++) {
+				segments.add(previous.fSegments[i]);
+			}
+		}
+
+		fSegments = (String[]) segments.toArray(new String[segments.size()]);
+		fStarts = new int[fSegments.length + 1];
+		for (int i = 0; i < fSegments.length; i++) {
+			fStarts[i + 1] = fStarts[i] + fSegments[i].length();
+		}
+	}
+
+	/**
+	 * @return the index of the segment containing the offset, or the number
+	 *         of segments for the offset at the end
+	 */
+	private int segmentIndex(int offset) {
+		int low = 0;
+		int high = fSegments.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (fStarts[mid + 1] <= offset) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= length())
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		int segment = segmentIndex(index);
+		return fSegments[segment].charAt(index - fStarts[segment]);
+	}
+
+	public int length() {
+		return fStarts[fSegments.length];
+	}
+
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > length() || start > end)
+			throw new IndexOutOfBoundsException();
+		if (start == end)
+			return ""; //$NON-NLS-1$
+		int segment = segmentIndex(start);
+		if (end <= fStarts[segment + 1])
+			return fSegments[segment].substring(start - fStarts[segment], end - fStarts[segment]);
+		StringBuffer text = new StringBuffer(end - start);
+		int offset = start;
+		while (offset < end) {
+			int segmentEnd = Math.min(end, fStarts[segment + 1]);
+			text.append(fSegments[segment].substring(offset - fStarts[segment], segmentEnd - fStarts[segment]));
+			offset = segmentEnd;
+			segment++;
+		}
+		return text.toString();
+	}
+
+	public String toString() {
+		return subSequence(0, length()).toString();
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2011 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,8 +18,12 @@ import java.util.List;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.FindReplaceDocumentAdapter;
 import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextStore;
 import org.eclipse.wst.sse.core.internal.Logger;
 import org.eclipse.wst.sse.core.internal.ltk.parser.BlockTagParser;
+import org.eclipse.wst.sse.core.internal.ltk.parser.RegionParser;
+import org.eclipse.wst.sse.core.internal.ltk.parser.SplittableRegionParser;
+import org.eclipse.wst.sse.core.internal.ltk.parser.StructuredDocumentRegionParserExtension;
 import org.eclipse.wst.sse.core.internal.provisional.events.NoChangeEvent;
 import org.eclipse.wst.sse.core.internal.provisional.events.RegionChangedEvent;
 import org.eclipse.wst.sse.core.internal.provisional.events.RegionsReplacedEvent;
@@ -44,6 +48,50 @@ import org.eclipse.wst.sse.core.utils.StringUtils;
  * safe class.
  */
 public class StructuredDocumentReParser implements IStructuredTextReParser {
+	/**
+	 * The document's text as it will be once the pending change is applied,
+	 * for looking ahead before the text store is updated.
+	 */
+	private static class ChangedText implements CharSequence {
+		private final ITextStore fStore;
+		private final int fStart;
+		private final String fChanges;
+		private final int fChangesEnd;
+		private final int fLengthDifference;
+
+		ChangedText(ITextStore store, int start, int lengthToReplace, String changes) {
+			fStore = store;
+			fStart = start;
+			fChanges = changes == null ? "" : changes; //$NON-NLS-1$
+			fChangesEnd = start + fChanges.length();
+			fLengthDifference = fChanges.length() - lengthToReplace;
+		}
+
+		public char charAt(int index) {
+			if (index < fStart)
+				return fStore.get(index);
+			if (index < fChangesEnd)
+				return fChanges.charAt(index - fStart);
+			return fStore.get(index - fLengthDifference);
+		}
+
+		public int length() {
+			return fStore.getLength() + fLengthDifference;
+		}
+
+		public CharSequence subSequence(int start, int end) {
+			StringBuffer buffer = new StringBuffer(end - start);
+			for (int i = start; i < end; i++) {
+				buffer.append(charAt(i));
+			}
+			return buffer.toString();
+		}
+
+		public String toString() {
+			return subSequence(0, length()).toString();
+		}
+	}
+
 	protected IStructuredDocumentRegion dirtyEnd = null;
 	protected IStructuredDocumentRegion dirtyStart = null;
 	final private String doubleQuote = new String(new char[]{'\"'});
@@ -108,7 +156,9 @@ public class StructuredDocumentReParser implements IStructuredTextReParser {
 			final String oldText = fStructuredDocument.get(fStart, 1);
 			final String peek = StringUtils.paste(oldText, fChanges, 0, fLengthToReplace);
 			if ("/>".equals(peek)) { // Reparse afterwards if the tag became self-closing
-				result = reparse(dirtyStart.getStart(), documentLength - 1);
+				result = reparseBounded(dirtyStart.getStart());
+				if (result == null)
+					result = reparse(dirtyStart.getStart(), documentLength - 1);
 			}
 		}
 		return result;
@@ -127,7 +177,9 @@ public class StructuredDocumentReParser implements IStructuredTextReParser {
 			final String oldText = fStructuredDocument.get(fStart, 2);
 			final String peek = StringUtils.paste(oldText, fChanges, 0, fLengthToReplace);
 			if ("/>".equals(oldText) && ">".equals(peek)) { // Reparse afterwards if the block tag went from self-closing to open
-				result = reparse(dirtyStart.getStart(), documentLength - 1);
+				result = reparseBounded(dirtyStart.getStart());
+				if (result == null)
+					result = reparse(dirtyStart.getStart(), documentLength - 1);
 			}
 		}
 		return result;
@@ -166,8 +218,11 @@ public class StructuredDocumentReParser implements IStructuredTextReParser {
 					((isCriticalString && toBeCriticalString) && (changeInIsEndedState(oldText, peek)))) {
 			// if it involves a change of a critical string (making one where
 			// there wasn't, or removing
-			// one where there was one) then reparse everthing.
-			result = reparse(0, documentLength - 1);
+			// one where there was one) then reparse everthing, unless we
+			// can tell where its effect ends.
+			result = reparseBounded(fStart);
+			if (result == null)
+				result = reparse(0, documentLength - 1);
 		}
 		return result;
 	}
@@ -351,8 +406,7 @@ public class StructuredDocumentReParser implements IStructuredTextReParser {
 	 * returns the raw result
 	 */
 	private IStructuredDocumentRegion _core_reparse_text(int rescanStart, int rescanEnd) {
-		fStructuredDocument.resetParser(rescanStart, rescanEnd);
-		return fStructuredDocument.getParser().getDocumentRegions();
+		return fStructuredDocument.parseDocumentRegions(rescanStart, rescanEnd);
 	}
 
 	/**
@@ -691,7 +745,9 @@ public class StructuredDocumentReParser implements IStructuredTextReParser {
 				// to be correctly re-parsed. The backing up is done in the
 				// reparse/find dirty start from hint
 				// method.
-				result = reparse(dirtyStartPos, fStructuredDocument.getLength() - 1);
+				result = reparseBounded(dirtyStartPos);
+				if (result == null)
+					result = reparse(dirtyStartPos, fStructuredDocument.getLength() - 1);
 			}
 		} catch (BadLocationException e) {
 			Logger.logException(e);
@@ -801,6 +857,40 @@ public class StructuredDocumentReParser implements IStructuredTextReParser {
 		return dirtyEnd;
 	}
 
+	/**
+	 * Finds the old document region after which a reparse begun at the given
+	 * one may stop: the first one, past the changed text, that ends where
+	 * the parser could start afresh in the new text, and where the old parse
+	 * was also back in its initial state. Parsing past that point could only
+	 * reproduce the old document regions.
+	 * 
+	 * @return the old document region, or null if none can be found
+	 */
+	private IStructuredDocumentRegion findResynchronizedDirtyEnd(IStructuredDocumentRegion start) {
+		RegionParser parser = fStructuredDocument.getParser();
+		if (!(parser instanceof SplittableRegionParser))
+			return null;
+		if (parser instanceof StructuredDocumentRegionParserExtension && !((StructuredDocumentRegionParserExtension) parser).getStructuredDocumentRegionHandlers().isEmpty())
+			return null;
+		CharSequence newText = new ChangedText(fStructuredDocument.getStore(), fStart, fLengthToReplace, fChanges);
+		int newLength = newText.length();
+		int scanStart = start.getStart();
+		int from = Math.max(fStart + fLengthToReplace + fLengthDifference, scanStart + 1);
+		while (from < newLength) {
+			int offset = ((SplittableRegionParser) parser).getSplitOffset(newText, scanStart, from, newLength);
+			if (offset < 0)
+				return null;
+			int oldOffset = offset - fLengthDifference;
+			IStructuredDocumentRegion oldRegion = fStructuredDocument.getRegionAtCharacterOffset(oldOffset - 1);
+			if (oldRegion != null && oldRegion.getEnd() == oldOffset && oldRegion.getNext() != null && isResynchronizationPoint(oldRegion))
+				return oldRegion;
+			// a split offset is also a safe place to continue scanning from
+			scanStart = offset;
+			from = offset + 1;
+		}
+		return null;
+	}
+
 	protected void findDirtyStart(int start) {
 		IStructuredDocumentRegion result = fStructuredDocument.getRegionAtCharacterOffset(start);
 		// heuristic: if the postion is exactly equal to the start, then
@@ -917,6 +1007,7 @@ public class StructuredDocumentReParser implements IStructuredTextReParser {
 				firstNew.setPrevious(oldPrevious);
 			if (lastNew != null)
 				lastNew.setNext(oldNext);
+			fStructuredDocument.documentRegionsInserted(oldPrevious, newNodes);
 		}
 		// else nothing to insert
 	}
@@ -928,6 +1019,17 @@ public class StructuredDocumentReParser implements IStructuredTextReParser {
 		return (aRegion instanceof ITextRegionCollection);
 	}
 
+	/**
+	 * Answers whether, having produced the given (old) document region, the
+	 * parser was back in the same state as a new parser starting at the
+	 * region's end. Reparsing with reparseBounded(int) may only stop at
+	 * such regions. This implementation knows nothing of the language and
+	 * answers false.
+	 */
+	protected boolean isResynchronizationPoint(IStructuredDocumentRegion documentRegion) {
+		return false;
+	}
+
 	/**
 	 * @return boolean
 	 */
@@ -1358,6 +1460,34 @@ public class StructuredDocumentReParser implements IStructuredTextReParser {
 		return result;
 	}
 
+	/**
+	 * An entry point for reparsing changes that may affect the rest of the
+	 * document, such as a new comment start or quote. Rather than
+	 * reparsing to the end of the document, it reparses from the document
+	 * region at the start hint only until the new regions fall back in step
+	 * with the old ones, so the resulting event covers only the regions that
+	 * actually changed.
+	 * 
+	 * @return the resulting event, or null if where to stop could not be
+	 *         determined; the caller should then fall back to a longer
+	 *         reparse
+	 */
+	protected StructuredDocumentEvent reparseBounded(int reScanStartHint) {
+		if (fStructuredDocument.getCachedDocumentRegion() == null)
+			return null;
+		findDirtyStart(reScanStartHint);
+		if (dirtyStart == null)
+			return null;
+		IStructuredDocumentRegion resynchronized = findResynchronizedDirtyEnd(dirtyStart);
+		if (resynchronized == null)
+			return null;
+		fStructuredDocument.setCachedDocumentRegion(resynchronized);
+		dirtyEnd = resynchronized;
+		StructuredDocumentEvent result = reparse(dirtyStart, dirtyEnd);
+		isParsing = false;
+		return result;
+	}
+
 	/**
 	 * The core reparsing method ... after the dirty start and dirty end have
 	 * been calculated elsewhere.
@@ -1570,6 +1700,8 @@ public class StructuredDocumentReParser implements IStructuredTextReParser {
 			if (oldNext != null)
 				oldNext.setPrevious(oldPrevious);
 		}
+		// keep the document's offset index in step with the chain
+		fStructuredDocument.documentRegionsReplaced(oldNodes, newNodes);
 		//
 		// SIDE EFFECTs
 		// if we have oldNodes, and if oldNext or oldPrevious is null,
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.core.internal.text;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentRegion;
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentSnapshot;
+import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegion;
+import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegionList;
+
+/**
+ * The region structure is copied into packed int arrays, with region types
+ * stored as indexes into a small table of distinct type strings, so that a
+ * snapshot of even a very large document is a handful of objects. All
+ * fields are final and fully populated by the constructor, so once
+ * published, instances are safely shared between threads.
+ */
+class StructuredDocumentSnapshot implements IStructuredDocumentSnapshot {
+	private final long fModificationStamp;
+	private final CharSequence fText;
+	private final int fDocumentRegionCount;
+	/* per document region */
+	private final int[] fDocumentRegionStarts;
+	private final int[] fDocumentRegionEnds;
+	private final int[] fDocumentRegionTypes;
+	private final boolean[] fDocumentRegionEnded;
+	/*
+	 * index of each document region's first text region in the region
+	 * arrays, with one extra entry marking the end of the last
+	 */
+	private final int[] fFirstRegion;
+	/* per text region */
+	private final int[] fRegionStarts;
+	private final int[] fRegionTextEnds;
+	private final int[] fRegionEnds;
+	private final int[] fRegionTypes;
+	private final String[] fTypes;
+
+	/**
+	 * Must be called while the document's regions are not being changed.
+	 */
+	StructuredDocumentSnapshot(long modificationStamp, CharSequence text, IStructuredDocumentRegion firstDocumentRegion) {
+		fModificationStamp = modificationStamp;
+		fText = text;
+
+		int documentRegionCount = 0;
+		int regionCount = 0;
+		IStructuredDocumentRegion documentRegion = firstDocumentRegion;
+		while (documentRegion != null) {
+			documentRegionCount++;
+			regionCount += documentRegion.getNumberOfRegions();
+			documentRegion = documentRegion.getNext();
+		}
+		fDocumentRegionCount = documentRegionCount;
+		fDocumentRegionStarts = new int[documentRegionCount];
+		fDocumentRegionEnds = new int[documentRegionCount];
+		fDocumentRegionTypes = new int[documentRegionCount];
+		fDocumentRegionEnded = new boolean[documentRegionCount];
+		fFirstRegion = new int[documentRegionCount + 1];
+		fRegionStarts = new int[regionCount];
+		fRegionTextEnds = new int[regionCount];
+		fRegionEnds = new int[regionCount];
+		fRegionTypes = new int[regionCount];
+
+		Map typeIndexes = new HashMap();
+		int regionIndex = 0;
+		documentRegion = firstDocumentRegion;
+		for (int i = 0; i < documentRegionCount; i++) {
+			fDocumentRegionStarts[i] = documentRegion.getStart();
+			fDocumentRegionEnds[i] = documentRegion.getEnd();
+			fDocumentRegionTypes[i] = typeIndex(typeIndexes, documentRegion.getType());
+			fDocumentRegionEnded[i] = documentRegion.isEnded();
+			fFirstRegion[i] = regionIndex;
+			ITextRegionList regions = documentRegion.getRegions();
+			int size = regions.size();
+			for (int j = 0; j < size; j++) {
+				ITextRegion region = regions.get(j);
+				fRegionStarts[regionIndex] = documentRegion.getStartOffset(region);
+				fRegionTextEnds[regionIndex] = documentRegion.getTextEndOffset(region);
+				fRegionEnds[regionIndex] = documentRegion.getEndOffset(region);
+				fRegionTypes[regionIndex] = typeIndex(typeIndexes, region.getType());
+				regionIndex++;
+			}
+			documentRegion = documentRegion.getNext();
+		}
+		fFirstRegion[documentRegionCount] = regionIndex;
+
+		fTypes = new String[typeIndexes.size()];
+		Object[] types = typeIndexes.keySet().toArray();
+		for (int i = 0; i < types.length; i++) {
+			fTypes[((Integer) typeIndexes.get(types[i])).intValue()] = (String) types[i];
+		}
+	}
+
+	private static int typeIndex(Map typeIndexes, String type) {
+		Integer index = (Integer) typeIndexes.get(type);
+		if (index == null) {
+			index = new Integer(typeIndexes.size());
+			typeIndexes.put(type, index);
+		}
+		return index.intValue();
+	}
+
+	public String get(int offset, int length) {
+		return fText.subSequence(offset, offset + length).toString();
+	}
+
+	public int getDocumentRegionEnd(int index) {
+		return fDocumentRegionEnds[index];
+	}
+
+	public int getDocumentRegionIndex(int offset) {
+		int low = 0;
+		int high = fDocumentRegionCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (fDocumentRegionStarts[mid] <= offset) {
+				low = mid + 1;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+		// skip back over any zero length regions at the same start
+		while (high >= 0 && !(fDocumentRegionStarts[high] <= offset && offset < fDocumentRegionEnds[high])) {
+			if (high == 0 || fDocumentRegionStarts[high - 1] != fDocumentRegionStarts[high])
+				return -1;
+			high--;
+		}
+		return high;
+	}
+
+	public int getDocumentRegionStart(int index) {
+		return fDocumentRegionStarts[index];
+	}
+
+	public String getDocumentRegionType(int index) {
+		return fTypes[fDocumentRegionTypes[index]];
+	}
+
+	public int getLength() {
+		return fText.length();
+	}
+
+	public long getModificationStamp() {
+		return fModificationStamp;
+	}
+
+	public int getNumberOfDocumentRegions() {
+		return fDocumentRegionCount;
+	}
+
+	public int getNumberOfRegions(int documentRegionIndex) {
+		return fFirstRegion[documentRegionIndex + 1] - fFirstRegion[documentRegionIndex];
+	}
+
+	private int getRegion(int documentRegionIndex, int regionIndex) {
+		if (regionIndex < 0 || regionIndex >= getNumberOfRegions(documentRegionIndex))
+			throw new ArrayIndexOutOfBoundsException(regionIndex);
+		return fFirstRegion[documentRegionIndex] + regionIndex;
+	}
+
+	public int getRegionEnd(int documentRegionIndex, int regionIndex) {
+		return fRegionEnds[getRegion(documentRegionIndex, regionIndex)];
+	}
+
+	public int getRegionStart(int documentRegionIndex, int regionIndex) {
+		return fRegionStarts[getRegion(documentRegionIndex, regionIndex)];
+	}
+
+	public int getRegionTextEnd(int documentRegionIndex, int regionIndex) {
+		return fRegionTextEnds[getRegion(documentRegionIndex, regionIndex)];
+	}
+
+	public String getRegionType(int documentRegionIndex, int regionIndex) {
+		return fTypes[fRegionTypes[getRegion(documentRegionIndex, regionIndex)]];
+	}
+
+	public CharSequence getText() {
+		return fText;
+	}
+
+	public boolean isDocumentRegionEnded(int index) {
+		return fDocumentRegionEnded[index];
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2010 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -153,7 +153,7 @@ public class TextRegionListImpl implements ITextRegionList {
 		int result = -1;
 		if (region != null) {
 			if (fRegions != null) {
-				for (int i = 0; i < fRegions.length; i++) {
+				for (int i = 0; i < fRegionsCount; i++) {
 					if (region.equals(fRegions[i])) {
 						result = i;
 						break;
@@ -187,20 +187,19 @@ public class TextRegionListImpl implements ITextRegionList {
 	public void remove(ITextRegion a) {
 		if (fRegions == null || a == null)
 			return;
+		// compact in place rather than allocating a new array
 		int newIndex = 0;
-		ITextRegion[] newRegions = new ITextRegion[fRegionsCount];
 		int oldRegionCount = fRegionsCount;
-		boolean found = false;
 		for (int oldIndex = 0; oldIndex < oldRegionCount; oldIndex++) {
 			ITextRegion candidate = fRegions[oldIndex];
 			if (a == candidate) {
 				fRegionsCount--;
-				found = true;
 			} else
-				newRegions[newIndex++] = fRegions[oldIndex];
+				fRegions[newIndex++] = candidate;
+		}
+		for (int i = fRegionsCount; i < oldRegionCount; i++) {
+			fRegions[i] = null;
 		}
-		if (found)
-			fRegions = newRegions;
 	}
 
 	public void removeAll(ITextRegionList regionList) {
@@ -221,12 +220,13 @@ public class TextRegionListImpl implements ITextRegionList {
 	public ITextRegion[] toArray() {
 		// return "clone" of internal array
 		ITextRegion[] newArray = new ITextRegion[fRegionsCount];
-		System.arraycopy(fRegions, 0, newArray, 0, fRegionsCount);
+		if (fRegionsCount > 0)
+			System.arraycopy(fRegions, 0, newArray, 0, fRegionsCount);
 		return newArray;
 	}
 	
 	public void trimToSize() {
-		if (fRegions.length > fRegionsCount) {
+		if (fRegions != null && fRegions.length > fRegionsCount) {
 			ITextRegion[] newRegions = new ITextRegion[fRegionsCount];
 			System.arraycopy(fRegions, 0, newRegions, 0, fRegionsCount);
 			fRegions = newRegions;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2005 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -29,6 +29,18 @@ public class StructuredTextCommandImpl extends AbstractCommand implements Struct
 	protected String fTextInserted = null;
 	protected int fTextStart = -1;
 
+	/*
+	 * while typing is added to the command its text is kept in buffers, and
+	 * once complete, in a character array which may be shared with other
+	 * commands; either way the String fields are then null
+	 */
+	private StringBuffer fDeletedBuffer = null;
+	private StringBuffer fInsertedBuffer = null;
+	private char[] fSharedText = null;
+	private int fSharedTextOffset = 0;
+	private int fSharedDeletedLength = 0;
+	private int fSharedInsertedLength = 0;
+
 	/**
 	 * We have no-arg constructor non-public to force document to be specfied.
 	 *  
@@ -42,6 +54,43 @@ public class StructuredTextCommandImpl extends AbstractCommand implements Struct
 		fDocument = document; // needed for updating the text
 	}
 
+	/**
+	 * Adds the text of an edit made just after this command's inserted text.
+	 */
+	void appendText(String textDeleted, String textInserted, int textEnd) {
+		startBuffering();
+		fDeletedBuffer.append(textDeleted);
+		fInsertedBuffer.append(textInserted);
+		fTextEnd = textEnd;
+	}
+
+	/**
+	 * Copies this command's text into the given buffer, from the given
+	 * offset, and reads it from there from now on.
+	 * 
+	 * @return the offset after this command's text
+	 * @see #getTextLength()
+	 */
+	int shareText(char[] buffer, int offset) {
+		String textDeleted = getTextDeleted();
+		String textInserted = getTextInserted();
+		int deletedLength = textDeleted != null ? textDeleted.length() : 0;
+		int insertedLength = textInserted != null ? textInserted.length() : 0;
+		if (deletedLength > 0)
+			textDeleted.getChars(0, deletedLength, buffer, offset);
+		if (insertedLength > 0)
+			textInserted.getChars(0, insertedLength, buffer, offset + deletedLength);
+		fDeletedBuffer = null;
+		fInsertedBuffer = null;
+		fTextDeleted = null;
+		fTextInserted = null;
+		fSharedText = buffer;
+		fSharedTextOffset = offset;
+		fSharedDeletedLength = deletedLength;
+		fSharedInsertedLength = insertedLength;
+		return offset + deletedLength + insertedLength;
+	}
+
 	public void execute() {
 	}
 
@@ -49,9 +98,21 @@ public class StructuredTextCommandImpl extends AbstractCommand implements Struct
 	 * getTextDeleted method comment.
 	 */
 	public java.lang.String getTextDeleted() {
+		if (fDeletedBuffer != null)
+			return fDeletedBuffer.toString();
+		if (fSharedText != null)
+			return new String(fSharedText, fSharedTextOffset, fSharedDeletedLength);
 		return fTextDeleted;
 	}
 
+	int getTextDeletedLength() {
+		if (fDeletedBuffer != null)
+			return fDeletedBuffer.length();
+		if (fSharedText != null)
+			return fSharedDeletedLength;
+		return fTextDeleted != null ? fTextDeleted.length() : 0;
+	}
+
 	/**
 	 * textEnd is the same as (textStart + textInserted.length())
 	 */
@@ -63,9 +124,28 @@ public class StructuredTextCommandImpl extends AbstractCommand implements Struct
 	 * getTextInserted method comment.
 	 */
 	public java.lang.String getTextInserted() {
+		if (fInsertedBuffer != null)
+			return fInsertedBuffer.toString();
+		if (fSharedText != null)
+			return new String(fSharedText, fSharedTextOffset + fSharedDeletedLength, fSharedInsertedLength);
 		return fTextInserted;
 	}
 
+	int getTextInsertedLength() {
+		if (fInsertedBuffer != null)
+			return fInsertedBuffer.length();
+		if (fSharedText != null)
+			return fSharedInsertedLength;
+		return fTextInserted != null ? fTextInserted.length() : 0;
+	}
+
+	/**
+	 * @return the number of characters of text this command keeps
+	 */
+	int getTextLength() {
+		return getTextDeletedLength() + getTextInsertedLength();
+	}
+
 	/**
 	 * getTextStart method comment.
 	 */
@@ -73,6 +153,16 @@ public class StructuredTextCommandImpl extends AbstractCommand implements Struct
 		return fTextStart;
 	}
 
+	/**
+	 * Adds the text deleted by pressing backspace just before this command's
+	 * text.
+	 */
+	void prependTextDeleted(String textDeleted, int textStart) {
+		startBuffering();
+		fDeletedBuffer.insert(0, textDeleted);
+		fTextStart = textStart;
+	}
+
 	protected boolean prepare() {
 		return true;
 	}
@@ -81,10 +171,10 @@ public class StructuredTextCommandImpl extends AbstractCommand implements Struct
 		if (fDocument instanceof IStructuredDocument) {
 			// note: one of the few places we programatically ignore read-only
 			// settings
-			((IStructuredDocument) fDocument).replaceText(this, fTextStart, fTextDeleted.length(), fTextInserted, true);
+			((IStructuredDocument) fDocument).replaceText(this, fTextStart, getTextDeletedLength(), getTextInserted(), true);
 		} else {
 			try {
-				fDocument.replace(fTextStart, fTextDeleted.length(), fTextInserted);
+				fDocument.replace(fTextStart, getTextDeletedLength(), getTextInserted());
 			} catch (BadLocationException e) {
 				// assumed impossible, for now
 				Logger.logException(e);
@@ -96,6 +186,8 @@ public class StructuredTextCommandImpl extends AbstractCommand implements Struct
 	 * setTextDeleted method comment.
 	 */
 	public void setTextDeleted(java.lang.String textDeleted) {
+		unshareText();
+		fDeletedBuffer = null;
 		fTextDeleted = textDeleted;
 	}
 
@@ -110,6 +202,8 @@ public class StructuredTextCommandImpl extends AbstractCommand implements Struct
 	 * setTextInserted method comment.
 	 */
 	public void setTextInserted(java.lang.String textInserted) {
+		unshareText();
+		fInsertedBuffer = null;
 		fTextInserted = textInserted;
 	}
 
@@ -120,14 +214,32 @@ public class StructuredTextCommandImpl extends AbstractCommand implements Struct
 		fTextStart = textStart;
 	}
 
+	private void unshareText() {
+		if (fSharedText != null) {
+			fTextDeleted = getTextDeleted();
+			fTextInserted = getTextInserted();
+			fSharedText = null;
+		}
+	}
+
+	private void startBuffering() {
+		unshareText();
+		if (fDeletedBuffer == null)
+			fDeletedBuffer = new StringBuffer(fTextDeleted != null ? fTextDeleted : ""); //$NON-NLS-1$
+		if (fInsertedBuffer == null)
+			fInsertedBuffer = new StringBuffer(fTextInserted != null ? fTextInserted : ""); //$NON-NLS-1$
+		fTextDeleted = null;
+		fTextInserted = null;
+	}
+
 	public void undo() {
 		if (fDocument instanceof IStructuredDocument) {
 			// note: one of the few places we programatically ignore read-only
 			// settings
-			((IStructuredDocument) fDocument).replaceText(this, fTextStart, fTextInserted.length(), fTextDeleted, true);
+			((IStructuredDocument) fDocument).replaceText(this, fTextStart, getTextInsertedLength(), getTextDeleted(), true);
 		} else {
 			try {
-				fDocument.replace(fTextStart, fTextInserted.length(), fTextDeleted);
+				fDocument.replace(fTextStart, getTextInsertedLength(), getTextDeleted());
 			} catch (BadLocationException e) {
 				// assumed impossible, for now
 				Logger.logException(e);
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.core.internal.undo;
+
+import java.util.Iterator;
+
+import org.eclipse.emf.common.command.BasicCommandStack;
+import org.eclipse.emf.common.command.Command;
+import org.eclipse.emf.common.command.CompoundCommand;
+
+/**
+ * A command stack which keeps its undo history within a memory limit. The
+ * oldest commands are discarded once the history grows past the limit,
+ * though the most recent command is always kept however large it is.
+ *
+ * Once a text command can no longer change, its text, and that of all of the
+ * text commands within a compound command, is packed into one character
+ * buffer.
+ *
+ * The limit defaults to 32MB, or to the number of kilobytes given by the
+ * system property "org.eclipse.wst.sse.core.undoMemoryLimit".
+ */
+public class StructuredTextCommandStack extends BasicCommandStack {
+	private static final long DEFAULT_MEMORY_LIMIT = Integer.getInteger("org.eclipse.wst.sse.core.undoMemoryLimit", 32 * 1024).intValue() * 1024L; //$NON-NLS-1$
+
+	/*
+	 * rough sizes, in bytes, of a command apart from its text, and of each
+	 * character of text
+	 */
+	private static final int COMMAND_SIZE = 64;
+	private static final int CHAR_SIZE = 2;
+
+	private long fMemoryLimit = DEFAULT_MEMORY_LIMIT;
+	/*
+	 * the size of each command in the command list, as of when it was last
+	 * measured, and their total
+	 */
+	private long[] fSizes = new long[16];
+	private long fMemoryUsage = 0;
+	private int fDiscardedCount = 0;
+
+	public StructuredTextCommandStack() {
+		super();
+	}
+
+	private static void shareText(Command command) {
+		int length = 0;
+		if (command instanceof StructuredTextCommandImpl) {
+			length = ((StructuredTextCommandImpl) command).getTextLength();
+		}
+		else if (command instanceof CompoundCommand) {
+			Iterator commands = ((CompoundCommand) command).getCommandList().iterator();
+			while (commands.hasNext()) {
+				Object child = commands.next();
+				if (child instanceof StructuredTextCommandImpl)
+					length += ((StructuredTextCommandImpl) child).getTextLength();
+			}
+		}
+		else {
+			return;
+		}
+
+		char[] text = new char[length];
+		if (command instanceof StructuredTextCommandImpl) {
+			((StructuredTextCommandImpl) command).shareText(text, 0);
+		}
+		else {
+			int offset = 0;
+			Iterator commands = ((CompoundCommand) command).getCommandList().iterator();
+			while (commands.hasNext()) {
+				Object child = commands.next();
+				if (child instanceof StructuredTextCommandImpl)
+					offset = ((StructuredTextCommandImpl) child).shareText(text, offset);
+			}
+		}
+	}
+
+	private static long sizeOf(Command command) {
+		long size = COMMAND_SIZE;
+		if (command instanceof StructuredTextCommandImpl) {
+			size += ((StructuredTextCommandImpl) command).getTextLength() * CHAR_SIZE;
+		}
+		else if (command instanceof StructuredTextCommand) {
+			StructuredTextCommand textCommand = (StructuredTextCommand) command;
+			if (textCommand.getTextDeleted() != null)
+				size += textCommand.getTextDeleted().length() * CHAR_SIZE;
+			if (textCommand.getTextInserted() != null)
+				size += textCommand.getTextInserted().length() * CHAR_SIZE;
+		}
+		else if (command instanceof CompoundCommand) {
+			Iterator commands = ((CompoundCommand) command).getCommandList().iterator();
+			while (commands.hasNext()) {
+				size += sizeOf((Command) commands.next());
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Discards the oldest commands, never the most recently executed one,
+	 * until the history fits within the memory limit.
+	 */
+	private void discardOldCommands() {
+		int discarded = 0;
+		while (fMemoryUsage > fMemoryLimit && discarded < top) {
+			fMemoryUsage -= fSizes[discarded];
+			((Command) commandList.get(discarded)).dispose();
+			discarded++;
+		}
+		if (discarded > 0) {
+			commandList.subList(0, discarded).clear();
+			System.arraycopy(fSizes, discarded, fSizes, 0, commandList.size());
+			top -= discarded;
+			if (saveIndex >= discarded - 1)
+				saveIndex -= discarded;
+			else if (saveIndex >= -1)
+				// the saved state can no longer be reached
+				saveIndex = -2;
+			fDiscardedCount += discarded;
+		}
+	}
+
+	public void execute(Command command) {
+		int oldSize = commandList.size();
+		int oldTop = top;
+		super.execute(command);
+		boolean executed = top != oldTop;
+
+		// commands past the old top are removed, even if this one failed
+		if (commandList.size() - (executed ? 1 : 0) < oldSize) {
+			for (int i = oldTop + 1; i < oldSize; i++) {
+				fMemoryUsage -= fSizes[i];
+			}
+		}
+		if (!executed)
+			return;
+		if (commandList.size() > fSizes.length) {
+			long[] sizes = new long[Math.max(commandList.size(), fSizes.length * 2)];
+			System.arraycopy(fSizes, 0, sizes, 0, fSizes.length);
+			fSizes = sizes;
+		}
+		// the previous command can no longer be added to by typing
+		if (oldTop >= 0) {
+			Command previous = (Command) commandList.get(oldTop);
+			shareText(previous);
+			fMemoryUsage -= fSizes[oldTop];
+			fSizes[oldTop] = sizeOf(previous);
+			fMemoryUsage += fSizes[oldTop];
+		}
+		fSizes[top] = sizeOf(command);
+		fMemoryUsage += fSizes[top];
+
+		discardOldCommands();
+	}
+
+	public void flush() {
+		super.flush();
+		fSizes = new long[16];
+		fMemoryUsage = 0;
+	}
+
+	/**
+	 * @return the number of commands discarded to keep within the memory
+	 *         limit since this stack was created
+	 */
+	public int getDiscardedCount() {
+		return fDiscardedCount;
+	}
+
+	/**
+	 * @return the approximate memory, in bytes, the history may use
+	 */
+	public long getMemoryLimit() {
+		return fMemoryLimit;
+	}
+
+	/**
+	 * @return the approximate memory, in bytes, used by the history
+	 */
+	public long getMemoryUsage() {
+		long usage = fMemoryUsage;
+		// the most recent command may have been added to since
+		if (top >= 0) {
+			usage += sizeOf((Command) commandList.get(top)) - fSizes[top];
+		}
+		return usage;
+	}
+
+	/**
+	 * Sets the approximate memory, in bytes, the history may use, discarding
+	 * the oldest commands if it is already using more.
+	 */
+	public void setMemoryLimit(long memoryLimit) {
+		fMemoryLimit = memoryLimit;
+		discardOldCommands();
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2009 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,7 +15,6 @@ package org.eclipse.wst.sse.core.internal.undo;
 
 import java.util.EventObject;
 
-import org.eclipse.emf.common.command.BasicCommandStack;
 import org.eclipse.emf.common.command.Command;
 import org.eclipse.emf.common.command.CommandStack;
 import org.eclipse.emf.common.command.CommandStackListener;
@@ -68,15 +67,12 @@ public class StructuredTextUndoManager implements IStructuredTextUndoManager {
 		private void processStructuredDocumentEvent(String textDeleted, String textInserted, int textStart, int textEnd) {
 			if (fTextCommand != null && textStart == fTextCommand.getTextEnd()) {
 				// append to the text command
-				fTextCommand.setTextDeleted(fTextCommand.getTextDeleted().concat(textDeleted));
-				fTextCommand.setTextInserted(fTextCommand.getTextInserted().concat(textInserted));
-				fTextCommand.setTextEnd(textEnd);
+				fTextCommand.appendText(textDeleted, textInserted, textEnd);
 			}
-			else if (fTextCommand != null && textStart == fTextCommand.getTextStart() - 1 && textEnd <= fTextCommand.getTextEnd() - 1 && textDeleted.length() == 1 && textInserted.length() == 0 && fTextCommand.getTextDeleted().length() > 0) {
+			else if (fTextCommand != null && textStart == fTextCommand.getTextStart() - 1 && textEnd <= fTextCommand.getTextEnd() - 1 && textDeleted.length() == 1 && textInserted.length() == 0 && fTextCommand.getTextDeletedLength() > 0) {
 				// backspace pressed
 				// erase a character in the file
-				fTextCommand.setTextDeleted(textDeleted.concat(fTextCommand.getTextDeleted()));
-				fTextCommand.setTextStart(textStart);
+				fTextCommand.prependTextDeleted(textDeleted, textStart);
 			}
 			else {
 				createNewTextCommand(textDeleted, textInserted, textStart, textEnd);
@@ -149,7 +145,7 @@ public class StructuredTextUndoManager implements IStructuredTextUndoManager {
 	private int fUndoSelectionLength = 0;
 
 	public StructuredTextUndoManager() {
-		this(new BasicCommandStack());
+		this(new StructuredTextCommandStack());
 	}
 
 	public StructuredTextUndoManager(CommandStack commandStack) {
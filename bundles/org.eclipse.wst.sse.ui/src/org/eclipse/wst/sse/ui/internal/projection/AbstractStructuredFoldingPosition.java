@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 IBM Corporation and others.
+ * Copyright (c) 2009, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -53,23 +53,40 @@ public abstract class AbstractStructuredFoldingPosition extends Position impleme
 		
 		int foldOffset;			
 		int foldEndOffset;
+		int newOffset;
+		int newLength;
 		
 		synchronized (this) {
 			foldOffset = startLine.getOffset();
-			if(foldOffset < offset) {
-				offset = foldOffset;
-			}
+			newOffset = Math.min(offset, foldOffset);
 		
 			foldEndOffset = endLine.getOffset();
 		
-			if((foldEndOffset-offset) > length) {
-				length = foldEndOffset-offset;
-			}
+			newLength = Math.max(length, foldEndOffset - newOffset);
+		}
+		if(newOffset != offset || newLength != length) {
+			moveTo(document, newOffset, newLength);
 		}
 		
 		return new IRegion[] {new Region(foldOffset, foldEndOffset-foldOffset)};
 	}
 	
+	/**
+	 * Moves this position, which the document only keeps sorted and up to
+	 * date if it is removed and added again.
+	 */
+	private void moveTo(IDocument document, int newOffset, int newLength) throws BadLocationException {
+		boolean registered = document.containsPosition(IDocument.DEFAULT_CATEGORY, offset, length);
+		if (registered)
+			document.removePosition(this);
+		synchronized (this) {
+			offset = newOffset;
+			length = newLength;
+		}
+		if (registered)
+			document.addPosition(this);
+	}
+
 	/**
 	 * @return the start offset of the folding position
 	 */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2011 IBM Corporation and others.
+ * Copyright (c) 2009, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.Position;
@@ -270,9 +271,19 @@ public abstract class AbstractStructuredFoldingStrategy
 				Position oldPos = fProjectionAnnotationModel.getPosition(foldingAnnotation);
 				//only update the position if we have to
 				if(!newPos.equals(oldPos)) {
+					//the document only keeps a registered position sorted and up to date
+					//if it is removed and added again when it changes
+					IDocument document = getDocument();
+					document.removePosition(oldPos);
 					oldPos.setOffset(newPos.offset);
 					oldPos.setLength(newPos.length);
-					modifications.add(foldingAnnotation);
+					try {
+						document.addPosition(oldPos);
+						modifications.add(foldingAnnotation);
+					}
+					catch (BadLocationException e) {
+						deletions.add(foldingAnnotation);
+					}
 				}
 			} else {
 				deletions.add(foldingAnnotation);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2002, 2011 IBM Corporation and others.
+ * Copyright (c) 2002, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,11 +18,9 @@ import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -82,42 +80,6 @@ public class Catalog implements ICatalog
 		}
 	}
 
-	private static Comparator LONGEST_REWRITE_FIRST = new Comparator() 
-	{
-		public int compare(Object entry1, Object entry2) 
-		{
-			String start1 = ((IRewriteEntry)entry1).getStartString();
-			String start2 = ((IRewriteEntry)entry2).getStartString();
-			
-			// Bigger is earlier
-			return start2.length() - start1.length();
-		}
-	};
-
-	private static Comparator LONGEST_SUFFIX_FIRST = new Comparator() 
-	{
-		public int compare(Object entry1, Object entry2) 
-		{
-			String suffix1 = ((ISuffixEntry)entry1).getSuffix();
-			String suffix2 = ((ISuffixEntry)entry2).getSuffix();
-			
-			// Bigger is earlier
-			return suffix2.length() - suffix1.length();
-		}
-	};
-
-	private static Comparator LONGEST_DELEGATE_PREFIX_FIRST = new Comparator() 
-	{
-		public int compare(Object entry1, Object entry2) 
-		{
-			String prefix1 = ((IDelegateCatalog)entry1).getStartString();
-			String prefix2 = ((IDelegateCatalog)entry2).getStartString();
-			
-			// Bigger is earlier
-			return prefix2.length() - prefix1.length();
-		}
-	};
-
 	class InternalResolver
 	{
 		protected Map publicMap = new HashMap();
@@ -126,14 +88,14 @@ public class Catalog implements ICatalog
 
 		protected Map uriMap = new HashMap();
 
-		// These are sorted by longest "key" first.
-		protected List rewriteSystemList = new LinkedList();
-		protected List rewriteUriList = new LinkedList();
-		protected List suffixSystemList = new LinkedList();
-		protected List suffixUriList = new LinkedList();
-		protected List delegatePublicList = new LinkedList();
-		protected List delegateSystemList = new LinkedList();
-		protected List delegateUriList = new LinkedList();
+		// These match the longest "key" first.
+		protected PrefixTrie rewriteSystemTrie = new PrefixTrie(false);
+		protected PrefixTrie rewriteUriTrie = new PrefixTrie(false);
+		protected PrefixTrie suffixSystemTrie = new PrefixTrie(true);
+		protected PrefixTrie suffixUriTrie = new PrefixTrie(true);
+		protected PrefixTrie delegatePublicTrie = new PrefixTrie(false);
+		protected PrefixTrie delegateSystemTrie = new PrefixTrie(false);
+		protected PrefixTrie delegateUriTrie = new PrefixTrie(false);
 		
 		InternalResolver()
 		{
@@ -152,11 +114,11 @@ public class Catalog implements ICatalog
 						IRewriteEntry entry = (IRewriteEntry) catalogElement;
 						if (entry.getEntryType() == IRewriteEntry.REWRITE_TYPE_SYSTEM) 
 						{
-							rewriteSystemList.add(entry);
+							rewriteSystemTrie.put(entry.getStartString(), entry);
 						} 
 						else 
 						{
-							rewriteUriList.add(entry);
+							rewriteUriTrie.put(entry.getStartString(), entry);
 						}
 					} 
 					else if (catalogElement.getType() == ICatalogElement.TYPE_SUFFIX) 
@@ -164,11 +126,11 @@ public class Catalog implements ICatalog
 						ISuffixEntry entry = (ISuffixEntry) catalogElement;
 						if (entry.getEntryType() == ISuffixEntry.SUFFIX_TYPE_SYSTEM) 
 						{
-							suffixSystemList.add(entry);
+							suffixSystemTrie.put(entry.getSuffix(), entry);
 						} 
 						else 
 						{
-							suffixUriList.add(entry);
+							suffixUriTrie.put(entry.getSuffix(), entry);
 						}
 					} 
 					else if (catalogElement.getType() == ICatalogElement.TYPE_DELEGATE) 
@@ -176,29 +138,19 @@ public class Catalog implements ICatalog
 						IDelegateCatalog delegate = (IDelegateCatalog) catalogElement;
 						if (delegate.getEntryType() == IDelegateCatalog.DELEGATE_TYPE_PUBLIC) 
 						{
-							delegatePublicList.add(delegate);
+							delegatePublicTrie.put(delegate.getStartString(), delegate);
 						}
 						else if (delegate.getEntryType() == IDelegateCatalog.DELEGATE_TYPE_SYSTEM) 
 						{
-							delegateSystemList.add(delegate);
+							delegateSystemTrie.put(delegate.getStartString(), delegate);
 						}
 						else 
 						{
-							delegateUriList.add(delegate);
+							delegateUriTrie.put(delegate.getStartString(), delegate);
 						}
 					}
 				}
 			}
-			
-			Collections.sort(rewriteSystemList, LONGEST_REWRITE_FIRST);
-			Collections.sort(rewriteUriList, LONGEST_REWRITE_FIRST);
-
-			Collections.sort(suffixSystemList, LONGEST_SUFFIX_FIRST);
-			Collections.sort(suffixUriList, LONGEST_SUFFIX_FIRST);
-		
-			Collections.sort(delegatePublicList, LONGEST_DELEGATE_PREFIX_FIRST);
-			Collections.sort(delegateSystemList, LONGEST_DELEGATE_PREFIX_FIRST);
-			Collections.sort(delegateUriList, LONGEST_DELEGATE_PREFIX_FIRST);
 		}
 
 		private Map getEntryMap(int entryType)
@@ -264,7 +216,7 @@ public class Catalog implements ICatalog
 			}
 			if (result == null)
 			{
-				result = resolveDelegateCatalogs(delegatePublicList, publicId, systemId);
+				result = resolveDelegateCatalogs(delegatePublicTrie, publicId, systemId);
 			}
 			if (result == null)
 			{
@@ -280,15 +232,15 @@ public class Catalog implements ICatalog
 			String result = getMappedURI(systemMap, systemId);
 			if (result == null)
 			{
-				result = resolveRewrite(rewriteSystemList, systemId);
+				result = resolveRewrite(rewriteSystemTrie, systemId);
 			}
 			if (result == null)
 			{
-				result = resolveSuffix(suffixSystemList, systemId);
+				result = resolveSuffix(suffixSystemTrie, systemId);
 			}
 			if (result == null)
 			{
-				result = resolveDelegateCatalogs(delegateSystemList, systemId, systemId); // systemId is the key for "startString"
+				result = resolveDelegateCatalogs(delegateSystemTrie, systemId, systemId); // systemId is the key for "startString"
 			}
 			if (result == null)
 			{
@@ -298,61 +250,51 @@ public class Catalog implements ICatalog
 			return result;
 		}
 
-		private String resolveRewrite(List rewriteList, String searchString) 
+		private String resolveRewrite(PrefixTrie rewriteTrie, String searchString) 
 		{
-			for (Iterator it = rewriteList.iterator(); it.hasNext();) 
+			IRewriteEntry entry = (IRewriteEntry) rewriteTrie.matchLongest(searchString);
+			if (entry != null) 
 			{
-				IRewriteEntry entry = (IRewriteEntry) it.next();
-				String startString = entry.getStartString();
-				if (searchString.startsWith(startString)) 
-				{
-					return entry.getRewritePrefix() + searchString.substring(startString.length());
-				}
+				return entry.getRewritePrefix() + searchString.substring(entry.getStartString().length());
 			}
 			return null;
 		}
 
-		private String resolveSuffix(List suffixList, String searchString) {
-			for (Iterator it = suffixList.iterator(); it.hasNext();) {
-				ISuffixEntry entry = (ISuffixEntry) it.next();
-				if (searchString.endsWith(entry.getSuffix())) {
-					return entry.getURI();
-				}
+		private String resolveSuffix(PrefixTrie suffixTrie, String searchString) {
+			ISuffixEntry entry = (ISuffixEntry) suffixTrie.matchLongest(searchString);
+			if (entry != null) {
+				return entry.getURI();
 			}
 			return null;
 		}
 
-		protected String resolveDelegateCatalogs(List delegateCatalogs, String key,
+		protected String resolveDelegateCatalogs(PrefixTrie delegateCatalogs, String key,
 				String systemId) throws MalformedURLException, IOException
 		{
 			String result = null;
-			for (Iterator iterator = delegateCatalogs.iterator(); iterator
+			for (Iterator iterator = delegateCatalogs.match(key).iterator(); iterator
 					.hasNext();) {
 				IDelegateCatalog delegate = (IDelegateCatalog) iterator.next();
-				
-				if (key.startsWith(delegate.getStartString())) {
-	
-					ICatalog catalog = delegate.getReferencedCatalog();
-					if (catalog != null)
+				ICatalog catalog = delegate.getReferencedCatalog();
+				if (catalog != null)
+				{
+					switch (delegate.getEntryType())
 					{
-						switch (delegate.getEntryType())
-						{
-						case IDelegateCatalog.DELEGATE_TYPE_PUBLIC:
-							result = catalog.resolvePublic(key, systemId);
-							break;
-						case IDelegateCatalog.DELEGATE_TYPE_SYSTEM:
-							result = catalog.resolveSystem(systemId);
-							break;
-						case IDelegateCatalog.DELEGATE_TYPE_URI:
-							result = catalog.resolveURI(systemId);
-							break;
-						default:
-							break;
-						}
-						if (result != null)
-						{
-							return result;
-						}
+					case IDelegateCatalog.DELEGATE_TYPE_PUBLIC:
+						result = catalog.resolvePublic(key, systemId);
+						break;
+					case IDelegateCatalog.DELEGATE_TYPE_SYSTEM:
+						result = catalog.resolveSystem(systemId);
+						break;
+					case IDelegateCatalog.DELEGATE_TYPE_URI:
+						result = catalog.resolveURI(systemId);
+						break;
+					default:
+						break;
+					}
+					if (result != null)
+					{
+						return result;
 					}
 				}
 			}
@@ -365,15 +307,15 @@ public class Catalog implements ICatalog
 			String result = getMappedURI(uriMap, uri);
 			if (result == null)
 			{
-				result = resolveRewrite(rewriteUriList, uri);
+				result = resolveRewrite(rewriteUriTrie, uri);
 			}
 			if (result == null)
 			{
-				result = resolveSuffix(suffixUriList, uri);
+				result = resolveSuffix(suffixUriTrie, uri);
 			}
 			if (result == null)
 			{
-				result = resolveDelegateCatalogs(delegateUriList, uri, uri); // uri is treated as the systemId
+				result = resolveDelegateCatalogs(delegateUriTrie, uri, uri); // uri is treated as the systemId
 			}
 			if (result == null)
 			{
@@ -450,6 +392,24 @@ public class Catalog implements ICatalog
 
 	public static final String USER_CATALOG_FILE = "user_catalog.xml"; //$NON-NLS-1$
 
+	/*
+	 * The number of resolved identifiers each catalog remembers, by default
+	 * 1000, or as given by the system property
+	 * "org.eclipse.wst.xml.core.catalogCacheSize"
+	 */
+	private static final int RESOLVED_CACHE_SIZE = Integer.getInteger("org.eclipse.wst.xml.core.catalogCacheSize", 1000).intValue(); //$NON-NLS-1$
+
+	private static final Object UNRESOLVED = new Object();
+
+	private static final Object generationLock = new Object();
+
+	/*
+	 * Changes whenever any catalog changes, since catalogs refer to one
+	 * another through their next and delegate catalogs. Guarded by
+	 * generationLock.
+	 */
+	private static int generation = 0;
+
 	protected String base;
 
 	protected List catalogElements = new ArrayList();
@@ -468,6 +428,23 @@ public class Catalog implements ICatalog
 
 	protected CatalogSet resourceSet;
 
+	/*
+	 * the identifiers resolved by this catalog since it, or any other
+	 * catalog, last changed, least recently used first
+	 */
+	private Map resolvedCache = new LinkedHashMap(16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry eldest)
+		{
+			return size() > RESOLVED_CACHE_SIZE;
+		}
+	};
+
+	/* the generation of the resolved identifiers, guarded by resolvedCache */
+	private int resolvedGeneration = 0;
+
 	public Catalog(CatalogSet catalogResourceSet, String id, String location)
 	{
 		this.resourceSet = catalogResourceSet;
@@ -492,7 +469,7 @@ public class Catalog implements ICatalog
 			catalogElements.add(element);
 		}
 		element.setOwnerCatalog(this);
-		internalResolver = null;
+		resetResolver();
 		notifyAddElement(element);
 	}
 
@@ -517,7 +494,7 @@ public class Catalog implements ICatalog
 		{
 			setNotificationEnabled(true);
 		}
-		internalResolver = null;
+		resetResolver();
 		notifyChanged();
 	}
 
@@ -531,7 +508,7 @@ public class Catalog implements ICatalog
 		synchronized (catalogElements) {
 			catalogElements.clear();
 		}
-		internalResolver = null;
+		resetResolver();
 		notifyChanged();
 	}
 
@@ -637,11 +614,81 @@ public class Catalog implements ICatalog
 
 	protected InternalResolver getOrCreateInternalResolver()
 	{
-		if (internalResolver == null)
+		InternalResolver resolver = internalResolver;
+		if (resolver == null)
 		{
-			internalResolver = new InternalResolver();
+			resolver = new InternalResolver();
+			internalResolver = resolver;
+		}
+		return resolver;
+	}
+
+	/**
+	 * Forgets every identifier resolved by any catalog.
+	 */
+	static void resolversChanged()
+	{
+		synchronized (generationLock)
+		{
+			generation++;
+		}
+	}
+
+	private static int getGeneration()
+	{
+		synchronized (generationLock)
+		{
+			return generation;
+		}
+	}
+
+	private void resetResolver()
+	{
+		internalResolver = null;
+		resolversChanged();
+	}
+
+	private String createResolvedKey(int entryType, String publicId, String systemId)
+	{
+		StringBuffer key = new StringBuffer();
+		key.append(entryType);
+		// the length keeps a null identifier apart from any other
+		key.append(' ').append(publicId != null ? publicId.length() : -1).append(' ');
+		if (publicId != null)
+			key.append(publicId);
+		if (systemId != null)
+			key.append(' ').append(systemId);
+		return key.toString();
+	}
+
+	/**
+	 * @return the resolved URI, UNRESOLVED if the identifier couldn't be
+	 *         resolved, or null if it hasn't been resolved since the
+	 *         catalogs last changed
+	 */
+	private Object getResolved(String key, int currentGeneration)
+	{
+		synchronized (resolvedCache)
+		{
+			if (resolvedGeneration != currentGeneration)
+			{
+				resolvedCache.clear();
+				resolvedGeneration = currentGeneration;
+			}
+			return resolvedCache.get(key);
+		}
+	}
+
+	private void putResolved(String key, String result, int sinceGeneration)
+	{
+		synchronized (resolvedCache)
+		{
+			// the catalogs may have changed while it was being resolved
+			if (resolvedGeneration == sinceGeneration && getGeneration() == sinceGeneration)
+			{
+				resolvedCache.put(key, result != null ? (Object) result : UNRESOLVED);
+			}
 		}
-		return internalResolver;
 	}
 
 	protected boolean isNotificationEnabled()
@@ -697,7 +744,7 @@ public class Catalog implements ICatalog
 		synchronized (catalogElements) {
 			catalogElements.remove(element);
 		}
-		internalResolver = null;
+		resetResolver();
 		notifyRemoveElement(element);
 		
 	}
@@ -710,7 +757,16 @@ public class Catalog implements ICatalog
 	public String resolvePublic(String publicId, String systemId)
 			throws MalformedURLException, IOException
 	{
-		return getOrCreateInternalResolver().resolvePublic(publicId, systemId);
+		String key = createResolvedKey(ICatalogEntry.ENTRY_TYPE_PUBLIC, publicId, systemId);
+		int currentGeneration = getGeneration();
+		Object resolved = getResolved(key, currentGeneration);
+		if (resolved != null)
+		{
+			return resolved != UNRESOLVED ? (String) resolved : null;
+		}
+		String result = getOrCreateInternalResolver().resolvePublic(publicId, systemId);
+		putResolved(key, result, currentGeneration);
+		return result;
 	}
 
 	protected String resolveSubordinateCatalogs(int entryType, String publicId,
@@ -750,13 +806,31 @@ public class Catalog implements ICatalog
 	public String resolveSystem(String systemId) throws MalformedURLException,
 			IOException
 	{
-		return getOrCreateInternalResolver().resolveSystem(systemId);
+		String key = createResolvedKey(ICatalogEntry.ENTRY_TYPE_SYSTEM, null, systemId);
+		int currentGeneration = getGeneration();
+		Object resolved = getResolved(key, currentGeneration);
+		if (resolved != null)
+		{
+			return resolved != UNRESOLVED ? (String) resolved : null;
+		}
+		String result = getOrCreateInternalResolver().resolveSystem(systemId);
+		putResolved(key, result, currentGeneration);
+		return result;
 	}
 
 	public String resolveURI(String uri) throws MalformedURLException,
 			IOException
 	{
-		return getOrCreateInternalResolver().resolveURI(uri);
+		String key = createResolvedKey(ICatalogEntry.ENTRY_TYPE_URI, null, uri);
+		int currentGeneration = getGeneration();
+		Object resolved = getResolved(key, currentGeneration);
+		if (resolved != null)
+		{
+			return resolved != UNRESOLVED ? (String) resolved : null;
+		}
+		String result = getOrCreateInternalResolver().resolveURI(uri);
+		putResolved(key, result, currentGeneration);
+		return result;
 	}
 
 	public void save() throws IOException
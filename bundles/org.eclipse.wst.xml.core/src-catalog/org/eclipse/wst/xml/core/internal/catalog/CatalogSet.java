@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2002, 2011 IBM Corporation and others.
+ * Copyright (c) 2002, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -65,5 +65,7 @@ public class CatalogSet {
 
 	public void clearResourceCache() {//Clearing only uriResourceMap is required
 		uriResourceMap.clear();
+		// the next and delegate catalogs will be loaded again
+		Catalog.resolversChanged();
 	}
 }
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.xml.core.internal.catalog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the values kept for each key that a string starts with, or ends with
+ * for a trie of suffixes, in a single pass over the string. Used to match
+ * the rewrite, suffix and delegate entries of a catalog without trying each
+ * entry in turn.
+ */
+class PrefixTrie
+{
+	private static class Node
+	{
+		/* Character to Node */
+		Map children;
+		/* the values kept for the key ending at this node, in order */
+		List values;
+	}
+
+	private final Node root = new Node();
+	private final boolean suffixes;
+
+	/**
+	 * @param suffixes
+	 *            whether the keys are suffixes rather than prefixes
+	 */
+	PrefixTrie(boolean suffixes)
+	{
+		this.suffixes = suffixes;
+	}
+
+	private char charAt(String string, int index)
+	{
+		return suffixes ? string.charAt(string.length() - 1 - index) : string.charAt(index);
+	}
+
+	/**
+	 * Returns the values of all of the keys matching the given string, those
+	 * of the longest key first, and those of the same key in the order they
+	 * were added.
+	 *
+	 * @param string
+	 *            the string to match
+	 * @return the values, or an empty list if no key matches
+	 */
+	List match(String string)
+	{
+		List matches = new ArrayList();
+		if (string == null)
+			return matches;
+		Node node = root;
+		List nodes = new ArrayList();
+		for (int i = 0; node != null; i++)
+		{
+			if (node.values != null)
+				nodes.add(node);
+			if (i == string.length() || node.children == null)
+				break;
+			node = (Node) node.children.get(new Character(charAt(string, i)));
+		}
+		for (int i = nodes.size() - 1; i >= 0; i--)
+		{
+			matches.addAll(((Node) nodes.get(i)).values);
+		}
+		return matches;
+	}
+
+	/**
+	 * Returns the first value of the longest key matching the given string.
+	 *
+	 * @param string
+	 *            the string to match
+	 * @return the value, or null if no key matches
+	 */
+	Object matchLongest(String string)
+	{
+		if (string == null)
+			return null;
+		Object longest = null;
+		Node node = root;
+		for (int i = 0; node != null; i++)
+		{
+			if (node.values != null)
+				longest = node.values.get(0);
+			if (i == string.length() || node.children == null)
+				break;
+			node = (Node) node.children.get(new Character(charAt(string, i)));
+		}
+		return longest;
+	}
+
+	/**
+	 * Adds a value for the given key, after any already kept for it.
+	 *
+	 * @param key
+	 *            the prefix, or suffix, to match
+	 * @param value
+	 *            the value
+	 */
+	void put(String key, Object value)
+	{
+		if (key == null)
+			return;
+		Node node = root;
+		for (int i = 0; i < key.length(); i++)
+		{
+			if (node.children == null)
+				node.children = new HashMap(4);
+			Character c = new Character(charAt(key, i));
+			Node child = (Node) node.children.get(c);
+			if (child == null)
+			{
+				child = new Node();
+				node.children.put(c, child);
+			}
+			node = child;
+		}
+		if (node.values == null)
+			node.values = new ArrayList(1);
+		node.values.add(value);
+	}
+}
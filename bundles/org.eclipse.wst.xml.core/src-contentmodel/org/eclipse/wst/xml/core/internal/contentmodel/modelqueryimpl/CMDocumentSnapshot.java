@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.xml.core.internal.contentmodel.modelqueryimpl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.wst.xml.core.internal.contentmodel.CMAnyElement;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMAttributeDeclaration;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMContent;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMDataType;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMDocument;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMDocumentation;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMElementDeclaration;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMEntityDeclaration;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMGroup;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMNamedNodeMap;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMNamespace;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMNode;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMNodeList;
+import org.eclipse.wst.xml.core.internal.contentmodel.annotation.AnnotationMap;
+import org.eclipse.wst.xml.core.internal.contentmodel.basic.CMNamedNodeMapImpl;
+import org.eclipse.wst.xml.core.internal.contentmodel.basic.CMNodeListImpl;
+
+/**
+ * The nodes of a content model read back from the persistent cache. They
+ * answer the same questions, and the same properties, as the nodes the
+ * content model was written from, and annotations can be loaded into the
+ * document as they can into a content model built from its grammar.
+ *
+ * @see PersistentCMDocumentCache
+ */
+class CMDocumentSnapshot {
+	static final String PROPERTY_CM_DOCUMENT = "CMDocument"; //$NON-NLS-1$
+	static final String PROPERTY_DOCUMENTATION = "documentation"; //$NON-NLS-1$
+	static final String PROPERTY_DEFINITION = "http://org.eclipse.wst/cm/properties/definition"; //$NON-NLS-1$
+	static final String PROPERTY_SPEC = "spec"; //$NON-NLS-1$
+	static final String PROPERTY_ANNOTATION_MAP = "annotationMap"; //$NON-NLS-1$
+	static final String PROPERTY_GLOBAL_PROPERTY_MAP = "globalPropertyMap"; //$NON-NLS-1$
+
+	/**
+	 * The properties with String values that are kept with each node
+	 */
+	static final String[] STRING_PROPERTIES = new String[]{PROPERTY_SPEC, "http://org.eclipse.wst/cm/properties/definitionInfo", //$NON-NLS-1$
+				"http://org.eclipse.wst/cm/properties/defaultRootName", //$NON-NLS-1$
+				"http://org.eclipse.wst/cm/properties/nsPrefixQualification", //$NON-NLS-1$
+				"http://org.eclipse.wst/cm/properties/targetNamespaceURI", //$NON-NLS-1$
+				"isValidEmptyValue"}; //$NON-NLS-1$
+
+	static abstract class Node implements CMNode {
+		String nodeName;
+		/* property name to String value */
+		Map properties = new HashMap(4);
+		CMNodeList documentation = CMNodeListImpl.EMPTY_NODE_LIST;
+		CMNode definition;
+		Document document;
+
+		public String getNodeName() {
+			return nodeName;
+		}
+
+		public boolean supports(String propertyName) {
+			return properties.containsKey(propertyName);
+		}
+
+		public Object getProperty(String propertyName) {
+			Object result = properties.get(propertyName);
+			if (result == null) {
+				if (propertyName.equals(PROPERTY_CM_DOCUMENT)) {
+					result = document;
+				}
+				else if (propertyName.equals(PROPERTY_DOCUMENTATION)) {
+					result = documentation;
+				}
+				else if (propertyName.equals(PROPERTY_DEFINITION)) {
+					result = definition;
+				}
+				else if (document != null && document != this) {
+					// annotations loaded for the grammar
+					String spec = (String) properties.get(PROPERTY_SPEC);
+					if (spec != null) {
+						result = document.annotationMap.getProperty(spec, propertyName);
+					}
+					if (result == null) {
+						result = document.globalPropertyMap.get(propertyName);
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	static abstract class Content extends Node implements CMContent {
+		int minOccur;
+		int maxOccur;
+
+		public int getMaxOccur() {
+			return maxOccur;
+		}
+
+		public int getMinOccur() {
+			return minOccur;
+		}
+	}
+
+	static class Document extends Node implements CMDocument {
+		CMNamedNodeMapImpl elements = new CMNamedNodeMapImpl();
+		CMNamedNodeMapImpl entities = new CMNamedNodeMapImpl();
+		CMNamespace namespace;
+		AnnotationMap annotationMap = new AnnotationMap();
+		Map globalPropertyMap = new HashMap();
+
+		public int getNodeType() {
+			return DOCUMENT;
+		}
+
+		public CMNamedNodeMap getElements() {
+			return elements;
+		}
+
+		public CMNamedNodeMap getEntities() {
+			return entities;
+		}
+
+		public CMNamespace getNamespace() {
+			return namespace;
+		}
+
+		public Object getProperty(String propertyName) {
+			if (propertyName.equals(PROPERTY_ANNOTATION_MAP)) {
+				return annotationMap;
+			}
+			if (propertyName.equals(PROPERTY_GLOBAL_PROPERTY_MAP)) {
+				return globalPropertyMap;
+			}
+			return super.getProperty(propertyName);
+		}
+	}
+
+	static class ElementDeclaration extends Content implements CMElementDeclaration {
+		CMNamedNodeMapImpl attributes = new CMNamedNodeMapImpl();
+		CMContent content;
+		int contentType;
+		CMDataType dataType;
+		CMNamedNodeMapImpl localElements = new CMNamedNodeMapImpl();
+
+		public int getNodeType() {
+			return ELEMENT_DECLARATION;
+		}
+
+		public CMNamedNodeMap getAttributes() {
+			return attributes;
+		}
+
+		public CMContent getContent() {
+			return content;
+		}
+
+		public int getContentType() {
+			return contentType;
+		}
+
+		public String getElementName() {
+			return nodeName;
+		}
+
+		public CMDataType getDataType() {
+			return dataType;
+		}
+
+		public CMNamedNodeMap getLocalElements() {
+			return localElements;
+		}
+	}
+
+	static class Group extends Content implements CMGroup {
+		CMNodeListImpl childNodes = new CMNodeListImpl();
+		int operator;
+
+		public int getNodeType() {
+			return GROUP;
+		}
+
+		public CMNodeList getChildNodes() {
+			return childNodes;
+		}
+
+		public int getOperator() {
+			return operator;
+		}
+	}
+
+	static class AnyElement extends Content implements CMAnyElement {
+		String namespaceURI;
+
+		public int getNodeType() {
+			return ANY_ELEMENT;
+		}
+
+		public String getNamespaceURI() {
+			return namespaceURI;
+		}
+	}
+
+	static class AttributeDeclaration extends Node implements CMAttributeDeclaration {
+		CMDataType attrType;
+		String defaultValue;
+		int usage;
+
+		public int getNodeType() {
+			return ATTRIBUTE_DECLARATION;
+		}
+
+		public String getAttrName() {
+			return nodeName;
+		}
+
+		public CMDataType getAttrType() {
+			return attrType;
+		}
+
+		public String getDefaultValue() {
+			return defaultValue;
+		}
+
+		public Enumeration getEnumAttr() {
+			String[] values = attrType != null ? attrType.getEnumeratedValues() : null;
+			return Collections.enumeration(values != null ? Arrays.asList(values) : Collections.EMPTY_LIST);
+		}
+
+		public int getUsage() {
+			return usage;
+		}
+	}
+
+	static class DataType extends Node implements CMDataType {
+		int impliedValueKind;
+		String impliedValue;
+		String[] enumeratedValues;
+		String instanceValue;
+
+		public int getNodeType() {
+			return DATA_TYPE;
+		}
+
+		public String getDataTypeName() {
+			return nodeName;
+		}
+
+		public int getImpliedValueKind() {
+			return impliedValueKind;
+		}
+
+		public String getImpliedValue() {
+			return impliedValue;
+		}
+
+		public String[] getEnumeratedValues() {
+			return enumeratedValues;
+		}
+
+		public String generateInstanceValue() {
+			return instanceValue;
+		}
+	}
+
+	static class EntityDeclaration extends Node implements CMEntityDeclaration {
+		String value;
+
+		public int getNodeType() {
+			return ENTITY_DECLARATION;
+		}
+
+		public String getName() {
+			return nodeName;
+		}
+
+		public String getValue() {
+			return value;
+		}
+	}
+
+	static class Documentation extends Node implements CMDocumentation {
+		String value;
+		String language;
+		String source;
+
+		public int getNodeType() {
+			return DOCUMENTATION;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public String getLanguage() {
+			return language;
+		}
+
+		public String getSource() {
+			return source;
+		}
+	}
+
+	static class Namespace extends Node implements CMNamespace {
+		String prefix;
+		String uri;
+
+		public int getNodeType() {
+			return NAME_SPACE;
+		}
+
+		public String getPrefix() {
+			return prefix;
+		}
+
+		public String getURI() {
+			return uri;
+		}
+	}
+
+	private CMDocumentSnapshot() {
+		super();
+	}
+}
@@ -0,0 +1,765 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.xml.core.internal.contentmodel.modelqueryimpl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.eclipse.wst.xml.core.internal.Logger;
+import org.eclipse.wst.xml.core.internal.XMLCorePlugin;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMAnyElement;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMAttributeDeclaration;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMDataType;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMDocument;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMDocumentation;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMElementDeclaration;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMEntityDeclaration;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMGroup;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMNamedNodeMap;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMNamespace;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMNode;
+import org.eclipse.wst.xml.core.internal.contentmodel.CMNodeList;
+import org.eclipse.wst.xml.core.internal.contentmodel.basic.CMNamedNodeMapImpl;
+import org.eclipse.wst.xml.core.internal.contentmodel.basic.CMNodeListImpl;
+
+/**
+ * Keeps the content models built from grammars on disk between sessions, so
+ * that a large grammar needn't be built again after a restart. Each content
+ * model is kept in its own file in the plug-in's state location, with the
+ * grammar's URI and a hash of the contents of every file the grammar was
+ * built from; it is only read back, the first time it's asked for, if none
+ * of those files have changed since. A file is read into memory and closed
+ * before it's decoded, so it can be deleted or replaced right after. Only
+ * content models built entirely from local files are kept, so that checking
+ * whether one is current never goes to the network.
+ *
+ * A content model factory decides whether its content models can be kept:
+ * they are written out through the content model interfaces, along with a
+ * fixed set of properties, so a content model whose clients rely on other
+ * properties must not be kept. The cache can be turned off by setting the
+ * system property "org.eclipse.wst.xml.core.cmDocumentDiskCache" to false.
+ */
+public class PersistentCMDocumentCache {
+	private static final String CACHE_DIRECTORY = "cmdocuments"; //$NON-NLS-1$
+	private static final String CACHE_FILE_EXTENSION = ".cm"; //$NON-NLS-1$
+	private static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+	private static final int MAGIC = 0x434D4443;
+	private static final int VERSION = 2;
+	private static final int NONE = -1;
+	/* content models with more nodes than this aren't kept */
+	private static final int MAX_NODES = 1000000;
+	private static final int BUFFER_SIZE = 8192;
+	private static final int LOCK_COUNT = 16;
+	private final static String CATEGORY = "CMDocumentPersistentCache"; //$NON-NLS-1$
+
+	private static PersistentCMDocumentCache instance = null;
+
+	private File directory;
+	private boolean enabled;
+	/* each kept file is only read, replaced or deleted holding its lock */
+	private final Object[] locks = new Object[LOCK_COUNT];
+
+	/**
+	 * A content model that can't be written out
+	 */
+	private static class UnsupportedNodeException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		UnsupportedNodeException(String message) {
+			super(message);
+		}
+	}
+
+	public static synchronized PersistentCMDocumentCache getInstance() {
+		if (instance == null) {
+			instance = new PersistentCMDocumentCache();
+		}
+		return instance;
+	}
+
+	protected PersistentCMDocumentCache() {
+		enabled = !"false".equals(System.getProperty("org.eclipse.wst.xml.core.cmDocumentDiskCache")) && XMLCorePlugin.getDefault() != null; //$NON-NLS-1$ //$NON-NLS-2$
+		if (enabled) {
+			directory = XMLCorePlugin.getDefault().getStateLocation().append(CACHE_DIRECTORY).toFile();
+		}
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Deletes every content model kept.
+	 */
+	public void clear() {
+		if (!enabled)
+			return;
+		File[] files = directory.listFiles();
+		for (int i = 0; files != null && i < files.length; i++) {
+			synchronized (getLock(files[i])) {
+				files[i].delete();
+			}
+		}
+	}
+
+	/**
+	 * Returns the content model kept for a grammar, if none of the files it
+	 * was built from have changed since.
+	 *
+	 * @param grammarURI
+	 *            the grammar's resolved URI
+	 * @return the content model, or null if none is kept
+	 */
+	public CMDocument getCMDocument(String grammarURI) {
+		if (!enabled || grammarURI == null)
+			return null;
+		File file = getFile(grammarURI);
+		ByteBuffer buffer = null;
+		long lastModified;
+		synchronized (getLock(file)) {
+			if (!file.isFile())
+				return null;
+			lastModified = file.lastModified();
+			try {
+				buffer = readFile(file);
+			}
+			catch (IOException e) {
+				Logger.logException("Could not read content model for " + grammarURI, e); //$NON-NLS-1$
+			}
+		}
+		CMDocument result = null;
+		try {
+			if (buffer != null) {
+				result = read(buffer, grammarURI);
+			}
+		}
+		catch (IOException e) {
+			Logger.logException("Could not read content model for " + grammarURI, e); //$NON-NLS-1$
+		}
+		catch (RuntimeException e) {
+			// including a file cut short
+			Logger.logException("Could not read content model for " + grammarURI, e); //$NON-NLS-1$
+		}
+		if (result == null) {
+			synchronized (getLock(file)) {
+				// unless it has been replaced since
+				if (file.lastModified() == lastModified) {
+					file.delete();
+				}
+			}
+		}
+		Logger.trace(CATEGORY, (result != null ? "Read " : "No current content model for ") + grammarURI); //$NON-NLS-1$ //$NON-NLS-2$
+		return result;
+	}
+
+	private File getFile(String grammarURI) {
+		CRC32 crc = new CRC32();
+		try {
+			crc.update(grammarURI.getBytes(ENCODING));
+		}
+		catch (UnsupportedEncodingException e) {
+			crc.update(grammarURI.getBytes());
+		}
+		return new File(directory, Long.toHexString(crc.getValue()) + '_' + Integer.toHexString(grammarURI.hashCode()) + CACHE_FILE_EXTENSION);
+	}
+
+	private Object getLock(File file) {
+		return locks[(file.getName().hashCode() & Integer.MAX_VALUE) % locks.length];
+	}
+
+	/**
+	 * @return whether the location is that of a local file, rather than one
+	 *         that has to be fetched
+	 */
+	private static boolean isLocal(String location) {
+		if (location == null || location.length() == 0)
+			return false;
+		int colon = location.indexOf(':');
+		// no protocol, or a drive letter
+		if (colon < 2)
+			return true;
+		String protocol = location.substring(0, colon).toLowerCase();
+		if ("jar".equals(protocol)) //$NON-NLS-1$
+			return location.regionMatches(true, colon + 1, "file:", 0, 5); //$NON-NLS-1$
+		return "file".equals(protocol) || "platform".equals(protocol) || "bundleentry".equals(protocol) || "bundleresource".equals(protocol); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+	/**
+	 * @return a hash of the contents of the file at the given location, or
+	 *         NONE if it can't be read
+	 */
+	private long hashContents(String location) {
+		InputStream input = null;
+		try {
+			try {
+				input = new URL(location).openStream();
+			}
+			catch (MalformedURLException e) {
+				input = new FileInputStream(location);
+			}
+			CRC32 crc = new CRC32();
+			byte[] buffer = new byte[BUFFER_SIZE];
+			for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+				crc.update(buffer, 0, read);
+			}
+			return crc.getValue();
+		}
+		catch (IOException e) {
+			return NONE;
+		}
+		finally {
+			if (input != null) {
+				try {
+					input.close();
+				}
+				catch (IOException e) {
+					// nothing more to do
+				}
+			}
+		}
+	}
+
+	/**
+	 * Keeps the content model built from a grammar, replacing any kept
+	 * before. Nothing is kept unless every file the grammar was built from is
+	 * local.
+	 *
+	 * @param grammarURI
+	 *            the grammar's resolved URI
+	 * @param cmDocument
+	 *            the content model
+	 * @param locations
+	 *            the physical locations of the grammar and of every file it
+	 *            includes or imports
+	 * @param hashes
+	 *            the CRC32 checksums of the bytes read from each location
+	 *            to build the content model
+	 */
+	public void putCMDocument(String grammarURI, CMDocument cmDocument, String[] locations, long[] hashes) {
+		if (!enabled || grammarURI == null || cmDocument == null || locations == null || hashes == null || hashes.length != locations.length)
+			return;
+		for (int i = 0; i < locations.length; i++) {
+			if (!isLocal(locations[i])) {
+				Logger.trace(CATEGORY, "Content model for " + grammarURI + " isn't kept: " + locations[i] + " isn't local"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				return;
+			}
+		}
+		directory.mkdirs();
+		File file = getFile(grammarURI);
+		File tempFile = null;
+		try {
+			// written out first, so that the file is only locked to replace it
+			tempFile = File.createTempFile(file.getName(), ".tmp", directory); //$NON-NLS-1$
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE));
+			try {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				writeString(output, grammarURI);
+				output.writeInt(locations.length);
+				for (int i = 0; i < locations.length; i++) {
+					writeString(output, locations[i]);
+					output.writeLong(hashes[i]);
+				}
+				write(output, cmDocument);
+			}
+			finally {
+				output.close();
+			}
+			boolean renamed;
+			synchronized (getLock(file)) {
+				file.delete();
+				renamed = tempFile.renameTo(file);
+			}
+			if (renamed) {
+				Logger.trace(CATEGORY, "Wrote " + grammarURI); //$NON-NLS-1$
+			}
+		}
+		catch (IOException e) {
+			Logger.logException("Could not write content model for " + grammarURI, e); //$NON-NLS-1$
+		}
+		catch (UnsupportedNodeException e) {
+			Logger.trace(CATEGORY, "Content model for " + grammarURI + " can't be kept: " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		catch (RuntimeException e) {
+			Logger.logException("Could not write content model for " + grammarURI, e); //$NON-NLS-1$
+		}
+		finally {
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Reads a whole kept file into memory.
+	 *
+	 * @return the file's contents, or null if it's too large
+	 */
+	private ByteBuffer readFile(File file) throws IOException {
+		ByteBuffer buffer;
+		FileInputStream input = new FileInputStream(file);
+		try {
+			FileChannel channel = input.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				return null;
+			/*
+			 * not mapped: a mapped file stays locked on some platforms until
+			 * the mapping is collected, and the nodes are copied out anyway
+			 */
+			buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+				// keep reading
+			}
+			buffer.flip();
+		}
+		finally {
+			input.close();
+		}
+		return buffer;
+	}
+
+	private CMDocument read(ByteBuffer buffer, String grammarURI) throws IOException {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || !grammarURI.equals(readString(buffer)))
+			return null;
+		int locationCount = buffer.getInt();
+		for (int i = 0; i < locationCount; i++) {
+			String location = readString(buffer);
+			long hash = buffer.getLong();
+			if (!isLocal(location) || hash != hashContents(location))
+				return null;
+		}
+		return readNodes(buffer);
+	}
+
+	private CMDocument readNodes(ByteBuffer buffer) throws IOException {
+		CMDocumentSnapshot.Node[] nodes = new CMDocumentSnapshot.Node[buffer.getInt()];
+		for (int i = 0; i < nodes.length; i++) {
+			int nodeType = buffer.getInt();
+			switch (nodeType) {
+				case CMNode.DOCUMENT :
+					nodes[i] = new CMDocumentSnapshot.Document();
+					break;
+				case CMNode.ELEMENT_DECLARATION :
+					nodes[i] = new CMDocumentSnapshot.ElementDeclaration();
+					break;
+				case CMNode.GROUP :
+					nodes[i] = new CMDocumentSnapshot.Group();
+					break;
+				case CMNode.ANY_ELEMENT :
+					nodes[i] = new CMDocumentSnapshot.AnyElement();
+					break;
+				case CMNode.ATTRIBUTE_DECLARATION :
+					nodes[i] = new CMDocumentSnapshot.AttributeDeclaration();
+					break;
+				case CMNode.DATA_TYPE :
+					nodes[i] = new CMDocumentSnapshot.DataType();
+					break;
+				case CMNode.ENTITY_DECLARATION :
+					nodes[i] = new CMDocumentSnapshot.EntityDeclaration();
+					break;
+				case CMNode.DOCUMENTATION :
+					nodes[i] = new CMDocumentSnapshot.Documentation();
+					break;
+				case CMNode.NAME_SPACE :
+					nodes[i] = new CMDocumentSnapshot.Namespace();
+					break;
+				default :
+					throw new IOException("Unknown node type " + nodeType); //$NON-NLS-1$
+			}
+		}
+		if (nodes.length == 0 || !(nodes[0] instanceof CMDocumentSnapshot.Document))
+			throw new IOException("No document node"); //$NON-NLS-1$
+		CMDocumentSnapshot.Document document = (CMDocumentSnapshot.Document) nodes[0];
+
+		for (int i = 0; i < nodes.length; i++) {
+			CMDocumentSnapshot.Node node = nodes[i];
+			node.document = document;
+			node.nodeName = readString(buffer);
+			int propertyCount = buffer.getInt();
+			for (int j = 0; j < propertyCount; j++) {
+				String name = readString(buffer);
+				node.properties.put(name, readString(buffer));
+			}
+			int documentationCount = buffer.getInt();
+			if (documentationCount > 0) {
+				CMNodeListImpl documentation = new CMNodeListImpl();
+				for (int j = 0; j < documentationCount; j++) {
+					documentation.getList().add(readNode(buffer, nodes));
+				}
+				node.documentation = documentation;
+			}
+			node.definition = readNode(buffer, nodes);
+
+			switch (node.getNodeType()) {
+				case CMNode.DOCUMENT : {
+					readNodeMap(buffer, nodes, document.elements);
+					readNodeMap(buffer, nodes, document.entities);
+					document.namespace = (CMNamespace) readNode(buffer, nodes);
+					break;
+				}
+				case CMNode.ELEMENT_DECLARATION : {
+					CMDocumentSnapshot.ElementDeclaration element = (CMDocumentSnapshot.ElementDeclaration) node;
+					element.minOccur = buffer.getInt();
+					element.maxOccur = buffer.getInt();
+					element.contentType = buffer.getInt();
+					element.content = (CMDocumentSnapshot.Content) readNode(buffer, nodes);
+					element.dataType = (CMDataType) readNode(buffer, nodes);
+					readNodeMap(buffer, nodes, element.attributes);
+					readNodeMap(buffer, nodes, element.localElements);
+					break;
+				}
+				case CMNode.GROUP : {
+					CMDocumentSnapshot.Group group = (CMDocumentSnapshot.Group) node;
+					group.minOccur = buffer.getInt();
+					group.maxOccur = buffer.getInt();
+					group.operator = buffer.getInt();
+					int childCount = buffer.getInt();
+					for (int j = 0; j < childCount; j++) {
+						group.childNodes.getList().add(readNode(buffer, nodes));
+					}
+					break;
+				}
+				case CMNode.ANY_ELEMENT : {
+					CMDocumentSnapshot.AnyElement anyElement = (CMDocumentSnapshot.AnyElement) node;
+					anyElement.minOccur = buffer.getInt();
+					anyElement.maxOccur = buffer.getInt();
+					anyElement.namespaceURI = readString(buffer);
+					break;
+				}
+				case CMNode.ATTRIBUTE_DECLARATION : {
+					CMDocumentSnapshot.AttributeDeclaration attribute = (CMDocumentSnapshot.AttributeDeclaration) node;
+					attribute.usage = buffer.getInt();
+					attribute.defaultValue = readString(buffer);
+					attribute.attrType = (CMDataType) readNode(buffer, nodes);
+					break;
+				}
+				case CMNode.DATA_TYPE : {
+					CMDocumentSnapshot.DataType dataType = (CMDocumentSnapshot.DataType) node;
+					dataType.impliedValueKind = buffer.getInt();
+					dataType.impliedValue = readString(buffer);
+					int valueCount = buffer.getInt();
+					if (valueCount != NONE) {
+						dataType.enumeratedValues = new String[valueCount];
+						for (int j = 0; j < valueCount; j++) {
+							dataType.enumeratedValues[j] = readString(buffer);
+						}
+					}
+					dataType.instanceValue = readString(buffer);
+					break;
+				}
+				case CMNode.ENTITY_DECLARATION : {
+					((CMDocumentSnapshot.EntityDeclaration) node).value = readString(buffer);
+					break;
+				}
+				case CMNode.DOCUMENTATION : {
+					CMDocumentSnapshot.Documentation documentation = (CMDocumentSnapshot.Documentation) node;
+					documentation.value = readString(buffer);
+					documentation.language = readString(buffer);
+					documentation.source = readString(buffer);
+					break;
+				}
+				case CMNode.NAME_SPACE : {
+					CMDocumentSnapshot.Namespace namespace = (CMDocumentSnapshot.Namespace) node;
+					namespace.prefix = readString(buffer);
+					namespace.uri = readString(buffer);
+					break;
+				}
+			}
+		}
+		return document;
+	}
+
+	private CMNode readNode(ByteBuffer buffer, CMNode[] nodes) {
+		int id = buffer.getInt();
+		return id != NONE ? nodes[id] : null;
+	}
+
+	private void readNodeMap(ByteBuffer buffer, CMNode[] nodes, CMNamedNodeMapImpl map) {
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			String name = readString(buffer);
+			map.getHashtable().put(name, readNode(buffer, nodes));
+		}
+	}
+
+	private String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length == NONE)
+			return null;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		try {
+			return new String(bytes, ENCODING);
+		}
+		catch (UnsupportedEncodingException e) {
+			return new String(bytes);
+		}
+	}
+
+	/**
+	 * Writes the nodes reachable from the document, each once, so that the
+	 * nodes shared within the content model are shared when it's read back.
+	 */
+	private void write(DataOutputStream output, CMDocument cmDocument) throws IOException, UnsupportedNodeException {
+		Map ids = new IdentityHashMap();
+		List nodes = new ArrayList();
+		getId(cmDocument, ids, nodes);
+		// collect every node first, as the node count comes first
+		for (int i = 0; i < nodes.size(); i++) {
+			visit((CMNode) nodes.get(i), ids, nodes);
+		}
+		output.writeInt(nodes.size());
+		for (int i = 0; i < nodes.size(); i++) {
+			output.writeInt(((CMNode) nodes.get(i)).getNodeType());
+		}
+		for (int i = 0; i < nodes.size(); i++) {
+			writeNode(output, (CMNode) nodes.get(i), ids);
+		}
+	}
+
+	private int getId(CMNode node, Map ids, List nodes) throws UnsupportedNodeException {
+		if (node == null)
+			return NONE;
+		Integer id = (Integer) ids.get(node);
+		if (id == null) {
+			if (nodes.size() >= MAX_NODES)
+				throw new UnsupportedNodeException("more than " + MAX_NODES + " nodes"); //$NON-NLS-1$ //$NON-NLS-2$
+			id = new Integer(nodes.size());
+			ids.put(node, id);
+			nodes.add(node);
+		}
+		return id.intValue();
+	}
+
+	private CMNodeList getDocumentation(CMNode node) {
+		Object documentation = node.getProperty(CMDocumentSnapshot.PROPERTY_DOCUMENTATION);
+		return documentation instanceof CMNodeList ? (CMNodeList) documentation : null;
+	}
+
+	private CMNode getDefinition(CMNode node) {
+		Object definition = node.getProperty(CMDocumentSnapshot.PROPERTY_DEFINITION);
+		return definition instanceof CMNode ? (CMNode) definition : null;
+	}
+
+	/**
+	 * Gives ids to the nodes a node refers to
+	 */
+	private void visit(CMNode node, Map ids, List nodes) throws UnsupportedNodeException {
+		CMNodeList documentation = getDocumentation(node);
+		for (int i = 0; documentation != null && i < documentation.getLength(); i++) {
+			if (!(documentation.item(i) instanceof CMDocumentation))
+				throw new UnsupportedNodeException("documentation of " + node.getNodeName()); //$NON-NLS-1$
+			getId(documentation.item(i), ids, nodes);
+		}
+		getId(getDefinition(node), ids, nodes);
+		switch (node.getNodeType()) {
+			case CMNode.DOCUMENT : {
+				CMDocument document = (CMDocument) node;
+				visitNodeMap(document.getElements(), ids, nodes);
+				visitNodeMap(document.getEntities(), ids, nodes);
+				getId(document.getNamespace(), ids, nodes);
+				break;
+			}
+			case CMNode.ELEMENT_DECLARATION : {
+				CMElementDeclaration element = (CMElementDeclaration) node;
+				getId(element.getContent(), ids, nodes);
+				getId(element.getDataType(), ids, nodes);
+				visitNodeMap(element.getAttributes(), ids, nodes);
+				visitNodeMap(element.getLocalElements(), ids, nodes);
+				break;
+			}
+			case CMNode.GROUP : {
+				CMNodeList childNodes = ((CMGroup) node).getChildNodes();
+				for (int i = 0; childNodes != null && i < childNodes.getLength(); i++) {
+					getId(childNodes.item(i), ids, nodes);
+				}
+				break;
+			}
+			case CMNode.ATTRIBUTE_DECLARATION : {
+				getId(((CMAttributeDeclaration) node).getAttrType(), ids, nodes);
+				break;
+			}
+			case CMNode.ANY_ELEMENT :
+			case CMNode.DATA_TYPE :
+			case CMNode.ENTITY_DECLARATION :
+			case CMNode.DOCUMENTATION :
+			case CMNode.NAME_SPACE :
+				break;
+			default :
+				throw new UnsupportedNodeException("node type " + node.getNodeType()); //$NON-NLS-1$
+		}
+	}
+
+	private void visitNodeMap(CMNamedNodeMap map, Map ids, List nodes) throws UnsupportedNodeException {
+		if (map == null)
+			return;
+		for (Iterator i = map.iterator(); i.hasNext();) {
+			getId((CMNode) i.next(), ids, nodes);
+		}
+	}
+
+	private void writeNode(DataOutputStream output, CMNode node, Map ids) throws IOException, UnsupportedNodeException {
+		writeString(output, node.getNodeName());
+		List properties = new ArrayList();
+		for (int i = 0; i < CMDocumentSnapshot.STRING_PROPERTIES.length; i++) {
+			Object value = node.getProperty(CMDocumentSnapshot.STRING_PROPERTIES[i]);
+			if (value instanceof String) {
+				properties.add(CMDocumentSnapshot.STRING_PROPERTIES[i]);
+				properties.add(value);
+			}
+		}
+		output.writeInt(properties.size() / 2);
+		for (int i = 0; i < properties.size(); i++) {
+			writeString(output, (String) properties.get(i));
+		}
+		CMNodeList documentation = getDocumentation(node);
+		int documentationCount = documentation != null ? documentation.getLength() : 0;
+		output.writeInt(documentationCount);
+		for (int i = 0; i < documentationCount; i++) {
+			writeNodeId(output, documentation.item(i), ids);
+		}
+		writeNodeId(output, getDefinition(node), ids);
+
+		switch (node.getNodeType()) {
+			case CMNode.DOCUMENT : {
+				CMDocument document = (CMDocument) node;
+				writeNodeMap(output, document.getElements(), ids);
+				writeNodeMap(output, document.getEntities(), ids);
+				writeNodeId(output, document.getNamespace(), ids);
+				break;
+			}
+			case CMNode.ELEMENT_DECLARATION : {
+				CMElementDeclaration element = (CMElementDeclaration) node;
+				output.writeInt(element.getMinOccur());
+				output.writeInt(element.getMaxOccur());
+				output.writeInt(element.getContentType());
+				writeNodeId(output, element.getContent(), ids);
+				writeNodeId(output, element.getDataType(), ids);
+				writeNodeMap(output, element.getAttributes(), ids);
+				writeNodeMap(output, element.getLocalElements(), ids);
+				break;
+			}
+			case CMNode.GROUP : {
+				CMGroup group = (CMGroup) node;
+				output.writeInt(group.getMinOccur());
+				output.writeInt(group.getMaxOccur());
+				output.writeInt(group.getOperator());
+				CMNodeList childNodes = group.getChildNodes();
+				int childCount = childNodes != null ? childNodes.getLength() : 0;
+				output.writeInt(childCount);
+				for (int i = 0; i < childCount; i++) {
+					writeNodeId(output, childNodes.item(i), ids);
+				}
+				break;
+			}
+			case CMNode.ANY_ELEMENT : {
+				CMAnyElement anyElement = (CMAnyElement) node;
+				output.writeInt(anyElement.getMinOccur());
+				output.writeInt(anyElement.getMaxOccur());
+				writeString(output, anyElement.getNamespaceURI());
+				break;
+			}
+			case CMNode.ATTRIBUTE_DECLARATION : {
+				CMAttributeDeclaration attribute = (CMAttributeDeclaration) node;
+				output.writeInt(attribute.getUsage());
+				writeString(output, attribute.getDefaultValue());
+				writeNodeId(output, attribute.getAttrType(), ids);
+				break;
+			}
+			case CMNode.DATA_TYPE : {
+				CMDataType dataType = (CMDataType) node;
+				output.writeInt(dataType.getImpliedValueKind());
+				writeString(output, dataType.getImpliedValue());
+				String[] values = dataType.getEnumeratedValues();
+				output.writeInt(values != null ? values.length : NONE);
+				for (int i = 0; values != null && i < values.length; i++) {
+					writeString(output, values[i]);
+				}
+				writeString(output, dataType.generateInstanceValue());
+				break;
+			}
+			case CMNode.ENTITY_DECLARATION : {
+				writeString(output, ((CMEntityDeclaration) node).getValue());
+				break;
+			}
+			case CMNode.DOCUMENTATION : {
+				CMDocumentation documentationNode = (CMDocumentation) node;
+				writeString(output, documentationNode.getValue());
+				writeString(output, documentationNode.getLanguage());
+				writeString(output, documentationNode.getSource());
+				break;
+			}
+			case CMNode.NAME_SPACE : {
+				CMNamespace namespace = (CMNamespace) node;
+				writeString(output, namespace.getPrefix());
+				writeString(output, namespace.getURI());
+				break;
+			}
+		}
+	}
+
+	private void writeNodeId(DataOutputStream output, CMNode node, Map ids) throws IOException, UnsupportedNodeException {
+		if (node == null) {
+			output.writeInt(NONE);
+			return;
+		}
+		Integer id = (Integer) ids.get(node);
+		if (id == null) {
+			// a node that isn't the same object each time it's asked for
+			throw new UnsupportedNodeException("unstable node " + node.getNodeName()); //$NON-NLS-1$
+		}
+		output.writeInt(id.intValue());
+	}
+
+	private void writeNodeMap(DataOutputStream output, CMNamedNodeMap map, Map ids) throws IOException, UnsupportedNodeException {
+		if (map == null) {
+			output.writeInt(0);
+			return;
+		}
+		List entries = new ArrayList();
+		for (Iterator i = map.iterator(); i.hasNext();) {
+			entries.add(i.next());
+		}
+		output.writeInt(entries.size());
+		for (int i = 0; i < entries.size(); i++) {
+			CMNode node = (CMNode) entries.get(i);
+			writeString(output, node.getNodeName());
+			writeNodeId(output, node, ids);
+		}
+	}
+
+	private void writeString(DataOutputStream output, String string) throws IOException {
+		if (string == null) {
+			output.writeInt(NONE);
+			return;
+		}
+		byte[] bytes = string.getBytes(ENCODING);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+}
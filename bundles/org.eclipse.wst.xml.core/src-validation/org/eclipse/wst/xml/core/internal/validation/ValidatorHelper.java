@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2012 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -30,6 +30,8 @@ import org.xml.sax.SAXNotRecognizedException;
 import org.xml.sax.SAXNotSupportedException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.ext.DeclHandler;
 import org.xml.sax.ext.LexicalHandler;
 
 import com.ibm.icu.util.StringTokenizer;
@@ -49,6 +51,13 @@ public class ValidatorHelper
   public String schemaLocationString = ""; //$NON-NLS-1$
   public int numDTDElements = 0;
   public boolean isDocumentElementEncountered = false;
+  /**
+   * Whether the document declares anything in an internal DTD subset, or
+   * its DOCTYPE couldn't be read to the end
+   */
+  public boolean isInternalSubsetEncountered = false;
+
+  private boolean isInDTD = false;
 
   private static final boolean _trace = Boolean.valueOf(Platform.getDebugOption("org.eclipse.wst.xml.core/debug/validation")).booleanValue(); //$NON-NLS-1$
   /**
@@ -90,14 +99,21 @@ public class ValidatorHelper
       {
         isGrammarEncountered = true;
         isDTDEncountered = true;
+        isInDTD = true;
       }
 
       public void endDTD() throws SAXException
       {
+        isInDTD = false;
       }
 
       public void startEntity(String name) throws SAXException
       {
+        // a parameter entity reference in the internal subset
+        if (isInDTD && name.startsWith("%")) //$NON-NLS-1$
+        {
+          isInternalSubsetEncountered = true;
+        }
       }
 
       public void endEntity(String name) throws SAXException
@@ -118,9 +134,50 @@ public class ValidatorHelper
     };
     reader.setProperty("http://xml.org/sax/properties/lexical-handler", lexicalHandler); //$NON-NLS-1$
 
+    // the external subset isn't loaded, so any declaration is in the internal subset
+    InternalSubsetHandler internalSubsetHandler = new InternalSubsetHandler();
+    reader.setProperty("http://xml.org/sax/properties/declaration-handler", internalSubsetHandler); //$NON-NLS-1$
+    reader.setDTDHandler(internalSubsetHandler);
+
     return reader;
   }
 
+  /**
+   * Notes any declaration in the internal DTD subset.
+   */
+  private class InternalSubsetHandler implements DeclHandler, DTDHandler
+  {
+    public void attributeDecl(String eName, String aName, String type, String mode, String value)
+    {
+      isInternalSubsetEncountered = true;
+    }
+
+    public void elementDecl(String name, String model)
+    {
+      isInternalSubsetEncountered = true;
+    }
+
+    public void externalEntityDecl(String name, String publicId, String systemId)
+    {
+      isInternalSubsetEncountered = true;
+    }
+
+    public void internalEntityDecl(String name, String value)
+    {
+      isInternalSubsetEncountered = true;
+    }
+
+    public void notationDecl(String name, String publicId, String systemId)
+    {
+      isInternalSubsetEncountered = true;
+    }
+
+    public void unparsedEntityDecl(String name, String publicId, String systemId, String notationName)
+    {
+      isInternalSubsetEncountered = true;
+    }
+  }
+
   /**
    * An error handler to suppress error and warning information.
    */
@@ -177,6 +234,10 @@ public class ValidatorHelper
 		  if (_trace)
 			  Logger.logException(e);
 	  }
+	  // the rest of the DOCTYPE is unknown
+	  if (isInDTD) {
+		  isInternalSubsetEncountered = true;
+	  }
   }
 
 
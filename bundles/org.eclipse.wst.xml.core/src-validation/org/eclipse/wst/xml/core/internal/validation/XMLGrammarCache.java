@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.wst.xml.core.internal.validation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.xerces.xni.grammars.Grammar;
+import org.eclipse.wst.xml.core.internal.XMLCorePlugin;
+import org.eclipse.wst.xml.core.internal.catalog.provisional.ICatalog;
+import org.eclipse.wst.xml.core.internal.catalog.provisional.ICatalogEvent;
+import org.eclipse.wst.xml.core.internal.catalog.provisional.ICatalogListener;
+import org.eclipse.wst.xml.core.internal.catalog.provisional.INextCatalog;
+
+/**
+ * A workspace-wide cache of the grammars compiled while validating, shared by
+ * the XML validators so that the schemas and DTDs used by many documents are
+ * only compiled once. Grammars are kept by their type and resolved location,
+ * and are all discarded when the XML catalog changes, or when any of the
+ * files a grammar was compiled from has changed since.
+ *
+ * The cache keeps within a memory limit, discarding the least recently used
+ * grammars first. The limit defaults to 64MB, or to the number of kilobytes
+ * given by the system property "org.eclipse.wst.xml.core.grammarCacheLimit".
+ */
+public class XMLGrammarCache
+{
+  private static final long MEMORY_LIMIT = Integer.getInteger("org.eclipse.wst.xml.core.grammarCacheLimit", 64 * 1024).intValue() * 1024L; //$NON-NLS-1$
+
+  /*
+   * rough size, in bytes, of a compiled grammar for each byte of its
+   * source, and the length assumed for a source that isn't a local file
+   */
+  private static final int BYTE_SIZE = 4;
+  private static final int UNKNOWN_LENGTH = 32 * 1024;
+
+  private static XMLGrammarCache instance = null;
+
+  private static class Entry
+  {
+    Grammar grammar;
+    XMLValidationDependency[] dependencies;
+    long size;
+  }
+
+  private class CatalogListener implements ICatalogListener
+  {
+    public void catalogChanged(ICatalogEvent event)
+    {
+      clear();
+    }
+  }
+
+  /**
+   * @return the cache shared by all of the XML validators
+   */
+  public static synchronized XMLGrammarCache getInstance()
+  {
+    if (instance == null)
+    {
+      instance = new XMLGrammarCache();
+      instance.addCatalogListener();
+    }
+    return instance;
+  }
+
+  /* key String to Entry, least recently used first */
+  private Map entries = new LinkedHashMap(16, 0.75f, true);
+  private long memoryUsage = 0;
+  /* changes whenever the cache is cleared */
+  private int generation = 0;
+
+  private long hitCount = 0;
+  private long missCount = 0;
+  private long evictionCount = 0;
+
+  private XMLGrammarCache()
+  {
+    super();
+  }
+
+  private void addCatalogListener()
+  {
+    if (XMLCorePlugin.getDefault() == null)
+      return;
+    ICatalogListener listener = new CatalogListener();
+    ICatalog catalog = XMLCorePlugin.getDefault().getDefaultXMLCatalog();
+    catalog.addListener(listener);
+    // the user and system catalogs
+    INextCatalog[] nextCatalogs = catalog.getNextCatalogs();
+    for (int i = 0; i < nextCatalogs.length; i++)
+    {
+      ICatalog nextCatalog = nextCatalogs[i].getReferencedCatalog();
+      if (nextCatalog != null)
+        nextCatalog.addListener(listener);
+    }
+  }
+
+  /**
+   * Discards every grammar.
+   */
+  public synchronized void clear()
+  {
+    entries.clear();
+    memoryUsage = 0;
+    generation++;
+  }
+
+  private void discardOldGrammars()
+  {
+    Iterator values = entries.values().iterator();
+    while (memoryUsage > MEMORY_LIMIT && values.hasNext())
+    {
+      memoryUsage -= ((Entry) values.next()).size;
+      values.remove();
+      evictionCount++;
+    }
+  }
+
+  /**
+   * @return the number of grammars discarded to keep within the memory limit
+   */
+  public synchronized long getEvictionCount()
+  {
+    return evictionCount;
+  }
+
+  /**
+   * @return a number that changes whenever the cache is cleared
+   */
+  synchronized int getGeneration()
+  {
+    return generation;
+  }
+
+  /**
+   * Finds a grammar, clearing the cache if any of the files it was compiled
+   * from have changed since.
+   *
+   * @param key the grammar's type and resolved location
+   * @param dependencies a list to add the files the grammar was compiled
+   *          from to
+   * @return the grammar, or null if there is none
+   */
+  synchronized Grammar getGrammar(String key, List dependencies)
+  {
+    Entry entry = (Entry) entries.get(key);
+    if (entry != null)
+    {
+      for (int i = 0; i < entry.dependencies.length; i++)
+      {
+        if (entry.dependencies[i].isStale())
+        {
+          // grammars may refer to one another, so none can be trusted
+          clear();
+          entry = null;
+          break;
+        }
+      }
+    }
+    if (entry == null)
+    {
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    for (int i = 0; i < entry.dependencies.length; i++)
+    {
+      dependencies.add(entry.dependencies[i]);
+    }
+    return entry.grammar;
+  }
+
+  /**
+   * @return the number of grammars found in the cache
+   */
+  public synchronized long getHitCount()
+  {
+    return hitCount;
+  }
+
+  /**
+   * @return the approximate memory, in bytes, used by the cached grammars
+   */
+  public synchronized long getMemoryUsage()
+  {
+    return memoryUsage;
+  }
+
+  /**
+   * @return the number of grammars looked for but not found in the cache
+   */
+  public synchronized long getMissCount()
+  {
+    return missCount;
+  }
+
+  /**
+   * Adds the grammars compiled from the given files, unless the cache has
+   * been cleared or the files have changed since they were read.
+   *
+   * @param keys each grammar's type and resolved location
+   * @param grammars the grammars
+   * @param dependencies the files the grammars were compiled from
+   * @param sinceGeneration the cache's generation before the files were
+   *          read
+   */
+  synchronized void putGrammars(String[] keys, Grammar[] grammars, XMLValidationDependency[] dependencies, int sinceGeneration)
+  {
+    if (sinceGeneration != generation || grammars.length == 0)
+      return;
+    long sourceLength = 0;
+    for (int i = 0; i < dependencies.length; i++)
+    {
+      if (dependencies[i].isStale())
+        return;
+      sourceLength += dependencies[i].getFile() != null ? dependencies[i].getLength() : UNKNOWN_LENGTH;
+    }
+    // the grammars were compiled together, so share the size between them
+    long size = Math.max(1, sourceLength * BYTE_SIZE / grammars.length);
+    for (int i = 0; i < grammars.length; i++)
+    {
+      if (entries.containsKey(keys[i]))
+        continue;
+      Entry entry = new Entry();
+      entry.grammar = grammars[i];
+      entry.dependencies = dependencies;
+      entry.size = size;
+      entries.put(keys[i], entry);
+      memoryUsage += size;
+    }
+    discardOldGrammars();
+  }
+}
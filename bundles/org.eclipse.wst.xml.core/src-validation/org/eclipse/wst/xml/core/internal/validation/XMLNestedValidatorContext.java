@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008 IBM Corporation and others.
+ * Copyright (c) 2008, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -25,7 +25,25 @@ public class XMLNestedValidatorContext extends NestedValidatorContext
   /**
    * A set of inaccessible locations URIs (String).
    */
-  private HashSet inaccessibleLocationURIs = new HashSet();
+  private final HashSet inaccessibleLocationURIs;
+
+  public XMLNestedValidatorContext()
+  {
+    inaccessibleLocationURIs = new HashSet();
+  }
+
+  /**
+   * Creates a context for validating one file of a validation session,
+   * which shares the locations marked as inaccessible with the session's
+   * context.
+   * 
+   * @param sessionContext
+   *          the context of the validation session
+   */
+  public XMLNestedValidatorContext(XMLNestedValidatorContext sessionContext)
+  {
+    inaccessibleLocationURIs = sessionContext.inaccessibleLocationURIs;
+  }
 
   /**
    * Determines if a location URI was marked as inaccessible.
@@ -36,7 +54,12 @@ public class XMLNestedValidatorContext extends NestedValidatorContext
    */
   public boolean isURIMarkedInaccessible(String locationURI)
   {
-    return locationURI != null && inaccessibleLocationURIs.contains(locationURI);
+    if (locationURI == null)
+      return false;
+    synchronized (inaccessibleLocationURIs)
+    {
+      return inaccessibleLocationURIs.contains(locationURI);
+    }
   }
 
   /**
@@ -49,7 +72,10 @@ public class XMLNestedValidatorContext extends NestedValidatorContext
   {
     if (locationURI != null)
     {
-      inaccessibleLocationURIs.add(locationURI);
+      synchronized (inaccessibleLocationURIs)
+      {
+        inaccessibleLocationURIs.add(locationURI);
+      }
     }
   }
 }
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.wst.xml.core.internal.validation;
+
+import java.io.File;
+
+import org.eclipse.core.runtime.Path;
+import org.eclipse.wst.common.uriresolver.internal.util.URIHelper;
+
+/**
+ * A file read while validating a document, such as a grammar or an external
+ * entity, as it was when it was read.
+ */
+public class XMLValidationDependency
+{
+  private String location;
+  /* null if the location isn't in a local file */
+  private File file;
+  private long lastModified;
+  private long length;
+
+  /**
+   * Records a file being read.
+   *
+   * @param physicalLocation The physical location of the file.
+   * @return The dependency on the file as it is now.
+   */
+  public static XMLValidationDependency create(String physicalLocation)
+  {
+    File file = null;
+    if (physicalLocation.startsWith("file:")) //$NON-NLS-1$
+    {
+      file = new Path(URIHelper.removeProtocol(physicalLocation)).toFile();
+    }
+    else if (physicalLocation.startsWith("jar:file:")) //$NON-NLS-1$
+    {
+      // an entry in a local archive, such as a grammar in a plug-in's jar,
+      // changes only with the archive
+      int archiveEnd = physicalLocation.indexOf("!/"); //$NON-NLS-1$
+      if (archiveEnd != -1)
+      {
+        file = new Path(URIHelper.removeProtocol(physicalLocation.substring("jar:".length(), archiveEnd))).toFile(); //$NON-NLS-1$
+      }
+    }
+    return new XMLValidationDependency(physicalLocation, file, file != null ? file.lastModified() : 0, file != null ? file.length() : 0);
+  }
+
+  XMLValidationDependency(String location, File file, long lastModified, long length)
+  {
+    this.location = location;
+    this.file = file;
+    this.lastModified = lastModified;
+    this.length = length;
+  }
+
+  /**
+   * @return The local file, or the local archive holding it, or null if the
+   *         dependency isn't in a local file.
+   */
+  public File getFile()
+  {
+    return file;
+  }
+
+  long getLastModified()
+  {
+    return lastModified;
+  }
+
+  long getLength()
+  {
+    return length;
+  }
+
+  /**
+   * @return The physical location of the file.
+   */
+  public String getLocation()
+  {
+    return location;
+  }
+
+  /**
+   * Whether the file has changed since it was read. Only local files are
+   * checked; anything else is assumed not to change while the workbench
+   * runs, but can't be known not to have changed between sessions.
+   *
+   * @return True if the file has changed, false otherwise.
+   */
+  public boolean isStale()
+  {
+    return file != null && (file.lastModified() != lastModified || file.length() != length);
+  }
+}
@@ -0,0 +1,433 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.wst.xml.core.internal.validation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.wst.xml.core.internal.Logger;
+import org.eclipse.wst.xml.core.internal.XMLCorePlugin;
+import org.eclipse.wst.xml.core.internal.catalog.provisional.ICatalog;
+import org.eclipse.wst.xml.core.internal.catalog.provisional.ICatalogEvent;
+import org.eclipse.wst.xml.core.internal.catalog.provisional.ICatalogListener;
+import org.eclipse.wst.xml.core.internal.catalog.provisional.INextCatalog;
+
+/**
+ * Remembers, across sessions, the files each workspace file read when it was
+ * last validated, such as its grammars and the files they include, so that
+ * the dependents of a file can be found, and so that a valid file which
+ * hasn't changed since, nor have any of the files it read, isn't validated
+ * again. Validation settings are given as a hash, and a change to the XML
+ * catalog means every file must be validated again.
+ */
+public class XMLValidationDependencyIndex
+{
+  private static final String INDEX_FILE = "validation-dependencies.index"; //$NON-NLS-1$
+  private static final int VERSION = 1;
+  private static final int BUFFER_SIZE = 8192;
+
+  private static XMLValidationDependencyIndex instance = null;
+
+  private static class Entry
+  {
+    long modificationStamp;
+    int settingsHash;
+    boolean valid;
+    XMLValidationDependency[] dependencies;
+  }
+
+  private class CatalogListener implements ICatalogListener
+  {
+    public void catalogChanged(ICatalogEvent event)
+    {
+      invalidate();
+    }
+  }
+
+  /**
+   * @return the index shared by the XML validators
+   */
+  public static synchronized XMLValidationDependencyIndex getInstance()
+  {
+    if (instance == null)
+    {
+      instance = new XMLValidationDependencyIndex();
+      instance.load();
+      instance.addCatalogListener();
+    }
+    return instance;
+  }
+
+  /**
+   * Writes the shared index out if it was loaded and has changed since it
+   * was last saved.
+   */
+  public static synchronized void saveInstance()
+  {
+    if (instance != null)
+      instance.save();
+  }
+
+  /* full path String of a validated file to Entry */
+  private Map entries = new HashMap();
+  /* dependency location String to Set of full path Strings of its dependents */
+  private Map dependents = new HashMap();
+  private boolean dirty = false;
+
+  private long upToDateCount = 0;
+  private long outOfDateCount = 0;
+
+  private XMLValidationDependencyIndex()
+  {
+    super();
+  }
+
+  private void addCatalogListener()
+  {
+    ICatalogListener listener = new CatalogListener();
+    ICatalog catalog = XMLCorePlugin.getDefault().getDefaultXMLCatalog();
+    catalog.addListener(listener);
+    INextCatalog[] nextCatalogs = catalog.getNextCatalogs();
+    for (int i = 0; i < nextCatalogs.length; i++)
+    {
+      ICatalog nextCatalog = nextCatalogs[i].getReferencedCatalog();
+      if (nextCatalog != null)
+        nextCatalog.addListener(listener);
+    }
+  }
+
+  private void addDependents(String path, Entry entry)
+  {
+    for (int i = 0; i < entry.dependencies.length; i++)
+    {
+      Set paths = (Set) dependents.get(entry.dependencies[i].getLocation());
+      if (paths == null)
+      {
+        paths = new HashSet();
+        dependents.put(entry.dependencies[i].getLocation(), paths);
+      }
+      paths.add(path);
+    }
+  }
+
+  /**
+   * @param file a validated file
+   * @return the locations of the files read when the file was last
+   *         validated, or null if they're not known
+   */
+  public synchronized String[] getDependencies(IFile file)
+  {
+    Entry entry = (Entry) entries.get(file.getFullPath().toString());
+    if (entry == null)
+      return null;
+    String[] locations = new String[entry.dependencies.length];
+    for (int i = 0; i < locations.length; i++)
+    {
+      locations[i] = entry.dependencies[i].getLocation();
+    }
+    return locations;
+  }
+
+  /**
+   * @param file a validated file
+   * @return the workspace files read when the file was last validated, or
+   *         null if they're not known
+   */
+  public synchronized IFile[] getDependencyFiles(IFile file)
+  {
+    Entry entry = (Entry) entries.get(file.getFullPath().toString());
+    if (entry == null)
+      return null;
+    IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+    List files = new ArrayList();
+    for (int i = 0; i < entry.dependencies.length; i++)
+    {
+      File dependencyFile = entry.dependencies[i].getFile();
+      if (dependencyFile != null)
+      {
+        IFile workspaceFile = root.getFileForLocation(new Path(dependencyFile.getAbsolutePath()));
+        if (workspaceFile != null && !files.contains(workspaceFile))
+          files.add(workspaceFile);
+      }
+    }
+    return (IFile[]) files.toArray(new IFile[files.size()]);
+  }
+
+  /**
+   * @param file a workspace file, such as a grammar
+   * @return the workspace files which read it when they were last validated
+   */
+  public synchronized IFile[] getDependents(IFile file)
+  {
+    IPath location = file.getLocation();
+    if (location == null)
+      return new IFile[0];
+    File localFile = location.toFile();
+    IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+    Set dependentFiles = new HashSet();
+    Iterator locations = dependents.entrySet().iterator();
+    while (locations.hasNext())
+    {
+      Map.Entry mapEntry = (Map.Entry) locations.next();
+      // one file may have been reached by different locations
+      File dependencyFile = XMLValidationDependency.create((String) mapEntry.getKey()).getFile();
+      if (localFile.equals(dependencyFile))
+      {
+        Iterator paths = ((Set) mapEntry.getValue()).iterator();
+        while (paths.hasNext())
+        {
+          dependentFiles.add(root.getFile(new Path((String) paths.next())));
+        }
+      }
+    }
+    return (IFile[]) dependentFiles.toArray(new IFile[dependentFiles.size()]);
+  }
+
+  /**
+   * @return the number of validated files known
+   */
+  public synchronized int getFileCount()
+  {
+    return entries.size();
+  }
+
+  /**
+   * @return the number of files found to need validating since the index
+   *         was loaded
+   */
+  public synchronized long getOutOfDateCount()
+  {
+    return outOfDateCount;
+  }
+
+  /**
+   * @return the number of files found not to need validating since the
+   *         index was loaded
+   */
+  public synchronized long getUpToDateCount()
+  {
+    return upToDateCount;
+  }
+
+  /**
+   * Makes every file need validating again, keeping what each depends on.
+   */
+  public synchronized void invalidate()
+  {
+    Iterator values = entries.values().iterator();
+    while (values.hasNext())
+    {
+      ((Entry) values.next()).valid = false;
+    }
+    dirty = true;
+  }
+
+  /**
+   * @return whether the file was found to be valid with the given settings
+   *         when it was last validated, and neither it nor the files it
+   *         read have changed since; a file that read anything other than
+   *         a local file is never up to date
+   */
+  public synchronized boolean isUpToDate(IFile file, int settingsHash)
+  {
+    boolean upToDate = false;
+    Entry entry = (Entry) entries.get(file.getFullPath().toString());
+    if (entry != null && entry.valid && entry.settingsHash == settingsHash && entry.modificationStamp == file.getModificationStamp())
+    {
+      upToDate = true;
+      for (int i = 0; i < entry.dependencies.length && upToDate; i++)
+      {
+        upToDate = entry.dependencies[i].getFile() != null && !entry.dependencies[i].isStale();
+      }
+    }
+    if (upToDate)
+      upToDateCount++;
+    else
+      outOfDateCount++;
+    return upToDate;
+  }
+
+  private void load()
+  {
+    File file = XMLCorePlugin.getDefault().getStateLocation().append(INDEX_FILE).toFile();
+    if (!file.canRead())
+      return;
+    try
+    {
+      DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+      try
+      {
+        if (input.readInt() != VERSION)
+          return;
+        int count = input.readInt();
+        for (int i = 0; i < count; i++)
+        {
+          String path = input.readUTF();
+          Entry entry = new Entry();
+          entry.modificationStamp = input.readLong();
+          entry.settingsHash = input.readInt();
+          entry.valid = input.readBoolean();
+          entry.dependencies = new XMLValidationDependency[input.readInt()];
+          for (int j = 0; j < entry.dependencies.length; j++)
+          {
+            String location = input.readUTF();
+            File dependencyFile = input.readBoolean() ? XMLValidationDependency.create(location).getFile() : null;
+            entry.dependencies[j] = new XMLValidationDependency(location, dependencyFile, input.readLong(), input.readLong());
+          }
+          entries.put(path, entry);
+          addDependents(path, entry);
+        }
+      }
+      finally
+      {
+        input.close();
+      }
+    }
+    catch (IOException e)
+    {
+      // start over
+      entries.clear();
+      dependents.clear();
+      Logger.logException("Could not read validation dependency index " + file, e); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Forgets the file, or every file within the container
+   */
+  public synchronized void remove(IResource resource)
+  {
+    String path = resource.getFullPath().toString();
+    removeEntry(path);
+    if (resource.getType() != IResource.FILE)
+    {
+      String prefix = path + IPath.SEPARATOR;
+      Object[] paths = entries.keySet().toArray();
+      for (int i = 0; i < paths.length; i++)
+      {
+        if (((String) paths[i]).startsWith(prefix))
+          removeEntry((String) paths[i]);
+      }
+    }
+  }
+
+  private void removeEntry(String path)
+  {
+    Entry entry = (Entry) entries.remove(path);
+    if (entry == null)
+      return;
+    for (int i = 0; i < entry.dependencies.length; i++)
+    {
+      Set paths = (Set) dependents.get(entry.dependencies[i].getLocation());
+      if (paths != null)
+      {
+        paths.remove(path);
+        if (paths.isEmpty())
+          dependents.remove(entry.dependencies[i].getLocation());
+      }
+    }
+    dirty = true;
+  }
+
+  /**
+   * Writes the index out if it has changed since it was last saved.
+   */
+  public synchronized void save()
+  {
+    if (!dirty)
+      return;
+    File file = XMLCorePlugin.getDefault().getStateLocation().append(INDEX_FILE).toFile();
+    try
+    {
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+      try
+      {
+        output.writeInt(VERSION);
+        output.writeInt(entries.size());
+        Iterator mapEntries = entries.entrySet().iterator();
+        while (mapEntries.hasNext())
+        {
+          Map.Entry mapEntry = (Map.Entry) mapEntries.next();
+          Entry entry = (Entry) mapEntry.getValue();
+          output.writeUTF((String) mapEntry.getKey());
+          output.writeLong(entry.modificationStamp);
+          output.writeInt(entry.settingsHash);
+          output.writeBoolean(entry.valid);
+          output.writeInt(entry.dependencies.length);
+          for (int i = 0; i < entry.dependencies.length; i++)
+          {
+            output.writeUTF(entry.dependencies[i].getLocation());
+            output.writeBoolean(entry.dependencies[i].getFile() != null);
+            output.writeLong(entry.dependencies[i].getLastModified());
+            output.writeLong(entry.dependencies[i].getLength());
+          }
+        }
+      }
+      finally
+      {
+        output.close();
+      }
+      dirty = false;
+    }
+    catch (IOException e)
+    {
+      Logger.logException("Could not write validation dependency index " + file, e); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Records that the file has just been validated from its contents on
+   * disk, unless it has changed since the validation began.
+   *
+   * @param file the validated file
+   * @param validatedStamp the file's modification stamp before it was
+   *          validated
+   * @param settingsHash a hash of the settings it was validated with
+   * @param dependencies the files read while validating it, or null if
+   *          they're not known
+   * @param valid whether no problems were found
+   */
+  public synchronized void update(IFile file, long validatedStamp, int settingsHash, XMLValidationDependency[] dependencies, boolean valid)
+  {
+    String path = file.getFullPath().toString();
+    removeEntry(path);
+    if (dependencies == null || file.getModificationStamp() != validatedStamp)
+      return;
+    Entry entry = new Entry();
+    entry.modificationStamp = validatedStamp;
+    entry.settingsHash = settingsHash;
+    entry.valid = valid;
+    entry.dependencies = dependencies;
+    entries.put(path, entry);
+    addDependents(path, entry);
+    dirty = true;
+  }
+}
@@ -34,6 +34,8 @@ public class XMLValidationInfo extends ValidationInfo implements XMLValidationRe
   protected Object messageArguments[] = null;
   protected XMLLocator locator = null;
   protected ErrorCustomizationManager errorCustomizationManager = null;
+  protected XMLValidationDependency[] dependencies = null;
+  protected boolean externalSchemaLocationChecked = false;
   
   /**
    * A stack of start tag locations, used to move errors
@@ -51,6 +53,47 @@ public class XMLValidationInfo extends ValidationInfo implements XMLValidationRe
     super(uri);
   }
   
+  /**
+   * Get the files read while validating, such as grammars and external entities.
+   * 
+   * @return The files read, or null if they're not known.
+   */
+  public XMLValidationDependency[] getDependencies()
+  {
+    return dependencies;
+  }
+
+  /**
+   * Set the files read while validating.
+   * 
+   * @param dependencies The files read, or null if they're not known.
+   */
+  public void setDependencies(XMLValidationDependency[] dependencies)
+  {
+    this.dependencies = dependencies;
+  }
+
+  /**
+   * Whether external schema location providers were asked for the grammar,
+   * in which case the result depends on what they give for the file.
+   * 
+   * @return True if the providers were asked, false otherwise.
+   */
+  public boolean isExternalSchemaLocationChecked()
+  {
+    return externalSchemaLocationChecked;
+  }
+
+  /**
+   * Set whether external schema location providers were asked for the grammar.
+   * 
+   * @param externalSchemaLocationChecked True if the providers were asked.
+   */
+  public void setExternalSchemaLocationChecked(boolean externalSchemaLocationChecked)
+  {
+    this.externalSchemaLocationChecked = externalSchemaLocationChecked;
+  }
+
   public boolean isGrammarEncountered()
   {
     return grammarEncountered;
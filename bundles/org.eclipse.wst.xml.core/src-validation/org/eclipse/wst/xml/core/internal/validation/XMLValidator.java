@@ -32,6 +32,8 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.xerces.impl.XMLErrorReporter;
+import org.apache.xerces.impl.dtd.DTDGrammar;
+import org.apache.xerces.impl.dtd.XMLElementDecl;
 import org.apache.xerces.impl.msg.XMLMessageFormatter;
 import org.apache.xerces.parsers.XIncludeAwareParserConfiguration;
 import org.apache.xerces.xni.Augmentations;
@@ -41,6 +43,10 @@ import org.apache.xerces.xni.XMLAttributes;
 import org.apache.xerces.xni.XMLLocator;
 import org.apache.xerces.xni.XMLResourceIdentifier;
 import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.apache.xerces.xni.grammars.XMLSchemaDescription;
 import org.apache.xerces.xni.parser.XMLEntityResolver;
 import org.apache.xerces.xni.parser.XMLInputSource;
 import org.eclipse.core.resources.IFile;
@@ -65,6 +71,7 @@ import org.eclipse.wst.xml.core.internal.contentmodel.modelqueryimpl.ExternalSch
 import org.eclipse.wst.xml.core.internal.preferences.XMLCorePreferenceNames;
 import org.eclipse.wst.xml.core.internal.validation.core.LazyURLInputStream;
 import org.eclipse.wst.xml.core.internal.validation.core.NestedValidatorContext;
+import org.eclipse.wst.xml.core.internal.validation.core.ValidationMessage;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -97,8 +104,6 @@ public class XMLValidator
   
   private static final String FILE_NOT_FOUND_KEY = "FILE_NOT_FOUND"; //$NON-NLS-1$
    
-  private StreamingMarkupValidator val = new StreamingMarkupValidator();
-  
   private final String ANNOTATIONMSG = AnnotationMsg.class.getName();
 
   private final static boolean _trace = Boolean.valueOf(Platform.getDebugOption("org.eclipse.wst.xml.core/externalSchemaLocation")).booleanValue(); //$NON-NLS-1$
@@ -328,6 +333,7 @@ public class XMLValidator
     XMLValidationInfo valinfo = new XMLValidationInfo(uri);
     MyEntityResolver entityResolver = new MyEntityResolver(uriResolver, context); 
     ValidatorHelper helper = new ValidatorHelper(); 
+    MyGrammarPool grammarPool = null;
     try
     {  
         helper.computeValidationInformation(uri, reader1, uriResolver);
@@ -341,6 +347,13 @@ public class XMLValidator
         {
             reader.setFeature("http://apache.org/xml/features/honour-all-schemaLocations", true); //$NON-NLS-1$
         }
+        // Share the grammars with the other validations
+        if (uriResolver != null)
+        {
+          grammarPool = new MyGrammarPool(configuration.getFeature(XMLValidationConfiguration.HONOUR_ALL_SCHEMA_LOCATIONS), !helper.isInternalSubsetEncountered);
+          entityResolver.setGrammarPool(grammarPool);
+          reader.setProperty("http://apache.org/xml/properties/internal/grammar-pool", grammarPool); //$NON-NLS-1$
+        }
         if (configuration.getFeature(XMLValidationConfiguration.USE_XINCLUDE))
         {
           reader.setFeature("http://apache.org/xml/features/xinclude", true); //$NON-NLS-1$      
@@ -350,6 +363,7 @@ public class XMLValidator
         boolean isGrammarEncountered = helper.isGrammarEncountered;
         if (!isGrammarEncountered) {
         	isGrammarEncountered = checkExternalSchemas(reader, valinfo.getFileURI());
+        	valinfo.setExternalSchemaLocationChecked(ExternalSchemaLocationProviderRegistry.getInstance().getProviders().length > 0);
         }
         reader.setFeature("http://xml.org/sax/features/validation", isGrammarEncountered);  //$NON-NLS-1$
         reader.setFeature("http://apache.org/xml/features/validation/schema", isGrammarEncountered); //$NON-NLS-1$
@@ -368,6 +382,10 @@ public class XMLValidator
     	}finally{
     		Thread.currentThread().setContextClassLoader(originalClzLoader);
     	}
+        if (grammarPool != null)
+        {
+          grammarPool.commit(valinfo);
+        }
            
         if(configuration.getIntFeature(XMLValidationConfiguration.INDICATE_NO_GRAMMAR) > 0 && 
         		valinfo.isValid() && !isGrammarEncountered)
@@ -400,6 +418,13 @@ public class XMLValidator
     catch (Exception exception)
     {  
     	Logger.logException(exception.getLocalizedMessage(), exception);
+    	// the validation stopped short, so the files it read aren't all known
+    	grammarPool = null;
+    }
+
+    if (grammarPool != null)
+    {
+      valinfo.setDependencies(grammarPool.getDependencies());
     }
 
     // Now set up the dependencies
@@ -413,6 +438,14 @@ public class XMLValidator
         ArrayList resources = new ArrayList();
         if (resource != null)
           resources.add(resource);
+        // and every other file read that's in the workspace
+        XMLValidationDependency[] dependencies = valinfo.getDependencies();
+        for (int i = 0; dependencies != null && i < dependencies.length; i++)
+        {
+          resource = getWorkspaceFileFromLocation(dependencies[i].getLocation());
+          if (resource != null && !resources.contains(resource))
+            resources.add(resource);
+        }
         result.setDependsOn((IResource [])resources.toArray(new IResource [0]));
       }
       catch (Exception e)
@@ -511,7 +544,8 @@ public class XMLValidator
 		}
 		IReporter reporter = null;
 		if (resource != null){
-			reporter = val.validate(resource, 0, new ValOperation().getState());
+			// the markup validator keeps state, so each validation needs its own
+			reporter = new StreamingMarkupValidator().validate(resource, 0, new ValOperation().getState());
 		}
 		return reporter;
 	}
@@ -581,6 +615,7 @@ public class XMLValidator
     private URIResolver uriResolver;
     private String resolvedDTDLocation;
     private NestedValidatorContext context;
+    private MyGrammarPool grammarPool;
    
     /**
      * Constructor.
@@ -604,6 +639,10 @@ public class XMLValidator
         {
           resolvedDTDLocation = inputSource.getSystemId();
         }
+        if (grammarPool != null)
+        {
+          grammarPool.addDependency(inputSource != null ? inputSource.getSystemId() : null);
+        }
         return inputSource;
     }
    
@@ -611,6 +650,221 @@ public class XMLValidator
     {
       return resolvedDTDLocation;
     }
+
+    /**
+     * Set the grammar pool to tell of the entities read.
+     * 
+     * @param grammarPool The grammar pool used with this entity resolver.
+     */
+    public void setGrammarPool(MyGrammarPool grammarPool)
+    {
+      this.grammarPool = grammarPool;
+    }
+  }
+
+  /**
+   * A grammar pool for a single validation. It looks for grammars in the
+   * shared XMLGrammarCache, and once the validation is over gives the cache
+   * the grammars compiled along the way, unless something was wrong with
+   * them. Grammars are kept by where the URI resolver resolves them to.
+   */
+  protected class MyGrammarPool implements XMLGrammarPool
+  {
+    private XMLGrammarCache cache = XMLGrammarCache.getInstance();
+    private int generation = cache.getGeneration();
+    private boolean honourAllSchemaLocations;
+    private boolean shareDTD;
+    private boolean isDependencyUnknown = false;
+    /* the files read, as XMLValidationDependency */
+    private List dependencies = new ArrayList();
+    /* grammars from the cache, and those compiled during this validation */
+    private List retrievedGrammars = new ArrayList();
+    private List compiledGrammars = new ArrayList();
+
+    /**
+     * Constructor.
+     * 
+     * @param honourAllSchemaLocations Whether all schema locations are being honoured.
+     * @param shareDTD Whether DTD grammars may be shared, which they can't be if the document has an internal subset.
+     */
+    public MyGrammarPool(boolean honourAllSchemaLocations, boolean shareDTD)
+    {
+      this.honourAllSchemaLocations = honourAllSchemaLocations;
+      this.shareDTD = shareDTD;
+    }
+
+    /**
+     * Note an entity read during the validation.
+     * 
+     * @param location The entity's location, or null if it wasn't resolved.
+     */
+    public void addDependency(String location)
+    {
+      if (location == null)
+      {
+        isDependencyUnknown = true;
+        return;
+      }
+      String physicalLocation = uriResolver.resolvePhysicalLocation(location, null, location);
+      dependencies.add(XMLValidationDependency.create(physicalLocation != null ? physicalLocation : location));
+    }
+
+    /**
+     * Give the cache the grammars compiled during the validation, unless
+     * a problem was reported in any file but the document itself.
+     * 
+     * @param valinfo The validation info for the validation.
+     */
+    public void commit(XMLValidationInfo valinfo)
+    {
+      if (isDependencyUnknown || compiledGrammars.isEmpty())
+        return;
+      ValidationMessage[] messages = valinfo.getValidationMessages();
+      for (int i = 0; i < messages.length; i++)
+      {
+        if (!valinfo.getFileURI().equals(messages[i].getUri()))
+          return;
+      }
+      List keys = new ArrayList();
+      List grammars = new ArrayList();
+      for (int i = 0; i < compiledGrammars.size(); i++)
+      {
+        Grammar grammar = (Grammar) compiledGrammars.get(i);
+        String key = getKey(grammar.getGrammarDescription());
+        if (key != null)
+        {
+          if (grammar instanceof DTDGrammar)
+          {
+            buildContentModels((DTDGrammar) grammar);
+          }
+          keys.add(key);
+          grammars.add(grammar);
+        }
+      }
+      cache.putGrammars((String[]) keys.toArray(new String[keys.size()]), (Grammar[]) grammars.toArray(new Grammar[grammars.size()]), getDependencies(), generation);
+    }
+
+    /**
+     * Get the files read during the validation, directly or through the
+     * cached grammars used.
+     * 
+     * @return The files read, or null if some weren't resolved and so are not known.
+     */
+    public XMLValidationDependency[] getDependencies()
+    {
+      if (isDependencyUnknown)
+        return null;
+      List locations = new ArrayList();
+      List uniqueDependencies = new ArrayList();
+      for (int i = 0; i < dependencies.size(); i++)
+      {
+        XMLValidationDependency dependency = (XMLValidationDependency) dependencies.get(i);
+        if (!locations.contains(dependency.getLocation()))
+        {
+          locations.add(dependency.getLocation());
+          uniqueDependencies.add(dependency);
+        }
+      }
+      return (XMLValidationDependency[]) uniqueDependencies.toArray(new XMLValidationDependency[uniqueDependencies.size()]);
+    }
+
+    /*
+     * DTD grammars build their content models as they're first needed,
+     * which isn't safe once other validations can be using them.
+     */
+    private void buildContentModels(DTDGrammar grammar)
+    {
+      XMLElementDecl elementDecl = new XMLElementDecl();
+      int index = grammar.getFirstElementDeclIndex();
+      while (index != -1)
+      {
+        grammar.getElementDecl(index, elementDecl);
+        index = grammar.getNextElementDeclIndex(index);
+      }
+    }
+
+    private String getKey(XMLGrammarDescription description)
+    {
+      String type = description.getGrammarType();
+      if (!XMLGrammarDescription.XML_SCHEMA.equals(type) && !(XMLGrammarDescription.XML_DTD.equals(type) && shareDTD))
+        return null;
+      String id = description.getPublicId();
+      if (id == null)
+      {
+        id = description.getNamespace();
+      }
+      String systemId = description.getLiteralSystemId();
+      if (systemId == null && description instanceof XMLSchemaDescription)
+      {
+        String[] locationHints = ((XMLSchemaDescription) description).getLocationHints();
+        if (locationHints != null && locationHints.length > 0)
+        {
+          systemId = locationHints[0];
+        }
+      }
+      if (id == null && systemId == null)
+        return null;
+      String location = uriResolver.resolve(description.getBaseSystemId(), id, systemId);
+      // a relative location could be anywhere
+      if (location == null || location.indexOf(':') < 2)
+        return null;
+      StringBuffer key = new StringBuffer(type);
+      key.append(' ').append(honourAllSchemaLocations);
+      key.append(' ').append(description.getNamespace());
+      key.append(' ').append(location);
+      return key.toString();
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.xerces.xni.grammars.XMLGrammarPool#retrieveInitialGrammarSet(java.lang.String)
+     */
+    public Grammar[] retrieveInitialGrammarSet(String grammarType)
+    {
+      return new Grammar[0];
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.xerces.xni.grammars.XMLGrammarPool#cacheGrammars(java.lang.String, org.apache.xerces.xni.grammars.Grammar[])
+     */
+    public void cacheGrammars(String grammarType, Grammar[] grammars)
+    {
+      for (int i = 0; i < grammars.length; i++)
+      {
+        if (!retrievedGrammars.contains(grammars[i]) && !compiledGrammars.contains(grammars[i]))
+        {
+          compiledGrammars.add(grammars[i]);
+        }
+      }
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.xerces.xni.grammars.XMLGrammarPool#retrieveGrammar(org.apache.xerces.xni.grammars.XMLGrammarDescription)
+     */
+    public Grammar retrieveGrammar(XMLGrammarDescription description)
+    {
+      String key = getKey(description);
+      if (key == null)
+        return null;
+      Grammar grammar = cache.getGrammar(key, dependencies);
+      if (grammar != null)
+      {
+        retrievedGrammars.add(grammar);
+      }
+      return grammar;
+    }
+
+    public void lockPool()
+    {
+    }
+
+    public void unlockPool()
+    {
+    }
+
+    public void clear()
+    {
+      compiledGrammars.clear();
+    }
   }
   
   // cs : I've refactored the common SAX based resolution code into this method for use by other validators 
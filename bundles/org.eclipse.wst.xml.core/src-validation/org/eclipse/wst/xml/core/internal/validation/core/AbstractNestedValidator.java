@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2012 IBM Corporation and others.
+ * Copyright (c) 2006, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,19 +12,26 @@
 package org.eclipse.wst.xml.core.internal.validation.core;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.wst.validation.AbstractValidator;
+import org.eclipse.wst.validation.IDependencyIndex;
+import org.eclipse.wst.validation.ValidationFramework;
 import org.eclipse.wst.validation.ValidationResult;
 import org.eclipse.wst.validation.ValidationState;
 import org.eclipse.wst.validation.internal.core.Message;
@@ -80,16 +87,122 @@ public abstract class AbstractNestedValidator extends AbstractValidator implemen
 	        setupValidation(nestedcontext);
 	        teardownRequired = true;
 	      }
-	      else {
-	    	  nestedcontext.setProject(file.getProject());
+	      else if (nestedcontext.addToBatch(this, file))
+	      {
+	        // validated with the other files when the session finishes
+	        return result;
 	      }
-		  validate(file, null, result, reporter, nestedcontext);
+		  validate(file, null, result, reporter, getFileContext(nestedcontext, file));
 
 	      if (teardownRequired)
 	        teardownValidation(nestedcontext);
 		}
 	    return result;
   }
+
+  /**
+   * Start collecting the files to validate in this session, if they can be
+   * validated concurrently and reported on as markers.
+   * 
+   * @see #validationFinishing(IProject, ValidationState, IProgressMonitor)
+   */
+  public void validationStarting(IProject project, ValidationState state, IProgressMonitor monitor)
+  {
+    super.validationStarting(project, state, monitor);
+    if (project != null && canValidateConcurrently() && getMarkerType() != null)
+    {
+      NestedValidatorContext nestedcontext = getNestedContext(state, false);
+      if (nestedcontext != null)
+        nestedcontext.startBatch(this);
+    }
+  }
+
+  /**
+   * Validate the files collected in this session on several threads at
+   * once, reporting their messages as markers. Subclasses that override
+   * this method must call it before tearing down the session's context.
+   * 
+   * @see #validationStarting(IProject, ValidationState, IProgressMonitor)
+   */
+  public void validationFinishing(IProject project, ValidationState state, IProgressMonitor monitor)
+  {
+    if (project != null)
+    {
+      NestedValidatorContext nestedcontext = getNestedContext(state, false);
+      if (nestedcontext != null)
+      {
+        IFile[] files = nestedcontext.finishBatch(this);
+        if (files.length > 0)
+        {
+          if (monitor == null)
+            monitor = new NullProgressMonitor();
+          IReporter reporter = new MarkerReporter(getMarkerType(), monitor);
+          validate(files, null, reporter, nestedcontext, ValidationFramework.getDefault().getDependencyIndex());
+        }
+      }
+    }
+    super.validationFinishing(project, state, monitor);
+  }
+
+  /**
+   * The type of the markers this validator's messages are reported as
+   * through version 2 of the validation framework. Files are only collected
+   * and validated together at the end of a session for validators that
+   * know their marker type. The default is null.
+   * 
+   * @return The marker type, or null if it isn't known.
+   */
+  protected String getMarkerType()
+  {
+    return null;
+  }
+
+  /**
+   * The id under which the validation framework keeps what the files
+   * validated by this validator depend on. It is needed to record what the
+   * files validated at the end of a session depend on. The default is
+   * null, in which case that isn't recorded.
+   * 
+   * @return The dependency id, or null if it isn't known.
+   */
+  protected String getDependencyId()
+  {
+    return null;
+  }
+
+  /**
+   * Get the context in which to validate the given file, which knows the
+   * file's project. The default implementation sets the project of the
+   * given context, which is only safe for validators that don't validate
+   * concurrently. Validators that do must override this method to return
+   * a separate context for each file.
+   * 
+   * @param context
+   * 		The context of the current validation.
+   * @param file
+   * 		The file to validate.
+   * @return The context in which to validate the file.
+   * @see #canValidateConcurrently()
+   */
+  protected NestedValidatorContext getFileContext(NestedValidatorContext context, IFile file)
+  {
+    context.setProject(file.getProject());
+    return context;
+  }
+
+  /**
+   * Whether validate(String, InputStream, NestedValidatorContext) and
+   * validate(String, InputStream, NestedValidatorContext, ValidationResult)
+   * may be called on several threads at once. Files are only validated
+   * concurrently for validators that can be. The default is false.
+   * 
+   * @return True if the validator can validate files concurrently, false
+   *         otherwise.
+   */
+  protected boolean canValidateConcurrently()
+  {
+    return false;
+  }
  
 
   /* (non-Javadoc)
@@ -100,6 +213,7 @@ public abstract class AbstractNestedValidator extends AbstractValidator implemen
 	NestedValidatorContext nestedcontext = new NestedValidatorContext();
 	setupValidation(nestedcontext);
 	String[] fileURIs = context.getURIs();
+	List files = new ArrayList();
 	if (fileURIs != null && fileURIs.length > 0) 
 	{
 	  int numFiles = fileURIs.length;
@@ -113,16 +227,15 @@ public abstract class AbstractNestedValidator extends AbstractValidator implemen
 	      IFile file = (IFile) context.loadModel(GET_FILE, parms);
 	      if (file != null && shouldValidate(file)) 
 	      { 
-	    	  nestedcontext.setProject(file.getProject());
 	    	// The helper may not have a file stored in it but may have an InputStream if being
 	    	// called from a source other than the validation framework such as an editor.
 	        if (context.loadModel(GET_INPUTSTREAM) instanceof InputStream)
 	        {
-	          validate(file, (InputStream)context.loadModel(GET_INPUTSTREAM), null, reporter, nestedcontext); //do we need the fileName?  what is int ruleGroup?
+	          validate(file, (InputStream)context.loadModel(GET_INPUTSTREAM), null, reporter, getFileContext(nestedcontext, file)); //do we need the fileName?  what is int ruleGroup?
 	        }
 	        else
 	        {
-	    	  validate(file, null, null, reporter, nestedcontext);
+	    	  files.add(file);
 	        }
 	      }
 	    }
@@ -133,20 +246,24 @@ public abstract class AbstractNestedValidator extends AbstractValidator implemen
 	else 
     {
       Object []parms = {getValidatorID()};
-      Collection files = (Collection) context.loadModel(GET_PROJECT_FILES, parms);
+      Collection projectFiles = (Collection) context.loadModel(GET_PROJECT_FILES, parms);
       // files can be null if they're outside of the workspace
-      if (files != null) {
-	      Iterator iter = files.iterator();
-	      while (iter.hasNext() && !reporter.isCancelled()) 
+      if (projectFiles != null) {
+	      Iterator iter = projectFiles.iterator();
+	      while (iter.hasNext()) 
 	      {
 	        IFile file = (IFile) iter.next();
 	        if(shouldValidate(file))
 	        {
-		      validate(file, null, null, reporter, nestedcontext);
+		      files.add(file);
 	        }
 	      }
       }
     }
+	if (!files.isEmpty() && !reporter.isCancelled())
+	{
+	  validate((IFile[]) files.toArray(new IFile[files.size()]), null, reporter, nestedcontext, null);
+	}
 	
 	teardownValidation(nestedcontext);
 	if(reporter.isCancelled())
@@ -260,6 +377,95 @@ public abstract class AbstractNestedValidator extends AbstractValidator implemen
 	Message message = new LocalizedMessage(IMessage.LOW_SEVERITY, file.getFullPath().toString());
     reporter.displaySubtask(this, message);
     
+	ValidationReport valreport = validate(file, inputstream, result, context);
+	if (valreport != null)
+	  report(file, valreport, reporter);
+  }
+
+  /**
+   * Validate the given files and use the reporter for the validation
+   * messages, reporting the messages for each file in turn. The files are
+   * validated on several threads at once if the validator can validate
+   * concurrently, but the messages are always reported on this thread.
+   * 
+   * @param files
+   * 		The files to validate.
+   * @param result
+   * 		The validation result, or null. It is made to depend on each
+   * 		resource any of the files depend on.
+   * @param reporter 
+   * 		The reporter with which to report validation messages.
+   * @param context
+   * 		The context of the current validation.
+   * @param dependencyIndex
+   * 		The index in which to record what each file depends on, or null.
+   */
+  private void validate(IFile[] files, ValidationResult result, IReporter reporter, NestedValidatorContext context, IDependencyIndex dependencyIndex)
+  {
+	String dependencyId = dependencyIndex != null ? getDependencyId() : null;
+	ValidationBatch batch = new ValidationBatch(this, files, context, result != null || dependencyId != null);
+	Set dependencies = new LinkedHashSet();
+	batch.start();
+	try
+	{
+	  for (int i = 0; i < files.length; i++)
+	  {
+	    ValidationReport valreport = batch.waitFor(i, reporter);
+	    if (reporter.isCancelled())
+	      break;
+	    // files that are up to date still have dependencies
+	    ValidationResult fileResult = batch.getResult(i);
+	    if (dependencyId != null && fileResult != null)
+	    {
+	      dependencyIndex.set(dependencyId, files[i], fileResult.getDependsOn());
+	    }
+	    if (fileResult != null && fileResult.getDependsOn() != null)
+	    {
+	      IResource[] dependsOn = fileResult.getDependsOn();
+	      for (int j = 0; j < dependsOn.length; j++)
+	      {
+	        dependencies.add(dependsOn[j]);
+	      }
+	    }
+	    if (valreport == null)
+	      continue;
+	    Message message = new LocalizedMessage(IMessage.LOW_SEVERITY, files[i].getFullPath().toString());
+	    reporter.displaySubtask(this, message);
+	    report(files[i], valreport, reporter);
+	  }
+	}
+	finally
+	{
+	  batch.finish();
+	}
+	if (result != null && !dependencies.isEmpty())
+	{
+	  result.setDependsOn((IResource[]) dependencies.toArray(new IResource[dependencies.size()]));
+	}
+  }
+
+  /**
+   * Validate the given file. This method may be called on several threads
+   * at once if the validator can validate concurrently.
+   * 
+   * @param file 
+   * 		An IFile to validate.
+   * @param inputstream 
+   * 		An InputStream that represents the file. The InputStream may be null
+   * 		in which case the files should be validated from the IFile.
+   * @param result - The validation result, or null
+   * @param context
+   * 		The context of the current validation.
+   * @return
+   * 		A validation report summarizing the validation, or null if the
+   * 		file is up to date and wasn't validated.
+   * @see #isUpToDate(IFile, NestedValidatorContext, ValidationResult)
+   */
+  ValidationReport validate(IFile file, InputStream inputstream, ValidationResult result, NestedValidatorContext context)
+  {
+	if (inputstream == null && isUpToDate(file, context, result))
+	  return null;
+	long modificationStamp = file.getModificationStamp();
 	String locationString = null;		
 	if (file.getLocation() != null) {
 		locationString = file.getLocation().toString();
@@ -272,13 +478,74 @@ public abstract class AbstractNestedValidator extends AbstractValidator implemen
 	}
 	String uri = createURIForFilePath(locationString);
 
-	clearMarkers(file, this, reporter);
-	
-	ValidationReport valreport = null;
+	ValidationReport valreport;
 	if (result == null)
 	  valreport = validate(uri, inputstream, context);
 	else
 	  valreport = validate(uri, inputstream, context, result);
+	if (inputstream == null && valreport != null)
+	  validated(file, modificationStamp, valreport, context);
+	return valreport;
+  }
+
+  /**
+   * Whether the given file doesn't need to be validated, because neither it
+   * nor anything it depends on has changed since it was last found to be
+   * valid. A file that is up to date is neither validated nor reported on,
+   * but the given result must still be made to depend on what the file
+   * depends on. The default implementation knows of no file that is up to
+   * date. This method may be called on several threads at once if the
+   * validator can validate concurrently.
+   * 
+   * @param file
+   * 		The file that may be validated.
+   * @param context
+   * 		The context of the current validation.
+   * @param result
+   * 		The validation result, or null.
+   * @return True if the file doesn't need to be validated, false otherwise.
+   * @see #validated(IFile, long, ValidationReport, NestedValidatorContext)
+   */
+  protected boolean isUpToDate(IFile file, NestedValidatorContext context, ValidationResult result)
+  {
+	return false;
+  }
+
+  /**
+   * Called when a file has been validated from its contents, so that
+   * subclasses can remember what the file was found to depend on. The
+   * default implementation does nothing. This method may be called on
+   * several threads at once if the validator can validate concurrently.
+   * 
+   * @param file
+   * 		The file that was validated.
+   * @param modificationStamp
+   * 		The file's modification stamp before it was validated.
+   * @param valreport
+   * 		The report from validating the file.
+   * @param context
+   * 		The context of the current validation.
+   * @see #isUpToDate(IFile, NestedValidatorContext, ValidationResult)
+   */
+  protected void validated(IFile file, long modificationStamp, ValidationReport valreport, NestedValidatorContext context)
+  {
+	// do nothing
+  }
+
+  /**
+   * Report the messages from validating the given file, replacing those
+   * reported before.
+   * 
+   * @param file 
+   * 		The IFile that was validated.
+   * @param valreport
+   * 		The report from validating the file.
+   * @param reporter 
+   * 		The reporter with which to report validation messages.
+   */
+  private void report(IFile file, ValidationReport valreport, IReporter reporter)
+  {
+	clearMarkers(file, this, reporter);
 	
 	createMarkers(file, valreport.getValidationMessages(), reporter);
 	        
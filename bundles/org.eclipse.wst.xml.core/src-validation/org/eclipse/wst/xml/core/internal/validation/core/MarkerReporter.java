@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.wst.xml.core.internal.validation.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.wst.validation.internal.provisional.core.IMessage;
+import org.eclipse.wst.validation.internal.provisional.core.IReporter;
+import org.eclipse.wst.validation.internal.provisional.core.IValidator;
+import org.eclipse.wst.xml.core.internal.Logger;
+
+/**
+ * A reporter that turns the messages reported on resources straight into
+ * markers of a validator's marker type. It is used to report on files that
+ * are validated after the validation framework has stopped asking for
+ * results, which it clears the validator's markers from before validating
+ * them again.
+ */
+class MarkerReporter implements IReporter
+{
+  private static final String GROUP_NAME = "groupName"; //$NON-NLS-1$
+
+  private final String markerType;
+  private final IProgressMonitor monitor;
+
+  /**
+   * @param markerType the type of the markers to create
+   * @param monitor the progress monitor, which is checked for cancellation
+   */
+  MarkerReporter(String markerType, IProgressMonitor monitor)
+  {
+    this.markerType = markerType;
+    this.monitor = monitor;
+  }
+
+  public void addMessage(IValidator origin, IMessage message)
+  {
+    if (!(message.getTargetObject() instanceof IResource))
+      return;
+    IResource resource = (IResource) message.getTargetObject();
+    try
+    {
+      IMarker marker = resource.createMarker(markerType);
+      Map attributes = message.getAttributes();
+      if (attributes != null)
+      {
+        Iterator keys = attributes.keySet().iterator();
+        while (keys.hasNext())
+        {
+          String key = (String) keys.next();
+          marker.setAttribute(key, attributes.get(key));
+        }
+      }
+      marker.setAttribute(IMarker.MESSAGE, message.getText());
+      marker.setAttribute(IMarker.SEVERITY, getSeverity(message.getSeverity()));
+      if (message.getLineNumber() > 0)
+      {
+        marker.setAttribute(IMarker.LINE_NUMBER, message.getLineNumber());
+      }
+      if (message.getOffset() != IMessage.OFFSET_UNSET && message.getLength() != IMessage.OFFSET_UNSET)
+      {
+        marker.setAttribute(IMarker.CHAR_START, message.getOffset());
+        marker.setAttribute(IMarker.CHAR_END, message.getOffset() + message.getLength());
+      }
+      if (message.getGroupName() != null)
+      {
+        marker.setAttribute(GROUP_NAME, message.getGroupName());
+      }
+    }
+    catch (CoreException e)
+    {
+      Logger.logException(e);
+    }
+  }
+
+  public void displaySubtask(IValidator validator, IMessage message)
+  {
+    monitor.subTask(message.getText());
+  }
+
+  public List getMessages()
+  {
+    return new ArrayList();
+  }
+
+  public boolean isCancelled()
+  {
+    return monitor.isCanceled();
+  }
+
+  public void removeAllMessages(IValidator origin)
+  {
+    // the markers are only removed resource by resource
+  }
+
+  public void removeAllMessages(IValidator origin, Object object)
+  {
+    if (object instanceof IResource && ((IResource) object).isAccessible())
+    {
+      try
+      {
+        ((IResource) object).deleteMarkers(markerType, false, IResource.DEPTH_ZERO);
+      }
+      catch (CoreException e)
+      {
+        Logger.logException(e);
+      }
+    }
+  }
+
+  public void removeMessageSubset(IValidator validator, Object obj, String groupName)
+  {
+    if (!(obj instanceof IResource) || !((IResource) obj).isAccessible())
+      return;
+    try
+    {
+      IMarker[] markers = ((IResource) obj).findMarkers(markerType, false, IResource.DEPTH_ZERO);
+      for (int i = 0; i < markers.length; i++)
+      {
+        if (groupName == null || groupName.equals(markers[i].getAttribute(GROUP_NAME, null)))
+        {
+          markers[i].delete();
+        }
+      }
+    }
+    catch (CoreException e)
+    {
+      Logger.logException(e);
+    }
+  }
+
+  private static int getSeverity(int severity)
+  {
+    switch (severity)
+    {
+      case IMessage.HIGH_SEVERITY:
+        return IMarker.SEVERITY_ERROR;
+      case IMessage.LOW_SEVERITY:
+        return IMarker.SEVERITY_INFO;
+      default:
+        return IMarker.SEVERITY_WARNING;
+    }
+  }
+}
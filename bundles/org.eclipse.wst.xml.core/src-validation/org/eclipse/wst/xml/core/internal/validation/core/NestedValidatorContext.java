@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2011 IBM Corporation and others.
+ * Copyright (c) 2006, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,10 @@
 
 package org.eclipse.wst.xml.core.internal.validation.core;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 
 
@@ -23,6 +27,10 @@ public class NestedValidatorContext
 {
 	private IProject fProject;
 
+	/* guarded by this context */
+	private AbstractNestedValidator fBatchValidator;
+	private List fBatchFiles;
+
 	public void setProject(IProject project) {
 		fProject = project;
 	}
@@ -30,4 +38,44 @@ public class NestedValidatorContext
 	public IProject getProject() {
 		return fProject;
 	}
+
+	/**
+	 * Starts collecting the files the given validator is asked to validate
+	 * during this session, so that they can be validated together when the
+	 * session finishes. Does nothing if the files are already collected.
+	 */
+	synchronized void startBatch(AbstractNestedValidator validator) {
+		if (fBatchValidator == null) {
+			fBatchValidator = validator;
+			fBatchFiles = new ArrayList();
+		}
+	}
+
+	/**
+	 * Adds a file to the files collected for the given validator.
+	 * 
+	 * @return true if the file was added, false if the validator isn't
+	 *         collecting files in this session
+	 */
+	synchronized boolean addToBatch(AbstractNestedValidator validator, IFile file) {
+		if (fBatchValidator != validator)
+			return false;
+		fBatchFiles.add(file);
+		return true;
+	}
+
+	/**
+	 * Stops collecting files for the given validator.
+	 * 
+	 * @return the files collected for the validator, in the order they were
+	 *         added
+	 */
+	synchronized IFile[] finishBatch(AbstractNestedValidator validator) {
+		if (fBatchValidator != validator)
+			return new IFile[0];
+		IFile[] files = (IFile[]) fBatchFiles.toArray(new IFile[fBatchFiles.size()]);
+		fBatchValidator = null;
+		fBatchFiles = null;
+		return files;
+	}
 }
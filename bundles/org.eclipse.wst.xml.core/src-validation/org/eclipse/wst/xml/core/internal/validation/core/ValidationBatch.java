@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.wst.xml.core.internal.validation.core;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.wst.validation.ValidationResult;
+import org.eclipse.wst.validation.internal.provisional.core.IReporter;
+import org.eclipse.wst.xml.core.internal.Logger;
+
+/**
+ * Validates a list of files on several validation jobs, which take the files
+ * in turn, while the caller collects the report for each file in order. A
+ * validator that can't validate concurrently validates each file as its
+ * report is asked for instead.
+ *
+ * @see AbstractNestedValidator#canValidateConcurrently()
+ */
+class ValidationBatch
+{
+  /**
+   * The number of validation jobs, by default one per processor
+   */
+  private static final int VALIDATORS = Math.max(1, Integer.getInteger("org.eclipse.wst.xml.core.validationThreads", Runtime.getRuntime().availableProcessors()).intValue()); //$NON-NLS-1$
+  private static final long CANCEL_CHECK_INTERVAL = 250;
+
+  private class ValidationJob extends Job
+  {
+    ValidationJob()
+    {
+      super(validator.getValidatorID());
+      setPriority(Job.LONG);
+      setSystem(true);
+    }
+
+    protected IStatus run(IProgressMonitor monitor)
+    {
+      try
+      {
+        int index = nextFile();
+        while (index != -1)
+        {
+          validate(index);
+          index = nextFile();
+        }
+      }
+      finally
+      {
+        jobDone();
+      }
+      return Status.OK_STATUS;
+    }
+  }
+
+  private final AbstractNestedValidator validator;
+  private final IFile[] files;
+  private final NestedValidatorContext context;
+  private final boolean keepResults;
+  private final boolean concurrent;
+
+  /* guarded by this batch */
+  private ValidationReport[] reports;
+  private ValidationResult[] results;
+  private boolean[] done;
+  private int nextFile = 0;
+  private int activeJobs = 0;
+  private boolean canceled = false;
+
+  /**
+   * @param validator the validator to validate the files with
+   * @param files the files to validate
+   * @param context the context of the current validation
+   * @param keepResults whether to keep a validation result for each file,
+   *          which holds the resources the file depends on
+   */
+  ValidationBatch(AbstractNestedValidator validator, IFile[] files, NestedValidatorContext context, boolean keepResults)
+  {
+    this.validator = validator;
+    this.files = files;
+    this.context = context;
+    this.keepResults = keepResults;
+    this.concurrent = validator.canValidateConcurrently() && VALIDATORS > 1 && files.length > 1;
+    reports = new ValidationReport[files.length];
+    results = new ValidationResult[files.length];
+    done = new boolean[files.length];
+  }
+
+  /**
+   * Stops taking files, and waits for the files being validated to finish.
+   */
+  synchronized void finish()
+  {
+    canceled = true;
+    boolean interrupted = false;
+    while (activeJobs > 0)
+    {
+      try
+      {
+        wait();
+      }
+      catch (InterruptedException e)
+      {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return the validation result kept for the file, or null if there is
+   *         none
+   */
+  synchronized ValidationResult getResult(int index)
+  {
+    ValidationResult result = results[index];
+    results[index] = null;
+    return result;
+  }
+
+  private synchronized void jobDone()
+  {
+    activeJobs--;
+    notifyAll();
+  }
+
+  private synchronized int nextFile()
+  {
+    if (canceled || nextFile >= files.length)
+      return -1;
+    return nextFile++;
+  }
+
+  /**
+   * Starts validating the files, if they're to be validated concurrently.
+   */
+  void start()
+  {
+    if (!concurrent)
+      return;
+    int jobs = Math.min(VALIDATORS, files.length);
+    synchronized (this)
+    {
+      activeJobs = jobs;
+    }
+    for (int i = 0; i < jobs; i++)
+    {
+      new ValidationJob().schedule();
+    }
+  }
+
+  private void validate(int index)
+  {
+    ValidationReport report = null;
+    ValidationResult result = keepResults ? new ValidationResult() : null;
+    try
+    {
+      report = validator.validate(files[index], null, result, validator.getFileContext(context, files[index]));
+    }
+    catch (RuntimeException e)
+    {
+      // go on with the other files
+      Logger.logException("Error validating " + files[index].getFullPath(), e); //$NON-NLS-1$
+    }
+    synchronized (this)
+    {
+      reports[index] = report;
+      results[index] = result;
+      done[index] = true;
+      notifyAll();
+    }
+  }
+
+  /**
+   * Waits for a file to be validated. Files must be asked for in order.
+   *
+   * @param index the index of the file
+   * @param reporter the reporter, which is checked for cancellation
+   * @return the file's validation report, or null if the file was up to
+   *         date or the validation was canceled or failed
+   */
+  ValidationReport waitFor(int index, IReporter reporter)
+  {
+    if (!concurrent)
+    {
+      if (reporter.isCancelled())
+        return null;
+      if (nextFile() == index)
+      {
+        validate(index);
+      }
+    }
+    boolean interrupted = false;
+    ValidationReport report = null;
+    synchronized (this)
+    {
+      while (!done[index] && !canceled)
+      {
+        if (reporter.isCancelled())
+        {
+          canceled = true;
+          break;
+        }
+        try
+        {
+          wait(CANCEL_CHECK_INTERVAL);
+        }
+        catch (InterruptedException e)
+        {
+          interrupted = true;
+          canceled = true;
+        }
+      }
+      if (done[index])
+      {
+        report = reports[index];
+        reports[index] = null;
+      }
+    }
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+    return report;
+  }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2011 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,7 +12,10 @@
 package org.eclipse.wst.xml.core.internal.validation.eclipse;
 
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ProjectScope;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -25,9 +28,12 @@ import org.eclipse.wst.validation.ValidationResult;
 import org.eclipse.wst.validation.ValidationState;
 import org.eclipse.wst.validation.internal.provisional.core.IMessage;
 import org.eclipse.wst.xml.core.internal.XMLCorePlugin;
+import org.eclipse.wst.xml.core.internal.catalog.Catalog;
 import org.eclipse.wst.xml.core.internal.preferences.XMLCorePreferenceNames;
 import org.eclipse.wst.xml.core.internal.validation.XMLNestedValidatorContext;
 import org.eclipse.wst.xml.core.internal.validation.XMLValidationConfiguration;
+import org.eclipse.wst.xml.core.internal.validation.XMLValidationDependencyIndex;
+import org.eclipse.wst.xml.core.internal.validation.XMLValidationInfo;
 import org.eclipse.wst.xml.core.internal.validation.XMLValidationReport;
 import org.eclipse.wst.xml.core.internal.validation.core.AbstractNestedValidator;
 import org.eclipse.wst.xml.core.internal.validation.core.NestedValidatorContext;
@@ -37,8 +43,29 @@ import org.eclipse.wst.xml.core.internal.validation.core.ValidationReport;
 public class Validator extends AbstractNestedValidator
 {
   private static final String XML_VALIDATOR_CONTEXT = "org.eclipse.wst.xml.core.validatorContext"; //$NON-NLS-1$
+  private static final String XML_VALIDATOR_ID = "org.eclipse.wst.xml.core.xml"; //$NON-NLS-1$
+  private static final String XML_VALIDATION_MARKER = "org.eclipse.wst.xml.core.validationMarker"; //$NON-NLS-1$
   protected int indicateNoGrammar = 0;
-  private IScopeContext[] fPreferenceScopes = null;
+
+  /**
+   * The settings that files of one project are validated with.
+   */
+  private static class Settings
+  {
+    final IScopeContext[] preferenceScopes;
+    final int indicateNoGrammar;
+    int hash;
+
+    Settings(IScopeContext[] preferenceScopes)
+    {
+      this.preferenceScopes = preferenceScopes;
+      this.indicateNoGrammar = Platform.getPreferencesService().getInt(XMLCorePlugin.getDefault().getBundle().getSymbolicName(), XMLCorePreferenceNames.INDICATE_NO_GRAMMAR, 0, preferenceScopes);
+    }
+  }
+
+  /* the settings of each project validated since set up, guarded by this validator */
+  private Map fSettings = null;
+
   /**
    * Set any preferences for XML validation.
    * 
@@ -47,8 +74,40 @@ public class Validator extends AbstractNestedValidator
   protected void setupValidation(NestedValidatorContext context) 
   {
 	super.setupValidation(context);
-    fPreferenceScopes = createPreferenceScopes(context);
-    indicateNoGrammar = Platform.getPreferencesService().getInt(XMLCorePlugin.getDefault().getBundle().getSymbolicName(), XMLCorePreferenceNames.INDICATE_NO_GRAMMAR, 0, fPreferenceScopes);
+	synchronized (this)
+	{
+	  fSettings = new HashMap();
+	}
+    indicateNoGrammar = getSettings(context).indicateNoGrammar;
+  }
+
+  /**
+   * Get the settings to validate the files of the context's project with.
+   * They are read again for each set up, and only kept while set up.
+   */
+  private Settings getSettings(NestedValidatorContext context)
+  {
+    IProject project = context != null ? context.getProject() : null;
+    synchronized (this)
+    {
+      Settings settings = fSettings != null ? (Settings) fSettings.get(project) : null;
+      if (settings == null)
+      {
+        settings = new Settings(createPreferenceScopes(context));
+        settings.hash = createSettingsHash(settings);
+        if (fSettings != null)
+          fSettings.put(project, settings);
+      }
+      return settings;
+    }
+  }
+
+  /**
+   * Whether the settings are kept, which they are once set up.
+   */
+  private synchronized boolean isSetUp()
+  {
+    return fSettings != null;
   }
 
   protected IScopeContext[] createPreferenceScopes(NestedValidatorContext context) {
@@ -63,6 +122,51 @@ public class Validator extends AbstractNestedValidator
 	  return new IScopeContext[]{new InstanceScope(), new DefaultScope()};
   }
  
+  /**
+   * Each file is validated in its own context, so that the settings of the
+   * file's own project are used even when files of several projects are
+   * validated together.
+   * 
+   * @see org.eclipse.wst.xml.core.internal.validation.core.AbstractNestedValidator#getFileContext(org.eclipse.wst.xml.core.internal.validation.core.NestedValidatorContext, org.eclipse.core.resources.IFile)
+   */
+  protected NestedValidatorContext getFileContext(NestedValidatorContext context, IFile file)
+  {
+    if (context instanceof XMLNestedValidatorContext)
+    {
+      NestedValidatorContext fileContext = new XMLNestedValidatorContext((XMLNestedValidatorContext) context);
+      fileContext.setProject(file.getProject());
+      return fileContext;
+    }
+    return super.getFileContext(context, file);
+  }
+
+  /* (non-Javadoc)
+   * @see org.eclipse.wst.xml.core.internal.validation.core.AbstractNestedValidator#getMarkerType()
+   */
+  protected String getMarkerType()
+  {
+    return XML_VALIDATION_MARKER;
+  }
+
+  /* (non-Javadoc)
+   * @see org.eclipse.wst.xml.core.internal.validation.core.AbstractNestedValidator#getDependencyId()
+   */
+  protected String getDependencyId()
+  {
+    return XML_VALIDATOR_ID;
+  }
+
+  /**
+   * The XML validator keeps no state between validations, so files can be
+   * validated concurrently.
+   * 
+   * @see org.eclipse.wst.xml.core.internal.validation.core.AbstractNestedValidator#canValidateConcurrently()
+   */
+  protected boolean canValidateConcurrently()
+  {
+    return true;
+  }
+
   /* (non-Javadoc)
    * @see org.eclipse.wst.xml.core.internal.validation.core.AbstractNestedValidator#validate(java.lang.String, java.io.InputStream, org.eclipse.wst.xml.core.internal.validation.core.NestedValidatorContext)
    */
@@ -75,24 +179,95 @@ public class Validator extends AbstractNestedValidator
   {
     XMLValidator validator = XMLValidator.getInstance();
 
+    XMLValidationConfiguration configuration = createConfiguration(getSettings(context));
+    
+    XMLValidationReport valreport = validator.validate(uri, inputstream, configuration, result, context);
+              
+    return valreport;
+  }
+
+  private XMLValidationConfiguration createConfiguration(Settings settings)
+  {
+    IScopeContext[] preferenceScopes = settings.preferenceScopes;
     XMLValidationConfiguration configuration = new XMLValidationConfiguration();
     try
     {
       //Preferences pluginPreferences = XMLCorePlugin.getDefault().getPluginPreferences();
-      configuration.setFeature(XMLValidationConfiguration.INDICATE_NO_GRAMMAR, indicateNoGrammar);
+      configuration.setFeature(XMLValidationConfiguration.INDICATE_NO_GRAMMAR, settings.indicateNoGrammar);
       final IPreferencesService preferencesService = Platform.getPreferencesService();
-      configuration.setFeature(XMLValidationConfiguration.INDICATE_NO_DOCUMENT_ELEMENT, preferencesService.getInt(XMLCorePlugin.getDefault().getBundle().getSymbolicName(), XMLCorePreferenceNames.INDICATE_NO_DOCUMENT_ELEMENT, -1, fPreferenceScopes));
-      configuration.setFeature(XMLValidationConfiguration.USE_XINCLUDE, preferencesService.getBoolean(XMLCorePlugin.getDefault().getBundle().getSymbolicName(), XMLCorePreferenceNames.USE_XINCLUDE, false, fPreferenceScopes));
-      configuration.setFeature(XMLValidationConfiguration.HONOUR_ALL_SCHEMA_LOCATIONS, preferencesService.getBoolean(XMLCorePlugin.getDefault().getBundle().getSymbolicName(), XMLCorePreferenceNames.HONOUR_ALL_SCHEMA_LOCATIONS, true, fPreferenceScopes));
+      configuration.setFeature(XMLValidationConfiguration.INDICATE_NO_DOCUMENT_ELEMENT, preferencesService.getInt(XMLCorePlugin.getDefault().getBundle().getSymbolicName(), XMLCorePreferenceNames.INDICATE_NO_DOCUMENT_ELEMENT, -1, preferenceScopes));
+      configuration.setFeature(XMLValidationConfiguration.USE_XINCLUDE, preferencesService.getBoolean(XMLCorePlugin.getDefault().getBundle().getSymbolicName(), XMLCorePreferenceNames.USE_XINCLUDE, false, preferenceScopes));
+      configuration.setFeature(XMLValidationConfiguration.HONOUR_ALL_SCHEMA_LOCATIONS, preferencesService.getBoolean(XMLCorePlugin.getDefault().getBundle().getSymbolicName(), XMLCorePreferenceNames.HONOUR_ALL_SCHEMA_LOCATIONS, true, preferenceScopes));
     }
     catch(Exception e)
     {
       // TODO: Unable to set the preference. Log this problem.
     }
-    
-    XMLValidationReport valreport = validator.validate(uri, inputstream, configuration, result, context);
-              
-    return valreport;
+    return configuration;
+  }
+
+  /**
+   * Hash the settings that change what validating a file finds, so that the
+   * files found to be valid with other settings are validated again.
+   */
+  private int createSettingsHash(Settings settings)
+  {
+    XMLValidationConfiguration configuration = createConfiguration(settings);
+    int hash = 1;
+    try
+    {
+      hash = 31 * hash + configuration.getIntFeature(XMLValidationConfiguration.INDICATE_NO_GRAMMAR);
+      hash = 31 * hash + configuration.getIntFeature(XMLValidationConfiguration.INDICATE_NO_DOCUMENT_ELEMENT);
+      hash = 31 * hash + (configuration.getFeature(XMLValidationConfiguration.USE_XINCLUDE) ? 1 : 0);
+      hash = 31 * hash + (configuration.getFeature(XMLValidationConfiguration.HONOUR_ALL_SCHEMA_LOCATIONS) ? 1 : 0);
+    }
+    catch(Exception e)
+    {
+      // the feature names are all known
+    }
+    hash = 31 * hash + (XMLCorePlugin.getDefault().getPluginPreferences().getBoolean(XMLCorePreferenceNames.MARKUP_VALIDATION) ? 1 : 0);
+    // the catalog may have been changed while it wasn't being listened to
+    long catalogStamp = XMLCorePlugin.getDefault().getStateLocation().append(Catalog.USER_CATALOG_FILE).toFile().lastModified();
+    hash = 31 * hash + (int) (catalogStamp ^ (catalogStamp >>> 32));
+    return hash;
+  }
+
+  /**
+   * A file is up to date if it was found to be valid with the same settings,
+   * and neither it nor any file read while validating it has changed since.
+   * Files for which external schema location providers were asked, or which
+   * read anything other than a local file, are never up to date.
+   * 
+   * @see org.eclipse.wst.xml.core.internal.validation.core.AbstractNestedValidator#isUpToDate(org.eclipse.core.resources.IFile, org.eclipse.wst.xml.core.internal.validation.core.NestedValidatorContext, org.eclipse.wst.validation.ValidationResult)
+   */
+  protected boolean isUpToDate(IFile file, NestedValidatorContext context, ValidationResult result)
+  {
+    // the settings aren't known unless this validator was set up
+    if (!isSetUp())
+      return false;
+    XMLValidationDependencyIndex index = XMLValidationDependencyIndex.getInstance();
+    if (!index.isUpToDate(file, getSettings(context).hash))
+      return false;
+    if (result != null)
+    {
+      result.setDependsOn(index.getDependencyFiles(file));
+    }
+    return true;
+  }
+
+  /* (non-Javadoc)
+   * @see org.eclipse.wst.xml.core.internal.validation.core.AbstractNestedValidator#validated(org.eclipse.core.resources.IFile, long, org.eclipse.wst.xml.core.internal.validation.core.ValidationReport, org.eclipse.wst.xml.core.internal.validation.core.NestedValidatorContext)
+   */
+  protected void validated(IFile file, long modificationStamp, ValidationReport valreport, NestedValidatorContext context)
+  {
+    if (isSetUp() && valreport instanceof XMLValidationInfo)
+    {
+      XMLValidationInfo valinfo = (XMLValidationInfo) valreport;
+      // what the schema location providers give may change at any time,
+      // so a file they were asked about is never up to date
+      boolean valid = valinfo.getValidationMessages().length == 0 && !valinfo.isExternalSchemaLocationChecked();
+      XMLValidationDependencyIndex.getInstance().update(file, modificationStamp, getSettings(context).hash, valinfo.getDependencies(), valid);
+    }
   }
 	  
   /**
@@ -157,6 +332,19 @@ public class Validator extends AbstractNestedValidator
     }
   }
   
+  /**
+   * Forget what the project's files depend on, so that they are all
+   * validated again.
+   */
+  public void clean(IProject project, ValidationState state, IProgressMonitor monitor)
+  {
+    if (project != null)
+    {
+      XMLValidationDependencyIndex.getInstance().remove(project);
+    }
+    super.clean(project, state, monitor);
+  }
+
   public void validationFinishing(IProject project, ValidationState state, IProgressMonitor monitor)
   {
     if (project != null)
@@ -168,6 +356,9 @@ public class Validator extends AbstractNestedValidator
         teardownValidation(context);
         state.put(XML_VALIDATOR_CONTEXT, null);
       }
+      // remember what the validated files depend on for the next session;
+      // the index is also saved when the plug-in stops
+      XMLValidationDependencyIndex.saveInstance();
     }
   }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2006 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -29,7 +29,7 @@ public class XMLValidator extends org.eclipse.wst.xml.core.internal.validation.X
    * 
    * @return The one and only instance of the XML validator.
    */
-  public static XMLValidator getInstance()
+  public static synchronized XMLValidator getInstance()
   {
     if(instance == null)
     {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2011 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,8 @@ import org.eclipse.core.runtime.Plugin;
 import org.eclipse.wst.xml.core.internal.catalog.Catalog;
 import org.eclipse.wst.xml.core.internal.catalog.CatalogSet;
 import org.eclipse.wst.xml.core.internal.catalog.provisional.ICatalog;
+import org.eclipse.wst.xml.core.internal.validation.XMLValidationDependencyIndex;
+import org.osgi.framework.BundleContext;
 
 
 /**
@@ -83,4 +85,9 @@ public class XMLCorePlugin extends Plugin {
 		}
 	}
 
+	public void stop(BundleContext context) throws Exception {
+		XMLValidationDependencyIndex.saveInstance();
+		super.stop(context);
+	}
+
 }
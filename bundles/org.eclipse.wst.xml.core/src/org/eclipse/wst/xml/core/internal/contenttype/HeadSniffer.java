@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     
+ *******************************************************************************/
+package org.eclipse.wst.xml.core.internal.contenttype;
+
+import org.eclipse.core.runtime.content.IContentDescription;
+import org.eclipse.wst.sse.core.internal.encoding.EncodingSniffer;
+
+/**
+ * The EncodingSniffer shared by the resource encoding detectors, which
+ * reports the byte order mark found as the token type their head tokenizers
+ * would have returned for it. Each thread has its own instance.
+ */
+public class HeadSniffer extends EncodingSniffer {
+	private static final ThreadLocal INSTANCE = new ThreadLocal() {
+		protected Object initialValue() {
+			return new HeadSniffer();
+		}
+	};
+
+	/**
+	 * @return the calling thread's sniffer
+	 */
+	public static HeadSniffer getInstance() {
+		return (HeadSniffer) INSTANCE.get();
+	}
+
+	private HeadSniffer() {
+		super();
+	}
+
+	/**
+	 * @return {@link EncodingParserConstants#UTF83ByteBOM},
+	 *         {@link EncodingParserConstants#UTF16BE} or
+	 *         {@link EncodingParserConstants#UTF16LE} for the byte order mark
+	 *         found, or null if there was none
+	 */
+	public String getUnicodeBOMTokenType() {
+		byte[] bom = getUnicodeBOM();
+		if (bom == null)
+			return null;
+		if (bom == IContentDescription.BOM_UTF_8)
+			return EncodingParserConstants.UTF83ByteBOM;
+		return (bom == IContentDescription.BOM_UTF_16BE) ? EncodingParserConstants.UTF16BE : EncodingParserConstants.UTF16LE;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2010 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -69,6 +69,23 @@ public class XMLResourceEncodingDetector extends AbstractResourceEncodingDetecto
 	}
 
 	protected void parseInput() throws IOException {
+		// most heads can be read without the tokenizer
+		HeadSniffer sniffer = HeadSniffer.getInstance();
+		if (sniffer.sniffXML(fReader)) {
+			if (sniffer.getUnicodeBOM() != null) {
+				canHandleAsUnicodeStream(sniffer.getUnicodeBOMTokenType());
+			}
+			else {
+				fDeclDetected = sniffer.isXMLDeclarationFound();
+				fInitialWhiteSpace = sniffer.hasInitialWhiteSpace();
+				String enc = sniffer.getDeclaredEncoding();
+				if (enc != null && enc.length() > 0) {
+					createEncodingMemento(enc, EncodingMemento.FOUND_ENCODING_IN_CONTENT);
+				}
+			}
+			return;
+		}
+
 		XMLHeadTokenizer tokenizer = getTokenizer();
 		tokenizer.reset(fReader);
 		HeadParserToken token = null;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2011 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -88,6 +88,16 @@ public class DOMModelImpl extends AbstractStructuredModel implements IStructured
 		getModelNotifier().beginChanging();
 	}
 
+	/**
+	 * Also coalesces the adapter notifications deferred during the batch.
+	 * 
+	 * @see org.eclipse.wst.sse.core.internal.provisional.IStructuredModel#beginNotificationBatch()
+	 */
+	public void beginNotificationBatch() {
+		super.beginNotificationBatch();
+		getModelNotifier().beginBatch();
+	}
+
 	public void aboutToReinitializeModel() {
 		XMLModelNotifier notifier = getModelNotifier();
 		notifier.cancelPending();
@@ -117,6 +127,15 @@ public class DOMModelImpl extends AbstractStructuredModel implements IStructured
 		getModelNotifier().attrReplaced(element, newAttr, oldAttr);
 	}
 
+	/**
+	 * @see org.eclipse.wst.sse.core.internal.provisional.IStructuredModel#endNotificationBatch()
+	 */
+	public void endNotificationBatch() {
+		// the notifier still coalesces when changedModel flushes it
+		getModelNotifier().endBatch();
+		super.endNotificationBatch();
+	}
+
 	/**
 	 * This API allows a client controlled way of notifying all ModelEvent
 	 * listners that the model has been changed. This method is a matched pair
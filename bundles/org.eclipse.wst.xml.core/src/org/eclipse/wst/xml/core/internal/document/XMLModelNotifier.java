@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2005 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -40,6 +40,13 @@ public interface XMLModelNotifier {
 	 */
 	void attrReplaced(Element element, Attr newAttr, Attr oldAttr);
 
+	/**
+	 * Signal that a notification batch is starting. Notifications deferred
+	 * from now until changing ends are coalesced. Batches may be nested.
+	 * 
+	 */
+	void beginBatch();
+
 	/**
 	 * Signal that changing is starting.
 	 * 
@@ -78,6 +85,13 @@ public interface XMLModelNotifier {
 	 */
 	void editableChanged(Node node);
 
+	/**
+	 * Signal that a notification batch is finished. The deferred
+	 * notifications are still sent when changing ends.
+	 * 
+	 */
+	void endBatch();
+
 	/**
 	 * Signal changing is finished.
 	 * 
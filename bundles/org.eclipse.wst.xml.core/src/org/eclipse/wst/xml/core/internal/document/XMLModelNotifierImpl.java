@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2008 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -53,16 +53,52 @@ public class XMLModelNotifierImpl implements XMLModelNotifier {
 		}
 	}
 
+	/**
+	 * Identifies the events a batch coalesces into one: the changes of one
+	 * notifier's attribute, or of the notifier itself, or of the content of
+	 * one of its children.
+	 */
+	private static class EventKey {
+		private final Object changedFeature;
+		private final INodeNotifier notifier;
+		private final int type;
+
+		EventKey(NotifyEvent event) {
+			this.notifier = event.notifier;
+			this.type = event.type;
+			this.changedFeature = event.changedFeature;
+		}
+
+		public boolean equals(Object obj) {
+			if (!(obj instanceof EventKey))
+				return false;
+			EventKey other = (EventKey) obj;
+			return other.notifier == notifier && other.type == type && other.changedFeature == changedFeature;
+		}
+
+		public int hashCode() {
+			int hash = System.identityHashCode(notifier) * 31 + type;
+			if (changedFeature != null)
+				hash = hash * 31 + System.identityHashCode(changedFeature);
+			return hash;
+		}
+	}
+
 	private final static String ADDED_THEN_REMOVED = "Discard: Added then removed rule"; //$NON-NLS-1$
 	private final static boolean fOptimizeDeferred = true;
 	private final static boolean fOptimizeDeferredAccordingToParentAdded = true;
 	private final static boolean fOptimizeDeferredAccordingToParentRemoved = true;
+	private final static String COALESCED = "Discard: Coalesced into later change"; //$NON-NLS-1$
 	private final static String PARENT_IS_ADDED = "Disarded: Parent has just been added"; //$NON-NLS-1$
 	/* start: for debugging only */
 	private final static String PARENT_IS_REMOVED_TOO = "Discard: Parent was removed too"; //$NON-NLS-1$
 	private final static String PARENT_IS_REPARENTED = "Not Discard: Parent was removed so this implies reparenting"; //$NON-NLS-1$
 	private Node changedRoot = null;
 
+	/* how deeply batches are nested */
+	private int batchDepth = 0;
+	/* a batch was begun since the deferred events were last sent */
+	private boolean coalescing = false;
 	private boolean changing = false;
 	private boolean doingNewModel = false;
 	private List fEvents = null;
@@ -104,6 +140,13 @@ public class XMLModelNotifierImpl implements XMLModelNotifier {
 		propertyChanged(notifier);
 	}
 
+	/**
+	 */
+	public void beginBatch() {
+		this.batchDepth++;
+		this.coalescing = true;
+	}
+
 	/**
 	 */
 	public void beginChanging() {
@@ -160,6 +203,41 @@ public class XMLModelNotifierImpl implements XMLModelNotifier {
 		structureChanged(notifier);
 	}
 
+	/**
+	 * Keeps only the last of the events with each EventKey,
+	 * giving it the old value of the first, so each adapter is told once of
+	 * the net change. Only changes of an attribute or of the node itself,
+	 * and content changes, are coalesced; additions and removals are left
+	 * to the other optimizations.
+	 */
+	private void coalesceDeferred(int count) {
+		Map lastEvents = new HashMap();
+		for (int i = count - 1; i >= 0; i--) {
+			NotifyEvent event = (NotifyEvent) this.fEvents.get(i);
+			if (event == null || event.discarded)
+				continue;
+			if (event.type == INodeNotifier.CHANGE) {
+				if (event.changedFeature != null && !(event.changedFeature instanceof Attr))
+					continue;
+			}
+			else if (event.type != INodeNotifier.CONTENT_CHANGED) {
+				continue;
+			}
+			EventKey key = new EventKey(event);
+			NotifyEvent last = (NotifyEvent) lastEvents.get(key);
+			if (last == null) {
+				lastEvents.put(key, event);
+			}
+			else {
+				last.oldValue = event.oldValue;
+				event.discarded = true;
+				if (Debug.debugNotifyDeferred) {
+					event.reason = event.reason + COALESCED + "(see " + last.index + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		}
+	}
+
 	public void editableChanged(Node node) {
 		if (node == null)
 			return;
@@ -169,6 +247,13 @@ public class XMLModelNotifierImpl implements XMLModelNotifier {
 		propertyChanged(notifier);
 	}
 
+	/**
+	 */
+	public void endBatch() {
+		if (this.batchDepth > 0)
+			this.batchDepth--;
+	}
+
 	/**
 	 */
 	public void endChanging() {
@@ -265,6 +350,8 @@ public class XMLModelNotifierImpl implements XMLModelNotifier {
 					addToMap(event.newValue, event, notifyEvents);
 				}
 			}
+			if (this.coalescing)
+				coalesceDeferred(count);
 			Iterator it = notifyEvents.values().iterator();
 			while (it.hasNext()) {
 				NotifyEvent[] es = (NotifyEvent[]) it.next();
@@ -361,6 +448,8 @@ public class XMLModelNotifierImpl implements XMLModelNotifier {
 		}
 		this.flushing = false;
 		this.fEvents = null;
+		if (this.batchDepth == 0)
+			this.coalescing = false;
 	}
 
 	void addToMap(Object o, NotifyEvent event, Map map) {
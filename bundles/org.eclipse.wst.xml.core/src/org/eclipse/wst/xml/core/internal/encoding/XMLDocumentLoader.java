@@ -68,7 +68,7 @@ public class XMLDocumentLoader extends AbstractDocumentLoader {
 	}
 
 	protected IEncodedDocument newEncodedDocument() {
-		IStructuredDocument structuredDocument = StructuredDocumentFactory.getNewStructuredDocumentInstance(getParser());
+		IStructuredDocument structuredDocument = StructuredDocumentFactory.getNewStructuredDocumentInstance(getParser(), ContentTypeIdForXML.ContentTypeID_XML);
 		if (structuredDocument instanceof BasicStructuredDocument) {
 			((BasicStructuredDocument) structuredDocument).setReParser(new XMLStructuredDocumentReParser());
 		}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2010 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -25,6 +25,7 @@ import org.eclipse.wst.sse.core.internal.ltk.parser.BlockMarker;
 import org.eclipse.wst.sse.core.internal.ltk.parser.BlockTagParser;
 import org.eclipse.wst.sse.core.internal.ltk.parser.BlockTokenizer;
 import org.eclipse.wst.sse.core.internal.ltk.parser.RegionParser;
+import org.eclipse.wst.sse.core.internal.ltk.parser.SplittableRegionParser;
 import org.eclipse.wst.sse.core.internal.ltk.parser.StructuredDocumentRegionHandler;
 import org.eclipse.wst.sse.core.internal.ltk.parser.StructuredDocumentRegionParser;
 import org.eclipse.wst.sse.core.internal.ltk.parser.StructuredDocumentRegionParserExtension;
@@ -43,7 +44,13 @@ import org.eclipse.wst.xml.core.internal.regions.DOMRegionContext;
  * Takes input from the HTMLTokenizer and creates a tag list
  */
 
-public class XMLSourceParser implements RegionParser, BlockTagParser, StructuredDocumentRegionParser, IRegionComparible, StructuredDocumentRegionParserExtension {
+public class XMLSourceParser implements RegionParser, BlockTagParser, StructuredDocumentRegionParser, IRegionComparible, StructuredDocumentRegionParserExtension, SplittableRegionParser {
+	/*
+	 * how many offsets found past markup the splitter couldn't follow are
+	 * checked before giving up
+	 */
+	private static final int MAX_UNCONFIRMED_SPLIT_OFFSETS = 4;
+
 	// made public to aid access from inner classes in hierarchy.
 	// TODO: in future, figure out how to solve without exposing data.
 	public CharSequence fCharSequenceSource = null;
@@ -161,6 +168,70 @@ public class XMLSourceParser implements RegionParser, BlockTagParser, Structured
 		return getTokenizer().getBlockMarkers();
 	}
 
+	/**
+	 * Only offered for this class and its XMLTokenizer; subclasses and other
+	 * tokenizers may carry state across tags and need to decide for
+	 * themselves.
+	 * 
+	 * @see SplittableRegionParser#getSplitOffsets(CharSequence, int, int,
+	 *      int)
+	 */
+	public int[] getSplitOffsets(CharSequence text, int start, int end, int count) {
+		if (getClass() != XMLSourceParser.class || getTokenizer().getClass() != XMLTokenizer.class)
+			return new int[0];
+		return new XMLSourceSplitter(getBlockMarkers()).getSplitOffsets(text, start, end, count);
+	}
+
+	/**
+	 * @see #getSplitOffsets(CharSequence, int, int, int)
+	 * @see SplittableRegionParser#getSplitOffset(CharSequence, int, int,
+	 *      int)
+	 */
+	public int getSplitOffset(CharSequence text, int start, int from, int end) {
+		if (getClass() != XMLSourceParser.class || getTokenizer().getClass() != XMLTokenizer.class)
+			return -1;
+		XMLSourceSplitter splitter = new XMLSourceSplitter(getBlockMarkers());
+		int target = from;
+		for (int i = 0; i < MAX_UNCONFIRMED_SPLIT_OFFSETS; i++) {
+			int offset = splitter.getSplitOffset(text, start, target, end);
+			if (offset < 0 || !splitter.isRecovered() || isSplitOffset(text, start, offset))
+				return offset;
+			target = offset + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Confirms, by parsing up to it, that the text may be split at an offset
+	 * the splitter could only guess at: the last document region must be a
+	 * complete tag, other than a block tag, ending there.
+	 */
+	private boolean isSplitOffset(CharSequence text, int start, int offset) {
+		RegionParser parser = newInstance();
+		parser.reset(new CharSequenceReader(text, start, offset - start), start);
+		IStructuredDocumentRegion last = parser.getDocumentRegions();
+		if (last == null)
+			return false;
+		while (last.getNext() != null)
+			last = last.getNext();
+		ITextRegionList regions = last.getRegions();
+		if (last.getEnd() != offset - start || regions.size() < 2)
+			return false;
+		String closeType = regions.get(regions.size() - 1).getType();
+		if (closeType != DOMRegionContext.XML_TAG_CLOSE && closeType != DOMRegionContext.XML_EMPTY_TAG_CLOSE)
+			return false;
+		String openType = regions.get(0).getType();
+		if (openType == DOMRegionContext.XML_END_TAG_OPEN || closeType == DOMRegionContext.XML_EMPTY_TAG_CLOSE)
+			return true;
+		if (openType != DOMRegionContext.XML_TAG_OPEN)
+			return false;
+		ITextRegion name = regions.get(1);
+		if (name.getType() != DOMRegionContext.XML_TAG_NAME)
+			return false;
+		// the regions have no document yet, so take the name from the text
+		return getBlockMarker(text.subSequence(start + last.getStartOffset(name), start + last.getTextEndOffset(name)).toString()) == null;
+	}
+
 	/**
 	 * @return IStructuredDocumentRegion
 	 */
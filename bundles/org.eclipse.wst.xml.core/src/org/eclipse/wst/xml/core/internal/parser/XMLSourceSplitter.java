@@ -0,0 +1,436 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.xml.core.internal.parser;
+
+import java.util.List;
+
+import org.eclipse.wst.sse.core.internal.ltk.parser.BlockMarker;
+
+/**
+ * Finds offsets where XMLTokenizer input may be cut without changing the
+ * resulting document regions: the start of a start or end tag immediately
+ * following the close of another tag, while outside of any comment, CDATA
+ * section, processing instruction, declaration, or block tag (script, style)
+ * content.
+ *
+ * The text is scanned with a much simpler state machine than the tokenizer's,
+ * though within tags it follows the tokenizer's handling of stray characters
+ * and unbalanced quotes. Wherever the two might disagree, such as on other
+ * malformed markup, scanning stops and only the offsets already found are
+ * returned; since the tokenizer works strictly from left to right, those
+ * remain valid. When looking for a single offset, scanning may instead
+ * recover at the next '&lt;' past the trouble; offsets found that way are
+ * only candidates, reported through {@link #isRecovered()}, that the caller
+ * must confirm with the parser itself.
+ */
+class XMLSourceSplitter {
+	private static final int[] NO_OFFSETS = new int[0];
+	private static final String CDATA_OPEN = "<![CDATA["; //$NON-NLS-1$
+
+	private final BlockMarker[] fBlockMarkers;
+	private CharSequence fText;
+	private int fEnd;
+	/* the block marker matching the last start tag scanned, if any */
+	private BlockMarker fBlockMarker;
+	/* whether the last tag scanned was closed, rather than cut off by another */
+	private boolean fTagClosed;
+	/* whether to look further on when the tokenizer can't be followed */
+	private boolean fRecover;
+	/* whether the tokenizer was lost and found again during the last scan */
+	private boolean fRecovered;
+
+	XMLSourceSplitter(List blockMarkers) {
+		fBlockMarkers = (BlockMarker[]) blockMarkers.toArray(new BlockMarker[blockMarkers.size()]);
+	}
+
+	int[] getSplitOffsets(CharSequence text, int start, int end, int count) {
+		if (count < 2 || end - start < count)
+			return NO_OFFSETS;
+		int step = (end - start) / count;
+		fRecover = false;
+		return scan(text, start, start + step, step, count - 1, end);
+	}
+
+	/**
+	 * Finds the first offset, at or after from, at which the text may be
+	 * split. Markup the scan can't follow, such as that damaged by an edit
+	 * between start and from, doesn't end the search; check
+	 * {@link #isRecovered()} before relying on the result.
+	 */
+	int getSplitOffset(CharSequence text, int start, int from, int end) {
+		fRecover = true;
+		int[] offsets = scan(text, start, from, 0, 1, end);
+		return offsets.length > 0 ? offsets[0] : -1;
+	}
+
+	/**
+	 * @return whether the offset last returned by
+	 *         {@link #getSplitOffset(CharSequence, int, int, int)} was found
+	 *         only after losing track of the tokenizer, in which case it is
+	 *         merely where the tokenizer probably is back in its initial
+	 *         state
+	 */
+	boolean isRecovered() {
+		return fRecovered;
+	}
+
+	/**
+	 * @return up to max offsets, the first at or after firstTarget and each
+	 *         following one at least step further on from it
+	 */
+	private int[] scan(CharSequence text, int start, int firstTarget, int step, int max, int end) {
+		// new parser instances only know about global block markers
+		for (int i = 0; i < fBlockMarkers.length; i++) {
+			if (!fBlockMarkers[i].isGlobal())
+				return NO_OFFSETS;
+		}
+		fText = text;
+		fEnd = end;
+		fRecovered = false;
+		try {
+			return scan(start, firstTarget, step, max);
+		}
+		finally {
+			fText = null;
+		}
+	}
+
+	private int[] scan(int start, int firstTarget, int step, int max) {
+		int[] offsets = new int[max];
+		int found = 0;
+		int target = firstTarget;
+		// the offset just past the last tag close seen
+		int tagEnd = -1;
+		int i = start;
+		while (i < fEnd && found < offsets.length) {
+			if (fText.charAt(i) != '<') {
+				i++;
+				continue;
+			}
+			int markupStart = i;
+			char c = i + 1 < fEnd ? fText.charAt(i + 1) : 0;
+			if (c == '/' || isNameStart(c)) {
+				if (i == tagEnd && i >= target) {
+					offsets[found++] = i;
+					target = i + step;
+				}
+				i = scanTag(i, c != '/');
+				tagEnd = fTagClosed ? i : -1;
+				if (i > 0 && fBlockMarker != null)
+					i = scanBlock(i, fBlockMarker);
+			}
+			else if (startsWith(i, "<!--")) { //$NON-NLS-1$
+				i = scanTo(i + 4, "-->"); //$NON-NLS-1$
+			}
+			else if (startsWith(i, CDATA_OPEN)) {
+				i = scanTo(i + CDATA_OPEN.length(), "]]>"); //$NON-NLS-1$
+			}
+			else if (c == '?') {
+				i = scanProcessingInstruction(i + 2);
+			}
+			else if (startsWithIgnoreCase(i, "<!DOCTYPE")) { //$NON-NLS-1$
+				i = scanDoctype(i + 9);
+			}
+			else {
+				// other declarations and stray '<'s
+				i = -1;
+			}
+			if (i < 0) {
+				if (!fRecover)
+					break;
+				// give up on this markup and pick up again at a later tag
+				i = indexOf('<', Math.max(markupStart + 1, firstTarget), fEnd);
+				if (i < 0)
+					break;
+				tagEnd = -1;
+				fRecovered = true;
+			}
+		}
+		if (found == offsets.length)
+			return offsets;
+		int[] result = new int[found];
+		System.arraycopy(offsets, 0, result, 0, found);
+		return result;
+	}
+
+	/**
+	 * @return the offset following the tag, or of the '&lt;' of the next tag
+	 *         if this one was never closed, or -1 to stop
+	 */
+	private int scanTag(int i, boolean isStartTag) {
+		fBlockMarker = null;
+		fTagClosed = false;
+		int nameStart = isStartTag ? i + 1 : i + 2;
+		int j = nameStart;
+		if (j >= fEnd || !isNameStart(fText.charAt(j)))
+			return -1;
+		while (j < fEnd && isNameChar(fText.charAt(j)))
+			j++;
+		if (j >= fEnd || !isASCII(fText.charAt(j)))
+			return -1;
+		int nameEnd = j;
+		j = scanAttributes(j, true);
+		if (j < 0)
+			return -1;
+		if (fText.charAt(j) == '<')
+			return j;
+		fTagClosed = true;
+		if (fText.charAt(j) == '/')
+			return j + 2;
+		if (isStartTag)
+			fBlockMarker = getBlockMarker(nameStart, nameEnd);
+		return j + 1;
+	}
+
+	/**
+	 * Follows the tokenizer through attribute names, '='s, and values. As
+	 * in the tokenizer, a character that can't start any of them, such as a
+	 * quote that doesn't follow an '=', is passed over on its own, and a
+	 * quoted value runs to the matching quote wherever that is.
+	 * 
+	 * @return the offset of the closing "&gt;" or "/&gt;" of a tag, of the
+	 *         "&lt;" of a tag starting before it was closed, or of the
+	 *         closing "?&gt;" of a processing instruction, or -1 to stop
+	 */
+	private int scanAttributes(int i, boolean inTag) {
+		// after an attribute name, an '=' is expected
+		boolean afterName = false;
+		// after an '=', a value is expected
+		boolean afterEquals = false;
+		int j = i;
+		while (j < fEnd) {
+			char c = fText.charAt(j);
+			if (isClose(j, inTag))
+				return j;
+			if (c == '<')
+				return inTag && j + 1 < fEnd && (fText.charAt(j + 1) == '/' || isNameStart(fText.charAt(j + 1))) ? j : -1;
+			if (isWhitespace(c)) {
+				j++;
+			}
+			else if (afterEquals) {
+				if (c == '"' || c == '\'') {
+					int close = indexOf(c, j + 1, fEnd);
+					j = close >= 0 ? close + 1 : scanUnquotedValue(j + 1);
+				}
+				else {
+					int valueEnd = scanUnquotedValue(j);
+					if (valueEnd == j) {
+						// passed over, still expecting a value
+						j++;
+						continue;
+					}
+					j = valueEnd;
+				}
+				afterEquals = false;
+			}
+			else if (!isASCII(c)) {
+				// possibly part of a name
+				return -1;
+			}
+			else if (isNameStart(c)) {
+				while (j < fEnd && isNameChar(fText.charAt(j)))
+					j++;
+				if (j < fEnd && !isASCII(fText.charAt(j)))
+					return -1;
+				afterName = true;
+			}
+			else if (c == '=' && afterName) {
+				afterName = false;
+				afterEquals = true;
+				j++;
+			}
+			else {
+				j++;
+			}
+		}
+		return -1;
+	}
+
+	private boolean isClose(int j, boolean inTag) {
+		char c = fText.charAt(j);
+		if (inTag && c == '>')
+			return true;
+		char next = j + 1 < fEnd ? fText.charAt(j + 1) : 0;
+		return next == '>' && (inTag ? c == '/' : c == '?');
+	}
+
+	private int scanUnquotedValue(int i) {
+		int j = i;
+		while (j < fEnd) {
+			char c = fText.charAt(j);
+			if (c == '/') {
+				int k = j;
+				while (k < fEnd && fText.charAt(k) == '/')
+					k++;
+				if (k >= fEnd || isValueDelimiter(fText.charAt(k)))
+					break;
+				j = k + 1;
+			}
+			else if (isValueDelimiter(c)) {
+				break;
+			}
+			else {
+				j++;
+			}
+		}
+		return j;
+	}
+
+	/**
+	 * @return the offset of the block's end tag, or -1 to stop
+	 */
+	private int scanBlock(int i, BlockMarker marker) {
+		// the tokenizer looks for CDATA sections at the start of a block
+		if (startsWith(i, CDATA_OPEN))
+			return -1;
+		String tagName = marker.getTagName();
+		boolean ignoreCase = !marker.isCaseSensitive();
+		int nameLength = tagName.length();
+		for (int j = indexOf('<', i, fEnd); j >= 0 && j + 2 + nameLength < fEnd; j = indexOf('<', j + 1, fEnd)) {
+			if (fText.charAt(j + 1) == '/' && regionMatches(j + 2, tagName, ignoreCase)) {
+				char c = fText.charAt(j + 2 + nameLength);
+				if (c == '>' || Character.isWhitespace(c))
+					return j;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the offset following the processing instruction, or -1 to stop
+	 */
+	private int scanProcessingInstruction(int i) {
+		int j = i;
+		while (j < fEnd && isNameChar(fText.charAt(j)))
+			j++;
+		if (j == i || j >= fEnd)
+			return -1;
+		String target = fText.subSequence(i, j).toString();
+		if (target.equalsIgnoreCase("xml") || target.equals("xml-stylesheet")) { //$NON-NLS-1$ //$NON-NLS-2$
+			// pseudo-attributes, whose values may contain "?>"
+			j = scanAttributes(j, false);
+			return j < 0 ? -1 : j + 2;
+		}
+		if (isWhitespace(fText.charAt(j))) {
+			while (j < fEnd && isWhitespace(fText.charAt(j)))
+				j++;
+			return scanTo(j, "?>"); //$NON-NLS-1$
+		}
+		return isClose(j, false) ? j + 2 : -1;
+	}
+
+	/**
+	 * @return the offset following the DOCTYPE declaration, or -1 to stop
+	 */
+	private int scanDoctype(int i) {
+		int j = i;
+		while (j < fEnd) {
+			char c = fText.charAt(j);
+			if (c == '>')
+				return j + 1;
+			if (c == '<')
+				return -1;
+			if (c == '"' || c == '\'' || c == '[') {
+				int close = indexOf(c == '[' ? ']' : c, j + 1, fEnd);
+				if (close < 0)
+					return -1;
+				if (c != '[' && (indexOf('<', j + 1, close) >= 0 || indexOf('>', j + 1, close) >= 0))
+					return -1;
+				j = close;
+			}
+			j++;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the offset following the first occurrence of the terminator at
+	 *         or after i, or -1 to stop
+	 */
+	private int scanTo(int i, String terminator) {
+		// the tokenizer looks for CDATA sections at the start of content
+		if (startsWith(i, CDATA_OPEN))
+			return -1;
+		char first = terminator.charAt(0);
+		int length = terminator.length();
+		for (int j = indexOf(first, i, fEnd); j >= 0; j = indexOf(first, j + 1, fEnd)) {
+			if (startsWith(j, terminator))
+				return j + length;
+			if (j + length > fEnd)
+				break;
+		}
+		return -1;
+	}
+
+	private BlockMarker getBlockMarker(int nameStart, int nameEnd) {
+		for (int i = 0; i < fBlockMarkers.length; i++) {
+			String tagName = fBlockMarkers[i].getTagName();
+			if (tagName.length() != nameEnd - nameStart)
+				continue;
+			if (fBlockMarkers[i].isCaseSensitive() ? regionMatches(nameStart, tagName, false) : regionMatches(nameStart, tagName, true))
+				return fBlockMarkers[i];
+		}
+		return null;
+	}
+
+	private int indexOf(char c, int from, int to) {
+		for (int j = from; j < to; j++) {
+			if (fText.charAt(j) == c)
+				return j;
+		}
+		return -1;
+	}
+
+	private boolean regionMatches(int offset, String s, boolean ignoreCase) {
+		int length = s.length();
+		if (offset + length > fEnd)
+			return false;
+		for (int k = 0; k < length; k++) {
+			char a = fText.charAt(offset + k);
+			char b = s.charAt(k);
+			if (a != b && !(ignoreCase && Character.toLowerCase(a) == Character.toLowerCase(b)))
+				return false;
+		}
+		return true;
+	}
+
+	private boolean startsWith(int offset, String s) {
+		return regionMatches(offset, s, false);
+	}
+
+	private boolean startsWithIgnoreCase(int offset, String s) {
+		return regionMatches(offset, s, true);
+	}
+
+	/*
+	 * Deliberately ASCII only; anything else stops the scan.
+	 */
+	private static boolean isNameStart(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':';
+	}
+
+	private static boolean isNameChar(char c) {
+		return isNameStart(c) || (c >= '0' && c <= '9') || c == '.' || c == '-';
+	}
+
+	private static boolean isASCII(char c) {
+		return c < 0x80;
+	}
+
+	private static boolean isValueDelimiter(char c) {
+		return c == '"' || c == '\'' || c == '<' || c == '>' || c == '/' || isWhitespace(c);
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+	}
+}
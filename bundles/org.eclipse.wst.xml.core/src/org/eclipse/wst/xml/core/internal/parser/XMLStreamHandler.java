@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.xml.core.internal.parser;
+
+/**
+ * Receives the events of an XMLStreamParser, in document order. Offsets are
+ * character offsets from the start of the text, the same as document
+ * offsets would be had the text been loaded into a structured document.
+ *
+ * Events follow the text as written, so they need not be balanced: an end
+ * tag may have no matching start tag, and a start tag need not ever be
+ * closed.
+ */
+public interface XMLStreamHandler {
+
+	/**
+	 * Sent at the start of a start tag, before any of its attributes.
+	 *
+	 * @param name
+	 *            the tag name, as written
+	 * @param offset
+	 *            the offset of the tag's "&lt;"
+	 */
+	void startTag(String name, int offset);
+
+	/**
+	 * Sent for each attribute of the current start tag.
+	 *
+	 * @param name
+	 *            the attribute name
+	 * @param value
+	 *            the value, with any quotes removed but otherwise as
+	 *            written, or null if the attribute has no value
+	 * @param offset
+	 *            the offset of the attribute name
+	 */
+	void attribute(String name, String value, int offset);
+
+	/**
+	 * Sent after the last attribute of the current start tag.
+	 *
+	 * @param offset
+	 *            the offset just past the end of the start tag
+	 * @param isEmptyElement
+	 *            whether the tag was closed with "/&gt;"
+	 */
+	void startTagEnd(int offset, boolean isEmptyElement);
+
+	/**
+	 * Sent for an end tag.
+	 *
+	 * @param name
+	 *            the tag name, as written
+	 * @param offset
+	 *            the offset of the tag's "&lt;/"
+	 */
+	void endTag(String name, int offset);
+
+	/**
+	 * Sent for character content, including CDATA sections and the content
+	 * of block tags. Long runs of content may be sent in several pieces, and
+	 * entity and character references are sent separately and as written.
+	 *
+	 * @param text
+	 *            the content
+	 * @param offset
+	 *            the offset of the content's first character
+	 */
+	void text(String text, int offset);
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.xml.core.internal.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.wst.sse.core.internal.encoding.CodedReaderCreator;
+import org.eclipse.wst.sse.core.internal.ltk.parser.BlockMarker;
+import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegion;
+import org.eclipse.wst.sse.core.utils.StringUtils;
+import org.eclipse.wst.xml.core.internal.regions.DOMRegionContext;
+
+/**
+ * Reads XML text with the XMLTokenizer and reports its tags, attributes and
+ * text to an XMLStreamHandler as they are found, for read-only clients such
+ * as indexers and batch scanners that have no use for a structured document
+ * or DOM.
+ *
+ * Nothing is kept once it has been reported: no structured document
+ * regions are built, and only the text of the tokens not yet reported is
+ * held on to. Memory use therefore does not grow with the length of the
+ * input. The tokenizing, and so the offsets and the tolerance of malformed
+ * markup, are the same as when the text is loaded into an XML model.
+ * Comments, processing instructions and declarations are skipped.
+ *
+ * Instances may be reused, but not shared between threads.
+ */
+public class XMLStreamParser {
+	private static final int NONE = 0;
+	private static final int START_TAG = 1;
+	private static final int END_TAG = 2;
+
+	/**
+	 * Keeps the characters read through it from the given offset on, so the
+	 * text of tokens can be had after the tokenizer has read past them.
+	 */
+	private static class WindowReader extends Reader {
+		private final Reader fReader;
+		private char[] fWindow = new char[4096];
+		/* the offset of the first character in the window */
+		private int fWindowOffset = 0;
+		private int fWindowLength = 0;
+		/* characters before this offset may be dropped */
+		private int fReleasedOffset = 0;
+
+		WindowReader(Reader reader) {
+			fReader = reader;
+		}
+
+		public void close() throws IOException {
+			fReader.close();
+		}
+
+		String getText(int start, int end) {
+			return new String(fWindow, start - fWindowOffset, end - start);
+		}
+
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			int count = fReader.read(buffer, offset, length);
+			if (count > 0) {
+				makeRoom(count);
+				System.arraycopy(buffer, offset, fWindow, fWindowLength, count);
+				fWindowLength += count;
+			}
+			return count;
+		}
+
+		private void makeRoom(int count) {
+			if (fWindowLength + count <= fWindow.length)
+				return;
+			// drop released characters before growing
+			int released = fReleasedOffset - fWindowOffset;
+			if (released > 0) {
+				System.arraycopy(fWindow, released, fWindow, 0, fWindowLength - released);
+				fWindowLength -= released;
+				fWindowOffset = fReleasedOffset;
+			}
+			if (fWindowLength + count > fWindow.length) {
+				char[] window = new char[Math.max(fWindow.length * 2, fWindowLength + count)];
+				System.arraycopy(fWindow, 0, window, 0, fWindowLength);
+				fWindow = window;
+			}
+		}
+
+		void release(int offset) {
+			if (offset > fReleasedOffset)
+				fReleasedOffset = offset;
+		}
+	}
+
+	private final XMLTokenizer fTokenizer = new XMLTokenizer();
+
+	public XMLStreamParser() {
+		super();
+	}
+
+	/**
+	 * Adds a block tag, such as HTML's script, whose content is reported as
+	 * text rather than parsed.
+	 */
+	public void addBlockMarker(BlockMarker marker) {
+		fTokenizer.addBlockMarker(marker);
+	}
+
+	/**
+	 * Reads the file's contents, in the encoding a model would be loaded
+	 * with, and reports them to the handler.
+	 */
+	public void parse(IFile file, XMLStreamHandler handler) throws IOException, CoreException {
+		Reader reader = new CodedReaderCreator(file).getCodedReader();
+		try {
+			parse(reader, handler);
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads all of the reader's text and reports it to the handler. The
+	 * reader is not closed.
+	 */
+	public void parse(Reader reader, XMLStreamHandler handler) throws IOException {
+		WindowReader text = new WindowReader(reader);
+		fTokenizer.reset(text);
+		int tagState = NONE;
+		boolean hasName = false;
+		int tagOffset = 0;
+		String attributeName = null;
+		int attributeOffset = 0;
+		int end = 0;
+		try {
+			ITextRegion region = fTokenizer.getNextToken();
+			while (region != null) {
+				String type = region.getType();
+				int start = region.getStart();
+				end = region.getEnd();
+				// an attribute without a value
+				if (attributeName != null && type != DOMRegionContext.XML_TAG_ATTRIBUTE_EQUALS && type != DOMRegionContext.XML_TAG_ATTRIBUTE_VALUE) {
+					handler.attribute(attributeName, null, attributeOffset);
+					attributeName = null;
+				}
+
+				if (type == DOMRegionContext.XML_TAG_NAME) {
+					if (tagState != NONE && !hasName) {
+						String name = text.getText(start, start + region.getTextLength());
+						if (tagState == START_TAG)
+							handler.startTag(name, tagOffset);
+						else
+							handler.endTag(name, tagOffset);
+						hasName = true;
+					}
+				}
+				else if (type == DOMRegionContext.XML_TAG_ATTRIBUTE_NAME) {
+					if (tagState == START_TAG && hasName) {
+						attributeName = text.getText(start, start + region.getTextLength());
+						attributeOffset = start;
+					}
+				}
+				else if (type == DOMRegionContext.XML_TAG_ATTRIBUTE_VALUE) {
+					if (attributeName != null) {
+						handler.attribute(attributeName, StringUtils.strip(text.getText(start, start + region.getTextLength())), attributeOffset);
+						attributeName = null;
+					}
+				}
+				else if (type == DOMRegionContext.XML_TAG_CLOSE || type == DOMRegionContext.XML_EMPTY_TAG_CLOSE) {
+					if (tagState == START_TAG && hasName)
+						handler.startTagEnd(start + region.getTextLength(), type == DOMRegionContext.XML_EMPTY_TAG_CLOSE);
+					tagState = NONE;
+				}
+				else if (type != DOMRegionContext.XML_TAG_ATTRIBUTE_EQUALS && type != DOMRegionContext.WHITE_SPACE && type != DOMRegionContext.UNDEFINED) {
+					// anything else ends an unclosed tag
+					if (tagState == START_TAG && hasName)
+						handler.startTagEnd(start, false);
+					tagState = NONE;
+					if (type == DOMRegionContext.XML_TAG_OPEN || type == DOMRegionContext.XML_END_TAG_OPEN) {
+						tagState = type == DOMRegionContext.XML_TAG_OPEN ? START_TAG : END_TAG;
+						hasName = false;
+						tagOffset = start;
+					}
+					else if (isText(type)) {
+						handler.text(text.getText(start, end), start);
+					}
+				}
+				text.release(end);
+				region = fTokenizer.getNextToken();
+			}
+			if (attributeName != null)
+				handler.attribute(attributeName, null, attributeOffset);
+			if (tagState == START_TAG && hasName)
+				handler.startTagEnd(end, false);
+		}
+		finally {
+			// let go of the reader
+			fTokenizer.reset(new char[0]);
+		}
+	}
+
+	private boolean isText(String type) {
+		return type == DOMRegionContext.XML_CONTENT || type == DOMRegionContext.XML_CDATA_TEXT || type == DOMRegionContext.BLOCK_TEXT || type == DOMRegionContext.XML_ENTITY_REFERENCE || type == DOMRegionContext.XML_CHAR_REFERENCE;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2001, 2005 IBM Corporation and others.
+ * Copyright (c) 2001, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,8 +12,13 @@
  *******************************************************************************/
 package org.eclipse.wst.xml.core.internal.parser;
 
+import java.util.List;
+
+import org.eclipse.wst.sse.core.internal.ltk.parser.BlockMarker;
+import org.eclipse.wst.sse.core.internal.ltk.parser.BlockTagParser;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentRegion;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredTextReParser;
+import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegionList;
 import org.eclipse.wst.sse.core.internal.text.StructuredDocumentReParser;
 import org.eclipse.wst.xml.core.internal.regions.DOMRegionContext;
 
@@ -110,6 +115,41 @@ public class XMLStructuredDocumentReParser extends StructuredDocumentReParser {
 		return result;
 	}
 
+	/**
+	 * After a tag is closed, the tokenizer is back in its initial state,
+	 * unless the tag was the start of a block tag whose content is not
+	 * parsed as markup.
+	 */
+	protected boolean isResynchronizationPoint(IStructuredDocumentRegion documentRegion) {
+		if (!documentRegion.isEnded())
+			return false;
+		String type = documentRegion.getLastRegion().getType();
+		if (type == DOMRegionContext.XML_EMPTY_TAG_CLOSE)
+			return true;
+		if (type != DOMRegionContext.XML_TAG_CLOSE)
+			return false;
+		ITextRegionList regions = documentRegion.getRegions();
+		type = regions.get(0).getType();
+		if (type == DOMRegionContext.XML_END_TAG_OPEN)
+			return true;
+		if (type != DOMRegionContext.XML_TAG_OPEN || regions.size() < 2 || regions.get(1).getType() != DOMRegionContext.XML_TAG_NAME)
+			return false;
+		return !isBlockTagName(documentRegion.getText(regions.get(1)));
+	}
+
+	private boolean isBlockTagName(String tagName) {
+		Object parser = fStructuredDocument.getParser();
+		if (parser instanceof BlockTagParser) {
+			List blockMarkers = ((BlockTagParser) parser).getBlockMarkers();
+			for (int i = 0; i < blockMarkers.size(); i++) {
+				BlockMarker marker = (BlockMarker) blockMarkers.get(i);
+				if (marker.isCaseSensitive() ? marker.getTagName().equals(tagName) : marker.getTagName().equalsIgnoreCase(tagName))
+					return true;
+			}
+		}
+		return false;
+	}
+
 	protected boolean isPartOfBlockRegion(IStructuredDocumentRegion flatNode) {
 		boolean result = false;
 		String type = flatNode.getType();
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.benchmarks;
+
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks in this bundle, inside a running platform so that
+ * content types, model handlers and the workspace are all available:
+ *
+ * <pre>
+ * eclipse -application org.eclipse.wst.sse.benchmarks.run -data &lt;scratch workspace&gt; [JMH options] -vmargs -Xmx4g
+ * </pre>
+ *
+ * Any of the usual JMH command line options may be given, for instance
+ * "-p size=1M,10M" to limit the corpus sizes or a regular expression to
+ * choose benchmarks. Benchmarks always run in this VM, since a forked VM
+ * could not load the bundles. Unless other profilers are chosen, the GC
+ * profiler is used, reporting the allocation rate per operation
+ * (gc.alloc.rate.norm) beside each benchmark's throughput.
+ *
+ * Run the getJMH.xml Ant script once beforehand to put JMH in lib/.
+ */
+public class BenchmarkApplication implements IApplication {
+
+	public Object start(IApplicationContext context) throws Exception {
+		String[] args = (String[]) context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+		CommandLineOptions commandLine = new CommandLineOptions(args != null ? args : new String[0]);
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine).forks(0);
+		if (commandLine.getIncludes().isEmpty()) {
+			options.include(getClass().getPackage().getName() + ".*"); //$NON-NLS-1$
+		}
+		if (commandLine.getProfilers().isEmpty()) {
+			options.addProfiler(GCProfiler.class);
+		}
+		new Runner(options.build()).run();
+		return EXIT_OK;
+	}
+
+	public void stop() {
+		// benchmarks run to completion
+	}
+}
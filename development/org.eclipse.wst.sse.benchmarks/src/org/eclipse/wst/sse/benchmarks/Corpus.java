@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates the documents the benchmarks run on. The same kind and size
+ * always produce the same text, so results from different runs and builds
+ * are comparable.
+ *
+ * Sizes are given as in the benchmarks' parameters: a number of bytes with
+ * an optional K or M suffix, from "1K" up to "50M". Generated documents are
+ * at least that many characters long and are otherwise well formed.
+ */
+public final class Corpus {
+	public static final String XML = "xml"; //$NON-NLS-1$
+	public static final String JSP = "jsp"; //$NON-NLS-1$
+	public static final String CSS = "css"; //$NON-NLS-1$
+
+	private static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliet", "kilo", "lima", "mike", "november", "oscar", "papa"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$ //$NON-NLS-11$ //$NON-NLS-12$ //$NON-NLS-13$ //$NON-NLS-14$ //$NON-NLS-15$ //$NON-NLS-16$
+
+	private final StringBuffer fText;
+	private final Random fRandom;
+
+	private Corpus(int size, long seed) {
+		fText = new StringBuffer(size + 1024);
+		fRandom = new Random(seed);
+	}
+
+	/**
+	 * @param kind
+	 *            one of XML, JSP or CSS
+	 * @param size
+	 *            the minimum length, such as "64K"
+	 */
+	public static String generate(String kind, String size) {
+		int length = parseSize(size);
+		if (XML.equals(kind))
+			return new Corpus(length, length).generateXML(length);
+		if (JSP.equals(kind))
+			return new Corpus(length, length).generateJSP(length);
+		if (CSS.equals(kind))
+			return new Corpus(length, length).generateCSS(length);
+		throw new IllegalArgumentException("unknown corpus kind " + kind); //$NON-NLS-1$
+	}
+
+	public static int parseSize(String size) {
+		String number = size.trim().toUpperCase();
+		int multiplier = 1;
+		if (number.endsWith("K")) { //$NON-NLS-1$
+			multiplier = 1024;
+			number = number.substring(0, number.length() - 1);
+		}
+		else if (number.endsWith("M")) { //$NON-NLS-1$
+			multiplier = 1024 * 1024;
+			number = number.substring(0, number.length() - 1);
+		}
+		return Integer.parseInt(number) * multiplier;
+	}
+
+	private String generateXML(int length) {
+		append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"); //$NON-NLS-1$
+		append("<catalog xmlns:x=\"urn:sse:benchmarks\">\n"); //$NON-NLS-1$
+		for (int i = 0; fText.length() < length; i++) {
+			append("\t<!-- entry ").append(i).append(" -->\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			append("\t<entry id=\"e").append(i).append("\" kind=\"").append(word()).append("\" x:order=\"").append(i).append("\">\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			append("\t\t<title lang=\"en\">").append(sentence(4)).append(" &amp; ").append(word()).append("</title>\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			append("\t\t<description>").append(sentence(12)).append("</description>\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			if (i % 4 == 0)
+				append("\t\t<example><![CDATA[<").append(word()).append(" a=\"b\"/> & ").append(sentence(3)).append("]]></example>\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			if (i % 8 == 0)
+				append("\t\t<?process item=\"").append(i).append("\"?>\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			append("\t\t<tags>"); //$NON-NLS-1$
+			int tags = 1 + fRandom.nextInt(4);
+			for (int j = 0; j < tags; j++)
+				append("<tag name=\"").append(word()).append("\"/>"); //$NON-NLS-1$ //$NON-NLS-2$
+			append("</tags>\n"); //$NON-NLS-1$
+			append("\t</entry>\n"); //$NON-NLS-1$
+		}
+		append("</catalog>\n"); //$NON-NLS-1$
+		return fText.toString();
+	}
+
+	private String generateJSP(int length) {
+		append("<%@ page contentType=\"text/html; charset=UTF-8\" %>\n"); //$NON-NLS-1$
+		append("<%@ taglib uri=\"http://java.sun.com/jsp/jstl/core\" prefix=\"c\" %>\n"); //$NON-NLS-1$
+		append("<html>\n<head>\n<title>").append(sentence(3)).append("</title>\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		append("<style type=\"text/css\">\np.").append(word()).append(" { color: #336699; margin: 0 4px; }\n</style>\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		append("<script type=\"text/javascript\">\nvar count = 0;\nfunction next() { return count++ < 10 && count > 0; }\n</script>\n"); //$NON-NLS-1$
+		append("</head>\n<body>\n"); //$NON-NLS-1$
+		for (int i = 0; fText.length() < length; i++) {
+			append("<div class=\"").append(word()).append("\" id=\"d").append(i).append("\">\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			append("\t<p>").append(sentence(8)).append(" <%= request.getParameter(\"p").append(i).append("\") %></p>\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			append("\t<c:out value=\"${bean.").append(word()).append("}\"/>\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			if (i % 4 == 0)
+				append("\t<% for (int i = 0; i < ").append(i % 10).append("; i++) { %><span>${i}</span><% } %>\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			if (i % 8 == 0)
+				append("\t<jsp:useBean id=\"b").append(i).append("\" class=\"java.util.ArrayList\" scope=\"page\"/>\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			append("\t<!-- ").append(sentence(3)).append(" -->\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			append("</div>\n"); //$NON-NLS-1$
+		}
+		append("</body>\n</html>\n"); //$NON-NLS-1$
+		return fText.toString();
+	}
+
+	private String generateCSS(int length) {
+		append("@charset \"UTF-8\";\n"); //$NON-NLS-1$
+		append("@import url(\"base.css\");\n"); //$NON-NLS-1$
+		for (int i = 0; fText.length() < length; i++) {
+			if (i % 16 == 0)
+				append("/* ").append(sentence(6)).append(" */\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			boolean media = i % 8 == 0;
+			if (media)
+				append("@media screen and (max-width: ").append(320 + i % 640).append("px) {\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			append("div.").append(word()).append(" > p#p").append(i).append(", a:hover, .").append(word()).append(" {\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			append("\tcolor: #").append(Integer.toHexString(0x100000 + fRandom.nextInt(0xefffff))).append(";\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			append("\tmargin: ").append(fRandom.nextInt(20)).append("px ").append(fRandom.nextInt(20)).append("em;\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			append("\tfont-family: \"").append(word()).append("\", sans-serif;\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			append("\tbackground: url(images/").append(word()).append(".png) no-repeat !important;\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			append("}\n"); //$NON-NLS-1$
+			if (media)
+				append("}\n"); //$NON-NLS-1$
+		}
+		return fText.toString();
+	}
+
+	private Corpus append(String s) {
+		fText.append(s);
+		return this;
+	}
+
+	private Corpus append(int i) {
+		fText.append(i);
+		return this;
+	}
+
+	private String word() {
+		return WORDS[fRandom.nextInt(WORDS.length)];
+	}
+
+	private String sentence(int words) {
+		StringBuffer sentence = new StringBuffer();
+		for (int i = 0; i < words; i++) {
+			if (i > 0)
+				sentence.append(' ');
+			sentence.append(word());
+		}
+		return sentence.toString();
+	}
+}
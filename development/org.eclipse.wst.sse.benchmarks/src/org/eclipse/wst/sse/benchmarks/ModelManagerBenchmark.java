@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.wst.sse.core.StructuredModelManager;
+import org.eclipse.wst.sse.core.internal.provisional.IModelManager;
+import org.eclipse.wst.sse.core.internal.provisional.IStructuredModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Loads a model for a workspace file through the model manager and
+ * releases it again, as a validator or indexer visiting the file would. This
+ * covers encoding detection, reading, parsing and building the DOM.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ModelManagerBenchmark {
+	private static final String PROJECT_NAME = "org.eclipse.wst.sse.benchmarks"; //$NON-NLS-1$
+
+	@Param({"1K", "64K", "1M", "10M", "50M"})
+	public String size;
+
+	@Param({Corpus.XML, Corpus.JSP})
+	public String kind;
+
+	private IProject fProject;
+	private IFile fFile;
+	private IModelManager fModelManager;
+
+	@Setup
+	public void setUp() throws CoreException, IOException {
+		fProject = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT_NAME);
+		if (!fProject.exists())
+			fProject.create(null);
+		fProject.open(null);
+		fFile = fProject.getFile("corpus-" + size + "." + kind); //$NON-NLS-1$ //$NON-NLS-2$
+		byte[] contents = Corpus.generate(kind, size).getBytes("UTF-8"); //$NON-NLS-1$
+		if (fFile.exists())
+			fFile.setContents(new ByteArrayInputStream(contents), IResource.FORCE, null);
+		else
+			fFile.create(new ByteArrayInputStream(contents), IResource.FORCE, null);
+		fModelManager = StructuredModelManager.getModelManager();
+	}
+
+	@TearDown
+	public void tearDown() throws CoreException {
+		fFile.delete(IResource.FORCE, null);
+	}
+
+	@Benchmark
+	public IStructuredModel getModelForRead() throws IOException, CoreException {
+		IStructuredModel model = fModelManager.getModelForRead(fFile);
+		model.releaseFromRead();
+		return model;
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.wst.sse.core.StructuredModelManager;
+import org.eclipse.wst.sse.core.internal.provisional.IModelManager;
+import org.eclipse.wst.sse.core.internal.provisional.IStructuredModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Gets and releases models from several threads at once, as concurrent
+ * validation and indexing jobs do, to measure how much they hold each other
+ * up in the model manager. Run with "-t" to change the number of threads.
+ *
+ * In distinctModels every thread loads and discards a model for a file of
+ * its own, so the threads only share the model manager's registry. In
+ * sharedModel all threads get another reference to one model which is kept
+ * loaded, so only reference counting is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class ModelManagerContentionBenchmark {
+	private static final String PROJECT_NAME = "org.eclipse.wst.sse.benchmarks"; //$NON-NLS-1$
+
+	@Param({"1K", "64K"})
+	public String size;
+
+	private final AtomicInteger fThreadCount = new AtomicInteger();
+	private IProject fProject;
+	private IModelManager fModelManager;
+	private IFile fSharedFile;
+	private IStructuredModel fSharedModel;
+
+	/**
+	 * The file each thread loads in distinctModels.
+	 */
+	@State(Scope.Thread)
+	public static class ThreadFile {
+		IFile fFile;
+
+		@Setup
+		public void setUp(ModelManagerContentionBenchmark benchmark) throws CoreException, IOException {
+			fFile = benchmark.createFile("contention-" + benchmark.fThreadCount.incrementAndGet()); //$NON-NLS-1$
+		}
+
+		@TearDown
+		public void tearDown() throws CoreException {
+			fFile.delete(IResource.FORCE, null);
+		}
+	}
+
+	@Setup
+	public void setUp() throws CoreException, IOException {
+		fProject = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT_NAME);
+		if (!fProject.exists())
+			fProject.create(null);
+		fProject.open(null);
+		fModelManager = StructuredModelManager.getModelManager();
+		fSharedFile = createFile("contention-shared"); //$NON-NLS-1$
+		// keep the shared model loaded between operations
+		fSharedModel = fModelManager.getModelForRead(fSharedFile);
+	}
+
+	IFile createFile(String name) throws CoreException, IOException {
+		IFile file = fProject.getFile(name + "-" + size + "." + Corpus.XML); //$NON-NLS-1$ //$NON-NLS-2$
+		byte[] contents = Corpus.generate(Corpus.XML, size).getBytes("UTF-8"); //$NON-NLS-1$
+		if (file.exists())
+			file.setContents(new ByteArrayInputStream(contents), IResource.FORCE, null);
+		else
+			file.create(new ByteArrayInputStream(contents), IResource.FORCE, null);
+		return file;
+	}
+
+	@TearDown
+	public void tearDown() throws CoreException {
+		fSharedModel.releaseFromRead();
+		fSharedFile.delete(IResource.FORCE, null);
+	}
+
+	@Benchmark
+	public IStructuredModel distinctModels(ThreadFile threadFile) throws IOException, CoreException {
+		IStructuredModel model = fModelManager.getModelForRead(threadFile.fFile);
+		model.releaseFromRead();
+		return model;
+	}
+
+	@Benchmark
+	public IStructuredModel sharedModel() throws IOException, CoreException {
+		IStructuredModel model = fModelManager.getModelForRead(fSharedFile);
+		model.releaseFromRead();
+		return model;
+	}
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
+import org.eclipse.wst.xml.core.internal.document.DOMModelImpl;
+import org.eclipse.wst.xml.core.internal.provisional.document.IDOMModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Builds the DOM for an already parsed XML document, which is what
+ * XMLModelParser does when a DOMModelImpl is given its structured document.
+ * The regions are not parsed again, so this measures the DOM alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ModelParserBenchmark {
+	@Param({"1K", "64K", "1M", "10M", "50M"})
+	public String size;
+
+	private IStructuredDocument fDocument;
+
+	@Setup
+	public void setUp() {
+		fDocument = StructuredDocumentBenchmark.createDocument(StructuredDocumentBenchmark.GAP);
+		fDocument.setText(this, Corpus.generate(Corpus.XML, size));
+	}
+
+	@Benchmark
+	public IDOMModel buildDOM() {
+		DOMModelImpl model = new DOMModelImpl();
+		model.setStructuredDocument(fDocument);
+		// leave the document as it was for the next model
+		fDocument.removeDocumentChangingListener(model);
+		return model;
+	}
+}
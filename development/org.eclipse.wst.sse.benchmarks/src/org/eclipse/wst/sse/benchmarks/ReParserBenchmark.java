@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Inserts, and then removes, text that takes StructuredDocumentReParser
+ * down each of its main paths: plain text that only changes one region, a
+ * quote within an attribute value, a start tag, and a comment opening that
+ * changes how everything after it would be parsed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReParserBenchmark {
+	@Param({"1K", "64K", "1M", "10M", "50M"})
+	public String size;
+
+	private IStructuredDocument fDocument;
+	private int fTextOffset;
+	private int fAttributeValueOffset;
+
+	@Setup
+	public void setUp() {
+		String text = Corpus.generate(Corpus.XML, size);
+		fDocument = StructuredDocumentBenchmark.createDocument(StructuredDocumentBenchmark.GAP);
+		fDocument.setText(this, text);
+		// both near the middle of the document
+		fTextOffset = text.indexOf("<description>", text.length() / 2) + 13; //$NON-NLS-1$
+		fAttributeValueOffset = text.indexOf(" kind=\"", text.length() / 2) + 7; //$NON-NLS-1$
+	}
+
+	private IStructuredDocument insertAndRemove(int offset, String text) {
+		fDocument.replaceText(this, offset, 0, text);
+		fDocument.replaceText(this, offset, text.length(), ""); //$NON-NLS-1$
+		return fDocument;
+	}
+
+	@Benchmark
+	public IStructuredDocument text() {
+		return insertAndRemove(fTextOffset, "x"); //$NON-NLS-1$
+	}
+
+	@Benchmark
+	public IStructuredDocument quote() {
+		return insertAndRemove(fAttributeValueOffset, "\""); //$NON-NLS-1$
+	}
+
+	@Benchmark
+	public IStructuredDocument tag() {
+		return insertAndRemove(fTextOffset, "<b>"); //$NON-NLS-1$
+	}
+
+	@Benchmark
+	public IStructuredDocument comment() {
+		return insertAndRemove(fTextOffset, "<!--"); //$NON-NLS-1$
+	}
+}
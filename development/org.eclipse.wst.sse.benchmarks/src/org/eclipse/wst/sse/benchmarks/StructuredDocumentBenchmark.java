@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jface.text.ITextStore;
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
+import org.eclipse.wst.sse.core.internal.text.BasicStructuredDocument;
+import org.eclipse.wst.sse.core.internal.text.PieceTableTextStore;
+import org.eclipse.wst.sse.core.internal.text.StructuredDocumentTextStore;
+import org.eclipse.wst.xml.core.internal.parser.XMLSourceParser;
+import org.eclipse.wst.xml.core.internal.parser.XMLStructuredDocumentReParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Replaces the whole text of an XML document, and types into the middle of
+ * it, once with each of the text stores. Run with the GC profiler (the
+ * default for BenchmarkApplication), gc.alloc.rate.norm compares the bytes
+ * each store allocates per edit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StructuredDocumentBenchmark {
+	public static final String GAP = "gap"; //$NON-NLS-1$
+	public static final String PIECE_TABLE = "pieceTable"; //$NON-NLS-1$
+
+	@Param({"1K", "64K", "1M", "10M", "50M"})
+	public String size;
+
+	@Param({GAP, PIECE_TABLE})
+	public String textStore;
+
+	/*
+	 * two slightly different texts, since setting the text a document
+	 * already has is not a change
+	 */
+	private String[] fTexts;
+	private int fNextText;
+	private IStructuredDocument fDocument;
+	private int fTypingOffset;
+
+	@Setup
+	public void setUp() {
+		String text = Corpus.generate(Corpus.XML, size);
+		fTexts = new String[]{text, text + '\n'};
+		fDocument = createDocument(textStore);
+		fDocument.setText(this, text);
+		// within the text of a description element, near the middle
+		fTypingOffset = text.indexOf("<description>", text.length() / 2) + 13; //$NON-NLS-1$
+	}
+
+	static IStructuredDocument createDocument(String textStore) {
+		ITextStore store;
+		if (GAP.equals(textStore))
+			store = new StructuredDocumentTextStore(50, 300);
+		else if (PIECE_TABLE.equals(textStore))
+			store = new PieceTableTextStore();
+		else
+			throw new IllegalArgumentException("unknown text store " + textStore); //$NON-NLS-1$
+		// as XMLDocumentLoader creates them
+		BasicStructuredDocument document = new BasicStructuredDocument(new XMLSourceParser(), store);
+		document.setReParser(new XMLStructuredDocumentReParser());
+		return document;
+	}
+
+	@Benchmark
+	public IStructuredDocument set() {
+		fDocument.setText(this, fTexts[fNextText]);
+		fNextText ^= 1;
+		return fDocument;
+	}
+
+	@Benchmark
+	public IStructuredDocument replaceText() {
+		fDocument.replaceText(this, fTypingOffset, 0, "x"); //$NON-NLS-1$
+		fDocument.replaceText(this, fTypingOffset, 1, ""); //$NON-NLS-1$
+		return fDocument;
+	}
+}
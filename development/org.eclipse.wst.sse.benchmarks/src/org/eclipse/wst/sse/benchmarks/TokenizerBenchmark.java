@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+package org.eclipse.wst.sse.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jst.jsp.core.internal.parser.internal.JSPTokenizer;
+import org.eclipse.wst.css.core.internal.parser.CSSTokenizer;
+import org.eclipse.wst.sse.core.internal.ltk.parser.BlockMarker;
+import org.eclipse.wst.xml.core.internal.parser.XMLTokenizer;
+import org.eclipse.wst.xml.core.internal.regions.DOMRegionContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Runs each of the generated tokenizers over a whole document, as the source
+ * parsers do on load, without building any document regions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TokenizerBenchmark {
+	@Param({"1K", "64K", "1M", "10M", "50M"})
+	public String size;
+
+	private char[] fXML;
+	private char[] fJSP;
+	private char[] fCSS;
+	private XMLTokenizer fXMLTokenizer;
+	private JSPTokenizer fJSPTokenizer;
+	private CSSTokenizer fCSSTokenizer;
+
+	@Setup
+	public void setUp() {
+		fXML = Corpus.generate(Corpus.XML, size).toCharArray();
+		fJSP = Corpus.generate(Corpus.JSP, size).toCharArray();
+		fCSS = Corpus.generate(Corpus.CSS, size).toCharArray();
+		fXMLTokenizer = new XMLTokenizer();
+		fJSPTokenizer = new JSPTokenizer();
+		// as added to JSP parsers for their embedded HTML
+		fJSPTokenizer.addBlockMarker(new BlockMarker("script", DOMRegionContext.BLOCK_TEXT, false)); //$NON-NLS-1$
+		fJSPTokenizer.addBlockMarker(new BlockMarker("style", DOMRegionContext.BLOCK_TEXT, false)); //$NON-NLS-1$
+		fCSSTokenizer = new CSSTokenizer();
+	}
+
+	@Benchmark
+	public int xmlTokenizer() throws IOException {
+		fXMLTokenizer.reset(fXML);
+		int count = 0;
+		while (fXMLTokenizer.getNextToken() != null)
+			count++;
+		return count;
+	}
+
+	@Benchmark
+	public int jspTokenizer() throws IOException {
+		fJSPTokenizer.reset(fJSP);
+		int count = 0;
+		while (fJSPTokenizer.getNextToken() != null)
+			count++;
+		return count;
+	}
+
+	@Benchmark
+	public int cssTokenizer() throws IOException {
+		fCSSTokenizer.reset(fCSS);
+		int count = 0;
+		while (fCSSTokenizer.getNextToken() != null)
+			count++;
+		return count;
+	}
+}
@@ -1,5 +1,5 @@
 /*****************************************************************************
- * Copyright (c) 2004, 2009 IBM Corporation and others.
+ * Copyright (c) 2004, 2013 IBM Corporation and others.
  * 
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -57,6 +57,8 @@ public class MasterListTestSuite extends TestSuite {
 		addTest(CSSCoreTestSuite.suite());
 		addTest(HTMLCoreTestSuite.suite());
 		addTest(JSPCoreTestSuite.suite());
+		addTestSuite(TestBoundedReparse.class);
+		addTestSuite(TestParallelParse.class);
 
 //		addTest(EncodingTestSuite.suite());
 //		addTest(CSSEncodingTestSuite.suite());
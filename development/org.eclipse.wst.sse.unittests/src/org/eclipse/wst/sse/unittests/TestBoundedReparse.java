@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     
+ *******************************************************************************/
+
+package org.eclipse.wst.sse.unittests;
+
+import junit.framework.TestCase;
+
+import org.eclipse.wst.sse.core.internal.document.StructuredDocumentFactory;
+import org.eclipse.wst.sse.core.internal.provisional.events.StructuredDocumentEvent;
+import org.eclipse.wst.sse.core.internal.provisional.events.StructuredDocumentRegionsReplacedEvent;
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentRegion;
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentRegionList;
+import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegionList;
+import org.eclipse.wst.sse.core.internal.text.BasicStructuredDocument;
+import org.eclipse.wst.xml.core.internal.parser.XMLSourceParser;
+import org.eclipse.wst.xml.core.internal.parser.XMLStructuredDocumentReParser;
+
+/**
+ * Typing a quote into a tag near the top of a large document must only
+ * reparse the regions it actually changes, and leave the same regions as
+ * parsing the new text from scratch.
+ */
+public class TestBoundedReparse extends TestCase {
+	private static final int ITEMS = 5000;
+
+	private IStructuredDocument createDocument(String text) {
+		IStructuredDocument document = StructuredDocumentFactory.getNewStructuredDocumentInstance(new XMLSourceParser());
+		((BasicStructuredDocument) document).setReParser(new XMLStructuredDocumentReParser());
+		document.set(text);
+		return document;
+	}
+
+	private String createText(String rootTag) {
+		StringBuffer text = new StringBuffer(rootTag);
+		text.append('\n');
+		for (int i = 0; i < ITEMS; i++) {
+			text.append("\t<item id=\"").append(i).append("\">text ").append(i).append("</item>\n");
+		}
+		text.append("</root>\n");
+		return text.toString();
+	}
+
+	private void assertBounded(String rootTag, int offset) {
+		IStructuredDocument document = createDocument(createText(rootTag));
+		StructuredDocumentEvent event = document.replaceText(this, rootTag.indexOf("attr") + offset, 0, "\"");
+		assertTrue("regions were not replaced", event instanceof StructuredDocumentRegionsReplacedEvent);
+
+		IStructuredDocumentRegionList newRegions = ((StructuredDocumentRegionsReplacedEvent) event).getNewStructuredDocumentRegions();
+		IStructuredDocumentRegionList oldRegions = ((StructuredDocumentRegionsReplacedEvent) event).getOldStructuredDocumentRegions();
+		assertTrue("too many new regions: " + newRegions.getLength(), newRegions.getLength() < 10);
+		assertTrue("too many old regions: " + oldRegions.getLength(), oldRegions.getLength() < 10);
+		if (newRegions.getLength() > 0) {
+			int replacedEnd = newRegions.item(newRegions.getLength() - 1).getEnd();
+			assertTrue("reparsed to " + replacedEnd, replacedEnd < document.getLength() / 100);
+		}
+
+		assertSameRegions(createDocument(document.get()), document);
+	}
+
+	private void assertSameRegions(IStructuredDocument expected, IStructuredDocument actual) {
+		IStructuredDocumentRegion expectedRegion = expected.getFirstStructuredDocumentRegion();
+		IStructuredDocumentRegion actualRegion = actual.getFirstStructuredDocumentRegion();
+		while (expectedRegion != null && actualRegion != null) {
+			assertEquals("document region start", expectedRegion.getStart(), actualRegion.getStart());
+			assertEquals("document region end", expectedRegion.getEnd(), actualRegion.getEnd());
+			ITextRegionList expectedRegions = expectedRegion.getRegions();
+			ITextRegionList actualRegions = actualRegion.getRegions();
+			assertEquals("region count at " + expectedRegion.getStart(), expectedRegions.size(), actualRegions.size());
+			for (int i = 0; i < expectedRegions.size(); i++) {
+				assertEquals("region type at " + expectedRegion.getStartOffset(expectedRegions.get(i)), expectedRegions.get(i).getType(), actualRegions.get(i).getType());
+				assertEquals("region length at " + expectedRegion.getStartOffset(expectedRegions.get(i)), expectedRegions.get(i).getLength(), actualRegions.get(i).getLength());
+			}
+			expectedRegion = expectedRegion.getNext();
+			actualRegion = actualRegion.getNext();
+		}
+		assertNull("missing document regions", expectedRegion);
+		assertNull("extra document regions", actualRegion);
+	}
+
+	/**
+	 * A stray quote, one that doesn't follow an '='
+	 */
+	public void testStrayQuoteInStartTag() {
+		assertBounded("<root attr=\"value\">", 4);
+	}
+
+	/**
+	 * A quote that doubles up the one opening a value
+	 */
+	public void testDoubledQuoteInStartTag() {
+		assertBounded("<root attr=\"value\">", 5);
+	}
+
+	/**
+	 * A quote whose match is only found past the next '&lt;'
+	 */
+	public void testQuoteOpeningValueInStartTag() {
+		assertBounded("<root attr=value>", 5);
+	}
+}
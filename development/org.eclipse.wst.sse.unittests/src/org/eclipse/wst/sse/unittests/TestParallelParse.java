@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *
+ *******************************************************************************/
+
+package org.eclipse.wst.sse.unittests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.wst.sse.core.internal.document.StructuredDocumentFactory;
+import org.eclipse.wst.sse.core.internal.ltk.parser.RegionParser;
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentRegion;
+import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegion;
+import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegionList;
+import org.eclipse.wst.xml.core.internal.parser.XMLSourceParser;
+
+/**
+ * Text cut where the parser offers to split it, with each piece parsed by a
+ * new parser instance, must give exactly the regions of parsing the whole
+ * text at once, including where the markup around a cut contains '&lt;'s
+ * that aren't tags.
+ */
+public class TestParallelParse extends TestCase {
+	private static final String[] WELL_FORMED = {"<item id=\"1\">text</item>", "<!-- <item id=\"c\">not a tag</item> -->", "<![CDATA[ <item>not a tag</item> ]]>", "<?pi <item>not a tag</item> ?>", "<?xml-stylesheet href=\"a?>b\"?>", "<item title=\"a <b> c\" other='<item>'>text</item>", "<item/>", "<empty a='x'/>"};
+	private static final String[] MALFORMED = {"<item>a < b</item>", "<item title=a<b>text</item>", "<item title=\"unclosed>text</item>", "<!DOCTYPE root [<!ENTITY e \"<x>\">]>", "<item'>stray</item>", "<!-- unclosed <item>"};
+
+	private String createText(String[] fragments, int count) {
+		StringBuffer text = new StringBuffer("<root>\n");
+		for (int i = 0; i < count; i++) {
+			text.append(fragments[i % fragments.length]);
+			// vary how the fragments line up with the cut targets
+			for (int j = 0; j < i % 3; j++) {
+				text.append(' ');
+			}
+			text.append('\n');
+		}
+		text.append("</root>\n");
+		return text.toString();
+	}
+
+	/**
+	 * @return a description of each document region, with its text regions,
+	 *         offset by the start of the text parsed
+	 */
+	private List describe(IStructuredDocumentRegion head, int offset) {
+		List descriptions = new ArrayList();
+		for (IStructuredDocumentRegion documentRegion = head; documentRegion != null; documentRegion = documentRegion.getNext()) {
+			StringBuffer description = new StringBuffer();
+			description.append(documentRegion.getStart() + offset).append('-').append(documentRegion.getEnd() + offset);
+			description.append(documentRegion.isEnded() ? " ended" : " unended");
+			ITextRegionList regions = documentRegion.getRegions();
+			for (int i = 0; i < regions.size(); i++) {
+				ITextRegion region = regions.get(i);
+				description.append(' ').append(region.getType()).append(':').append(documentRegion.getStartOffset(region) + offset).append('+').append(region.getLength());
+			}
+			descriptions.add(description.toString());
+		}
+		return descriptions;
+	}
+
+	private List parse(String text, int start, int end) {
+		RegionParser parser = new XMLSourceParser().newInstance();
+		parser.reset(text.substring(start, end), start);
+		return describe(parser.getDocumentRegions(), start);
+	}
+
+	private void assertSameRegions(String text, int[] offsets) {
+		List expected = parse(text, 0, text.length());
+		List actual = new ArrayList();
+		int start = 0;
+		for (int i = 0; i <= offsets.length; i++) {
+			int end = i < offsets.length ? offsets[i] : text.length();
+			assertTrue("offsets out of order at " + end, start < end);
+			actual.addAll(parse(text, start, end));
+			start = end;
+		}
+		for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+			assertEquals("document region " + i + " when cut at " + toString(offsets), expected.get(i), actual.get(i));
+		}
+		assertEquals("document region count when cut at " + toString(offsets), expected.size(), actual.size());
+	}
+
+	/**
+	 * Checks the regions when cut into any number of pieces, and when cut at
+	 * the single offset found from every tenth character.
+	 *
+	 * @return the largest number of offsets found at once
+	 */
+	private int assertSplitsMatch(String text) {
+		XMLSourceParser parser = new XMLSourceParser();
+		int mostOffsets = 0;
+		for (int count = 2; count <= 64; count++) {
+			int[] offsets = parser.getSplitOffsets(text, 0, text.length(), count);
+			assertTrue("too many offsets", offsets.length < count);
+			assertSameRegions(text, offsets);
+			mostOffsets = Math.max(mostOffsets, offsets.length);
+		}
+		for (int from = 1; from < text.length(); from += 10) {
+			int offset = parser.getSplitOffset(text, 0, from, text.length());
+			if (offset >= 0) {
+				assertTrue("offset " + offset + " before " + from, offset >= from);
+				assertSameRegions(text, new int[]{offset});
+			}
+		}
+		return mostOffsets;
+	}
+
+	private String toString(int[] offsets) {
+		StringBuffer s = new StringBuffer();
+		for (int i = 0; i < offsets.length; i++) {
+			if (i > 0)
+				s.append(',');
+			s.append(offsets[i]);
+		}
+		return s.toString();
+	}
+
+	public void testCommentsCDATAAndProcessingInstructions() {
+		int mostOffsets = assertSplitsMatch(createText(WELL_FORMED, 200));
+		assertTrue("well formed text was not split", mostOffsets > 8);
+	}
+
+	public void testAttributeValuesContainingLessThan() {
+		int mostOffsets = assertSplitsMatch(createText(new String[]{"<item title=\"a <b> c\">text</item>", "<item other='<item>' title=\"<\">text</item>", "<item title=\"<!-- x\">text</item>", "<item title=\"]]> <![CDATA[\"/>"}, 200));
+		assertTrue("well formed text was not split", mostOffsets > 8);
+	}
+
+	public void testMalformedMarkup() {
+		String[] fragments = new String[WELL_FORMED.length + MALFORMED.length];
+		System.arraycopy(WELL_FORMED, 0, fragments, 0, WELL_FORMED.length);
+		System.arraycopy(MALFORMED, 0, fragments, WELL_FORMED.length, MALFORMED.length);
+		assertSplitsMatch(createText(fragments, 200));
+	}
+
+	/**
+	 * A text large enough to be parsed in pieces, where there are processors
+	 * enough, when set into a document
+	 */
+	public void testLargeDocument() {
+		String text = createText(WELL_FORMED, 40000);
+		assertTrue(text.length() > 1024 * 1024);
+		IStructuredDocument document = StructuredDocumentFactory.getNewStructuredDocumentInstance(new XMLSourceParser());
+		document.set(text);
+		List expected = parse(text, 0, text.length());
+		List actual = describe(document.getFirstStructuredDocumentRegion(), 0);
+		assertEquals("document region count", expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals("document region " + i, expected.get(i), actual.get(i));
+		}
+	}
+}